@@ -1,21 +1,31 @@
 package com.example.dogclassificationapp.activities;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.util.Log;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.example.dogclassificationapp.R;
 import com.example.dogclassificationapp.classifier_logic.Breed;
+import com.example.dogclassificationapp.classifier_logic.ClassificationSnapshot;
 import com.example.dogclassificationapp.classifier_logic.DogClassifier;
 import com.example.dogclassificationapp.custom_views.BreedAdapter;
-
+import com.example.dogclassificationapp.database.ClassificationHistory;
+import com.example.dogclassificationapp.util.AppSetup;
+import com.example.dogclassificationapp.util.FrameTimeMonitor;
+import com.example.dogclassificationapp.util.Metrics;
+import com.example.dogclassificationapp.util.SessionScope;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 
 public class ClassifierActivity extends AppCompatActivity {
@@ -23,12 +33,32 @@ public class ClassifierActivity extends AppCompatActivity {
     // A list of all breeds that will be displayed in the recycler view
     private ArrayList<Breed> breeds;
 
-    // The TF-Lite model that will classify the given image:
-    private DogClassifier classifier;
-
     // The recycler view that will present all the breeds:
     private RecyclerView breedsRV;
 
+    // The adapter of the recycler view (null until it's set):
+    private BreedAdapter breedAdapter;
+
+    // Keeps the classification while the activity is recreated:
+    private ClassifierViewModel viewModel;
+
+    // The name of the file that a snapshot of the classification is saved in, so it can be
+    // restored after the app's process was killed:
+    private static final String SNAPSHOT_FILE = "classification_snapshot.bin";
+
+    // The key of the classification's ID in the saved instance state:
+    private static final String CLASSIFICATION_ID_KEY = "classification_id";
+
+    // The maximum amount of requests for the data of the breeds that run at the same time:
+    private static final int MAX_CONCURRENT_REQUESTS = 6;
+
+    // The maximum amount of image bytes that are downloaded for a single classification (after it,
+    // only the images of the rows that are shown are downloaded):
+    private static final long SESSION_BYTE_BUDGET = 8L * 1024 * 1024;
+
+    // Measures the frame times of the activity, by the state of the list:
+    private final FrameTimeMonitor frameTimeMonitor = new FrameTimeMonitor();
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -42,34 +72,74 @@ public class ClassifierActivity extends AppCompatActivity {
         final ImageView mainImg = findViewById(R.id.main_img_classifier);
         mainImg.setImageBitmap(chosenImg);
 
-        // Creating the classifier:
-        classifier = new DogClassifier(this, getAssets());
+        // Connecting the caches to their files:
+        AppSetup.init(this);
 
         // Loading the recycler-view:
         breedsRV = findViewById(R.id.breeds_list_classifier);
         breedsRV.setLayoutManager(new LinearLayoutManager(this));
 
-        // Initializing the data:
-        this.initData(chosenImg);
+        // Initializing the data (only if the classification wasn't kept while the activity was
+        // recreated):
+        this.viewModel = new ViewModelProvider(this).get(ClassifierViewModel.class);
+        if (!this.viewModel.hasClassification())
+            this.initData(chosenImg, savedInstanceState);
+        this.breeds = this.viewModel.getBreeds();
+        this.setResultTitle();
 
         // Initializing the recycler view:
         this.setBreedsRecyclerView();
     }
 
     /**
-     * Uses the classifier to classify the given image and load the "breeds" attribute. The function
-     * also sets the title of the classifier activity as the breed with the highest confidence.
-     * @param chosenImg The image of a dog that the user has chosen, will be classified using the
-     *                  "classifier" attribute
+     * Creates the classification of the activity and keeps it in the view model. If the app's
+     * process was killed while the activity was in the background, the classification is restored
+     * from its snapshot. Otherwise, the classifier classifies the given image.
+     * @param chosenImg The image of a dog that the user has chosen, will be classified by a
+     *                  DogClassifier
+     * @param savedInstanceState The saved state of the activity, null if it was just started.
      */
-    private void initData(Bitmap chosenImg) {
-        // Create the list of breeds using the classifier:
-        this.breeds = this.classifier.getModelPredictions(chosenImg, getResources()).orElse(new ArrayList<>());
+    private void initData(Bitmap chosenImg, Bundle savedInstanceState) {
+        ArrayList<Breed> breeds = null;
+        long classificationID = System.currentTimeMillis();
+
+        // Creating the classifier (it reads the labels, so it's only created when there's no
+        // classification to keep):
+        final DogClassifier classifier = new DogClassifier(this, getAssets());
+
+        // Restoring the classification without running the model again:
+        if (savedInstanceState != null && savedInstanceState.containsKey(CLASSIFICATION_ID_KEY)) {
+            classificationID = savedInstanceState.getLong(CLASSIFICATION_ID_KEY);
+            breeds = ClassificationSnapshot.read(new File(getFilesDir(), SNAPSHOT_FILE), classificationID, getResources(), classifier);
+        }
+
+        if (breeds == null) {
+            // Create the list of breeds using the classifier:
+            breeds = classifier.getModelPredictions(chosenImg, getResources()).orElse(new ArrayList<>());
+
+            // Sorting the breeds from highest confidence to lowest:
+            breeds.sort((b1, b2) -> Double.compare(b2.getConfidence(), b1.getConfidence()));
+
+            // Adding the classification to the history (written in the background), its statistics
+            // decide which breeds' data is pre-fetched first:
+            if (breeds.size() > 0)
+                ClassificationHistory.record(classificationID, chosenImg, breeds);
+        }
+
+        // Loading the information and images of the breeds (that weren't restored), the top-ranked
+        // breeds first:
+        final SessionScope session = new SessionScope(MAX_CONCURRENT_REQUESTS, SESSION_BYTE_BUDGET);
+        final long loadStart = SystemClock.elapsedRealtime();
+        Breed.loadData(breeds, session)
+                .thenRun(() -> Metrics.set("breeds.data_load_millis", SystemClock.elapsedRealtime() - loadStart));
 
-        // Sorting the breeds from highest confidence to lowest:
-        this.breeds.sort((b1, b2) -> Double.compare(b2.getConfidence(), b1.getConfidence()));
+        this.viewModel.setClassification(breeds, session, classificationID);
+    }
 
-        // Setting the title as the name of the breed with the highest confidence:
+    /**
+     * Sets the title of the classifier activity as the breed with the highest confidence.
+     */
+    private void setResultTitle() {
         if (this.breeds.size() > 0) {
             final TextView title = findViewById(R.id.result_title_classifier);
             final String titleTxt = "Result: " + this.breeds.get(0).getFullName() + " (" + Math.round(this.breeds.get(0).getConfidence() * 100) + "%)";
@@ -78,14 +148,70 @@ public class ClassifierActivity extends AppCompatActivity {
 
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putLong(CLASSIFICATION_ID_KEY, this.viewModel.getClassificationID());
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        this.frameTimeMonitor.start(getWindow());
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+
+        // Publishing the frame times of the session:
+        this.frameTimeMonitor.stop();
+
+        // Saving a snapshot of the classification in case the app's process is killed while it's in
+        // the background (when the activity is only recreated, the view model keeps it):
+        if (!isChangingConfigurations() && !isFinishing()) {
+            final ArrayList<Breed> breeds = this.breeds;
+            final long classificationID = this.viewModel.getClassificationID();
+            final File snapshotFile = new File(getFilesDir(), SNAPSHOT_FILE);
+            new Thread(() -> {
+                try {
+                    ClassificationSnapshot.write(snapshotFile, classificationID, breeds);
+                } catch (IOException e) {
+                    Log.e("Classifier Activity", "Saving the snapshot failed: " + e);
+                }
+            }).start();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        // Stopping the thread that prepares the rows (the breeds outlive the activity when it's
+        // recreated, so their updates must no longer reach its adapter):
+        if (this.breedAdapter != null)
+            this.breedAdapter.release();
+    }
+
     /**
      * Initializes the recycler view with the custom BreedAdapter and the "breeds" attribute.
      */
     private void setBreedsRecyclerView() {
         final BreedAdapter adapter = new BreedAdapter(this.breeds, getResources());
+        this.breedAdapter = adapter;
         this.breedsRV.setAdapter(adapter);
         this.breedsRV.setHasFixedSize(true);
 
+        // Tagging the measured frames with the state of the list:
+        this.breedsRV.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                frameTimeMonitor.setScrolling(newState != RecyclerView.SCROLL_STATE_IDLE);
+            }
+        });
+        adapter.setOnRowToggledListener(this.frameTimeMonitor::onRowToggled);
+        adapter.setOnRowsUpdatedListener(this.frameTimeMonitor::onDataArrived);
+
         Log.i("Classifier Activity", "Breeds set");
     }
 }
\ No newline at end of file
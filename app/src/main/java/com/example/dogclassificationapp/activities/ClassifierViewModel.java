@@ -0,0 +1,57 @@
+package com.example.dogclassificationapp.activities;
+
+import androidx.lifecycle.ViewModel;
+
+import com.example.dogclassificationapp.classifier_logic.Breed;
+import com.example.dogclassificationapp.util.SessionScope;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps the classification of the ClassifierActivity (its breeds and the session that loads their
+ * data) while the activity is recreated, for example when the device is rotated. The session is
+ * only cancelled once the activity is finished for good.
+ */
+public class ClassifierViewModel extends ViewModel {
+
+    // The breeds of the classification, sorted from the highest confidence to the lowest (null
+    // until the image is classified):
+    private ArrayList<Breed> breeds;
+
+    // The session that loads the data of the breeds:
+    private SessionScope session;
+
+    // The ID of the classification, used to match it with its snapshot on the disk:
+    private long classificationID;
+
+    /**
+     * Keeps the given classification.
+     * @param breeds The breeds of the classification.
+     * @param session The session that loads the data of the breeds.
+     * @param classificationID The ID of the classification.
+     */
+    public void setClassification(ArrayList<Breed> breeds, SessionScope session, long classificationID) {
+        this.breeds = breeds;
+        this.session = session;
+        this.classificationID = classificationID;
+    }
+
+    public boolean hasClassification() {
+        return this.breeds != null;
+    }
+
+    public ArrayList<Breed> getBreeds() {
+        return this.breeds;
+    }
+
+    public long getClassificationID() {
+        return this.classificationID;
+    }
+
+    @Override
+    protected void onCleared() {
+        // Stopping everything that was started for the classification, so nothing outlives it:
+        if (this.session != null)
+            this.session.cancel();
+    }
+}
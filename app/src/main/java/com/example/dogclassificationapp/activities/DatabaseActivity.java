@@ -1,16 +1,225 @@
 package com.example.dogclassificationapp.activities;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import android.os.Bundle;
+import android.view.View;
+import android.widget.TextView;
 
 import com.example.dogclassificationapp.R;
+import com.example.dogclassificationapp.classifier_logic.Breed;
+import com.example.dogclassificationapp.classifier_logic.DogClassifier;
+import com.example.dogclassificationapp.custom_views.HistoryAdapter;
+import com.example.dogclassificationapp.database.BreedStatistics;
+import com.example.dogclassificationapp.database.ClassificationHistory;
+import com.example.dogclassificationapp.database.HistoryEntry;
+import com.example.dogclassificationapp.util.AppSetup;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows the history of the classifications, from the newest to the oldest. The history is read a
+ * page at a time while the list is scrolled, so the screen stays smooth no matter how long the
+ * history is. Pressing an entry shows only the classifications of its top breed, and pressing an
+ * entry again shows all of them.
+ */
 public class DatabaseActivity extends AppCompatActivity {
 
+    // The amount of entries in a page of the history:
+    private static final int PAGE_SIZE = 50;
+
+    // The next page is loaded once the list is scrolled this close to its end:
+    private static final int PREFETCH_DISTANCE = 20;
+
+    // The amount of similar dogs that are shown when an entry is long-pressed:
+    private static final int SIMILAR_COUNT = 20;
+
+    // The amount of most seen breeds that are shown above the list:
+    private static final int MOST_SEEN_COUNT = 3;
+
+    // The list of the history's entries:
+    private RecyclerView historyRV;
+    private LinearLayoutManager layoutManager;
+    private HistoryAdapter adapter;
+
+    // The title of the history, and the message that is shown when there are no entries:
+    private TextView titleTV;
+    private TextView emptyTV;
+
+    // The display names of the breeds, by their label indices:
+    private List<String> breedNames;
+
+    // Reads the pages of the history off the main thread:
+    private final ExecutorService pageExecutor = Executors.newSingleThreadExecutor();
+
+    // The label index of the breed whose classifications are shown (-1 to show all of them):
+    private int breedFilter = -1;
+
+    // The entry whose similar dogs are shown (null if the history is shown):
+    private HistoryEntry similarTo = null;
+
+    // Whether a page is being loaded, and whether the last page was loaded already:
+    private boolean loading = false;
+    private boolean reachedEnd = false;
+
+    // Changes whenever the list is cleared, so pages that were requested before are dropped:
+    private int generation = 0;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_database);
+
+        // Connecting the caches (and the history) to their files:
+        AppSetup.init(this);
+
+        // Loading the names of the breeds:
+        this.breedNames = new ArrayList<>();
+        for (String label : DogClassifier.loadLabels(getAssets(), DogClassifier.LABELS_FILE).orElse(new ArrayList<>()))
+            this.breedNames.add(Breed.getFullName(label));
+
+        this.titleTV = findViewById(R.id.history_title_database);
+        this.emptyTV = findViewById(R.id.history_empty_database);
+        showMostSeenBreeds();
+
+        // Initializing the recycler view:
+        this.historyRV = findViewById(R.id.history_list_database);
+        this.layoutManager = new LinearLayoutManager(this);
+        this.historyRV.setLayoutManager(this.layoutManager);
+        this.adapter = new HistoryAdapter(this.breedNames);
+        this.adapter.setOnEntryClickListener(this::onEntryClick);
+        this.adapter.setOnEntryLongClickListener(this::onEntryLongClick);
+        this.historyRV.setAdapter(this.adapter);
+        this.historyRV.setHasFixedSize(true);
+
+        // Loading the next page before the list is scrolled to its end:
+        this.historyRV.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                loadNextPageIfNeeded();
+            }
+        });
+
+        this.loadNextPageIfNeeded();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        this.pageExecutor.shutdownNow();
+    }
+
+    /**
+     * Shows the breeds that were the top breed the most times (read from the statistics of the
+     * breeds, so the history isn't scanned).
+     */
+    private void showMostSeenBreeds() {
+        final BreedStatistics statistics = ClassificationHistory.getStatistics();
+        if (statistics == null)
+            return;
+
+        final StringBuilder mostSeen = new StringBuilder();
+        for (int labelIndex : statistics.getMostSeen(MOST_SEEN_COUNT)) {
+            if (mostSeen.length() > 0)
+                mostSeen.append(", ");
+            mostSeen.append(labelIndex < this.breedNames.size() ? this.breedNames.get(labelIndex) : "?")
+                    .append(" (").append(statistics.getTopCount(labelIndex)).append(')');
+        }
+        if (mostSeen.length() == 0)
+            return;
+
+        final TextView summaryTV = findViewById(R.id.history_summary_database);
+        summaryTV.setText(getString(R.string.database_summary_txt, mostSeen));
+        summaryTV.setVisibility(View.VISIBLE);
+    }
+
+    /**
+     * Loads the next page of the history, if the list is scrolled close to its end and no page is
+     * being loaded already.
+     */
+    private void loadNextPageIfNeeded() {
+        if (this.loading || this.reachedEnd)
+            return;
+        if (this.adapter.getItemCount() > 0
+                && this.layoutManager.findLastVisibleItemPosition() < this.adapter.getItemCount() - PREFETCH_DISTANCE)
+            return;
+
+        this.loading = true;
+        final int requestGeneration = this.generation;
+        final HistoryEntry after = this.adapter.getLastEntry();
+        final int filter = this.breedFilter;
+        this.pageExecutor.execute(() -> {
+            final List<HistoryEntry> page = ClassificationHistory.getPage(after, filter, PAGE_SIZE);
+            runOnUiThread(() -> onPageLoaded(requestGeneration, page));
+        });
+    }
+
+    /**
+     * Adds a page that was loaded to the list (runs on the main thread).
+     * @param requestGeneration The generation of the list when the page was requested.
+     * @param page The entries of the page.
+     */
+    private void onPageLoaded(int requestGeneration, List<HistoryEntry> page) {
+        if (requestGeneration != this.generation || isDestroyed())
+            return;
+
+        this.loading = false;
+        this.reachedEnd = this.similarTo != null || page.size() < PAGE_SIZE;
+        this.adapter.addPage(page);
+        this.emptyTV.setVisibility(this.adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+
+        // The page may not fill the screen, in which case the list won't be scrolled:
+        this.historyRV.post(this::loadNextPageIfNeeded);
+    }
+
+    /**
+     * Shows only the classifications of the pressed entry's top breed, or all the classifications
+     * if they are already filtered (or the similar dogs are shown).
+     * @param entry The entry that was pressed.
+     */
+    private void onEntryClick(HistoryEntry entry) {
+        if (this.similarTo == null && this.breedFilter == -1 && entry.getTopBreedCount() > 0) {
+            this.breedFilter = entry.getLabelIndex(0);
+            final String breedName = this.breedFilter < this.breedNames.size() ? this.breedNames.get(this.breedFilter) : "";
+            this.titleTV.setText(getString(R.string.database_filtered_title_txt, breedName));
+        } else {
+            this.breedFilter = -1;
+            this.titleTV.setText(R.string.database_title_txt);
+        }
+        this.similarTo = null;
+
+        // Reading the history again from its first page:
+        this.generation++;
+        this.loading = false;
+        this.reachedEnd = false;
+        this.adapter.clear();
+        this.loadNextPageIfNeeded();
+    }
+
+    /**
+     * Shows the past classifications of the dogs that look the most like the dog of the
+     * long-pressed entry.
+     * @param entry The entry that was long-pressed.
+     */
+    private void onEntryLongClick(HistoryEntry entry) {
+        this.similarTo = entry;
+        this.breedFilter = -1;
+        this.titleTV.setText(R.string.database_similar_title_txt);
+
+        // The similar dogs are loaded as a single page:
+        this.generation++;
+        this.loading = true;
+        this.reachedEnd = true;
+        this.adapter.clear();
+        final int requestGeneration = this.generation;
+        this.pageExecutor.execute(() -> {
+            final List<HistoryEntry> similar = ClassificationHistory.findSimilar(entry, SIMILAR_COUNT);
+            runOnUiThread(() -> onPageLoaded(requestGeneration, similar));
+        });
     }
-}
\ No newline at end of file
+}
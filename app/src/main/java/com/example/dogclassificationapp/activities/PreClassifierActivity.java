@@ -17,6 +17,7 @@ import android.widget.ImageView;
 import android.widget.Toast;
 
 import com.example.dogclassificationapp.R;
+import com.example.dogclassificationapp.background.CachePrewarmJobService;
 
 import java.io.IOException;
 
@@ -72,6 +73,9 @@ public class PreClassifierActivity extends AppCompatActivity {
         this.cameraBtn.setOnClickListener(this::onCameraButtonClick);
         this.galleryBtn.setOnClickListener(this::onGalleryButtonClick);
         this.confirmBtn.setOnClickListener(this::onConfirmButtonClick);
+
+        // Pre-fetching the data of the breeds in the background (while charging on Wi-Fi):
+        CachePrewarmJobService.schedule(this);
     }
 
     /**
@@ -226,6 +230,8 @@ public class PreClassifierActivity extends AppCompatActivity {
      * @param view The menu's database button which was clicked.
      */
     private void onMenuDatabaseButtonClick(View view) {
-        // TODO: When the Database activity is done, launch it from here with animation
+        // Launching the database activity, which shows the history of the classifications:
+        final Intent intent = new Intent(this, DatabaseActivity.class);
+        startActivity(intent);
     }
 }
\ No newline at end of file
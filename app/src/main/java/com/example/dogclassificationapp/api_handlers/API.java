@@ -1,56 +1,176 @@
 package com.example.dogclassificationapp.api_handlers;
 
+import com.example.dogclassificationapp.util.Metrics;
 import com.example.dogclassificationapp.util.Result;
+import com.example.dogclassificationapp.util.SessionScope;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.function.BooleanSupplier;
 
 public abstract class API {
 
+    // The amount of milliseconds to wait for a host to connect and to respond, so an unresponsive
+    // host is counted as a failure by its circuit breaker instead of blocking forever:
+    private static final int CONNECT_TIMEOUT = 10_000;
+    private static final int READ_TIMEOUT = 10_000;
+
+    // Checks whether the device currently has a network connection (always true until it is set):
+    private static volatile BooleanSupplier connectivityCheck = () -> true;
+
+    /**
+     * Sets the function that checks whether the device currently has a network connection. While
+     * the function returns false, every request fails immediately without being sent.
+     * @param check The function that checks the connectivity of the device.
+     */
+    public static void setConnectivityCheck(BooleanSupplier check) {
+        connectivityCheck = check;
+    }
+
     /**
-     * Sends a get request to the given URL and returns the response.
+     * Sends a get request to the given URL and returns the response. The request fails immediately
+     * if the device is offline or the circuit breaker of the URL's host is open. Otherwise, the
+     * result of the request is recorded by the host's circuit breaker. A request that is sent from a
+     * job of a session is disconnected if the session is cancelled.
      * @param url The URL to the API which will return a response.
-     * @return If the response from the API was successfully received, it is returned. If not, the
-     *         error that occurred will be returned.
+     * @return If the response from the API was successfully received, it is returned (its status
+     *         may still be an error). If not, the error that occurred will be returned.
      */
-    protected static Result<HttpURLConnection, IOException> sendGetRequest(String url) {
+    protected static Result<HttpURLConnection, ApiError> sendGetRequest(String url) {
+        // Failing fast if the device is offline:
+        if (!connectivityCheck.getAsBoolean()) {
+            Metrics.increment("api.offline_rejected");
+            return Result.failure(ApiError.unavailable("No network connection"));
+        }
+
+        final URL parsedURL;
         try {
-            final HttpURLConnection searchConnection = (HttpURLConnection) new URL(url).openConnection();
+            parsedURL = new URL(url);
+        }
+        catch (MalformedURLException e) {
+            return Result.failure(ApiError.permanentFailure("Invalid URL: " + url));
+        }
+
+        // Not reserving a request of the host for a session that already ended:
+        final SessionScope scope = SessionScope.current();
+        if (scope != null && scope.isCancelled())
+            return Result.failure(ApiError.unavailable("The session of the request has ended"));
+
+        // Failing fast if the host is unhealthy:
+        final CircuitBreaker breaker = CircuitBreaker.forHost(parsedURL.getHost());
+        if (!breaker.allowRequest())
+            return Result.failure(ApiError.unavailable("Circuit breaker is open for " + parsedURL.getHost()));
+
+        try {
+            final HttpURLConnection searchConnection = (HttpURLConnection) parsedURL.openConnection();
             searchConnection.setRequestMethod("GET");
+            searchConnection.setConnectTimeout(CONNECT_TIMEOUT);
+            searchConnection.setReadTimeout(READ_TIMEOUT);
+
+            // Letting the session of the request disconnect it if the session ends while the
+            // request is in flight:
+            if (scope != null && !scope.trackConnection(searchConnection)) {
+                breaker.release();
+                return Result.failure(ApiError.unavailable("The session of the request has ended"));
+            }
+
+            // Waiting for the response's status, only server errors count against the host:
+            final int responseCode = searchConnection.getResponseCode();
+            if (responseCode >= 500 || responseCode == 429)
+                breaker.recordFailure();
+            else
+                breaker.recordSuccess();
+
             return Result.success(searchConnection);
         }
         catch (IOException e) {
-            return Result.failure(e);
+            // A request that was disconnected by its session doesn't count against the host:
+            if (scope != null && scope.isCancelled()) {
+                breaker.release();
+                return Result.failure(ApiError.unavailable("The session of the request has ended"));
+            }
+
+            breaker.recordFailure();
+            return Result.failure(ApiError.transientFailure("Get request failed: " + e));
         }
     }
 
 
     /**
-     * Reads the HTTP response and converts it to String.
-     * @param response An HTTP response that will be read.
-     * @return If no error occurs, the function returns the given response's content in String
-     *         format. If an error occurred, it is returned.
+     * An interface for functions that pull the wanted values out of a JSON response.
+     * @param <T> The type of the value that is pulled out of the response.
+     */
+    protected interface ResponseParser <T> {
+        /**
+         * Pulls the wanted value out of the JSON response. The function should only read as much
+         * of the response as it needs, the rest of it will be skipped.
+         * @param reader A reader of the response, positioned at its beginning.
+         * @return If the value was found it is returned, if not a description of the error is
+         *         returned.
+         * @throws IOException If reading the response failed.
+         */
+        Result<T, String> parse(JsonPullReader reader) throws IOException;
+    }
+
+    /**
+     * Sends a get request to the given URL and parses the JSON response while it is being received,
+     * without reading the entire response into a string first. The response's stream is closed as
+     * soon as the parser is done.
+     * Requests that failed permanently are remembered in the NegativeCache, and aren't sent again
+     * until their entry expires.
+     * @param url The URL to the API which will return a JSON response.
+     * @param parser The function that will pull the wanted value out of the response.
+     * @return If the response was received and parsed successfully, the value is returned. If not,
+     *         the error is returned. A response that doesn't contain the wanted value is a
+     *         permanent error, since sending the same request again will give the same response.
+     * @param <T> The type of the value that is pulled out of the response.
+     */
+    protected static <T> Result<T, ApiError> getJsonResponse(String url, ResponseParser<T> parser) {
+        // Not sending requests that are known to fail:
+        final ApiError cachedError = NegativeCache.get(url);
+        if (cachedError != null)
+            return Result.failure(cachedError);
+
+        // Sending the request:
+        final Result<HttpURLConnection, ApiError> responseOpt = sendGetRequest(url);
+        if (responseOpt.isErr())
+            return Result.failure(responseOpt.getError());
+
+        final Result<T, ApiError> result = parseResponse(url, responseOpt.getValue(), parser);
+
+        // Remembering permanent failures so they are never retried:
+        if (result.isErr() && result.getError().getCategory() == ApiError.Category.PERMANENT)
+            NegativeCache.put(url, result.getError());
+
+        return result;
+    }
+
+    /**
+     * Checks the status of a response and parses its JSON content directly from its stream.
+     * @param url The URL that the request was sent to.
+     * @param connection The connection of the response.
+     * @param parser The function that will pull the wanted value out of the response.
+     * @return If the value was found it is returned, if not the error is returned.
+     * @param <T> The type of the value that is pulled out of the response.
      */
-    protected static Result<String, IOException> convertResponseToString(HttpURLConnection response) {
+    private static <T> Result<T, ApiError> parseResponse(String url, HttpURLConnection connection, ResponseParser<T> parser) {
         try {
-            // Making variables to read the response:
-            StringBuilder contentBuilder = new StringBuilder();
-            BufferedReader contentReader = new BufferedReader(new InputStreamReader(response.getInputStream()));
-            String line;
-
-            // Going over the lines in the response:
-            while ((line = contentReader.readLine()) != null)
-                contentBuilder.append(line);
-            contentReader.close();
-
-            // Returning the content:
-            return Result.success(contentBuilder.toString());
+            final int responseCode = connection.getResponseCode();
+            if (responseCode < 200 || responseCode >= 300)
+                return Result.failure(ApiError.fromResponseCode(responseCode, url));
+
+            try (JsonPullReader reader = new JsonPullReader(connection.getInputStream())) {
+                final Result<T, String> valueOpt = parser.parse(reader);
+                if (valueOpt.isErr())
+                    return Result.failure(ApiError.permanentFailure(valueOpt.getError()));
+
+                return Result.success(valueOpt.getValue());
+            }
         }
         catch (IOException e) {
-            return Result.failure(e);
+            return Result.failure(ApiError.transientFailure("Reading response failed: " + e));
         }
     }
 }
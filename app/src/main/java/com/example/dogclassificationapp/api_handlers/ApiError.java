@@ -0,0 +1,111 @@
+package com.example.dogclassificationapp.api_handlers;
+
+/**
+ * The error of a failed API call. Besides a description of the error, every error has a category
+ * that tells whether sending the same request again could succeed.
+ */
+public class ApiError {
+
+    /**
+     * The different categories of errors.
+     */
+    public enum Category {
+        // The request may succeed if it is sent again later (a timeout, a server error, etc.):
+        TRANSIENT,
+        // The request will never succeed (a missing page, an unsupported breed, etc.):
+        PERMANENT,
+        // The request wasn't sent at all, because the device is offline or the host is unhealthy:
+        UNAVAILABLE
+    }
+
+    private final Category category;
+    private final String message;
+
+    public ApiError(Category category, String message) {
+        this.category = category;
+        this.message = message;
+    }
+
+    public static ApiError transientFailure(String message) {
+        return new ApiError(Category.TRANSIENT, message);
+    }
+
+    public static ApiError permanentFailure(String message) {
+        return new ApiError(Category.PERMANENT, message);
+    }
+
+    public static ApiError unavailable(String message) {
+        return new ApiError(Category.UNAVAILABLE, message);
+    }
+
+    /**
+     * Creates the error of a response whose status isn't successful.
+     * @param responseCode The HTTP status of the response.
+     * @param url The URL that the request was sent to.
+     * @return A transient error for timeouts, rate limits and server errors, and a permanent error
+     *         for every other status (for example, 404).
+     */
+    static ApiError fromResponseCode(int responseCode, String url) {
+        final String message = "Response code " + responseCode + " from " + url;
+        if (responseCode == 408 || responseCode == 429 || responseCode >= 500)
+            return transientFailure(message);
+        return permanentFailure(message);
+    }
+
+    /**
+     * Returns the error of the two that is more likely to succeed if its request is sent again
+     * (transient errors first, then unavailable errors, then permanent errors). Used when an
+     * operation that sends several requests fails as a whole.
+     * @param first An error, may be null.
+     * @param second Another error, may be null.
+     * @return The more retryable error of the two.
+     */
+    static ApiError moreRetryable(ApiError first, ApiError second) {
+        if (first == null)
+            return second;
+        if (second == null)
+            return first;
+        return second.getRetryRank() > first.getRetryRank() ? second : first;
+    }
+
+    /**
+     * Returns a copy of the error with a description of where it happened.
+     * @param context The description that will be added before the error's message.
+     * @return A new error of the same category.
+     */
+    public ApiError withContext(String context) {
+        return new ApiError(this.category, context + ": " + this.message);
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Checks if sending the request again could succeed.
+     * @return True if the error is transient, False otherwise.
+     */
+    public boolean isTransient() {
+        return this.category == Category.TRANSIENT;
+    }
+
+    private int getRetryRank() {
+        switch (this.category) {
+            case TRANSIENT:
+                return 2;
+            case UNAVAILABLE:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.category + ": " + this.message;
+    }
+}
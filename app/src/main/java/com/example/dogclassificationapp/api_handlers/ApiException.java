@@ -0,0 +1,26 @@
+package com.example.dogclassificationapp.api_handlers;
+
+/**
+ * An exception that carries an ApiError, so a failed API call can complete a CompletableFuture
+ * exceptionally (see ApiFutures).
+ */
+public class ApiException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    // The error of the failed call:
+    private final ApiError error;
+
+    /**
+     * The constructor of the ApiException class.
+     * @param error The error of the failed call.
+     */
+    public ApiException(ApiError error) {
+        super(error.toString());
+        this.error = error;
+    }
+
+    public ApiError getError() {
+        return error;
+    }
+}
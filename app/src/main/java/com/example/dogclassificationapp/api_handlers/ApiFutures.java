@@ -0,0 +1,158 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import com.example.dogclassificationapp.util.PriorityScheduler;
+import com.example.dogclassificationapp.util.Result;
+import com.example.dogclassificationapp.util.TaskExecuter;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A utility class for running API calls as CompletableFutures. The calls run as jobs of a session's
+ * PriorityScheduler (so only a bounded amount of them run at the same time, by their priority), and
+ * a failed call completes its future with an ApiException. The futures can be retried without
+ * keeping a thread waiting in between, and their results are handled by the stages that are added
+ * to them.
+ */
+public class ApiFutures {
+
+    // Runs the delayed attempts (they only submit jobs to the schedulers, so one thread is enough):
+    private static final ScheduledThreadPoolExecutor TIMER = createTimer();
+
+    private static ScheduledThreadPoolExecutor createTimer() {
+        final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            final Thread thread = new Thread(runnable, "ApiFutures-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * Runs an API call as a job of the given scheduler. The results of a scheduler that was shut
+     * down are no longer wanted, so the future is cancelled instead. A call that the scheduler drops
+     * when it is shut down never completes the future, so whoever shuts the scheduler down should
+     * cancel the futures that depend on it.
+     * @param call The call, returns the value or the error of the call.
+     * @param scheduler The scheduler that the call runs on.
+     * @param priority Returns the current priority of the call in the scheduler.
+     * @return A future of the call's value, completed with an ApiException if the call failed.
+     * @param <T> The type of the call's value.
+     */
+    public static <T> CompletableFuture<T> supply(TaskExecuter.Task<T, ApiError> call, PriorityScheduler scheduler,
+                                                  IntSupplier priority) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        scheduler.submit(priority, () -> {
+            if (future.isDone())
+                return;
+
+            final Result<T, ApiError> result;
+            try {
+                result = call.run();
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+                return;
+            }
+
+            if (scheduler.isShutdown())
+                future.cancel(false);
+            else if (result.isOk())
+                future.complete(result.getValue());
+            else
+                future.completeExceptionally(new ApiException(result.getError()));
+        });
+        if (scheduler.isShutdown())
+            future.cancel(false);
+        return future;
+    }
+
+    /**
+     * Runs a call again after every transient failure, waiting between the attempts with an
+     * exponential backoff (see TaskExecuter.getBackoffTime) without keeping a thread waiting. Cancelling the returned future stops the
+     * attempts.
+     * @param attempt Starts an attempt of the call.
+     * @param waitTime The amount of milliseconds to wait after the first failure (doubled after
+     *                 every failure that follows).
+     * @param maxTries The maximum amount of attempts.
+     * @return A future of the value of the first successful attempt, or of the error of the last one.
+     * @param <T> The type of the call's value.
+     */
+    public static <T> CompletableFuture<T> withRetry(Supplier<CompletableFuture<T>> attempt, long waitTime, int maxTries) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        // Cancelling the attempt that is running if the result is cancelled:
+        final AtomicReference<CompletableFuture<T>> current = new AtomicReference<>();
+        result.whenComplete((value, throwable) -> {
+            final CompletableFuture<T> running = current.get();
+            if (result.isCancelled() && running != null)
+                running.cancel(false);
+        });
+
+        runAttempt(attempt, waitTime, maxTries, 0, result, current);
+        return result;
+    }
+
+    private static <T> void runAttempt(Supplier<CompletableFuture<T>> attempt, long waitTime, int maxTries,
+                                       int currentTry, CompletableFuture<T> result,
+                                       AtomicReference<CompletableFuture<T>> current) {
+        if (result.isDone())
+            return;
+
+        // A supplier that throws (the later attempts run on the timer's thread, where nothing else
+        // would see the exception) fails the result:
+        final CompletableFuture<T> running;
+        try {
+            running = attempt.get();
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        current.set(running);
+        if (result.isCancelled())
+            running.cancel(false);
+
+        running.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                result.complete(value);
+                return;
+            }
+
+            // Giving up if another attempt is pointless, or if this was the last attempt:
+            final ApiError error = getError(throwable);
+            if (!error.isTransient() || currentTry + 1 >= maxTries) {
+                result.completeExceptionally(unwrap(throwable));
+                return;
+            }
+            TIMER.schedule(() -> runAttempt(attempt, waitTime, maxTries, currentTry + 1, result, current),
+                    TaskExecuter.getBackoffTime(waitTime, currentTry), TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Returns the ApiError of a failed future.
+     * @param throwable The throwable that the future was completed with.
+     * @return The error of the ApiException, or a transient error describing any other throwable.
+     */
+    public static ApiError getError(Throwable throwable) {
+        final Throwable cause = unwrap(throwable);
+        if (cause instanceof ApiException)
+            return ((ApiException) cause).getError();
+        if (cause instanceof CancellationException)
+            return ApiError.unavailable("The call was cancelled");
+        return ApiError.transientFailure(String.valueOf(cause));
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null)
+            cause = cause.getCause();
+        return cause;
+    }
+}
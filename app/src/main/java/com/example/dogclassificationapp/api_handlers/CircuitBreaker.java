@@ -0,0 +1,148 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import com.example.dogclassificationapp.util.Metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * A circuit breaker of a single host. While the host is healthy the breaker is closed and every
+ * request is sent. Once several requests in a row failed, the breaker opens and requests to the host
+ * fail immediately without being sent. After a while the breaker becomes half-open and lets a single
+ * request through: if it succeeds the breaker closes, and if not it opens again.
+ * Every state transition is counted in Metrics as "circuit_breaker.{host}.{state}".
+ */
+public class CircuitBreaker {
+
+    /**
+     * The states that a circuit breaker can be in.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // The amount of failures in a row after which the breaker opens:
+    private static final int FAILURE_THRESHOLD = 5;
+
+    // The amount of milliseconds the breaker stays open before letting a request through:
+    private static final long OPEN_DURATION = 30_000;
+
+    // The circuit breaker of every host:
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    // The host that the breaker protects:
+    private final String host;
+
+    // The settings of the breaker:
+    private final int failureThreshold;
+    private final long openDuration;
+
+    // Returns the current time in milliseconds:
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAt = 0;
+
+    // Whether the single request of the half-open state was let through and hadn't finished yet:
+    private boolean probeInFlight = false;
+
+    CircuitBreaker(String host, int failureThreshold, long openDuration, LongSupplier clock) {
+        this.host = host;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the circuit breaker of the given host, creating it if it doesn't exist yet.
+     * @param host The host of the requests (example: "en.wikipedia.org").
+     * @return The circuit breaker of the host.
+     */
+    public static CircuitBreaker forHost(String host) {
+        return BREAKERS.computeIfAbsent(host,
+                key -> new CircuitBreaker(key, FAILURE_THRESHOLD, OPEN_DURATION, System::currentTimeMillis));
+    }
+
+    /**
+     * Checks if a request to the host may be sent right now. In the half-open state only a single
+     * request is allowed until its result is recorded.
+     * @return True if the request may be sent, False if it should fail immediately.
+     */
+    public synchronized boolean allowRequest() {
+        if (this.state == State.OPEN) {
+            if (this.clock.getAsLong() - this.openedAt < this.openDuration) {
+                Metrics.increment(getMetricName("rejected"));
+                return false;
+            }
+            this.transitionTo(State.HALF_OPEN);
+        }
+
+        if (this.state == State.HALF_OPEN) {
+            if (this.probeInFlight) {
+                Metrics.increment(getMetricName("rejected"));
+                return false;
+            }
+            this.probeInFlight = true;
+        }
+        return true;
+    }
+
+    /**
+     * Records a request that reached the host successfully.
+     */
+    public synchronized void recordSuccess() {
+        this.consecutiveFailures = 0;
+        this.probeInFlight = false;
+        if (this.state != State.CLOSED)
+            this.transitionTo(State.CLOSED);
+    }
+
+    /**
+     * Records a request that failed because of the host (the host couldn't be reached, timed out or
+     * returned a server error).
+     */
+    public synchronized void recordFailure() {
+        this.consecutiveFailures++;
+        this.probeInFlight = false;
+
+        // A failed probe opens the breaker again right away:
+        if (this.state == State.HALF_OPEN || (this.state == State.CLOSED && this.consecutiveFailures >= this.failureThreshold)) {
+            this.openedAt = this.clock.getAsLong();
+            this.transitionTo(State.OPEN);
+        }
+    }
+
+    /**
+     * Releases a request that was allowed without recording its result, because it ended without
+     * telling anything about the host (for example, its session was cancelled). In the half-open
+     * state, this lets the next request be the probe.
+     */
+    public synchronized void release() {
+        this.probeInFlight = false;
+    }
+
+    /**
+     * Checks if the host is currently considered healthy, without reserving a request.
+     * @return False if the breaker is open and requests to the host will fail immediately, True
+     *         otherwise.
+     */
+    public synchronized boolean isAvailable() {
+        return this.state != State.OPEN || this.clock.getAsLong() - this.openedAt >= this.openDuration;
+    }
+
+    public synchronized State getState() {
+        return this.state;
+    }
+
+    private void transitionTo(State state) {
+        this.state = state;
+        Metrics.increment(getMetricName(state.name().toLowerCase(Locale.ROOT)));
+    }
+
+    private String getMetricName(String event) {
+        return "circuit_breaker." + this.host + "." + event;
+    }
+}
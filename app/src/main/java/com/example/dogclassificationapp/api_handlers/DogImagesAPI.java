@@ -1,56 +1,60 @@
 package com.example.dogclassificationapp.api_handlers;
 
-import com.example.dogclassificationapp.util.Callback;
 import com.example.dogclassificationapp.util.Result;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * A utility class to retrieve images of specific dog breeds from the dog API.
  */
 public class DogImagesAPI extends API {
 
-    // The endpoint to receive images of dogs by breeds and sub-breeds. The arguments that should
-    // be replaced are: "{breed}", "{sub_breed}", "{num_images}":
-    private static final String DOG_IMAGES_ENDPOINT = "https://dog.ceo/api/breed/{breed}/{sub_breed}/images/random/{num_images}";
+    // The base URL of the dog API (can be replaced using "setBaseURL"):
+    public static final String DEFAULT_BASE_URL = "https://dog.ceo/api";
+
+    // The endpoint to receive images of dogs by breeds and sub-breeds, should be appended to the
+    // base URL. The arguments that should be replaced are: "{breed}", "{sub_breed}", "{num_images}":
+    private static final String DOG_IMAGES_ENDPOINT = "/breed/{breed}/{sub_breed}/images/random/{num_images}";
+
+    // The base URL that requests are currently sent to:
+    private static volatile String baseURL = DEFAULT_BASE_URL;
+
+    /**
+     * Changes the base URL that requests are sent to (for example, to a local server that stands in
+     * for the dog API).
+     * @param url The new base URL, the endpoints of the class will be appended to it.
+     */
+    public static void setBaseURL(String url) {
+        baseURL = url;
+    }
+
 
     /**
-     * Gathers URLs of images concurrently from the dog API. Th length of the gathered list of URLs
-     * depends on the numImages parameter, but if this number is too large the API may provide less.
-     * @param breed The breed of the dog that will appear in the images.
-     * @param subBreed The sub-breed of the dog that will appear in the images.
-     * @param numImages The desired amount of images. The actual amount may be less if there aren't
-     *                  enough in the API.
-     * @param callback The callback functions that will run at the end of the API call, when the
-     *                 info is gathered. If the URLs were gathered successfully, the "onSuccess"
-     *                 function will be invoked. Otherwise, the "onError" function will be invoked.
+     * Opens the stream of an image that one of the URLs of the dog API points to. The request goes
+     * through the circuit breaker of the image's host like every other request.
+     * @param imageURL The URL of the image.
+     * @return If the image was received, the stream of its content is returned (the caller must
+     *         close it). If not, the error is returned.
      */
-    public static void getImagesURLsAsync(String breed, String subBreed, int numImages,
-                                          Callback<ArrayList<String>, String> callback) {
-        // Created the thread that will gather the information:
-        final Thread thread = new Thread(() -> {
-            try {
-                // Getting the URLs:
-                final Result<ArrayList<String>, String> info = getImagesURLs(breed, subBreed, numImages);
-
-                // If the URLs were gathered successfully:
-                if (info.isOk())
-                    callback.onSuccess(info.getValue());
-                // If some error arose:
-                else
-                    callback.onError(info.getError());
-            } catch (Exception e) {
-                // Catch any unforeseen exception that were thrown (just in case):
-                callback.onError(e.getMessage());
-            }
-        });
-
-        // Starting the thread:
-        thread.start();
+    public static Result<InputStream, ApiError> getImageStream(String imageURL) {
+        final Result<HttpURLConnection, ApiError> responseOpt = sendGetRequest(imageURL);
+        if (responseOpt.isErr())
+            return Result.failure(responseOpt.getError());
+
+        final HttpURLConnection connection = responseOpt.getValue();
+        try {
+            final int responseCode = connection.getResponseCode();
+            if (responseCode < 200 || responseCode >= 300)
+                return Result.failure(ApiError.fromResponseCode(responseCode, imageURL));
+
+            return Result.success(connection.getInputStream());
+        }
+        catch (IOException e) {
+            return Result.failure(ApiError.transientFailure("Reading image failed: " + e));
+        }
     }
 
     /**
@@ -59,41 +63,19 @@ public class DogImagesAPI extends API {
      * @param breed The main breed of the dog (example: "Afghan hound", "hound" is the breed).
      * @param subBreed The sub-breed of the dog (example: "Afghan hound", "Afghan is the sub-breed).
      * @param numImages The amount of images that will be returned
-     * @return A list of image URLs from the dog API.
+     * @return A list of image URLs from the dog API. If the breed isn't supported by the dog API, a
+     *         permanent error is returned.
      */
-    public static Result<ArrayList<String>, String> getImagesURLs(String breed, String subBreed, int numImages) {
+    public static Result<ArrayList<String>, ApiError> getImagesURLs(String breed, String subBreed, int numImages) {
         // Getting the URL for the appropriate endpoint for the specified breed:
         final String FORMATTED_URL = getFormattedImagesEndpoint(breed, subBreed, numImages);
 
-        // Getting the HTTP response:
-        final Result<HttpURLConnection, IOException> responseOpt = sendGetRequest(FORMATTED_URL);
-        // If the GET request failed:
-        if (responseOpt.isErr()) {
-            final String ERR = "Get request failed: " + responseOpt.getError();
-            return Result.failure(ERR);
-        }
-
-        // Unwrapping and reading the response:
-        final HttpURLConnection response = responseOpt.getValue();
-        final Result<String, IOException> contentOpt = convertResponseToString(response);
-
-        // If reading the content failed:
-        if (contentOpt.isErr()) {
-            final String ERR = "Reading content from response failed: " + contentOpt.getError();
-            return Result.failure(ERR);
-        }
-
-        // Unwrapping the response's content:
-        final String content = contentOpt.getValue();
-
-        // Getting the URls:
-        final Result<ArrayList<String>, String> urlsOpt = getURLsFromResponse(content);
+        // Getting the URLs directly from the HTTP response:
+        final Result<ArrayList<String>, ApiError> urlsOpt = getJsonResponse(FORMATTED_URL, DogImagesAPI::getURLsFromResponse);
 
-        // If extracting the URLs failed:
-        if (urlsOpt.isErr()) {
-            final String ERR = "Extracting urls from content failed: " + urlsOpt.getError();
-            return Result.failure(ERR);
-        }
+        // If getting the URLs failed:
+        if (urlsOpt.isErr())
+            return Result.failure(urlsOpt.getError().withContext("Extracting urls from response failed"));
 
         // Unwrapping the URLs:
         final ArrayList<String> urls = urlsOpt.getValue();
@@ -109,7 +91,9 @@ public class DogImagesAPI extends API {
      * @return A URL for the endpoint of the dog API that gives the specified dog breed.
      */
     private static String getFormattedImagesEndpoint(String breed, String subBreed, int numImages) {
-        return DOG_IMAGES_ENDPOINT
+        // Only the endpoint's path is checked for an empty sub-breed ("//"), so the "//" of the
+        // base URL's scheme isn't removed:
+        return baseURL + DOG_IMAGES_ENDPOINT
                 .replace("{breed}", breed)
                 .replace("{sub_breed}", subBreed)
                 .replace("{num_images}", Integer.toString(numImages))
@@ -118,39 +102,29 @@ public class DogImagesAPI extends API {
     }
 
     /**
-     * Given a response in string format, the function returns a list of all the image URLs in the
-     * response.
-     * @param response The response from the dog API containing various URLs of dog pictures.
+     * Reads the response of the dog API and returns a list of all the image URLs in it. Only the
+     * "message" part of the response is read.
+     * @param reader A reader of the response from the dog API containing various URLs of dog
+     *               pictures.
      * @return If the function extracts the URLs successfully, it returns those URLs. If something
      *         went wrong, a result containing the error is returned.
+     * @throws IOException If reading the response failed.
      */
-    private static Result<ArrayList<String>, String> getURLsFromResponse(String response) {
-        // Establishing starting and ending tags to extract the URLs later:
-        final String startTag = "\"message\":[";
-        final String endTag = "],\"status\"";
-
-        // Finding the indices:
-        final int startIdx = response.indexOf(startTag) + startTag.length();
-        final int endIdx = response.indexOf(endTag);
-
-        // Validating the indices:
-        if (startIdx < startTag.length() || endIdx < startIdx)
+    private static Result<ArrayList<String>, String> getURLsFromResponse(JsonPullReader reader) throws IOException {
+        // The URLs are in: {"message": ["<url>", ...], "status": "success"}
+        reader.beginObject();
+        if (!reader.skipToName("message"))
             return Result.failure("Response doesn't contain any message with URLs");
 
-        // Extracting the URLs using regex:
-        final String URLS = response.substring(startIdx, endIdx);
-
-        final Pattern pattern = Pattern.compile("\"(.*?)\"");
-        final Matcher matcher = pattern.matcher(URLS);
+        // If the request failed, the message is a description of the error instead of a list:
+        if (reader.peek() != JsonPullReader.Token.BEGIN_ARRAY)
+            return Result.failure("Response doesn't contain any URLs: " + reader.nextString());
 
+        // Reading the URLs (the JSON escaping of "/" is decoded by the reader):
         final ArrayList<String> urlsList = new ArrayList<>();
-
-        // Looping over the string until there are no more links:
-        String url;
-        while (matcher.find())
-            if ((url = matcher.group(1)) != null)
-                // Removing The unnecessary "\" from the links:
-                urlsList.add(url.replace("\\", ""));
+        reader.beginArray();
+        while (reader.hasNext())
+            urlsList.add(reader.nextString());
 
         return Result.success(urlsList);
     }
@@ -0,0 +1,244 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import com.example.dogclassificationapp.util.Result;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A utility class that keeps a pool of image URLs for every dog breed. Instead of asking the dog API
+ * for new URLs every time images of a breed are needed, a large batch of URLs is fetched once and
+ * saved in memory and on disk. URLs are then served from the pool at random, and the pool is refilled
+ * in the background only when it runs low.
+ */
+public class DogImagesPool {
+
+    // The amount of URLs that will be requested from the dog API when filling a pool (the maximum
+    // amount that the API returns in a single request):
+    private static final int POOL_BATCH_SIZE = 50;
+
+    // Once a pool has less URLs than this amount, it will be refilled in the background:
+    private static final int LOW_WATERMARK = 10;
+
+    // The pool of every breed, the key is created with the "getPoolKey" function:
+    private static final Map<String, ArrayList<String>> POOLS = new ConcurrentHashMap<>();
+
+    // The keys of the pools that are currently being refilled (to avoid refilling a pool twice):
+    private static final Set<String> REFILLING_POOLS = ConcurrentHashMap.newKeySet();
+
+    // A single thread that refills pools and saves them to the disk in the background:
+    private static final ExecutorService BACKGROUND_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "DogImagesPool-background");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Used for picking URLs from the pool at random:
+    private static final Random RANDOM = new Random();
+
+    // The directory that the pools are saved in (null if the pools are only kept in memory):
+    private static File poolsDirectory;
+
+    /**
+     * Sets the directory that the pools will be saved in. Pools that were saved in the directory
+     * before will be loaded from it once they are needed.
+     * @param directory The directory that the pools will be saved in. If it doesn't exist it will
+     *                  be created.
+     */
+    public static synchronized void setPoolsDirectory(File directory) {
+        if (directory.exists() || directory.mkdirs())
+            poolsDirectory = directory;
+    }
+
+    /**
+     * Returns random image URLs of the given breed. The URLs are taken from the breed's pool, and are
+     * only requested from the dog API if the pool doesn't have enough of them. Every URL that is
+     * returned is removed from the pool, so the same image isn't shown twice in a row.
+     * @param breed The main breed of the dog (example: "Afghan hound", "hound" is the breed).
+     * @param subBreed The sub-breed of the dog (example: "Afghan hound", "Afghan is the sub-breed).
+     * @param numImages The amount of URLs that will be returned.
+     * @return If the pool has enough URLs (or was filled successfully), a list of random URLs is
+     *         returned. If not, the error is returned.
+     */
+    public static Result<ArrayList<String>, ApiError> getImagesURLs(String breed, String subBreed, int numImages) {
+        final String key = getPoolKey(breed, subBreed);
+        final ArrayList<String> pool = getPool(key);
+
+        // If the pool doesn't have enough URLs, it must be filled before taking from it:
+        synchronized (pool) {
+            if (pool.size() < numImages) {
+                final Result<ArrayList<String>, ApiError> urlsOpt = DogImagesAPI.getImagesURLs(breed, subBreed, POOL_BATCH_SIZE);
+                if (urlsOpt.isErr())
+                    return Result.failure(urlsOpt.getError());
+
+                addToPool(pool, urlsOpt.getValue());
+            }
+
+            // The dog API may not have enough images of the breed:
+            if (pool.size() < numImages)
+                return Result.failure(ApiError.permanentFailure("Not enough images of the breed, only found " + pool.size()));
+
+            // Taking random URLs from the pool:
+            final ArrayList<String> urls = new ArrayList<>(numImages);
+            for (int i = 0; i < numImages; i++) {
+                // Swapping the random URL with the last one to remove it in constant time:
+                final int randomIdx = RANDOM.nextInt(pool.size());
+                final int lastIdx = pool.size() - 1;
+                Collections.swap(pool, randomIdx, lastIdx);
+                urls.add(pool.remove(lastIdx));
+            }
+
+            // Refilling the pool in the background if it runs low, or just saving it:
+            if (pool.size() < LOW_WATERMARK)
+                refillPoolAsync(key, breed, subBreed, pool);
+            else
+                savePoolAsync(key, pool);
+
+            return Result.success(urls);
+        }
+    }
+
+    /**
+     * Returns the key of the pool of the given breed.
+     * @param breed The main breed of the dog.
+     * @param subBreed The sub-breed of the dog (may be empty).
+     * @return A key that is unique to the breed and can also be used as a file name.
+     */
+    private static String getPoolKey(String breed, String subBreed) {
+        return (breed + "-" + subBreed).replace(' ', '_');
+    }
+
+    /**
+     * Returns the pool with the given key. If the pool isn't in memory, it is loaded from the disk
+     * (if it was saved there) or created empty.
+     * @param key The key of the pool.
+     * @return The pool with the given key.
+     */
+    private static ArrayList<String> getPool(String key) {
+        return POOLS.computeIfAbsent(key, k -> {
+            final ArrayList<String> pool = new ArrayList<>();
+            final File poolFile = getPoolFile(k);
+
+            // Loading the pool from the disk if it was saved before:
+            if (poolFile != null && poolFile.exists()) {
+                try (BufferedReader reader = new BufferedReader(new FileReader(poolFile))) {
+                    String line;
+                    while ((line = reader.readLine()) != null)
+                        if (!line.isEmpty())
+                            pool.add(line);
+                } catch (IOException ignored) {
+                    // The pool will simply be filled from the dog API
+                }
+            }
+
+            return pool;
+        });
+    }
+
+    /**
+     * Adds the given URLs to the pool, without adding URLs that are already in it.
+     * Must be called while holding the pool's lock.
+     * @param pool The pool that the URLs will be added to.
+     * @param urls New URLs of the pool's breed.
+     */
+    private static void addToPool(ArrayList<String> pool, ArrayList<String> urls) {
+        final LinkedHashSet<String> merged = new LinkedHashSet<>(pool);
+        merged.addAll(urls);
+        pool.clear();
+        pool.addAll(merged);
+    }
+
+    /**
+     * Refills the given pool from the dog API in the background, and saves it to the disk afterwards.
+     * If the pool is already being refilled, nothing happens.
+     * @param key The key of the pool.
+     * @param breed The main breed of the pool's dog.
+     * @param subBreed The sub-breed of the pool's dog.
+     * @param pool The pool that will be refilled.
+     */
+    private static void refillPoolAsync(String key, String breed, String subBreed, ArrayList<String> pool) {
+        if (!REFILLING_POOLS.add(key))
+            return;
+
+        BACKGROUND_EXECUTOR.execute(() -> {
+            try {
+                final Result<ArrayList<String>, ApiError> urlsOpt = DogImagesAPI.getImagesURLs(breed, subBreed, POOL_BATCH_SIZE);
+                if (urlsOpt.isOk()) {
+                    synchronized (pool) {
+                        addToPool(pool, urlsOpt.getValue());
+                    }
+                }
+                savePool(key, pool);
+            } finally {
+                REFILLING_POOLS.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Saves the given pool to the disk in the background.
+     * @param key The key of the pool.
+     * @param pool The pool that will be saved.
+     */
+    private static void savePoolAsync(String key, ArrayList<String> pool) {
+        BACKGROUND_EXECUTOR.execute(() -> savePool(key, pool));
+    }
+
+    /**
+     * Saves the given pool to the disk, one URL in every line. The pool is written to a temporary
+     * file that then replaces the pool's file, so the file is never left half-written. If no pools
+     * directory was set, nothing happens.
+     * @param key The key of the pool.
+     * @param pool The pool that will be saved.
+     */
+    private static void savePool(String key, ArrayList<String> pool) {
+        final File poolFile = getPoolFile(key);
+        if (poolFile == null)
+            return;
+
+        // Copying the pool so it isn't locked while writing:
+        final ArrayList<String> urls;
+        synchronized (pool) {
+            urls = new ArrayList<>(pool);
+        }
+
+        final File tempFile = new File(poolFile.getPath() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile))) {
+            for (String url : urls) {
+                writer.write(url);
+                writer.newLine();
+            }
+        } catch (IOException ignored) {
+            // The pool is still kept in memory
+            tempFile.delete();
+            return;
+        }
+
+        if (!tempFile.renameTo(poolFile))
+            tempFile.delete();
+    }
+
+    /**
+     * Returns the file that the pool with the given key is saved in.
+     * @param key The key of the pool.
+     * @return The file of the pool, or null if no pools directory was set.
+     */
+    private static synchronized File getPoolFile(String key) {
+        if (poolsDirectory == null)
+            return null;
+        return new File(poolsDirectory, key + ".txt");
+    }
+}
@@ -0,0 +1,438 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A small pull-style JSON reader that works directly on a response's stream. Instead of reading the
+ * entire response into a string and searching it, the API handlers pull only the tokens they need
+ * and close the reader as soon as they found what they were looking for (the rest of the response is
+ * never read).
+ * The reader expects valid JSON, it does not validate the placement of commas and colons.
+ */
+final class JsonPullReader implements Closeable {
+
+    /**
+     * The different tokens that the reader can encounter.
+     */
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    // The scopes that the reader can be in (every opened object or array pushes a scope):
+    private static final int SCOPE_ARRAY = 0;
+    private static final int SCOPE_OBJECT_NAME = 1;
+    private static final int SCOPE_OBJECT_VALUE = 2;
+
+    // The underlying reader of the response:
+    private final Reader reader;
+
+    // A buffer of the characters that were read from the reader but not yet consumed:
+    private final char[] buffer = new char[4096];
+    private int pos = 0;
+    private int limit = 0;
+
+    // A stack of the scopes the reader is currently in:
+    private int[] scopes = new int[16];
+    private int scopesSize = 0;
+
+    // Reused to build strings without allocating a new builder for every string:
+    private final StringBuilder stringBuilder = new StringBuilder();
+
+    /**
+     * Creates a reader of the given stream. The stream is decoded as UTF-8.
+     * @param in The stream of the JSON document.
+     */
+    JsonPullReader(InputStream in) {
+        this.reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     * @return The type of the next token.
+     * @throws IOException If reading from the stream failed.
+     */
+    Token peek() throws IOException {
+        final int c = peekNonSeparator();
+        switch (c) {
+            case -1:
+                return Token.END_DOCUMENT;
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '}':
+                return Token.END_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case ']':
+                return Token.END_ARRAY;
+            case '"':
+                return currentScope() == SCOPE_OBJECT_NAME ? Token.NAME : Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            default:
+                return Token.NUMBER;
+        }
+    }
+
+    /**
+     * Checks whether the current object or array has more elements.
+     * @return True if the next token isn't the end of the current object or array, False otherwise.
+     * @throws IOException If reading from the stream failed.
+     */
+    boolean hasNext() throws IOException {
+        final Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consumes the beginning of an object.
+     * @throws IOException If the next token isn't the beginning of an object.
+     */
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        pos++;
+        valueConsumed();
+        pushScope(SCOPE_OBJECT_NAME);
+    }
+
+    /**
+     * Consumes the end of the current object.
+     * @throws IOException If the next token isn't the end of an object.
+     */
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        pos++;
+        scopesSize--;
+    }
+
+    /**
+     * Consumes the beginning of an array.
+     * @throws IOException If the next token isn't the beginning of an array.
+     */
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        pos++;
+        valueConsumed();
+        pushScope(SCOPE_ARRAY);
+    }
+
+    /**
+     * Consumes the end of the current array.
+     * @throws IOException If the next token isn't the end of an array.
+     */
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        pos++;
+        scopesSize--;
+    }
+
+    /**
+     * Consumes the name of the next property in the current object.
+     * @return The name of the property.
+     * @throws IOException If the next token isn't a name.
+     */
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        final String name = readString();
+        scopes[scopesSize - 1] = SCOPE_OBJECT_VALUE;
+        return name;
+    }
+
+    /**
+     * Consumes the next string value, decoding every escape sequence in it (including "\\uXXXX").
+     * Numbers are also returned as strings.
+     * @return The value of the string.
+     * @throws IOException If the next token isn't a string or a number.
+     */
+    String nextString() throws IOException {
+        final Token token = peek();
+        final String value;
+        if (token == Token.STRING)
+            value = readString();
+        else if (token == Token.NUMBER)
+            value = readLiteral();
+        else
+            throw new IOException("Expected a string but found " + token);
+
+        valueConsumed();
+        return value;
+    }
+
+    /**
+     * Consumes the next number value as an int.
+     * @return The value of the number.
+     * @throws IOException If the next token isn't a number or it isn't a valid int.
+     */
+    int nextInt() throws IOException {
+        final Token token = peek();
+        final String literal;
+        if (token == Token.NUMBER)
+            literal = readLiteral();
+        else if (token == Token.STRING)
+            literal = readString();
+        else
+            throw new IOException("Expected a number but found " + token);
+
+        valueConsumed();
+        try {
+            return Integer.parseInt(literal);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid int: " + literal);
+        }
+    }
+
+    /**
+     * Skips the next value entirely, including every nested object and array in it. If the next
+     * token is a name, the name and its value are skipped.
+     * @throws IOException If reading from the stream failed.
+     */
+    void skipValue() throws IOException {
+        if (peek() == Token.NAME)
+            nextName();
+
+        int depth = 0;
+        do {
+            switch (peek()) {
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    skipString();
+                    scopes[scopesSize - 1] = SCOPE_OBJECT_VALUE;
+                    break;
+                case STRING:
+                    skipString();
+                    valueConsumed();
+                    break;
+                case END_DOCUMENT:
+                    throw new IOException("Unexpected end of document");
+                default:
+                    readLiteral();
+                    valueConsumed();
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Skips properties of the current object until the property with the given name is found. The
+     * name is consumed, so the next token is the property's value.
+     * @param name The name of the wanted property.
+     * @return True if the property was found, False if the object ended without it (in that case
+     *         the end of the object isn't consumed).
+     * @throws IOException If reading from the stream failed.
+     */
+    boolean skipToName(String name) throws IOException {
+        while (peek() == Token.NAME) {
+            if (nextName().equals(name))
+                return true;
+            skipValue();
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    /**
+     * Makes sure the next token is of the given type.
+     * @param expected The expected type of the next token.
+     * @throws IOException If the next token is of a different type.
+     */
+    private void expect(Token expected) throws IOException {
+        final Token token = peek();
+        if (token != expected)
+            throw new IOException("Expected " + expected + " but found " + token);
+    }
+
+    /**
+     * Returns the current scope of the reader.
+     * @return The scope at the top of the scopes stack, or -1 if the reader isn't in any scope.
+     */
+    private int currentScope() {
+        return scopesSize == 0 ? -1 : scopes[scopesSize - 1];
+    }
+
+    /**
+     * Pushes a new scope to the scopes stack.
+     * @param scope The new scope.
+     */
+    private void pushScope(int scope) {
+        if (scopesSize == scopes.length)
+            scopes = Arrays.copyOf(scopes, scopesSize * 2);
+        scopes[scopesSize++] = scope;
+    }
+
+    /**
+     * Updates the current scope after a value was consumed: if the value belonged to a property of
+     * an object, the next string in the object is a name again.
+     */
+    private void valueConsumed() {
+        if (currentScope() == SCOPE_OBJECT_VALUE)
+            scopes[scopesSize - 1] = SCOPE_OBJECT_NAME;
+    }
+
+    /**
+     * Returns the next character that isn't whitespace, a comma or a colon, without consuming it.
+     * @return The next meaningful character, or -1 if the stream ended.
+     * @throws IOException If reading from the stream failed.
+     */
+    private int peekNonSeparator() throws IOException {
+        while (true) {
+            if (pos == limit && !fillBuffer())
+                return -1;
+
+            final char c = buffer[pos];
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == ',' || c == ':')
+                pos++;
+            else
+                return c;
+        }
+    }
+
+    /**
+     * Reads more characters from the stream into the buffer. Must only be called when every
+     * character in the buffer was consumed.
+     * @return True if characters were read, False if the stream ended.
+     * @throws IOException If reading from the stream failed.
+     */
+    private boolean fillBuffer() throws IOException {
+        pos = 0;
+        limit = 0;
+        final int read = this.reader.read(buffer, 0, buffer.length);
+        if (read <= 0)
+            return false;
+
+        limit = read;
+        return true;
+    }
+
+    /**
+     * Reads the next character of a string or a literal.
+     * @return The next character.
+     * @throws IOException If the stream ended.
+     */
+    private char readChar() throws IOException {
+        if (pos == limit && !fillBuffer())
+            throw new IOException("Unexpected end of document");
+        return buffer[pos++];
+    }
+
+    /**
+     * Reads the string that starts at the current position (the position must be at the opening
+     * quote), and decodes every escape sequence in it.
+     * @return The decoded string.
+     * @throws IOException If the string is invalid or the stream ended.
+     */
+    private String readString() throws IOException {
+        stringBuilder.setLength(0);
+        pos++; // Skipping the opening quote
+
+        while (true) {
+            // Copying every plain character in the buffer at once:
+            final int start = pos;
+            while (pos < limit && buffer[pos] != '"' && buffer[pos] != '\\')
+                pos++;
+            stringBuilder.append(buffer, start, pos - start);
+
+            // If the buffer ended in the middle of the string, continue with the next part of it:
+            if (pos == limit) {
+                if (!fillBuffer())
+                    throw new IOException("Unexpected end of document");
+                continue;
+            }
+
+            final char c = readChar();
+            if (c == '"')
+                return stringBuilder.toString();
+            if (c == '\\')
+                stringBuilder.append(readEscapedChar());
+        }
+    }
+
+    /**
+     * Skips the string that starts at the current position, without decoding it.
+     * @throws IOException If the stream ended.
+     */
+    private void skipString() throws IOException {
+        pos++; // Skipping the opening quote
+
+        char c;
+        while ((c = readChar()) != '"')
+            if (c == '\\')
+                readChar();
+    }
+
+    /**
+     * Reads the rest of an escape sequence (after the backslash) and returns the character it
+     * represents.
+     * @return The character that the escape sequence represents.
+     * @throws IOException If the escape sequence is invalid.
+     */
+    private char readEscapedChar() throws IOException {
+        final char c = readChar();
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    final int digit = Character.digit(readChar(), 16);
+                    if (digit < 0)
+                        throw new IOException("Invalid unicode escape sequence");
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                // Covers '"', '\\' and '/':
+                return c;
+        }
+    }
+
+    /**
+     * Reads a number, boolean or null literal that starts at the current position.
+     * @return The literal as it appears in the document.
+     * @throws IOException If reading from the stream failed.
+     */
+    private String readLiteral() throws IOException {
+        stringBuilder.setLength(0);
+        while (pos < limit || fillBuffer()) {
+            final char c = buffer[pos];
+            if (c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\n' || c == '\r' || c == '\t')
+                break;
+            stringBuilder.append(c);
+            pos++;
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A utility class that remembers requests which failed permanently (for example, a 404 from the dog
+ * API for a breed that it doesn't support), so they aren't sent again until their entry expires.
+ * The entries are kept in memory, and in a file if one was set.
+ */
+public class NegativeCache {
+
+    // The amount of milliseconds that a permanent failure is remembered:
+    private static final long TTL = TimeUnit.DAYS.toMillis(7);
+
+    /**
+     * A remembered failure of a request.
+     */
+    private static class Entry {
+        final long expiry;
+        final String message;
+
+        Entry(long expiry, String message) {
+            this.expiry = expiry;
+            this.message = message;
+        }
+    }
+
+    // The remembered failures, by the URLs of their requests:
+    private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    // The file that the failures are saved to (null if they are only kept in memory):
+    private static File cacheFile;
+
+    /**
+     * Sets the file that the failures will be saved to, and loads every failure that was already
+     * saved in it and hadn't expired yet.
+     * @param file A file that stores the expiry time, the URL and the error message of a failure in
+     *             every line (separated by tabs). If it doesn't exist yet, it will be created once a
+     *             failure is remembered. If null, failures are only kept in memory.
+     */
+    public static synchronized void setCacheFile(File file) {
+        cacheFile = file;
+
+        // Nothing to load if the file wasn't created yet:
+        if (file == null || !file.exists())
+            return;
+
+        final long now = System.currentTimeMillis();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] parts = line.split("\t", 3);
+                if (parts.length < 3)
+                    continue;
+
+                try {
+                    final long expiry = Long.parseLong(parts[0]);
+                    if (expiry > now)
+                        ENTRIES.put(parts[1], new Entry(expiry, parts[2]));
+                } catch (NumberFormatException ignored) {
+                    // A corrupted line, the request will simply be sent again
+                }
+            }
+        } catch (IOException ignored) {
+            // If the file can't be read, the requests will simply be sent again
+        }
+    }
+
+    /**
+     * Returns the remembered failure of a request.
+     * @param url The URL of the request.
+     * @return The permanent error of the request, or null if the request didn't fail permanently
+     *         (or its entry expired).
+     */
+    static ApiError get(String url) {
+        final Entry entry = ENTRIES.get(url);
+        if (entry == null)
+            return null;
+
+        if (entry.expiry <= System.currentTimeMillis()) {
+            ENTRIES.remove(url);
+            return null;
+        }
+        return ApiError.permanentFailure("Cached failure: " + entry.message);
+    }
+
+    /**
+     * Remembers a permanent failure of a request, in memory and in the cache file if one was set.
+     * @param url The URL of the request.
+     * @param error The permanent error of the request.
+     */
+    static synchronized void put(String url, ApiError error) {
+        // Tabs and line breaks are the separators of the file:
+        final String message = error.getMessage().replaceAll("[\t\r\n]", " ");
+        final Entry entry = new Entry(System.currentTimeMillis() + TTL, message);
+        ENTRIES.put(url, entry);
+
+        if (cacheFile == null)
+            return;
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(cacheFile, true))) {
+            writer.write(entry.expiry + "\t" + url + "\t" + message);
+            writer.newLine();
+        } catch (IOException ignored) {
+            // The failure is still remembered in memory
+        }
+    }
+}
@@ -1,128 +1,406 @@
 package com.example.dogclassificationapp.api_handlers;
 
-import com.example.dogclassificationapp.util.Callback;
 import com.example.dogclassificationapp.util.Result;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A utility class for retrieving information from the Wikipedia API.
  */
 public class WikiAPI extends API {
 
+    // The base URL of the Wikipedia API (can be replaced using "setBaseURL"):
+    public static final String DEFAULT_BASE_URL = "https://en.wikipedia.org/w/api.php";
+
     // The Wikipedia search is made of two parts: Searching for most relevant pages and extracting
-    // them. Therefor there are two links, one for searching and one for extracting:
+    // them. Therefor there are two queries, one for searching and one for extracting. Each query
+    // should be appended to the base URL:
 
     // Replace "{breed}" with the desired dog breed to search:
-    private static final String WIKI_SEARCH_URL = "https://en.wikipedia.org/w/api.php?action=query&format=json&list=search&srsearch={breed}";
+    private static final String WIKI_SEARCH_QUERY = "?action=query&format=json&list=search&srsearch={breed}";
     // Replace "{numSentences}" and "{pageId}":
-    private static final String WIKI_EXTRACT_URL = "https://en.wikipedia.org/w/api.php?action=query&format=json&prop=extracts&exsentences={numSentences}&explaintext=true&pageids={pageId}";
+    private static final String WIKI_EXTRACT_QUERY = "?action=query&format=json&prop=extracts&exsentences={numSentences}&explaintext=true&pageids={pageId}";
+
+    // Replace "{numSentences}" and "{pageIds}" (page IDs separated by "|"). This query extracts the
+    // intros of several pages at once:
+    private static final String WIKI_BATCH_EXTRACT_QUERY = "?action=query&format=json&prop=extracts&exintro=true&exlimit=max&exsentences={numSentences}&explaintext=true&pageids={pageIds}";
+
+    // The base URL that requests are currently sent to:
+    private static volatile String baseURL = DEFAULT_BASE_URL;
 
     // The maximum amount of sentences that will be returned from the getInfo function:
     private static final int MAX_SENTENCES = 4;
 
+    // The maximum amount of pages whose extracts can be requested in a single request. Although the
+    // API accepts up to 50 page IDs per query, "exlimit=max" only allows 20 extracts per response:
+    public static final int MAX_PAGES_PER_REQUEST = 20;
+
+    // The page ID of a breed never changes, so once a breed's page ID is found it is cached for the
+    // rest of the app's lifetime (and in a file, if one was set):
+    private static final Map<String, Integer> PAGE_ID_CACHE = new ConcurrentHashMap<>();
+
+    // The file that the page IDs cache is saved to (null if the cache is only kept in memory):
+    private static File pageIDCacheFile;
+
+    // The information of breeds that was already extracted (it is pre-fetched in the background, so
+    // it is usually ready before the classification ends):
+    private static final Map<String, String> INFO_CACHE = new ConcurrentHashMap<>();
+
+    // The file that the information cache is saved to (null if it is only kept in memory):
+    private static File infoCacheFile;
+
+    // Whether the information cache was cleared to free memory since it was loaded from its file
+    // (it's loaded again before information is searched):
+    private static volatile boolean infoCacheTrimmed = false;
+
+    // The estimated bytes of a cached entry on top of its characters (the entry, and the headers of
+    // the strings):
+    private static final int INFO_ENTRY_OVERHEAD_BYTES = 96;
+
     /**
-     * The main function of the class, gathers information concurrently about the specified dog
-     * breed and runs the callback that it was given once it is done.
-     * @param breed The name of the dog breed that will be searched.
-     * @param callback An interface containing two functions, one will be executed if the
-     *                 information was received successfully ("onSuccess") and the other will be
-     *                 executed if an error occurred
+     * Changes the base URL that requests are sent to (for example, to a local server that stands in
+     * for Wikipedia).
+     * @param url The new base URL, the queries of the class will be appended to it.
      */
-    public static void getInfoAsync(String breed, Callback<String, String> callback) {
-        // Creating a new thread to get the info:
-        final Thread thread = new Thread(() -> {
-            try {
-                // Getting the info:
-                final Result<String, String> result = getInfo(breed);
-
-                // If the API call was successful, invoke the "onSuccess" method:
-                if (result.isOk())
-                    callback.onSuccess(result.getValue());
-                // If it failed, invoke the "onError" method:
-                else
-                    callback.onError(result.getError());
-            // Handling any unforeseen exception (just in case):
-            } catch (Exception e) {
-                callback.onError(e.getMessage());
-            }
-        });
-
-        // Starting the thread:
-        thread.start();
+    public static void setBaseURL(String url) {
+        baseURL = url;
     }
 
+
     /**
      * The main function of the class, returns information from Wikipedia about the given breed.
      * @param breed The name of the dog breed that will be searched.
      * @return If the API call was successful the information is returned, but if an error occurred
-     *         a description of the error is returned.
+     *         the error is returned.
      */
-    public static Result<String, String> getInfo(String breed) {
-        // Formatting the breed name to match the URL:
-        final String formattedBreed = formatBreedName(breed);
+    public static Result<String, ApiError> getInfo(String breed) {
+        // Getting the ID of the breed's Wikipedia page:
+        final Result<Integer, ApiError> pageIdOpt = getPageID(breed);
+        // If the page ID wasn't found:
+        if (pageIdOpt.isErr())
+            return Result.failure(pageIdOpt.getError());
 
-        // Getting a search response from the API:
-        final Result<HttpURLConnection, IOException> searchResponseOpt = sendGetRequest(getFormattedSearchUrl(formattedBreed));
-        // If the get request failed:
-        if (searchResponseOpt.isErr()) {
-            final String ERR = "Search get request failed: " + searchResponseOpt.getError();
-            return Result.failure(ERR);
+        // Extracting the info from the specific page:
+        final Result<String, ApiError> info = getJsonResponse(getFormattedExtractURL(pageIdOpt.getValue()), WikiAPI::getInfoFromExtractResponse);
+
+        if (info.isOk()) {
+            return Result.success(WikiTextNormalizer.normalize(info.getValue()));
         }
+        else {
+            return Result.failure(info.getError().withContext("Extracting info from extract response failed"));
+        }
+    }
 
-        // Getting the content:
-        final Result<String, IOException> searchContentOpt = convertResponseToString(searchResponseOpt.getValue());
-        // If converting the response to string format failed:
-        if (searchContentOpt.isErr()) {
-            final String ERR = "Converting search response to string failed: " + searchContentOpt.getError();
-            return Result.failure(ERR);
+    /**
+     * Returns information from Wikipedia about every one of the given breeds. Breeds whose
+     * information is cached aren't searched at all. Instead of sending two requests per breed, the
+     * function only searches for page IDs that weren't found before, and then extracts the information of up to MAX_PAGES_PER_REQUEST pages in a single request.
+     * @param breeds The names of the dog breeds that will be searched.
+     * @return If at least one extract request was successful, a map between each breed and its
+     *         information is returned (breeds whose information couldn't be found will not be in
+     *         the map). If all requests failed, the error that is most likely to succeed on a
+     *         retry is returned (so a single transient failure makes the entire call transient).
+     */
+    public static Result<HashMap<String, String>, ApiError> getInfos(Collection<String> breeds) {
+        reloadTrimmedInfoCache();
+
+        // Taking the information of cached breeds from the cache, and only fetching the rest:
+        final HashMap<String, String> infos = new HashMap<>();
+        final ArrayList<String> missingBreeds = new ArrayList<>();
+        for (String breed : breeds) {
+            final String cachedInfo = INFO_CACHE.get(breed);
+            if (cachedInfo != null)
+                infos.put(breed, cachedInfo);
+            else
+                missingBreeds.add(breed);
         }
 
-        // Getting the ID of the first Wikipedia page:
-        final Result<Integer, String> pageIdOpt = getPageIDFromResponse(searchContentOpt.getValue());
-        // If the page ID wasn't successfully extracted:
-        if (pageIdOpt.isErr()) {
-            final String ERR = "Extracting page ID failed: " + pageIdOpt.getError();
-            return Result.failure(ERR);
+        if (missingBreeds.isEmpty() && !infos.isEmpty())
+            return Result.success(infos);
+
+        final Result<HashMap<String, String>, ApiError> fetchedOpt = fetchInfos(missingBreeds);
+        if (fetchedOpt.isOk()) {
+            for (Map.Entry<String, String> info : fetchedOpt.getValue().entrySet())
+                cacheInfo(info.getKey(), info.getValue());
+            infos.putAll(fetchedOpt.getValue());
         }
+        // The cached information is still useful when fetching the rest failed:
+        else if (infos.isEmpty())
+            return fetchedOpt;
+
+        return Result.success(infos);
+    }
+
+    /**
+     * Returns whether the information of the given breed is cached (so getInfos won't send any
+     * request for it).
+     * @param breed The name of the dog breed.
+     * @return True if the breed's information is cached, False if not.
+     */
+    public static boolean isInfoCached(String breed) {
+        reloadTrimmedInfoCache();
+        return INFO_CACHE.containsKey(breed);
+    }
+
+    /**
+     * Returns the estimated amount of memory that the information cache holds.
+     * @return The amount of bytes.
+     */
+    public static long getInfoCacheBytes() {
+        long bytes = 0;
+        for (Map.Entry<String, String> entry : INFO_CACHE.entrySet())
+            bytes += INFO_ENTRY_OVERHEAD_BYTES + 2L * (entry.getKey().length() + entry.getValue().length());
+        return bytes;
+    }
 
-        // Sending a get request to extract info from the specific page:
-        final Result<HttpURLConnection, IOException> extractResponseOpt = sendGetRequest(getFormattedExtractURL(pageIdOpt.getValue()));
-        // If the extract response failed:
-        if (extractResponseOpt.isErr()) {
-            final String ERR = "Extract get request failed: " + extractResponseOpt.getError();
-            return Result.failure(ERR);
+    /**
+     * Clears the information cache from memory. If the cache has a file, it's loaded from it again
+     * the next time information is searched.
+     * @return The estimated amount of bytes that were freed.
+     */
+    public static synchronized long trimInfoCache() {
+        final long bytes = getInfoCacheBytes();
+        INFO_CACHE.clear();
+        infoCacheTrimmed = true;
+        return bytes;
+    }
+
+    private static synchronized void reloadTrimmedInfoCache() {
+        if (!infoCacheTrimmed)
+            return;
+        infoCacheTrimmed = false;
+        if (infoCacheFile != null)
+            setInfoCacheFile(infoCacheFile);
+    }
+
+    /**
+     * Fetches the information of the given breeds from Wikipedia (without checking the information
+     * cache).
+     * @param breeds The names of the dog breeds that will be searched.
+     * @return The same as getInfos.
+     */
+    private static Result<HashMap<String, String>, ApiError> fetchInfos(Collection<String> breeds) {
+        // Finding the page ID of every breed (several breeds may share the same page):
+        final HashMap<Integer, List<String>> pageBreeds = new HashMap<>();
+        ApiError error = null;
+        for (String breed : breeds) {
+            final Result<Integer, ApiError> pageIdOpt = getPageID(breed);
+            if (pageIdOpt.isOk())
+                pageBreeds.computeIfAbsent(pageIdOpt.getValue(), id -> new ArrayList<>()).add(breed);
+            else
+                error = ApiError.moreRetryable(error, pageIdOpt.getError());
         }
 
-        // Getting the content of the response:
-        final Result<String, IOException> extractContentOpt = convertResponseToString(extractResponseOpt.getValue());
-        // If converting the response to string format failed:
-        if (extractContentOpt.isErr()) {
-            final String ERR = "Converting extract response to string failed: " + extractContentOpt.getError();
-            return Result.failure(ERR);
+        // If not even one page ID was found, there is nothing to extract:
+        if (pageBreeds.isEmpty())
+            return Result.failure(error != null ? error : ApiError.permanentFailure("No breeds were given"));
+
+        // Extracting the pages in chunks of MAX_PAGES_PER_REQUEST:
+        final HashMap<String, String> infos = new HashMap<>();
+        final ArrayList<Integer> pageIDs = new ArrayList<>(pageBreeds.keySet());
+        boolean anySuccessful = false;
+
+        for (int start = 0; start < pageIDs.size(); start += MAX_PAGES_PER_REQUEST) {
+            final List<Integer> chunk = pageIDs.subList(start, Math.min(start + MAX_PAGES_PER_REQUEST, pageIDs.size()));
+
+            // Sending a single get request for the entire chunk:
+            final Result<HashMap<Integer, String>, ApiError> extractsOpt = getJsonResponse(getFormattedBatchExtractURL(chunk), WikiAPI::getInfosFromBatchExtractResponse);
+            if (extractsOpt.isErr()) {
+                error = ApiError.moreRetryable(error, extractsOpt.getError().withContext("Batch extract request failed"));
+                continue;
+            }
+            anySuccessful = true;
+
+            // Fanning out each page's extract to the breeds that share it:
+            for (Map.Entry<Integer, String> extract : extractsOpt.getValue().entrySet()) {
+                final List<String> extractBreeds = pageBreeds.get(extract.getKey());
+                if (extractBreeds == null)
+                    continue;
+
+                final String info = WikiTextNormalizer.normalize(extract.getValue());
+                for (String breed : extractBreeds)
+                    infos.put(breed, info);
+            }
         }
 
-        // Extracting the info:
-        final Result<String, String> info = getInfoFromExtractResponse(extractContentOpt.getValue());
+        if (anySuccessful)
+            return Result.success(infos);
+        else
+            return Result.failure(error);
+    }
 
-        if (info.isOk()) {
-            return Result.success(
-                    // Removing all odd characters:
-                    removeOddChars(
-                        // Converting all unicode chars to their actual value:
-                        convertUnicode(
-                            // Getting the info only until the title:
-                            getInfoUntilTitle(
-                                    info.getValue()
-                            )
-                        )
-                    )
-            );
+    /**
+     * Sets the file that the page IDs cache will be saved to, and loads every page ID that was
+     * already saved in it. Page IDs that will be found from now on will be added to the file.
+     * @param file A file that stores a breed name and its page ID in every line (separated by a
+     *             tab). If it doesn't exist yet, it will be created once a page ID is found.
+     */
+    public static synchronized void setPageIDCacheFile(File file) {
+        pageIDCacheFile = file;
+
+        // Nothing to load if the file wasn't created yet:
+        if (!file.exists())
+            return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separatorIdx = line.lastIndexOf('\t');
+                if (separatorIdx < 0)
+                    continue;
+
+                try {
+                    PAGE_ID_CACHE.put(line.substring(0, separatorIdx), Integer.parseInt(line.substring(separatorIdx + 1)));
+                } catch (NumberFormatException ignored) {
+                    // A corrupted line, the page ID will simply be searched again
+                }
+            }
+        } catch (IOException ignored) {
+            // If the file can't be read, the page IDs will simply be searched again
         }
-        else {
-            final String ERR = "Extracting info from extract response failed: " + info.getError();
-            return Result.failure(ERR);
+    }
+
+    /**
+     * Sets the file that the information cache will be saved to, and loads every breed's
+     * information that was already saved in it. Information that will be extracted from now on will
+     * be added to the file.
+     * @param file A file that stores a breed name and its information in every line (separated by a
+     *             tab, with the line breaks of the information escaped). If it doesn't exist yet, it
+     *             will be created once information is extracted.
+     */
+    public static synchronized void setInfoCacheFile(File file) {
+        infoCacheFile = file;
+
+        // Nothing to load if the file wasn't created yet:
+        if (!file.exists())
+            return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int separatorIdx = line.indexOf('\t');
+                if (separatorIdx < 0)
+                    continue;
+
+                INFO_CACHE.put(line.substring(0, separatorIdx), unescapeInfo(line.substring(separatorIdx + 1)));
+            }
+        } catch (IOException ignored) {
+            // If the file can't be read, the information will simply be extracted again
+        }
+    }
+
+    /**
+     * Saves the information of the given breed in the memory cache, and in the cache file if one was
+     * set.
+     * @param breed The name of the dog breed.
+     * @param info The normalized information of the breed.
+     */
+    private static synchronized void cacheInfo(String breed, String info) {
+        // If the information was already cached by another thread there's no need to save it again:
+        if (INFO_CACHE.put(breed, info) != null || infoCacheFile == null)
+            return;
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(infoCacheFile, true))) {
+            writer.write(breed + '\t' + escapeInfo(info));
+            writer.newLine();
+        } catch (IOException ignored) {
+            // The information is still cached in memory
+        }
+    }
+
+    /**
+     * Escapes the backslashes, tabs and line breaks of the given information, so it fits in a
+     * single line of the cache file.
+     * @param info The information of a breed.
+     * @return The escaped information.
+     */
+    private static String escapeInfo(String info) {
+        final StringBuilder escaped = new StringBuilder(info.length());
+        for (int i = 0; i < info.length(); i++) {
+            final char c = info.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\t': escaped.append("\\t"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Reverses escapeInfo.
+     * @param escaped Information that was escaped by escapeInfo.
+     * @return The original information.
+     */
+    private static String unescapeInfo(String escaped) {
+        final StringBuilder info = new StringBuilder(escaped.length());
+        for (int i = 0; i < escaped.length(); i++) {
+            final char c = escaped.charAt(i);
+            if (c != '\\' || i + 1 == escaped.length()) {
+                info.append(c);
+                continue;
+            }
+
+            final char next = escaped.charAt(++i);
+            info.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next == 't' ? '\t' : next);
+        }
+        return info.toString();
+    }
+
+    /**
+     * Returns the ID of the Wikipedia page of the given breed. The ID is only searched for if it
+     * isn't already cached.
+     * @param breed The name of the dog breed whose page will be searched.
+     * @return If the page ID was found it is returned, if not the error is returned.
+     */
+    private static Result<Integer, ApiError> getPageID(String breed) {
+        // Checking the cache first:
+        final Integer cachedID = PAGE_ID_CACHE.get(breed);
+        if (cachedID != null)
+            return Result.success(cachedID);
+
+        // Formatting the breed name to match the URL:
+        final String formattedBreed = formatBreedName(breed);
+
+        // Searching and getting the ID of the first Wikipedia page:
+        final Result<Integer, ApiError> pageIdOpt = getJsonResponse(getFormattedSearchUrl(formattedBreed), WikiAPI::getPageIDFromResponse);
+        // If the page ID wasn't successfully extracted:
+        if (pageIdOpt.isErr())
+            return Result.failure(pageIdOpt.getError().withContext("Extracting page ID failed"));
+
+        // Caching the page ID for next time:
+        cachePageID(breed, pageIdOpt.getValue());
+        return pageIdOpt;
+    }
+
+    /**
+     * Saves the page ID of the given breed in the memory cache, and in the cache file if one was set.
+     * @param breed The name of the dog breed.
+     * @param pageID The ID of the breed's Wikipedia page.
+     */
+    private static synchronized void cachePageID(String breed, int pageID) {
+        // If the page ID was already cached by another thread there's no need to save it again:
+        if (PAGE_ID_CACHE.put(breed, pageID) != null || pageIDCacheFile == null)
+            return;
+
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(pageIDCacheFile, true))) {
+            writer.write(breed + '\t' + pageID);
+            writer.newLine();
+        } catch (IOException ignored) {
+            // The page ID is still cached in memory
         }
     }
 
@@ -141,41 +419,38 @@ public class WikiAPI extends API {
      * @return A modified version of the search URL to search for the given breed.
      */
     private static String getFormattedSearchUrl(String formattedBreed) {
-        return WIKI_SEARCH_URL.replace("{breed}", formattedBreed);
+        return baseURL + WIKI_SEARCH_QUERY.replace("{breed}", formattedBreed);
     }
 
     /**
-     * Extracts the page ID of the first page in the given Wikipedia response.
-     * @param responseString A string version of the Wikipedia response.
-     * @return If the response contains a page ID, the function will return it. If not, a
-     *         description of the error is returned.
+     * Extracts the page ID of the first page in the given Wikipedia search response. Only the
+     * response until the first page ID is read.
+     * @param reader A reader of the Wikipedia search response.
+     * @return If the response contains a page ID, the function will return it. If the search had
+     *         no results, a description of the error is returned.
+     * @throws IOException If reading the response failed, or the response is an error of the API
+     *                     itself (for example, when requests are rate-limited).
      */
-    private static Result<Integer, String> getPageIDFromResponse(String responseString) {
-        // Creating the tags that will identify the page ID:
-        final String startTag = "\"pageid\":";
-        final String endTag = ",";
-
-        // Searching for the page ID:
-        if (responseString.contains(startTag) && responseString.contains(endTag)){
-            // Extracting the page ID:
-            final int startIdx = responseString.indexOf(startTag) + startTag.length();
-            final int endIdx = startIdx + responseString.substring(startIdx).indexOf(endTag);
-
-            final String pageIDStr = responseString.substring(startIdx, endIdx);
-
-            // Making sure the page ID is a number:
-            try {
-                final int pageID = Integer.parseInt(pageIDStr);
-                return Result.success(pageID);
-            }
-            catch (NumberFormatException e) {
-                return Result.failure("Invalid page ID, couldn't convert to int: " + e);
-            }
-        }
-        // If the response doesn't contain a page ID, return an empty Optional:
-        else {
+    private static Result<Integer, String> getPageIDFromResponse(JsonPullReader reader) throws IOException {
+        // The page ID is in: {"query": {"search": [{"pageid": ...}, ...]}}
+        reader.beginObject();
+        if (!reader.skipToName("query"))
+            throw new IOException("Response doesn't include a query");
+
+        reader.beginObject();
+        if (!reader.skipToName("search"))
+            return Result.failure("Response doesn't include search results");
+
+        reader.beginArray();
+        if (!reader.hasNext())
             return Result.failure("Response doesn't include a page ID");
-        }
+
+        // Looking for the page ID in the first search result:
+        reader.beginObject();
+        if (!reader.skipToName("pageid"))
+            return Result.failure("Response doesn't include a page ID");
+
+        return Result.success(reader.nextInt());
     }
 
     /**
@@ -185,7 +460,7 @@ public class WikiAPI extends API {
      *         page-ID.
      */
     private static String getFormattedExtractURL(int pageID) {
-        return WIKI_EXTRACT_URL
+        return baseURL + WIKI_EXTRACT_QUERY
                 .replace(
                         "{numSentences}", Integer.toString(MAX_SENTENCES)
                 ).replace(
@@ -194,114 +469,124 @@ public class WikiAPI extends API {
     }
 
     /**
-     * Receives the response in a string format and returns only the information about the dog breed
-     * in the response.
-     * @param responseString The response of the extract request in a string format.
-     * @return If there is information about the dog breed, it returns it. If not, a result
-     *         detailing the error is returned.
+     * Modifies the batch extract URL to get all the pages with the given page-IDs.
+     * @param pageIDs The IDs of the pages that will be looked for (at most MAX_PAGES_PER_REQUEST).
+     * @return A modified version of the batch extract URL to get all the given pages at once.
      */
-    private static Result<String, String> getInfoFromExtractResponse(String responseString) {
-        // Creating tags that will identify the information part in the response:
-        final String startTag = "\"extract\":\"";
-        final String endTag = "\"}";
-
-        // Making sure both tags are present in the response:
-        if (responseString.contains(startTag) && responseString.contains(endTag)) {
-            // Getting the start and end indices:
-            final int startIdx = responseString.indexOf(startTag) + startTag.length();
-            final int endIdx = startIdx + responseString.substring(startIdx).indexOf(endTag);
-
-            // Returning the information:
-            return Result.success(responseString.substring(startIdx, endIdx));
-        }
-        // If they aren't present, return an empty optional:
-        else {
-            return Result.failure("Response doesn't contain extract tag");
+    private static String getFormattedBatchExtractURL(List<Integer> pageIDs) {
+        // Joining the page IDs with "|", as the API expects:
+        final StringBuilder pageIDsBuilder = new StringBuilder();
+        for (int pageID : pageIDs) {
+            if (pageIDsBuilder.length() > 0)
+                pageIDsBuilder.append("%7C");
+            pageIDsBuilder.append(pageID);
         }
+
+        return baseURL + WIKI_BATCH_EXTRACT_QUERY
+                .replace(
+                        "{numSentences}", Integer.toString(MAX_SENTENCES)
+                ).replace(
+                        "{pageIds}", pageIDsBuilder.toString()
+                );
     }
 
     /**
-     * Given the response's string, this function returns the part in the Wikipedia page before the
-     * first title. Only the summary on the dog breed is returned.
-     * @param responseInfo The response from Wikipedia in string format.
-     * @return The information on the dog only until the first title.
+     * Reads the response of a batch extract request and returns the raw information of every page
+     * in it.
+     * @param reader A reader of the batch extract response.
+     * @return A map between the ID of every page in the response and its extract. Pages without an
+     *         extract are not included.
+     * @throws IOException If reading the response failed, or the response is an error of the API
+     *                     itself.
      */
-    private static String getInfoUntilTitle(String responseInfo) {
-        final int endIdx = responseInfo.indexOf("\\n");
-        if (endIdx >= 0)
-            return responseInfo.substring(0, endIdx);
-        else
-            return responseInfo;
+    private static Result<HashMap<Integer, String>, String> getInfosFromBatchExtractResponse(JsonPullReader reader) throws IOException {
+        final HashMap<Integer, String> extracts = new HashMap<>();
+
+        // Going over every page in: {"query": {"pages": {"<id>": {"pageid": ..., "extract": ...}}}}
+        readPages(reader, (pageID, extract) -> {
+            extracts.put(pageID, extract);
+            return true;
+        });
+
+        return Result.success(extracts);
     }
 
     /**
-     * Finds every unicode code (i.e: "\\u00f10"), and converts it to the actual unicode value.
-     * @param input A string that may or may not contain codes for unicode characters.
-     * @return A modified version of the string where every unicode code is converted to a unicode character.
+     * Reads the response of an extract request and returns only the information about the dog breed
+     * in the response. The rest of the response isn't read.
+     * @param reader A reader of the extract response.
+     * @return If there is information about the dog breed, it returns it. If not, a result
+     *         detailing the error is returned.
+     * @throws IOException If reading the response failed, or the response is an error of the API
+     *                     itself.
      */
-    private static String convertUnicode(String input) {
-        // Creating a variable to store the parts we moved over:
-        StringBuilder builder = new StringBuilder();
-
-        // Looping over the input:
-        int length = input.length();
-        for (int i = 0; i < length; i++) {
-            char c = input.charAt(i);
-            // Checking if the current value is a unicode value:
-            if (c == '\\' && i + 1 < length && input.charAt(i + 1) == 'u') {
-                if (i + 5 < length) {
-                    String unicodeHex = input.substring(i + 2, i + 6);
-                    // Trying to convert the unicode code to a unicode char:
-                    try {
-                        int unicodeValue = Integer.parseInt(unicodeHex, 16);
-                        builder.append((char) unicodeValue);
-                        i += 5; // Skip the Unicode escape sequence
-                    } catch (NumberFormatException e) {
-                        // Invalid Unicode escape sequence, skip it:
-                        builder.append(c);
-                    }
-                }
-                // Invalid Unicode escape sequence, append as is:
-                else {
-                    builder.append(c);
-                }
-            }
-            // Normal char, add to the builder:
-            else {
-                builder.append(c);
-            }
-        }
-        return builder.toString();
+    private static Result<String, String> getInfoFromExtractResponse(JsonPullReader reader) throws IOException {
+        final String[] info = new String[1];
+
+        // Stopping after the first page with an extract:
+        readPages(reader, (pageID, extract) -> {
+            info[0] = extract;
+            return false;
+        });
+
+        if (info[0] != null)
+            return Result.success(info[0]);
+        else
+            return Result.failure("Response doesn't contain extract tag");
     }
 
     /**
-     * The function receives a string as an input, and removes the following features in it:
-     *      - Empty brackets.
-     *      - Unnecessary "\" chars.
-     *      - Double space instead of just one.
-     *      - Occurrences of a colon and after it a number (example: "hello:125" -> "hello").
-     *      - Unprintable characters.
-     *      - Hair-Space characters (HSP).
-     * @param input A string that may or may not contain the features above.
-     * @return A transformed version of the given string without the odd characters.
+     * An interface for handling the pages of an extract response while they are being read.
      */
-    private static String removeOddChars(String input) {
-        return removeColonNumber(input
-                .replace("()", "") // Removing empty brackets
-                .replace("\\\"", "\"") // Removing unnecessary '\"' chars
-                .replace("  ", " ") // Removing double spaces
-                .replaceAll("\\p{C}", "") // Removing unprintable characters
-                .replace("\u200A", "") // Removing hair-space characters
-        );
+    private interface PageHandler {
+        /**
+         * Handles a single page in the response.
+         * @param pageID The ID of the page.
+         * @param extract The extract of the page.
+         * @return True if the rest of the pages should be read, False if reading should stop.
+         */
+        boolean onPage(int pageID, String extract);
     }
 
     /**
-     * Given a string, the function removes every occurrence of a colon that has a number after it.
-     * @param input A string that may or may not contain weird colons with numbers after them.
-     * @return A transformed version of the input without the colons and numbers.
+     * Reads every page (that has an extract) in the given extract response and passes it to the
+     * given handler.
+     * @param reader A reader of the extract response.
+     * @param handler The handler that every page will be passed to.
+     * @throws IOException If reading the response failed, or the response is an error of the API
+     *                     itself (MediaWiki returns them with a successful status).
      */
-    private static String removeColonNumber(String input) {
-        String pattern = "\\b([^:]+):\\d+\\b";
-        return input.replaceAll(pattern, "$1");
+    private static void readPages(JsonPullReader reader, PageHandler handler) throws IOException {
+        reader.beginObject();
+        if (!reader.skipToName("query"))
+            throw new IOException("Response doesn't include a query");
+
+        reader.beginObject();
+        if (!reader.skipToName("pages"))
+            throw new IOException("Response doesn't include pages");
+
+        // Going over every page:
+        reader.beginObject();
+        while (reader.hasNext()) {
+            reader.nextName();
+            reader.beginObject();
+
+            // Reading the fields of the page:
+            int pageID = -1;
+            String extract = null;
+            while (reader.hasNext()) {
+                final String name = reader.nextName();
+                if (name.equals("pageid"))
+                    pageID = reader.nextInt();
+                else if (name.equals("extract"))
+                    extract = reader.nextString();
+                else
+                    reader.skipValue();
+            }
+            reader.endObject();
+
+            if (pageID >= 0 && extract != null && !handler.onPage(pageID, extract))
+                return;
+        }
     }
 }
@@ -0,0 +1,308 @@
+package com.example.dogclassificationapp.api_handlers;
+
+/**
+ * Cleans the extract of a Wikipedia page in a single pass over its characters. The normalizer does
+ * the following, in this order, as if each transformation was applied to the entire output of the
+ * previous one:
+ *      - Keeps only the text until the first line break (the summary before the first title).
+ *      - Removes empty brackets ("()").
+ *      - Replaces unnecessary '\"' with '"'.
+ *      - Replaces double spaces with a single space.
+ *      - Removes unprintable characters (the "\p{C}" category).
+ *      - Removes Hair-Space characters (HSP).
+ *      - Removes occurrences of a colon and a number after it (example: "hello:125" -> "hello"),
+ *        following the semantics of the regex "\b([^:]+):\d+\b".
+ * Every transformation is a small state machine that passes its output directly to the next one,
+ * and the final output is written into a buffer that is never larger than the input.
+ */
+final class WikiTextNormalizer {
+
+    // The states of the colon-number transformation:
+    private static final int COLON_NORMAL = 0;
+    private static final int COLON_AFTER_COLON = 1;
+    private static final int COLON_IN_DIGITS = 2;
+
+    // The output buffer and its current length:
+    private final char[] out;
+    private int outLen = 0;
+
+    // The state of the empty brackets transformation (whether the last char was a held '('):
+    private boolean pendingOpenBracket = false;
+
+    // The state of the '\"' transformation (whether the last char was a held '\'):
+    private boolean pendingBackslash = false;
+
+    // The state of the double spaces transformation (whether the last char was a held space):
+    private boolean pendingSpace = false;
+
+    // The state of the unprintable characters transformation (a held high surrogate, or 0):
+    private char pendingHighSurrogate = 0;
+
+    // The state of the colon-number transformation:
+    private int colonState = COLON_NORMAL;
+    // Whether the text since the last colon (or the last removed number) has a word boundary, which
+    // the regex needs in order to start a match:
+    private boolean segmentHasBoundary = false;
+    // Whether the previous char that reached the transformation is a word char:
+    private boolean prevIsWord = false;
+    // Whether the last char that isn't a non-spacing mark is a letter or a digit (a non-spacing mark
+    // is only a word char if it is attached to one):
+    private boolean baseIsLetterOrDigit = false;
+    // The position of the colon in the output, so it can be removed with the number after it:
+    private int colonOutPos = 0;
+
+    private WikiTextNormalizer(int capacity) {
+        this.out = new char[capacity];
+    }
+
+    /**
+     * Cleans the given extract of a Wikipedia page.
+     * @param extract The extract of the page, as it was decoded from the response.
+     * @return The information on the dog only until the first title, without odd characters.
+     */
+    static String normalize(String extract) {
+        // Getting the info only until the title:
+        int length = extract.indexOf('\n');
+        if (length < 0)
+            length = extract.length();
+
+        // Passing every char through all the transformations:
+        final WikiTextNormalizer normalizer = new WikiTextNormalizer(length);
+        for (int i = 0; i < length; i++)
+            normalizer.removeEmptyBrackets(extract.charAt(i));
+        normalizer.flush();
+
+        return new String(normalizer.out, 0, normalizer.outLen);
+    }
+
+    /**
+     * Removes every "()" from the text.
+     * @param c The next char of the text.
+     */
+    private void removeEmptyBrackets(char c) {
+        if (this.pendingOpenBracket) {
+            this.pendingOpenBracket = false;
+
+            // Dropping both brackets:
+            if (c == ')')
+                return;
+            this.replaceEscapedQuotes('(');
+        }
+
+        if (c == '(')
+            this.pendingOpenBracket = true;
+        else
+            this.replaceEscapedQuotes(c);
+    }
+
+    /**
+     * Replaces every '\"' in the text with '"'.
+     * @param c The next char of the text.
+     */
+    private void replaceEscapedQuotes(char c) {
+        if (this.pendingBackslash) {
+            this.pendingBackslash = false;
+
+            // Dropping the backslash:
+            if (c == '"') {
+                this.replaceDoubleSpaces('"');
+                return;
+            }
+            this.replaceDoubleSpaces('\\');
+        }
+
+        if (c == '\\')
+            this.pendingBackslash = true;
+        else
+            this.replaceDoubleSpaces(c);
+    }
+
+    /**
+     * Replaces every pair of spaces in the text with a single space.
+     * @param c The next char of the text.
+     */
+    private void replaceDoubleSpaces(char c) {
+        if (c == ' ') {
+            // The second space of a pair is dropped:
+            if (this.pendingSpace)
+                this.removeUnprintableChars(' ');
+            this.pendingSpace = !this.pendingSpace;
+            return;
+        }
+
+        if (this.pendingSpace) {
+            this.pendingSpace = false;
+            this.removeUnprintableChars(' ');
+        }
+        this.removeUnprintableChars(c);
+    }
+
+    /**
+     * Removes every unprintable character from the text (control, format, private-use, unassigned
+     * and lone surrogate characters). Surrogate pairs are checked as a single code point.
+     * @param c The next char of the text.
+     */
+    private void removeUnprintableChars(char c) {
+        if (this.pendingHighSurrogate != 0) {
+            final char high = this.pendingHighSurrogate;
+            this.pendingHighSurrogate = 0;
+
+            if (Character.isLowSurrogate(c)) {
+                final int codePoint = Character.toCodePoint(high, c);
+                if (!isUnprintable(codePoint))
+                    this.removeHairSpaces(codePoint);
+                return;
+            }
+            // A lone high surrogate is unprintable, so it is dropped
+        }
+
+        if (Character.isHighSurrogate(c))
+            this.pendingHighSurrogate = c;
+        else if (!isUnprintable(c))
+            this.removeHairSpaces(c);
+    }
+
+    /**
+     * Removes every Hair-Space character from the text.
+     * @param codePoint The next code point of the text.
+     */
+    private void removeHairSpaces(int codePoint) {
+        if (codePoint != '\u200A')
+            this.removeColonNumbers(codePoint);
+    }
+
+    /**
+     * Removes every colon that has a number after it. The colon and the digits are written to the
+     * output right away, and are removed from it once it's known that the number ended at a word
+     * boundary.
+     * @param c The next code point of the text.
+     */
+    private void removeColonNumbers(int c) {
+        final boolean isWord = this.isWordChar(c);
+
+        if (this.colonState == COLON_AFTER_COLON) {
+            // Only a digit can follow the colon for it to be removed:
+            if (isAsciiDigit(c)) {
+                this.colonState = COLON_IN_DIGITS;
+                this.segmentHasBoundary = true; // The colon and the digit form a boundary
+                this.write(c, true);
+                return;
+            }
+            this.colonState = COLON_NORMAL;
+        }
+        else if (this.colonState == COLON_IN_DIGITS) {
+            if (isAsciiDigit(c)) {
+                this.write(c, true);
+                return;
+            }
+            this.colonState = COLON_NORMAL;
+
+            // The number ended at a word boundary, so the colon and the number are removed and the
+            // search for the next match starts from the current char:
+            if (!isWord) {
+                this.outLen = this.colonOutPos;
+                this.segmentHasBoundary = false;
+            }
+        }
+
+        if (c == ':') {
+            // The colon can only be removed if the text before it (since the last colon) has a
+            // boundary for the match to start from:
+            if (this.segmentHasBoundary) {
+                this.colonState = COLON_AFTER_COLON;
+                this.colonOutPos = this.outLen;
+            }
+            this.segmentHasBoundary = false;
+        }
+        else if (isWord != this.prevIsWord) {
+            this.segmentHasBoundary = true;
+        }
+
+        this.write(c, isWord);
+    }
+
+    /**
+     * Passes the held chars of every transformation through the transformations after it, once the
+     * text ended.
+     */
+    private void flush() {
+        if (this.pendingOpenBracket) {
+            this.pendingOpenBracket = false;
+            this.replaceEscapedQuotes('(');
+        }
+        if (this.pendingBackslash) {
+            this.pendingBackslash = false;
+            this.replaceDoubleSpaces('\\');
+        }
+        if (this.pendingSpace) {
+            this.pendingSpace = false;
+            this.removeUnprintableChars(' ');
+        }
+        // A held high surrogate is a lone surrogate, so it is dropped:
+        this.pendingHighSurrogate = 0;
+
+        // The end of the text is a word boundary after a number:
+        if (this.colonState == COLON_IN_DIGITS)
+            this.outLen = this.colonOutPos;
+        this.colonState = COLON_NORMAL;
+    }
+
+    /**
+     * Writes a code point to the output.
+     * @param c The code point that will be written (one or two chars).
+     * @param isWord Whether the code point is a word char.
+     */
+    private void write(int c, boolean isWord) {
+        if (Character.isSupplementaryCodePoint(c)) {
+            this.out[this.outLen++] = Character.highSurrogate(c);
+            this.out[this.outLen++] = Character.lowSurrogate(c);
+        }
+        else {
+            this.out[this.outLen++] = (char) c;
+        }
+        this.prevIsWord = isWord;
+    }
+
+    /**
+     * Checks if a code point is in the "\p{C}" category.
+     * @param codePoint The code point that will be checked.
+     * @return True if the code point is a control, format, private-use, surrogate or unassigned
+     *         character, False otherwise.
+     */
+    private static boolean isUnprintable(int codePoint) {
+        switch (Character.getType(codePoint)) {
+            case Character.CONTROL:
+            case Character.FORMAT:
+            case Character.PRIVATE_USE:
+            case Character.SURROGATE:
+            case Character.UNASSIGNED:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Checks if a code point is a word char, the same way the regex "\b" does. Must be called once
+     * for every code point, in order.
+     * @param c The code point that will be checked.
+     * @return True if the code point is a letter, a digit, an underscore or a non-spacing mark that
+     *         is attached to a letter or a digit, False otherwise.
+     */
+    private boolean isWordChar(int c) {
+        if (Character.getType(c) == Character.NON_SPACING_MARK)
+            return this.baseIsLetterOrDigit;
+
+        this.baseIsLetterOrDigit = Character.isLetterOrDigit(c);
+        return c == '_' || this.baseIsLetterOrDigit;
+    }
+
+    /**
+     * Checks if a code point matches the regex "\d".
+     * @param c The code point that will be checked.
+     * @return True if the code point is between '0' and '9', False otherwise.
+     */
+    private static boolean isAsciiDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+}
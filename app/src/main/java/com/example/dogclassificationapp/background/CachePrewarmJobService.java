@@ -0,0 +1,241 @@
+package com.example.dogclassificationapp.background;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.dogclassificationapp.api_handlers.ApiError;
+import com.example.dogclassificationapp.api_handlers.DogImagesAPI;
+import com.example.dogclassificationapp.api_handlers.DogImagesPool;
+import com.example.dogclassificationapp.api_handlers.WikiAPI;
+import com.example.dogclassificationapp.classifier_logic.Breed;
+import com.example.dogclassificationapp.classifier_logic.DogClassifier;
+import com.example.dogclassificationapp.classifier_logic.ThumbnailCache;
+import com.example.dogclassificationapp.database.BreedStatistics;
+import com.example.dogclassificationapp.database.ClassificationHistory;
+import com.example.dogclassificationapp.util.AppSetup;
+import com.example.dogclassificationapp.util.Result;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A background job that pre-fetches the Wikipedia information and a few thumbnails of every breed
+ * into the on-device caches, starting from the breeds that are predicted the most. The job only
+ * runs while the device is charging and connected to an unmetered network, and it is incremental:
+ * breeds that are already cached are skipped, and if the job is stopped the next run continues with
+ * the breeds that it didn't handle yet.
+ */
+public class CachePrewarmJobService extends JobService {
+
+    // The ID of the job in the JobScheduler:
+    private static final int JOB_ID = 1001;
+
+    // How often the job runs (as long as its constraints are met):
+    private static final long JOB_PERIOD = TimeUnit.DAYS.toMillis(1);
+
+    // The amount of thumbnails that are pre-fetched for every breed:
+    private static final int THUMBNAILS_PER_BREED = 4;
+
+    // The maximum total size of the cached thumbnails, in bytes:
+    private static final long THUMBNAILS_BYTE_BUDGET = 16L * 1024 * 1024;
+
+    // The name of the preferences file that the progress of the job is saved in:
+    private static final String PREFERENCES_NAME = "cache_prewarm";
+
+    // The key of the label indices of the breeds that were already handled (the order of the breeds
+    // changes between runs, so a position in it can't be saved):
+    private static final String HANDLED_LABELS_KEY = "handled_labels";
+
+    // The thread that the current run is executed on (null if the job isn't running):
+    private Thread worker;
+
+    // Whether the current run was asked to stop:
+    private volatile boolean stopped;
+
+    /**
+     * Schedules the job, if it isn't scheduled yet.
+     * @param context Any context of the app.
+     */
+    public static void schedule(Context context) {
+        final JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null || scheduler.getPendingJob(JOB_ID) != null)
+            return;
+
+        final JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, CachePrewarmJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setPeriodic(JOB_PERIOD)
+                .setPersisted(true)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        AppSetup.init(this);
+
+        this.stopped = false;
+        this.worker = new Thread(() -> {
+            final boolean finished = this.prewarm();
+            jobFinished(params, !finished && !this.stopped);
+        });
+        this.worker.start();
+
+        // The work continues on the worker thread:
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The progress is saved after every chunk, so the next run continues from the same place:
+        this.stopped = true;
+        if (this.worker != null)
+            this.worker.interrupt();
+        return true;
+    }
+
+    /**
+     * Pre-fetches the information and thumbnails of the breeds, a chunk of breeds at a time, skipping
+     * the breeds that were handled by the previous runs.
+     * @return True if the run ended (all breeds were handled, or the byte budget was used), False if
+     *         it stopped early and should be retried.
+     */
+    private boolean prewarm() {
+        final ArrayList<String> labels = DogClassifier.loadLabels(getAssets(), DogClassifier.LABELS_FILE).orElse(new ArrayList<>());
+        final ArrayList<String> apiLabels = DogClassifier.loadLabels(getAssets(), DogClassifier.API_LABELS_FILE).orElse(new ArrayList<>());
+        final int numLabels = Math.min(labels.size(), apiLabels.size());
+
+        // The most predicted breeds are pre-fetched first:
+        final ArrayList<Integer> order = getLabelsByTopCount(numLabels);
+
+        // The returned set must not be modified, so it is copied:
+        final SharedPreferences preferences = getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        final HashSet<String> handled = new HashSet<>(preferences.getStringSet(HANDLED_LABELS_KEY, new HashSet<>()));
+        final ArrayList<Integer> remaining = new ArrayList<>();
+        for (int labelIndex : order)
+            if (!handled.contains(Integer.toString(labelIndex)))
+                remaining.add(labelIndex);
+
+        for (int start = 0; start < remaining.size(); start += WikiAPI.MAX_PAGES_PER_REQUEST) {
+            if (this.stopped)
+                return false;
+
+            final List<Integer> chunk = remaining.subList(start, Math.min(start + WikiAPI.MAX_PAGES_PER_REQUEST, remaining.size()));
+
+            // Fetching the information of the breeds in the chunk that aren't cached yet:
+            final ArrayList<String> missingNames = new ArrayList<>();
+            for (int labelIndex : chunk) {
+                final String name = Breed.getFullName(labels.get(labelIndex));
+                if (!WikiAPI.isInfoCached(name))
+                    missingNames.add(name);
+            }
+            if (!missingNames.isEmpty()) {
+                final Result<HashMap<String, String>, ApiError> infosOpt = WikiAPI.getInfos(missingNames);
+                if (infosOpt.isErr() && shouldStop(infosOpt.getError()))
+                    return false;
+            }
+
+            // Fetching the missing thumbnails of the breeds in the chunk:
+            for (int labelIndex : chunk) {
+                if (this.stopped)
+                    return false;
+                if (ThumbnailCache.getTotalBytes() >= THUMBNAILS_BYTE_BUDGET) {
+                    Log.i("Cache Prewarm", "Thumbnails byte budget was reached");
+                    preferences.edit().remove(HANDLED_LABELS_KEY).apply();
+                    return true;
+                }
+
+                final ApiError error = this.prewarmThumbnails(apiLabels.get(labelIndex));
+                if (error != null && shouldStop(error))
+                    return false;
+            }
+
+            // Saving the progress after every chunk:
+            for (int labelIndex : chunk)
+                handled.add(Integer.toString(labelIndex));
+            preferences.edit().putStringSet(HANDLED_LABELS_KEY, handled).apply();
+        }
+
+        // All breeds were handled, the next run starts over (and only fills what's missing):
+        preferences.edit().remove(HANDLED_LABELS_KEY).apply();
+        return true;
+    }
+
+    /**
+     * Returns the indices of the labels, from the breed that was the top breed of the most
+     * classifications in the history to the least (breeds with the same count stay in the labels'
+     * order, which is also the order when the history's statistics aren't available).
+     * @param numLabels The amount of labels.
+     * @return The indices of all the labels, sorted by their counts.
+     */
+    private static ArrayList<Integer> getLabelsByTopCount(int numLabels) {
+        final ArrayList<Integer> indices = new ArrayList<>(numLabels);
+        for (int i = 0; i < numLabels; i++)
+            indices.add(i);
+
+        final BreedStatistics statistics = ClassificationHistory.getStatistics();
+        if (statistics == null || statistics.getNumLabels() != numLabels)
+            return indices;
+
+        final int[] counts = new int[numLabels];
+        for (int i = 0; i < numLabels; i++)
+            counts[i] = statistics.getTopCount(i);
+        indices.sort((i1, i2) -> Integer.compare(counts[i2], counts[i1]));
+        return indices;
+    }
+
+    /**
+     * Downloads and caches thumbnails of the given breed, until it has THUMBNAILS_PER_BREED of them.
+     * @param apiBreed The name of the breed, as it appears in the "api_labels.csv" file.
+     * @return Null if the breed's thumbnails were cached (or couldn't be found), the error of the
+     *         API otherwise.
+     */
+    private ApiError prewarmThumbnails(String apiBreed) {
+        final int missing = THUMBNAILS_PER_BREED - ThumbnailCache.getThumbnailCount(apiBreed);
+        if (missing <= 0)
+            return null;
+
+        final String[] apiBreeds = Breed.getBreedAndSubBreed(apiBreed);
+        final Result<ArrayList<String>, ApiError> urlsOpt = DogImagesPool.getImagesURLs(apiBreeds[0], apiBreeds[1], missing);
+        if (urlsOpt.isErr())
+            return urlsOpt.getError();
+
+        for (String url : urlsOpt.getValue()) {
+            if (this.stopped)
+                return null;
+
+            final Result<InputStream, ApiError> imageOpt = DogImagesAPI.getImageStream(url);
+            if (imageOpt.isErr())
+                return imageOpt.getError();
+
+            try (InputStream image = imageOpt.getValue()) {
+                ThumbnailCache.storeThumbnail(apiBreed, url, image);
+            } catch (IOException e) {
+                return ApiError.transientFailure(String.valueOf(e));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns whether the run should stop because of the given error. Breeds that the APIs don't
+     * have are skipped, but if the APIs can't be reached there's no point in going on.
+     * @param error The error of a request.
+     * @return True if the run should stop, False if it should go on to the next breeds.
+     */
+    private static boolean shouldStop(ApiError error) {
+        Log.e("Cache Prewarm", error.toString());
+        return error.getCategory() != ApiError.Category.PERMANENT;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.dogclassificationapp.classifier_logic;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.example.dogclassificationapp.util.Metrics;
+
+import java.util.ArrayDeque;
+import java.util.function.Function;
+
+/**
+ * A pool of bitmaps that nothing shows anymore, so their memory can be reused when other images are
+ * decoded (through the "inBitmap" option) instead of allocating a new bitmap for every image. The
+ * bitmaps are kept in buckets by the size of their allocation, and the pool never keeps more than
+ * its byte budget (the bitmaps that don't fit are recycled).
+ */
+public class BitmapPool {
+
+    // The maximum amount of bytes of the bitmaps in the shared pool:
+    private static final long SHARED_POOL_BYTES = 8L * 1024 * 1024;
+
+    // The pool of the images of the breeds:
+    private static final BitmapPool SHARED = new BitmapPool(SHARED_POOL_BYTES);
+
+    // The amount of bytes of a pixel in the decoded images (ARGB_8888):
+    private static final int BYTES_PER_PIXEL = 4;
+
+    // The buckets of the bitmaps, the bitmaps in bucket i have between 2^i and 2^(i+1) - 1 bytes:
+    private final ArrayDeque<Bitmap>[] buckets;
+
+    // The maximum amount of bytes of the bitmaps in the pool:
+    private final long maxBytes;
+
+    // The amount of bytes of the bitmaps that are currently in the pool:
+    private long pooledBytes = 0;
+
+    /**
+     * The constructor of the BitmapPool class.
+     * @param maxBytes The maximum amount of bytes of the bitmaps in the pool.
+     */
+    @SuppressWarnings("unchecked")
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.buckets = (ArrayDeque<Bitmap>[]) new ArrayDeque<?>[Integer.SIZE];
+        for (int i = 0; i < this.buckets.length; i++)
+            this.buckets[i] = new ArrayDeque<>();
+    }
+
+    public static BitmapPool getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Decodes an image into a bitmap from the pool, if the pool has one that is large enough. The
+     * decoder is called once with "inJustDecodeBounds" to find the size of the image, and once more
+     * to decode it.
+     * @param decoder Decodes the image with the given options (for example, using
+     *                BitmapFactory.decodeByteArray).
+     * @return The decoded image (always mutable, so it can be returned to the pool), or null if the
+     *         image couldn't be decoded.
+     */
+    public Bitmap decode(Function<BitmapFactory.Options, Bitmap> decoder) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decoder.apply(options);
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            return null;
+
+        options.inJustDecodeBounds = false;
+        options.inMutable = true;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        final long bytes = (long) options.outWidth * options.outHeight * BYTES_PER_PIXEL;
+        options.inBitmap = this.get(bytes);
+        if (options.inBitmap == null) {
+            Metrics.increment("bitmap_pool.allocated_bytes", bytes);
+            return decoder.apply(options);
+        }
+
+        try {
+            return decoder.apply(options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap can't hold the image after all, decoding into a new bitmap:
+            this.put(options.inBitmap);
+            options.inBitmap = null;
+            Metrics.increment("bitmap_pool.allocated_bytes", bytes);
+            return decoder.apply(options);
+        }
+    }
+
+    /**
+     * Returns a bitmap to the pool once nothing shows it anymore. If the pool is full, the largest
+     * bitmaps are evicted first. Immutable bitmaps (for example, the placeholder image)
+     * are ignored.
+     * @param bitmap The bitmap that isn't used anymore (null is ignored).
+     */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || !bitmap.isMutable() || bitmap.isRecycled())
+            return;
+
+        final int bytes = bitmap.getAllocationByteCount();
+        if (bytes <= 0 || bytes > this.maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        synchronized (this) {
+            this.buckets[floorLog2(bytes)].addLast(bitmap);
+            this.pooledBytes += bytes;
+            this.evictToBudget();
+        }
+        Metrics.increment("bitmap_pool.returned");
+    }
+
+    /**
+     * Takes a bitmap from the pool whose allocation can hold the given amount of bytes.
+     * @param minBytes The amount of bytes of the image that will be decoded into the bitmap.
+     * @return A bitmap from the pool, or null if the pool has no bitmap that is large enough.
+     */
+    private Bitmap get(long minBytes) {
+        if (minBytes > this.maxBytes) {
+            Metrics.increment("bitmap_pool.misses");
+            return null;
+        }
+
+        Bitmap bitmap = null;
+        synchronized (this) {
+            // The bucket of the size itself may have bitmaps that are large enough, and every
+            // bitmap in the next bucket is (larger buckets are skipped, so little memory is wasted):
+            final int bucket = floorLog2(minBytes);
+            for (int i = bucket; i <= bucket + 1 && i < this.buckets.length && bitmap == null; i++) {
+                for (Bitmap candidate : this.buckets[i]) {
+                    if (candidate.getAllocationByteCount() >= minBytes) {
+                        bitmap = candidate;
+                        this.buckets[i].remove(candidate);
+                        this.pooledBytes -= candidate.getAllocationByteCount();
+                        break;
+                    }
+                }
+            }
+        }
+
+        Metrics.increment(bitmap == null ? "bitmap_pool.misses" : "bitmap_pool.hits");
+        return bitmap;
+    }
+
+    /**
+     * Recycles pooled bitmaps until the pool fits its byte budget, starting with the bitmaps that
+     * were returned first to the largest buckets.
+     */
+    private void evictToBudget() {
+        for (int i = this.buckets.length - 1; i >= 0 && this.pooledBytes > this.maxBytes; i--) {
+            while (!this.buckets[i].isEmpty() && this.pooledBytes > this.maxBytes) {
+                final Bitmap evicted = this.buckets[i].pollFirst();
+                this.pooledBytes -= evicted.getAllocationByteCount();
+                evicted.recycle();
+                Metrics.increment("bitmap_pool.evicted");
+            }
+        }
+    }
+
+    /**
+     * Recycles all the bitmaps in the pool (when the system is low on memory).
+     * @return The amount of bytes that were freed.
+     */
+    public synchronized long clear() {
+        final long freedBytes = this.pooledBytes;
+        for (ArrayDeque<Bitmap> bucket : this.buckets) {
+            for (Bitmap bitmap : bucket)
+                bitmap.recycle();
+            bucket.clear();
+        }
+        this.pooledBytes = 0;
+        Metrics.increment("bitmap_pool.cleared_bytes", freedBytes);
+        return freedBytes;
+    }
+
+    /**
+     * Returns the amount of bytes of the bitmaps that are currently in the pool.
+     * @return The pooled bytes, never more than the byte budget of the pool.
+     */
+    public synchronized long getPooledBytes() {
+        return this.pooledBytes;
+    }
+
+    private static int floorLog2(long value) {
+        return 63 - Long.numberOfLeadingZeros(value);
+    }
+}
@@ -6,19 +6,24 @@ import android.graphics.BitmapFactory;
 import android.util.Log;
 
 import com.example.dogclassificationapp.R;
+import com.example.dogclassificationapp.api_handlers.ApiError;
+import com.example.dogclassificationapp.api_handlers.ApiFutures;
 import com.example.dogclassificationapp.api_handlers.DogImagesAPI;
+import com.example.dogclassificationapp.api_handlers.DogImagesPool;
 import com.example.dogclassificationapp.api_handlers.WikiAPI;
-import com.example.dogclassificationapp.util.Callback;
+import com.example.dogclassificationapp.core.BreedLabels;
+import com.example.dogclassificationapp.util.MemoryGovernor;
+import com.example.dogclassificationapp.util.PriorityScheduler;
 import com.example.dogclassificationapp.util.Result;
-import com.example.dogclassificationapp.util.TaskExecuter;
+import com.example.dogclassificationapp.util.SessionScope;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.function.Function;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntSupplier;
 
 /**
  * A class that represents the information on a single breed, and includes how confident the model
@@ -31,6 +36,9 @@ public class Breed {
     // The name of the sub-breed:
     private final String subBreed;
 
+    // The index of the breed in the labels of the model ("labels.csv"):
+    private final int labelIndex;
+
     // The confidence of the model that the dog image is this breed:
     private final double confidence;
 
@@ -41,18 +49,72 @@ public class Breed {
     private Bitmap mainImg;
     private Bitmap bonusImg;
 
+    // The name of the breed that suits the dog images API:
+    private final String apiBreed;
+
     // Whether or not the current breed is expanded inside a recyclerView:
-    private boolean expanding;
+    private volatile boolean expanding;
+
+    // Whether or not the row of the current breed is currently shown inside a recyclerView:
+    private volatile boolean visible;
+
+    // Whether a view of a recyclerView is bound to the row of the breed (even if the row isn't
+    // shown, for example a row that the recyclerView keeps to show again when scrolled back), so
+    // the views still reference its images:
+    private volatile boolean rowBound;
+
+    // The position of the breed when the breeds are sorted by confidence (0 is the most confident
+    // breed), set once the data of the breeds starts loading:
+    private volatile int rank;
+
+    // The scheduler that the data of the breed is loaded on (null until it starts loading):
+    private volatile PriorityScheduler scheduler;
+
+    // Whether the information and the images of the breed were loaded (or restored from a
+    // snapshot of the classification), so they don't have to be loaded again:
+    private volatile boolean infoLoaded;
+    private volatile boolean imagesLoaded;
+
+    // Whether loading the images was put off because the byte budget of the session was used (they
+    // are loaded once the row is shown):
+    private volatile boolean imagesDeferred;
 
     // The default info message that will appear when loading information failed:
     private static final String DEFAULT_INFO = "Loading...";
 
+    // The info message that will appear when Wikipedia can't be reached (the device is offline or
+    // Wikipedia is unhealthy), so the info won't be loaded:
+    private static final String UNAVAILABLE_INFO = "Information is unavailable right now.";
+
+    // The info message that will appear when Wikipedia doesn't have information about the breed:
+    private static final String NO_INFO = "No information was found about this breed.";
+
+    // The rows that the user sees are loaded before all the rows that are ranked lower, and the
+    // expanded row is loaded before all of them:
+    private static final int VISIBLE_PRIORITY_BOOST = 1_000;
+
     // The default image resource that will appear if loading the dog's image failed:
     private static final int DEFAULT_IMG_ID = R.drawable.classifier_default_dog;
 
+    // The name that the images of the breeds whose rows aren't shown are registered with in the
+    // memory governor:
+    private static final String OFFSCREEN_IMAGES_SUBSYSTEM = "offscreen_breed_images";
+
+    // The default image, decoded once and shared by all the breeds (it is immutable, so it is
+    // never returned to the bitmap pool):
+    private static Bitmap placeholderImg;
+
     // An OnDataLoadedListener to handle what will happen once the Wiki info or the images are
     // loaded from the appropriate APIs:
-    private OnDataLoadedListener onDataLoadedListener;
+    private volatile OnDataLoadedListener onDataLoadedListener;
+
+    /**
+     * The parts of the breed's data that are loaded separately.
+     */
+    public enum LoadedData {
+        INFO,
+        IMAGES
+    }
 
     /**
      * Since the breed's images and information are loaded on a separate thread, this interface
@@ -63,14 +125,16 @@ public class Breed {
          * The function that will be called once the information of the breed or the breed's images
          * will be loaded.
          * @param breed The breed whose data was loaded.
+         * @param data The part of the breed's data that was loaded.
          */
-        void onDataLoaded(Breed breed);
+        void onDataLoaded(Breed breed, LoadedData data);
     }
 
 
     /**
      * The constructor of the Breed class.
      * @param res A resources object to get images from the res.drawable directory.
+     * @param labelIndex The index of the breed in the labels of the model.
      * @param normalBreed The normal name of the dog breed, should be fetched from the "labels.csv"
      *                    file.
      * @param apiBreed The name of the dgo breed that suits the dog images API, should be fetched
@@ -78,42 +142,65 @@ public class Breed {
      * @param confidence The confidence of the TF-Lite model that the current breed is the breed of
      *                   the dog in the image that was given to the model.
      */
-    public Breed(Resources res, String normalBreed, String apiBreed, double confidence) {
-        // Getting the breed and sub-breed:
-        String[] normalBreeds = getBreedAndSubBreed(normalBreed);
-
-        // Changing the first letter of each word to uppercase:
-        Function<String, String> capitalizeFirstLetter = input -> {
-            if (input == null || input.isEmpty()) {
-                return input;
-            }
-            return input.substring(0, 1).toUpperCase() + input.substring(1);
-        };
-
-        normalBreeds = Arrays.stream(normalBreeds).map(capitalizeFirstLetter).toArray(String[]::new);
+    public Breed(Resources res, int labelIndex, String normalBreed, String apiBreed, double confidence) {
+        // Getting the capitalized breed and sub-breed:
+        final String[] normalBreeds = getDisplayBreedAndSubBreed(normalBreed);
 
         // Loading the breed and sub-breed
         this.breed = normalBreeds[0];
         this.subBreed = normalBreeds[1];
 
+        // Setting the index of the breed in the labels:
+        this.labelIndex = labelIndex;
+        this.apiBreed = apiBreed;
+        this.rank = labelIndex;
+
         // Setting confidence:
         this.confidence = confidence;
 
         // Upon creation the breed object did not expand:
         this.expanding = false;
 
-        // Setting the information initially as the default info:
+        // Setting the information initially as the default info (the actual information is loaded
+        // for all breeds together, using the "loadData" function):
         this.info = DEFAULT_INFO;
 
-        // Loading information from Wikipedia concurrently:
-        this.loadWikiInfo();
+        // Setting the main and bonus images to their default value initially (the actual images are
+        // loaded using the "loadData" function):
+        final Bitmap placeholder = getPlaceholderImg(res);
+        this.setMainImg(placeholder);
+        this.setBonusImg(placeholder);
+    }
 
-        // Setting the main and bonus images to their default value initially:
-        this.setMainImg(BitmapFactory.decodeResource(res, DEFAULT_IMG_ID));
-        this.setBonusImg(BitmapFactory.decodeResource(res, DEFAULT_IMG_ID));
+    /**
+     * Returns the default image of the breeds, decoding it on the first call.
+     * @param res A resources object to get the image from the res.drawable directory.
+     * @return The shared default image.
+     */
+    private static synchronized Bitmap getPlaceholderImg(Resources res) {
+        if (placeholderImg == null)
+            placeholderImg = BitmapFactory.decodeResource(res, DEFAULT_IMG_ID);
+        return placeholderImg;
+    }
 
-        // Loading two random images of the current breed:
-        this.loadMainAndBonusImages(apiBreed);
+    /**
+     * Returns the main breed and sub-breed of the given label as they are displayed, with the first
+     * letter of each of them in uppercase.
+     * @param normalBreed The normal name of the dog breed (from the "labels.csv" file).
+     * @return An array whose first index is the main breed and second index is sub-breed.
+     */
+    private static String[] getDisplayBreedAndSubBreed(String normalBreed) {
+        return BreedLabels.getDisplayBreedAndSubBreed(normalBreed);
+    }
+
+    /**
+     * Returns the full name of the breed with the given label, the same way the "getFullName"
+     * method of the breed does (so the name can be used before the breed is created).
+     * @param normalBreed The normal name of the dog breed (from the "labels.csv" file).
+     * @return The full name of the breed.
+     */
+    public static String getFullName(String normalBreed) {
+        return BreedLabels.getFullName(normalBreed);
     }
 
     /**
@@ -122,138 +209,416 @@ public class Breed {
      * @return An array whose first index is the main breed and second index is sub-breed. If the
      *         full name contains only one word, sub-breed will be an empty string.
      */
-    private static String[] getBreedAndSubBreed(String fullName) {
-        // Splitting the full name to words:
-        String[] words = fullName.split(" ");
-
-        // First word is sub-breed, last word is main breed:
-        String[] breeds = {words[words.length - 1], ""};
-
-        // Adding the remaining words to the sub-breed:
-        for (int i = 0; i < words.length - 1; i++) {
-            if (breeds[1].isEmpty())
-                breeds[1] = words[i];
-            else
-                breeds[1] += " " + words[i];
+    public static String[] getBreedAndSubBreed(String fullName) {
+        return BreedLabels.getBreedAndSubBreed(fullName);
+    }
+
+    /**
+     * Starts loading the information and the images of the given breeds on the scheduler of the
+     * given session. The breeds are ranked by their confidence, so the data of the top-ranked
+     * breeds is loaded first (unless other rows are shown or expanded, see "getLoadPriority"). Once
+     * the session is cancelled, the breeds release their images and stop notifying their listeners.
+     * @param breeds The breeds of a single classification.
+     * @param session The session of the classification.
+     * @return A future that is completed once the loading of all the data ended (whether it was
+     *         loaded or not), after the breeds' listeners were notified. It is cancelled if the
+     *         session is cancelled first.
+     */
+    public static CompletableFuture<Void> loadData(List<Breed> breeds, SessionScope session) {
+        final PriorityScheduler scheduler = session.getScheduler();
+
+        // Ranking the breeds from highest confidence to lowest:
+        final ArrayList<Breed> sortedBreeds = new ArrayList<>(breeds);
+        sortedBreeds.sort((b1, b2) -> Double.compare(b2.getConfidence(), b1.getConfidence()));
+        for (int i = 0; i < sortedBreeds.size(); i++) {
+            sortedBreeds.get(i).rank = i;
+            sortedBreeds.get(i).scheduler = scheduler;
         }
 
-        return breeds;
+        // Only loading the data that wasn't restored from a snapshot:
+        final ArrayList<Breed> missingInfo = new ArrayList<>();
+        for (Breed breed : sortedBreeds)
+            if (!breed.infoLoaded)
+                missingInfo.add(breed);
+        final ArrayList<CompletableFuture<?>> loads = new ArrayList<>(loadWikiInfo(missingInfo, scheduler));
+
+        for (Breed breed : sortedBreeds)
+            if (!breed.imagesLoaded)
+                loads.add(breed.loadMainAndBonusImages());
+
+        // Letting the images of the rows that aren't shown be freed when memory is low:
+        final MemoryGovernor.Subsystem offscreenImages = new MemoryGovernor.Subsystem() {
+            @Override
+            public long getBytes() {
+                long bytes = 0;
+                for (Breed breed : sortedBreeds)
+                    if (breed.canDropImages())
+                        bytes += breed.getImageBytes();
+                return bytes;
+            }
+
+            @Override
+            public long evict() {
+                long freedBytes = 0;
+                for (Breed breed : sortedBreeds)
+                    freedBytes += breed.dropOffscreenImages();
+                return freedBytes;
+            }
+        };
+        MemoryGovernor.getShared().register(OFFSCREEN_IMAGES_SUBSYSTEM, MemoryGovernor.Priority.OFFSCREEN_BITMAPS, offscreenImages);
+
+        // The scheduler drops the attempts that are waiting once the session is cancelled, so
+        // their futures are cancelled with it:
+        session.addOnCancelListener(() -> {
+            MemoryGovernor.getShared().unregister(OFFSCREEN_IMAGES_SUBSYSTEM, offscreenImages);
+            for (CompletableFuture<?> load : loads)
+                load.cancel(false);
+            for (Breed breed : sortedBreeds)
+                breed.release();
+        });
+
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Restores data of the breed that was loaded before (for example, from a snapshot of the
+     * classification that was saved before the app's process was killed).
+     * @param info The information of the breed, null if it wasn't loaded.
+     * @param mainImg The main image of the breed, null if the images weren't loaded.
+     * @param bonusImg The bonus image of the breed, null if the images weren't loaded.
+     */
+    void restore(String info, Bitmap mainImg, Bitmap bonusImg) {
+        if (info != null) {
+            this.setInfo(info);
+            this.infoLoaded = true;
+        }
+        if (mainImg != null && bonusImg != null) {
+            this.setMainImg(mainImg);
+            this.setBonusImg(bonusImg);
+            this.imagesLoaded = true;
+        }
     }
 
     /**
-     * Using the WikiAPI class and the TaskExecuter, the function continuously tries to load info
-     * from Wikipedia about the current breed. If the info can't be loaded after various attempts,
-     * the info will not be changed.
+     * Releases the images of the breed (returning them to the bitmap pool) and removes its
+     * OnDataLoadedListener, once nothing shows the breed anymore.
      */
-    private void loadWikiInfo() {
-        // Saving hyper-parameters for the task executer:
+    private void release() {
+        this.onDataLoadedListener = null;
+        final Bitmap mainImg = this.mainImg;
+        final Bitmap bonusImg = this.bonusImg;
+        this.mainImg = null;
+        this.bonusImg = null;
+
+        BitmapPool.getShared().put(mainImg);
+        if (bonusImg != mainImg)
+            BitmapPool.getShared().put(bonusImg);
+    }
+
+    /**
+     * Returns the amount of bytes of the breed's loaded images (the default image isn't counted,
+     * it's shared by all the breeds).
+     * @return The amount of bytes.
+     */
+    private long getImageBytes() {
+        final Bitmap mainImg = this.mainImg;
+        final Bitmap bonusImg = this.bonusImg;
+        long bytes = 0;
+        if (mainImg != null && mainImg != placeholderImg && !mainImg.isRecycled())
+            bytes += mainImg.getAllocationByteCount();
+        if (bonusImg != null && bonusImg != mainImg && bonusImg != placeholderImg && !bonusImg.isRecycled())
+            bytes += bonusImg.getAllocationByteCount();
+        return bytes;
+    }
+
+    /**
+     * Returns whether the images of the breed can be dropped: no view of its row references them,
+     * and the row isn't about to be shown expanded.
+     * @return True if the images can be dropped, False if not.
+     */
+    private boolean canDropImages() {
+        return !this.visible && !this.rowBound && !this.expanding;
+    }
+
+    /**
+     * Drops the loaded images of the breed if no view of its row references them, so they can be
+     * garbage collected (they aren't returned to the bitmap pool, which is cleared first when memory
+     * is low). The OnDataLoadedListener is notified, so the content that was prepared for the row
+     * from the images is rebuilt from the placeholder. The images are loaded again once the row is
+     * shown.
+     * @return The amount of bytes of the dropped images.
+     */
+    private synchronized long dropOffscreenImages() {
+        if (!this.canDropImages() || !this.imagesLoaded)
+            return 0;
+
+        final long bytes = this.getImageBytes();
+        this.imagesLoaded = false;
+        this.setMainImg(placeholderImg);
+        this.setBonusImg(placeholderImg);
+        this.imagesDeferred = true;
+        this.notifyDataLoaded(LoadedData.IMAGES);
+        return bytes;
+    }
+
+    /**
+     * Returns the priority of loading the breed's data, lower values are loaded first. The breeds
+     * are loaded by their rank, but the rows that are shown come before the rest, and the expanded
+     * row comes before everything.
+     * @return The current priority of the breed.
+     */
+    public int getLoadPriority() {
+        if (this.expanding)
+            return this.rank - 2 * VISIBLE_PRIORITY_BOOST;
+        if (this.visible)
+            return this.rank - VISIBLE_PRIORITY_BOOST;
+        return this.rank;
+    }
+
+    /**
+     * Using the WikiAPI class and ApiFutures, the function continuously tries to load info
+     * from Wikipedia about the given breeds. Instead of loading each breed separately, the breeds
+     * are split into groups (from the highest confidence to the lowest) and every group's info is
+     * loaded in a single request, so the top-ranked breeds are loaded first. If the info of a group
+     * can't be loaded after various attempts, the info of its breeds will not be changed. Only
+     * transient errors are retried: if Wikipedia can't be reached at all or doesn't have the
+     * information, the loading stops right away.
+     * @param sortedBreeds The breeds whose information will be loaded, sorted from the highest
+     *                     confidence to the lowest.
+     * @param scheduler The scheduler that the requests will run on.
+     * @return The futures of the groups' loading.
+     */
+    private static List<CompletableFuture<?>> loadWikiInfo(List<Breed> sortedBreeds, PriorityScheduler scheduler) {
+        final ArrayList<CompletableFuture<?>> loads = new ArrayList<>();
+        for (int start = 0; start < sortedBreeds.size(); start += WikiAPI.MAX_PAGES_PER_REQUEST)
+            loads.add(loadWikiInfoGroup(new ArrayList<>(sortedBreeds.subList(start, Math.min(start + WikiAPI.MAX_PAGES_PER_REQUEST, sortedBreeds.size()))), scheduler));
+        return loads;
+    }
+
+    /**
+     * Loads the info of a group of breeds in a single request (see loadWikiInfo). WikiAPI.getInfos
+     * succeeds once any breed of the group was found, so the breeds that are missing from a
+     * successful result are loaded again as a smaller group, and only if nothing of the group was
+     * found they are shown without info.
+     * @param group The breeds of the group, sorted from the highest confidence to the lowest.
+     * @param scheduler The scheduler that the requests will run on.
+     * @return The future of the group's loading (including the loading of its missing breeds).
+     */
+    private static CompletableFuture<?> loadWikiInfoGroup(List<Breed> group, PriorityScheduler scheduler) {
+        // Saving hyper-parameters for the retries:
         final long WAIT_TIME = 200;
         final int MAX_TRIES = 10;
 
-        // Creating the task executer to load the info:
-        final TaskExecuter<String, String> taskExecuter = new TaskExecuter<>(WAIT_TIME, MAX_TRIES,
-                () -> WikiAPI.getInfo(getFullName()),
-                new Callback<String, String>() {
-                    @Override
-                    public void onSuccess(String value) {
-                        setInfo(value);
-
-                        // Activating the OnDataLoadedListener:
-                        if (onDataLoadedListener != null)
-                            onDataLoadedListener.onDataLoaded(Breed.this);
-                    }
+        // Saving the names of the breeds in the group:
+        final ArrayList<String> names = new ArrayList<>();
+        for (Breed breed : group)
+            names.add(breed.getFullName());
+
+        // Loading the info as early as the most urgent breed in the group (only transient errors
+        // are retried), and then loading the breeds that the result was missing:
+        final IntSupplier priority = () -> {
+            int groupPriority = Integer.MAX_VALUE;
+            for (Breed breed : group)
+                groupPriority = Math.min(groupPriority, breed.getLoadPriority());
+            return groupPriority;
+        };
+        return ApiFutures.withRetry(() -> ApiFutures.supply(() -> WikiAPI.getInfos(names), scheduler, priority), WAIT_TIME, MAX_TRIES)
+                .thenApply(infos -> setGroupInfos(group, infos))
+                .exceptionally(throwable -> {
+                    // The results of a cancelled session are no longer wanted:
+                    if (!scheduler.isShutdown())
+                        setGroupError(group, ApiFutures.getError(throwable));
+                    return new ArrayList<>();
+                })
+                .thenCompose(missingBreeds -> missingBreeds.isEmpty() ? CompletableFuture.completedFuture(null) : loadWikiInfoGroup(missingBreeds, scheduler));
+    }
 
-                    @Override
-                    public void onError(String error) {
-                        Log.e("Wiki error", error);
+    /**
+     * Fans out the info of a group's successful result to the breeds of the group.
+     * @param group The breeds of the group.
+     * @param infos The info of the breeds that were found, by their full names.
+     * @return The breeds that the result was missing (while other breeds of the group were found),
+     *         they aren't notified yet.
+     */
+    private static List<Breed> setGroupInfos(List<Breed> group, HashMap<String, String> infos) {
+        // A group that none of its breeds was found in can't get smaller, so its breeds don't have
+        // any info:
+        boolean anyFound = false;
+        for (Breed breed : group)
+            anyFound |= infos.containsKey(breed.getFullName());
+
+        final ArrayList<Breed> missingBreeds = new ArrayList<>();
+        for (Breed breed : group) {
+            final String info = infos.get(breed.getFullName());
+            if (info != null) {
+                breed.setInfo(info);
+                breed.infoLoaded = true;
+            }
+            else if (anyFound) {
+                missingBreeds.add(breed);
+                continue;
+            }
+            else {
+                breed.setInfo(NO_INFO);
+            }
 
-                        // Activating the OnDataLoadedListener:
-                        if (onDataLoadedListener != null)
-                            onDataLoadedListener.onDataLoaded(Breed.this);
-                    }
-                });
+            // Activating the OnDataLoadedListener:
+            breed.notifyDataLoaded(LoadedData.INFO);
+        }
+        return missingBreeds;
+    }
 
-        // Starting loading the task:
-        taskExecuter.start();
+    /**
+     * Shows why the info of a group's breeds is missing, once the loading of the group gave up.
+     * @param group The breeds of the group.
+     * @param error The error of the last attempt.
+     */
+    private static void setGroupError(List<Breed> group, ApiError error) {
+        Log.e("Wiki error", error.toString());
+
+        final String info;
+        if (error.getCategory() == ApiError.Category.UNAVAILABLE)
+            info = UNAVAILABLE_INFO;
+        else if (error.getCategory() == ApiError.Category.PERMANENT)
+            info = NO_INFO;
+        else
+            info = null;
+
+        // Activating the OnDataLoadedListeners:
+        for (Breed breed : group) {
+            if (info != null)
+                breed.setInfo(info);
+            breed.notifyDataLoaded(LoadedData.INFO);
+        }
     }
 
     /**
-     * Uses the DogImagesAPI and the TaskExecuter to receive two random images of the current breed.
-     * The function then sets the first image as the "mainImg" attribute and the second as the
-     * "bonusImg" attribute.
-     * @param apiBreed The full name of the breed (includes both breed and sub-breed).
+     * Activates the OnDataLoadedListener of the breed (if one was set).
+     * @param data The part of the breed's data that was loaded.
      */
-    private void loadMainAndBonusImages(String apiBreed) {
-        // Breaking down the breed into breed and sub-breed:
-        final String[] apiBreeds = getBreedAndSubBreed(apiBreed);
+    private void notifyDataLoaded(LoadedData data) {
+        final OnDataLoadedListener listener = this.onDataLoadedListener;
+        if (listener != null)
+            listener.onDataLoaded(this, data);
+    }
 
-        // Saving hyper-parameters for the task executer:
+    /**
+     * Uses the DogImagesPool and ApiFutures to receive two random images of the current breed.
+     * The function then sets the first image as the "mainImg" attribute and the second as the
+     * "bonusImg" attribute. If thumbnails of the breed were pre-fetched in the background, they are
+     * used instead and nothing is downloaded.
+     * @return The future of the loading.
+     */
+    private CompletableFuture<?> loadMainAndBonusImages() {
+        // Saving hyper-parameters for the retries:
         final long WAIT_TIME = 200;
         final int MAX_TRIES = 10;
 
-        // Creating the task executer that will load the images:
-        final TaskExecuter<ArrayList<String>, String> taskExecuter = new TaskExecuter<>(WAIT_TIME, MAX_TRIES,
-                () -> DogImagesAPI.getImagesURLs(apiBreeds[0], apiBreeds[1], 2),
-                new Callback<ArrayList<String>, String>() {
-                    @Override
-                    public void onSuccess(ArrayList<String> urls) {
-                        // Making sure the length of the URLs is 2:
-                        if (urls.size() == 2) {
-                            // Loading the main image:
-                            final Result<Bitmap, String> mainImgOpt = getBitmapFromURL(urls.get(0));
-                            final Result<Bitmap, String> bonusImgOpt = getBitmapFromURL(urls.get(1));
-
-                            // Setting the images that were retrieved successfully:
-                            if (mainImgOpt.isErr())
-                                onError(mainImgOpt.getError());
-                            if (bonusImgOpt.isErr())
-                                onError(bonusImgOpt.getError());
-                            if (mainImgOpt.isOk())
-                                setMainImg(mainImgOpt.getValue());
-                            if (bonusImgOpt.isOk())
-                                setBonusImg(bonusImgOpt.getValue());
-
-                            // Activating the OnDataLoadedListener:
-                            if (onDataLoadedListener != null)
-                                onDataLoadedListener.onDataLoaded(Breed.this);
-                        }
+        // Loading the images (only transient errors are retried, otherwise the default images are
+        // kept):
+        final PriorityScheduler scheduler = this.scheduler;
+        return ApiFutures.withRetry(() -> ApiFutures.supply(() -> this.loadImages(2), scheduler, this::getLoadPriority), WAIT_TIME, MAX_TRIES)
+                .thenAccept(images -> {
+                    // Setting the images that were retrieved successfully:
+                    this.setMainImg(images.get(0));
+                    if (images.size() > 1) {
+                        this.setBonusImg(images.get(1));
+                        this.imagesLoaded = true;
                     }
 
-                    @Override
-                    public void onError(String error) {
-                        // Logging the error:
-                        Log.e("Dog Images API error", error);
+                    // Activating the OnDataLoadedListener:
+                    this.notifyDataLoaded(LoadedData.IMAGES);
+                })
+                .exceptionally(throwable -> {
+                    // The results of a cancelled session are no longer wanted:
+                    if (scheduler.isShutdown())
+                        return null;
+
+                    // Logging the error (unless the images were only put off):
+                    if (!this.imagesDeferred)
+                        Log.e("Dog Images API error", ApiFutures.getError(throwable).toString());
+
+                    // Activating the OnDataLoadedListener:
+                    this.notifyDataLoaded(LoadedData.IMAGES);
+                    return null;
+                });
+    }
 
-                        // Activating the OnDataLoadedListener:
-                        if (onDataLoadedListener != null)
-                            onDataLoadedListener.onDataLoaded(Breed.this);
-                    }
-                }
-        );
+    /**
+     * Loads random images of the given breed, from the pre-fetched thumbnails if there are enough of
+     * them, or from the dog API otherwise. Once the byte budget of the session was used, only the
+     * images of shown rows are downloaded, and the rest are put off until they are shown.
+     * @param numImages The amount of images that should be loaded.
+     * @return If at least one image was loaded, a list of the loaded images is returned. If not, the
+     *         error of the first image is returned.
+     */
+    private Result<ArrayList<Bitmap>, ApiError> loadImages(int numImages) {
+        // Using the pre-fetched thumbnails if there are enough of them:
+        final ArrayList<Bitmap> thumbnails = ThumbnailCache.getRandomThumbnails(this.apiBreed, numImages);
+        if (thumbnails.size() == numImages)
+            return Result.success(thumbnails);
+
+        if (this.scheduler.isOverBudget() && !this.visible && !this.expanding) {
+            this.imagesDeferred = true;
+            // Checking again, in case the row was shown in the meantime:
+            if (!this.visible && !this.expanding)
+                return Result.failure(ApiError.unavailable("The byte budget of the session was used"));
+            this.imagesDeferred = false;
+        }
+
+        // Breaking down the breed into breed and sub-breed:
+        final String[] apiBreeds = getBreedAndSubBreed(this.apiBreed);
+
+        final Result<ArrayList<String>, ApiError> urlsOpt = DogImagesPool.getImagesURLs(apiBreeds[0], apiBreeds[1], numImages);
+        if (urlsOpt.isErr())
+            return Result.failure(urlsOpt.getError());
+
+        // Downloading the images, the ones that failed are skipped:
+        final ArrayList<Bitmap> images = new ArrayList<>();
+        ApiError firstError = null;
+        for (String url : urlsOpt.getValue()) {
+            final Result<Bitmap, ApiError> imageOpt = getBitmapFromURL(url, this.scheduler);
+            if (imageOpt.isOk()) {
+                images.add(imageOpt.getValue());
+            }
+            else {
+                Log.e("Dog Images API error", imageOpt.getError().toString());
+                if (firstError == null)
+                    firstError = imageOpt.getError();
+            }
+        }
 
-        // Starting the task executer:
-        taskExecuter.start();
+        if (images.isEmpty())
+            return Result.failure(firstError);
+        return Result.success(images);
     }
 
     /**
      * Returns a Bitmap object from the URL of an image.
      * @param imageUrl The URL of the image that will be turned into a bitmap.
+     * @param scheduler The scheduler whose byte budget the downloaded bytes are counted against.
      * @return If the operation was successful the bitmap is returned. Otherwise, a Result object
      *         containing details of the error is returned.
      */
-    private static Result<Bitmap, String> getBitmapFromURL(String imageUrl) {
-        try {
-            // Loading the bitmap through the URL:
-            HttpURLConnection connection = (HttpURLConnection) new URL(imageUrl).openConnection();
-            connection.connect();
-            InputStream input = connection.getInputStream();
-
-            Bitmap imageBitmap = BitmapFactory.decodeStream(input);
+    private static Result<Bitmap, ApiError> getBitmapFromURL(String imageUrl, PriorityScheduler scheduler) {
+        // Loading the image through the dog API, so its host's circuit breaker is respected:
+        final Result<InputStream, ApiError> inputOpt = DogImagesAPI.getImageStream(imageUrl);
+        if (inputOpt.isErr())
+            return Result.failure(inputOpt.getError());
+
+        try (InputStream input = inputOpt.getValue()) {
+            // Reading the whole image first, so its size is known before it is decoded into a
+            // bitmap from the pool:
+            final byte[] bytes = ThumbnailCache.readAllBytes(input);
+            scheduler.addUsedBytes(bytes.length);
+            final Bitmap imageBitmap = BitmapPool.getShared().decode(options -> BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options));
+            if (imageBitmap == null)
+                return Result.failure(ApiError.permanentFailure("Decoding image failed: " + imageUrl));
 
             return Result.success(imageBitmap);
 
         } catch (IOException e) {
-            return Result.failure(e.getMessage());
+            return Result.failure(ApiError.transientFailure("Reading image failed: " + e));
         }
     }
 
@@ -261,6 +626,10 @@ public class Breed {
         return String.format("%s %s", this.subBreed, this.breed);
     }
 
+    public int getLabelIndex() {
+        return labelIndex;
+    }
+
     public double getConfidence() {
         return confidence;
     }
@@ -289,12 +658,56 @@ public class Breed {
         return bonusImg;
     }
 
+    public boolean isInfoLoaded() {
+        return infoLoaded;
+    }
+
+    boolean areImagesLoaded() {
+        return imagesLoaded;
+    }
+
     public boolean isExpanding() {
         return expanding;
     }
 
     public void setExpanding(boolean expanding) {
         this.expanding = expanding;
+        if (expanding)
+            this.loadDeferredImages();
+    }
+
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Sets whether the row of the breed is shown. Shown rows are loaded before the rest, and their
+     * images are loaded even after the byte budget of the session was used.
+     * @param visible True if the row is shown, False if not.
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        if (visible)
+            this.loadDeferredImages();
+    }
+
+    /**
+     * Sets whether a view of a recyclerView is bound to the row of the breed. The images of a bound
+     * row aren't dropped when memory is low, since the view still references them.
+     * @param rowBound True if a view is bound to the row, False once it was recycled.
+     */
+    public void setRowBound(boolean rowBound) {
+        this.rowBound = rowBound;
+    }
+
+    /**
+     * Loads the images of the breed if their loading was put off because of the byte budget.
+     */
+    private synchronized void loadDeferredImages() {
+        if (this.imagesDeferred) {
+            this.imagesDeferred = false;
+            this.loadMainAndBonusImages();
+        }
     }
 
     public void setOnDataLoadedListener(OnDataLoadedListener onDataLoadedListener) {
@@ -0,0 +1,152 @@
+package com.example.dogclassificationapp.classifier_logic;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A utility class that saves a compact snapshot of a classification to the disk, so it can be
+ * restored after the app's process was killed without running the model again. The snapshot keeps
+ * the confidence and the loaded information of every breed, and the images of the top-ranked
+ * breeds (the images of the rest are small enough to load again when they are shown).
+ */
+public class ClassificationSnapshot {
+
+    // The version of the snapshot's format (snapshots of other versions are ignored):
+    private static final int VERSION = 1;
+
+    // The amount of top-ranked breeds whose images are saved in the snapshot:
+    private static final int IMAGE_ROWS = 10;
+
+    // The maximum width and height of a saved image, and its JPEG quality:
+    private static final int IMAGE_SIZE = 384;
+    private static final int JPEG_QUALITY = 85;
+
+    /**
+     * Saves a snapshot of the given classification. The snapshot is written to a temporary file
+     * first, so a stopped write never replaces a valid snapshot with a broken one.
+     * @param file The file of the snapshot.
+     * @param id The ID of the classification, the snapshot is only restored for the same ID.
+     * @param breeds The breeds of the classification, sorted from the highest confidence to the
+     *               lowest.
+     * @throws IOException If writing the snapshot failed.
+     */
+    public static void write(File file, long id, List<Breed> breeds) throws IOException {
+        final File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(VERSION);
+            out.writeLong(id);
+            out.writeInt(breeds.size());
+
+            for (int i = 0; i < breeds.size(); i++) {
+                final Breed breed = breeds.get(i);
+                out.writeInt(breed.getLabelIndex());
+                out.writeDouble(breed.getConfidence());
+
+                // The information, if it was loaded:
+                out.writeBoolean(breed.isInfoLoaded());
+                if (breed.isInfoLoaded())
+                    writeBytes(out, breed.getInfo().getBytes(StandardCharsets.UTF_8));
+
+                // The images, if they were loaded and the breed is one of the top-ranked ones:
+                final Bitmap mainImg = breed.getMainImg();
+                final Bitmap bonusImg = breed.getBonusImg();
+                final boolean saveImages = i < IMAGE_ROWS && breed.areImagesLoaded() && mainImg != null && bonusImg != null;
+                out.writeBoolean(saveImages);
+                if (saveImages) {
+                    writeBytes(out, compress(mainImg));
+                    writeBytes(out, compress(bonusImg));
+                }
+            }
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Replacing the snapshot failed");
+        }
+    }
+
+    /**
+     * Restores the breeds of a classification from its snapshot.
+     * @param file The file of the snapshot.
+     * @param id The ID of the classification.
+     * @param res A resources object to create the breeds with.
+     * @param classifier The classifier whose labels the breeds are created from.
+     * @return The restored breeds (sorted from the highest confidence to the lowest), or null if
+     *         there is no valid snapshot of the given classification.
+     */
+    public static ArrayList<Breed> read(File file, long id, Resources res, DogClassifier classifier) {
+        if (!file.exists())
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != VERSION || in.readLong() != id)
+                return null;
+
+            final int numBreeds = in.readInt();
+            final ArrayList<Breed> breeds = new ArrayList<>(numBreeds);
+            for (int i = 0; i < numBreeds; i++) {
+                final int labelIndex = in.readInt();
+                final double confidence = in.readDouble();
+                final Breed breed = new Breed(res, labelIndex, classifier.getLabel(labelIndex), classifier.getAPILabel(labelIndex), confidence);
+
+                final String info = in.readBoolean() ? new String(readBytes(in), StandardCharsets.UTF_8) : null;
+                Bitmap mainImg = null;
+                Bitmap bonusImg = null;
+                if (in.readBoolean()) {
+                    mainImg = decode(readBytes(in));
+                    bonusImg = decode(readBytes(in));
+                }
+
+                breed.restore(info, mainImg, bonusImg);
+                breeds.add(breed);
+            }
+            return breeds;
+
+        } catch (IOException | RuntimeException e) {
+            // A broken snapshot, the image will simply be classified again:
+            return null;
+        }
+    }
+
+    private static byte[] compress(Bitmap image) {
+        final float scale = Math.min(1f, (float) IMAGE_SIZE / Math.max(image.getWidth(), image.getHeight()));
+        final Bitmap scaled = scale < 1f
+                ? Bitmap.createScaledBitmap(image, Math.round(image.getWidth() * scale), Math.round(image.getHeight() * scale), true)
+                : image;
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        scaled.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, bytes);
+        if (scaled != image)
+            scaled.recycle();
+        return bytes.toByteArray();
+    }
+
+    private static Bitmap decode(byte[] bytes) {
+        return BitmapPool.getShared().decode(options -> BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
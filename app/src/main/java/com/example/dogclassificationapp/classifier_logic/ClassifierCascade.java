@@ -0,0 +1,169 @@
+package com.example.dogclassificationapp.classifier_logic;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * Classifies images in two stages: a compact model classifies every image first, and the full model
+ * classifies only the images that the compact model isn't sure about (its top breed's confidence is
+ * low, or the second breed is close to it). Most images are easy, so most of them never reach the
+ * full model.
+ */
+public class ClassifierCascade {
+
+    /**
+     * A model of one of the stages.
+     */
+    public interface Stage {
+        /**
+         * Classifies an image.
+         * @param input The image, written by ImagePreprocessor.putImage.
+         * @return The confidences of the labels, or an empty optional if the model failed.
+         */
+        Optional<float[]> run(ByteBuffer input);
+    }
+
+    // The default thresholds: the full model runs if the compact model's top confidence is lower,
+    // or its top confidence is closer than the margin to the second one:
+    public static final float DEFAULT_MIN_CONFIDENCE = 0.6f;
+    public static final float DEFAULT_MIN_MARGIN = 0.3f;
+
+    // The compact model (null to always run the full model), and the full model:
+    private final Stage firstStage;
+    private final Stage fullStage;
+
+    // The thresholds of the compact model's results:
+    private final float minConfidence;
+    private final float minMargin;
+
+    /**
+     * The results of both stages of a classification.
+     */
+    public static class Classification {
+        private final float[] firstStageConfidences;
+        private final long firstStageNanos;
+        private final float[] fullConfidences;
+        private final long fullNanos;
+
+        Classification(float[] firstStageConfidences, long firstStageNanos, float[] fullConfidences, long fullNanos) {
+            this.firstStageConfidences = firstStageConfidences;
+            this.firstStageNanos = firstStageNanos;
+            this.fullConfidences = fullConfidences;
+            this.fullNanos = fullNanos;
+        }
+
+        /**
+         * Returns the confidences of the classification: the full model's if it ran, otherwise the
+         * compact model's.
+         * @return The confidences of the labels.
+         */
+        public float[] getConfidences() {
+            return this.fullConfidences != null ? this.fullConfidences : this.firstStageConfidences;
+        }
+
+        /**
+         * Returns the confidences of the compact model.
+         * @return The confidences, null if the compact model didn't run or failed.
+         */
+        public float[] getFirstStageConfidences() {
+            return this.firstStageConfidences;
+        }
+
+        /**
+         * Returns the time that the compact model took.
+         * @return The time in nanoseconds, 0 if it didn't run.
+         */
+        public long getFirstStageNanos() {
+            return this.firstStageNanos;
+        }
+
+        /**
+         * Returns the confidences of the full model.
+         * @return The confidences, null if the full model didn't run.
+         */
+        public float[] getFullConfidences() {
+            return this.fullConfidences;
+        }
+
+        /**
+         * Returns the time that the full model took.
+         * @return The time in nanoseconds, 0 if it didn't run.
+         */
+        public long getFullNanos() {
+            return this.fullNanos;
+        }
+
+        /**
+         * Returns whether the full model ran.
+         * @return Whether the full model ran.
+         */
+        public boolean usedFullModel() {
+            return this.fullConfidences != null;
+        }
+    }
+
+    /**
+     * The constructor of the ClassifierCascade class.
+     * @param firstStage The compact model, null to always run the full model.
+     * @param fullStage The full model.
+     * @param minConfidence The full model runs if the compact model's top confidence is lower.
+     * @param minMargin The full model runs if the compact model's second confidence is closer than
+     *                  this to its top confidence.
+     */
+    public ClassifierCascade(Stage firstStage, Stage fullStage, float minConfidence, float minMargin) {
+        this.firstStage = firstStage;
+        this.fullStage = fullStage;
+        this.minConfidence = minConfidence;
+        this.minMargin = minMargin;
+    }
+
+    /**
+     * Classifies an image with the compact model, and with the full model if the compact model isn't
+     * sure (or failed, including by throwing).
+     * @param input The image, written by ImagePreprocessor.putImage.
+     * @return The results of the stages that ran, or an empty optional if the model that decides the
+     *         classification failed.
+     */
+    public Optional<Classification> classify(ByteBuffer input) {
+        float[] firstStageConfidences = null;
+        long firstStageNanos = 0;
+        if (this.firstStage != null) {
+            final long start = System.nanoTime();
+            try {
+                firstStageConfidences = this.firstStage.run(input).orElse(null);
+            } catch (RuntimeException e) {
+                // The full model decides the classification alone
+            }
+            firstStageNanos = System.nanoTime() - start;
+            if (firstStageConfidences != null && isConfident(firstStageConfidences))
+                return Optional.of(new Classification(firstStageConfidences, firstStageNanos, null, 0));
+        }
+
+        input.rewind();
+        final long start = System.nanoTime();
+        final Optional<float[]> fullConfidences = this.fullStage.run(input);
+        final long fullNanos = System.nanoTime() - start;
+        if (!fullConfidences.isPresent())
+            return Optional.empty();
+        return Optional.of(new Classification(firstStageConfidences, firstStageNanos, fullConfidences.get(), fullNanos));
+    }
+
+    /**
+     * Returns whether a classification is sure enough to skip the full model.
+     * @param confidences The confidences of the labels.
+     * @return Whether the top confidence and its margin from the second one reach the thresholds.
+     */
+    boolean isConfident(float[] confidences) {
+        float top = 0;
+        float second = 0;
+        for (float confidence : confidences) {
+            if (confidence > top) {
+                second = top;
+                top = confidence;
+            } else if (confidence > second) {
+                second = confidence;
+            }
+        }
+        return top >= this.minConfidence && top - second >= this.minMargin;
+    }
+}
@@ -6,19 +6,21 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.util.Log;
 
+import com.example.dogclassificationapp.core.BreedLabels;
+import com.example.dogclassificationapp.core.ImagePreprocessor;
 import com.example.dogclassificationapp.ml.DogModelLite;
+import com.example.dogclassificationapp.util.Metrics;
+import com.example.dogclassificationapp.util.Result;
 
 import org.tensorflow.lite.DataType;
 import org.tensorflow.lite.support.tensorbuffer.TensorBuffer;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -34,14 +36,17 @@ public final class DogClassifier {
     // The labels that match the Dog Image API:
     private final ArrayList<String> apiLabels;
 
-    // The size of the image that will be passed into the model:
-    private static final int IMAGE_SIZE = 256;
-
     // The name of the file that contains the normal labels:
-    private static final String LABELS_FILE = "labels.csv";
+    public static final String LABELS_FILE = "labels.csv";
 
     // The name of the file that contains the labels that match the Dog Images API:
-    private static final String API_LABELS_FILE = "api_labels.csv";
+    public static final String API_LABELS_FILE = "api_labels.csv";
+
+    // The compact model that classifies the images before the full model (null to always run the
+    // full model), and the thresholds that its results must reach to skip the full model:
+    private static volatile ClassifierCascade.Stage firstStage;
+    private static volatile float cascadeMinConfidence = ClassifierCascade.DEFAULT_MIN_CONFIDENCE;
+    private static volatile float cascadeMinMargin = ClassifierCascade.DEFAULT_MIN_MARGIN;
 
     public DogClassifier(Context context, AssetManager assets) {
         this.context = context;
@@ -65,23 +70,10 @@ public final class DogClassifier {
      * @return If reading the file was successful, the function returns an arraylist of all the
      *         labels that were in the file. If an error occurred, an empty optional is returned.
      */
-    private static Optional<ArrayList<String>> loadLabels(AssetManager assets, String labelsFile) {
-        try {
-            // Opening the file:
-            InputStream inputStream = assets.open(labelsFile);
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-            BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-
+    public static Optional<ArrayList<String>> loadLabels(AssetManager assets, String labelsFile) {
+        try (InputStream inputStream = assets.open(labelsFile)) {
             // Reading the names of the dogs:
-            String line = bufferedReader.readLine();
-            ArrayList<String> labels = new ArrayList<>(Arrays.asList(line.split(",")));
-
-            // Closing our readers to free up resources:
-            bufferedReader.close();
-            inputStreamReader.close();
-            inputStream.close();
-
-            return Optional.of(labels);
+            return Optional.of(BreedLabels.readLabels(inputStream));
 
         } catch (IOException e) {
             Log.e("Dog Classifier", "Failed to load labels of file \"" + labelsFile + "\"");
@@ -90,6 +82,20 @@ public final class DogClassifier {
         }
     }
 
+    /**
+     * Sets the compact model that classifies the images first. The full model only classifies the
+     * images that the compact model isn't sure about.
+     * @param stage The compact model, null to always run the full model.
+     * @param minConfidence The full model runs if the compact model's top confidence is lower.
+     * @param minMargin The full model runs if the compact model's second confidence is closer than
+     *                  this to its top confidence.
+     */
+    public static void setCascade(ClassifierCascade.Stage stage, float minConfidence, float minMargin) {
+        cascadeMinConfidence = minConfidence;
+        cascadeMinMargin = minMargin;
+        firstStage = stage;
+    }
+
     /**
      * Given an image of a dog, the model will return a list of breeds and sub-breeds of dogs, that
      * contain the probability that the dog inside the given image is of this breed.
@@ -101,42 +107,103 @@ public final class DogClassifier {
      *         current breed. If an error occurred, an empty optional is returned.
      */
     public Optional<ArrayList<Breed>> getModelPredictions(Bitmap dogImage, Resources res) {
+        return classify(dogImage).map(classification -> convertOutputsToBreeds(classification.getConfidences(), res));
+    }
+
+    /**
+     * Classifies an image of a dog with the compact model (if it was set), and with the full model
+     * if the compact model isn't sure.
+     * @param dogImage The image with a dog. Its dimensions must be 256x256 pixels.
+     * @return The results and latencies of the models that ran. If an error occurred, an empty
+     *         optional is returned.
+     */
+    public Optional<ClassifierCascade.Classification> classify(Bitmap dogImage) {
         // Making sure that the dimensions of the image are valid:
         final int WIDTH = dogImage.getWidth();
         final int HEIGHT = dogImage.getHeight();
 
-        if (WIDTH != IMAGE_SIZE || HEIGHT != IMAGE_SIZE) {
+        if (WIDTH != ImagePreprocessor.IMAGE_SIZE || HEIGHT != ImagePreprocessor.IMAGE_SIZE) {
             Log.e("Dog Classifier", "Given image dimensions are incompatible: Width=" + WIDTH + ", Height=" + HEIGHT);
             return Optional.empty();
         }
 
-        // If the image's dimensions are correct:
+        // Loading the pixels into a byte-buffer:
+        final int[] pixels = new int[WIDTH * HEIGHT];
+        dogImage.getPixels(pixels, 0, WIDTH, 0, 0, WIDTH, HEIGHT);
+        final ByteBuffer byteBuffer = ImagePreprocessor.allocateInput(1);
+        ImagePreprocessor.putImage(pixels, byteBuffer);
+        byteBuffer.rewind();
+
+        final ClassifierCascade cascade = new ClassifierCascade(firstStage, this::runFullModel, cascadeMinConfidence, cascadeMinMargin);
+        final Optional<ClassifierCascade.Classification> classification = cascade.classify(byteBuffer);
+        if (!classification.isPresent())
+            return classification;
+
+        // Reporting the results of both stages and their latencies:
+        final ClassifierCascade.Classification result = classification.get();
+        if (result.getFirstStageConfidences() != null) {
+            Log.i("Classifier first stage", result.getFirstStageNanos() / 1000 + " us: " + Arrays.toString(result.getFirstStageConfidences()));
+            Metrics.set("classifier.first_stage_micros", result.getFirstStageNanos() / 1000);
+            Metrics.increment(result.usedFullModel() ? "classifier.cascade.escalated" : "classifier.cascade.first_stage_only");
+        }
+        if (result.usedFullModel()) {
+            Log.i("Classifier outputs", result.getFullNanos() / 1000 + " us: " + Arrays.toString(result.getFullConfidences()));
+            Metrics.set("classifier.full_model_micros", result.getFullNanos() / 1000);
+        }
+        return classification;
+    }
+
+    /**
+     * Runs the installed version of the model, or the bundled model if no version was installed.
+     * @param byteBuffer The image, written by ImagePreprocessor.putImage.
+     * @return The confidences of the labels, or an empty optional if the model failed.
+     */
+    private Optional<float[]> runFullModel(ByteBuffer byteBuffer) {
+        final ModelRegistry registry = ModelRegistry.getShared();
+        final Result<float[], String> installed = registry != null ? registry.run(byteBuffer)
+                : Result.failure("The model registry wasn't initialized");
+        return installed.isOk() ? Optional.of(installed.getValue()) : runBundledModel(byteBuffer);
+    }
+
+    /**
+     * Runs the model that is bundled with the app.
+     * @param byteBuffer The image, written by ImagePreprocessor.putImage.
+     * @return The confidences of the labels, or an empty optional if the model failed.
+     */
+    private Optional<float[]> runBundledModel(ByteBuffer byteBuffer) {
+        return runBundledModel(this.context, byteBuffer);
+    }
+
+    /**
+     * Runs the model that is bundled with the app, and records its latency as the baseline that the
+     * first installed version of the model is compared with.
+     * @param context A context of the app.
+     * @param byteBuffer The image, written by ImagePreprocessor.putImage.
+     * @return The confidences of the labels, or an empty optional if the model failed.
+     */
+    private static Optional<float[]> runBundledModel(Context context, ByteBuffer byteBuffer) {
         try {
             // Loading the model:
             DogModelLite model = DogModelLite.newInstance(context);
 
-            // Loading the RGB values:
-            final int[][][] RGB = getRGBValues(dogImage);
-
-            // Loading the values into a byte-buffer:
-            final ByteBuffer byteBuffer = loadRGBIntoByteBuffer(RGB);
-
             // Creates inputs for reference.
-            TensorBuffer inputFeature0 = TensorBuffer.createFixedSize(new int[]{1, 256, 256, 3}, DataType.FLOAT32);
+            byteBuffer.rewind();
+            TensorBuffer inputFeature0 = TensorBuffer.createFixedSize(new int[]{1, ImagePreprocessor.IMAGE_SIZE, ImagePreprocessor.IMAGE_SIZE, ImagePreprocessor.CHANNELS}, DataType.FLOAT32);
             inputFeature0.loadBuffer(byteBuffer);
 
-            // Running model inference and getting the results:
+            // Running model inference and getting the results (only the inference is timed, as the
+            // versions of the registry are):
+            final long start = System.nanoTime();
             DogModelLite.Outputs outputs = model.process(inputFeature0);
+            final ModelRegistry registry = ModelRegistry.getShared();
+            if (registry != null)
+                registry.recordBaselineLatency(System.nanoTime() - start);
             TensorBuffer outputFeature0 = outputs.getOutputFeature0AsTensorBuffer();
-            Log.i("Classifier outputs",
-                    Arrays.toString(outputFeature0.getFloatArray()));
 
             // Releases model resources:
             model.close();
 
-            // Converting the outputs into a breeds arraylist:
-            final ArrayList<Breed> breeds = convertOutputsToBreeds(outputFeature0, res);
-            return Optional.of(breeds);
+            return Optional.of(outputFeature0.getFloatArray());
 
         } catch (IOException e) {
             Log.e("Dog Classifier", "Failed to load/use model");
@@ -145,22 +212,49 @@ public final class DogClassifier {
         }
     }
 
+    /**
+     * Runs the bundled model on a blank image, so the registry has a baseline latency for the first
+     * version that it installs.
+     * @param context A context of the app.
+     * @param runs The amount of runs.
+     */
+    public static void measureBundledModel(Context context, int runs) {
+        final ByteBuffer byteBuffer = ImagePreprocessor.allocateInput(1);
+        for (int i = 0; i < runs; i++)
+            if (!runBundledModel(context, byteBuffer).isPresent())
+                return;
+    }
+
+    /**
+     * Returns the embedding of a classification, a vector that is close to the embeddings of dogs
+     * that look alike. The model only outputs the confidences of the breeds, so the embedding is the
+     * square root of every breed's confidence (by label index): the dot product of two such unit
+     * vectors is the Bhattacharyya coefficient of the two predictions.
+     * @param breeds All the breeds of a classification (in any order).
+     * @return The embedding, with a dimension for every label.
+     */
+    public static float[] getEmbedding(List<Breed> breeds) {
+        final float[] embedding = new float[breeds.size()];
+        for (Breed breed : breeds)
+            if (breed.getLabelIndex() < embedding.length)
+                embedding[breed.getLabelIndex()] = (float) Math.sqrt(Math.max(0, breed.getConfidence()));
+        return embedding;
+    }
+
     /**
      * The function accepts the outputs of the model and converts them into an arraylist of Breed
      * objects.
-     * @param outputs The confidence of the model in each breed (by order).
+     * @param confidences The confidence of the model in each breed (by order).
      * @return An arraylist of Breed objects that's built using the given confidences of the model.
      */
-    private ArrayList<Breed> convertOutputsToBreeds(TensorBuffer outputs, Resources res) {
+    private ArrayList<Breed> convertOutputsToBreeds(float[] confidences, Resources res) {
         // Creating the list:
         ArrayList<Breed> breeds = new ArrayList<>();
 
-        // Converting the tensor into a float array:
-        final float[] confidences = outputs.getFloatArray();
-
         // Creating the breeds one by one:
         for (int i = 0; i < confidences.length; i++) {
             final Breed current = new Breed(res,
+                                            i,
                                             this.getLabel(i),
                                             this.getAPILabel(i),
                                             confidences[i]);
@@ -170,71 +264,6 @@ public final class DogClassifier {
         return breeds;
     }
 
-    /**
-     * The function receives a three-dimensional array representing the RGB values of the image, and
-     * loads them into a ByteBuffer to be used as inputs for the TF-Lite model. The function also
-     * normalizes to values (changes them from 0-255 into 0-1).
-     * @param rgbValues A three dimensional array representing the RGB values of an image.
-     * @return A byte buffer loaded with the normalized RGB values.
-     */
-    private static ByteBuffer loadRGBIntoByteBuffer(int[][][] rgbValues) {
-        // Loading the dimensions of the image:
-        final int WIDTH = rgbValues[0].length;
-        final int HEIGHT = rgbValues.length;
-        final int CHANNELS = 3;
-
-        // Creating a ByteBuffer after allocating enough memory:
-        final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(WIDTH * HEIGHT * CHANNELS * 4); // 4 bytes per float
-
-        // Configure byte order for TensorFlow Lite
-        byteBuffer.order(ByteOrder.nativeOrder());
-
-        // Normalize pixel values and store in the ByteBuffer
-        for (int[][] row : rgbValues) {
-            for (int[] pixel : row) {
-                for (int channel : pixel) {
-                    // Add the RGB channel to the input:
-                    byteBuffer.putFloat(channel);
-                }
-            }
-        }
-
-        // Rewind the ByteBuffer before using it as input
-        byteBuffer.rewind();
-
-        return byteBuffer;
-    }
-
-    /**
-     * Given an image in Drawable format, the function extracts the RGB values of the image and
-     * stores them in a three-dimensional array.
-     * @param img The image whose pixels' RGB values will be returned.
-     * @return A three dimensional array of the RGB values of the image. The first two dimensions of
-     *         the array will be similar to the dimensions of the image, and the last dimension of
-     *         the array will be 3 (RGB).
-     */
-    private static int[][][] getRGBValues(Bitmap img) {
-        // Getting the dimensions of the image:
-        final int WIDTH = img.getWidth();
-        final int HEIGHT = img.getHeight();
-
-        // Creating the array that will hold the values:
-        final int[][][] rgbValues = new int[WIDTH][HEIGHT][3];
-
-        // Scanning the pixels and extracting their RGB values:
-        for (int y = 0; y < HEIGHT; y++) {
-            for (int x = 0; x < WIDTH; x++) {
-                final int pixel = img.getPixel(x, y);
-
-                rgbValues[y][x][0] = (pixel >> 16) & 0xFF; // Red component
-                rgbValues[y][x][1] = (pixel >> 8) & 0xFF; // Green component
-                rgbValues[y][x][2] = pixel & 0xFF; // Blue component
-            }
-        }
-
-        return rgbValues;
-    }
-
     public String getLabel(int index) {
         return labels.get(index);
     }
@@ -0,0 +1,499 @@
+package com.example.dogclassificationapp.classifier_logic;
+
+import com.example.dogclassificationapp.util.Metrics;
+import com.example.dogclassificationapp.util.Result;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the versions of the classification model that were downloaded into the app's storage
+ * (as "dog_model_v&lt;version&gt;.tflite" files), so a new model doesn't need a new release of the
+ * app. A version is validated when it's loaded, and replaces the active version atomically: the
+ * classifications that already run keep the version they started with, and it's closed only after
+ * the last of them ends. A new version is on probation for its first runs, and if it turns out to
+ * be slower than the version it replaced (or than the baseline latency, when it replaced no version
+ * that ran), the registry rolls back to that version. The rolled back versions and the baseline are
+ * kept in files of the directory, so they survive the app's process.
+ */
+public class ModelRegistry {
+
+    /**
+     * A loaded version of the model.
+     */
+    public interface Model extends AutoCloseable {
+        /**
+         * Classifies a single image.
+         * @param input The image, written by ImagePreprocessor.putImage (from the start of the
+         *              buffer).
+         * @return The confidences of the labels.
+         */
+        float[] run(ByteBuffer input);
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Loads the file of a version, and validates it.
+     */
+    public interface Loader {
+        /**
+         * Loads a model file.
+         * @param file The file.
+         * @return The model, or a description of why it couldn't be loaded or doesn't match the
+         *         labels.
+         */
+        Result<Model, String> load(File file);
+    }
+
+    // The names of the files of the versions:
+    private static final Pattern MODEL_FILE_PATTERN = Pattern.compile("dog_model_v(\\d+)\\.tflite");
+
+    // The amount of runs that a new version is on probation for:
+    static final int PROBATION_RUNS = 10;
+
+    // A new version is rolled back if its median latency is more than this many times the median
+    // latency of the version it replaced:
+    static final double MAX_LATENCY_RATIO = 1.25;
+
+    // The amount of recent latencies that every version keeps:
+    private static final int LATENCY_WINDOW = 32;
+
+    // The names of the files (in the versions' directory) that the numbers of the rolled back
+    // versions, and the baseline latency are saved in (as the number of the version that passed
+    // its probation with it, -1 for the bundled model, and the latency in nanoseconds):
+    static final String REJECTED_VERSIONS_FILE = "rejected_versions.txt";
+    static final String BASELINE_LATENCY_FILE = "baseline_latency.txt";
+
+    // The registry of the app (null until it was initialized):
+    private static volatile ModelRegistry shared;
+
+    // The directory of the versions, and the loader of their files:
+    private final File directory;
+    private final Loader loader;
+
+    // The version that classifies new images (null if no version was installed):
+    private final AtomicReference<Version> active = new AtomicReference<>();
+
+    // Whether the active version is on probation, and the version that it replaced, kept open for a
+    // rollback (null if it isn't on probation, or if it's compared with the baseline latency and
+    // a rollback leaves no version active):
+    private boolean onProbation = false;
+    private Version previous;
+
+    // The versions that were rolled back, and aren't installed again:
+    private final Set<Integer> rejectedVersions = new HashSet<>();
+
+    // The recent latencies of the bundled model, and the median latency that was saved before (the
+    // bundled model's or the last version that passed its probation, -1 if none was saved):
+    private final Latencies baselineLatencies = new Latencies();
+    private long savedBaselineLatency = -1;
+    private int savedBaselineVersion = -1;
+
+    // The version that was unloaded to free memory (-1 if none), it's loaded again by the next run:
+    private int unloadedVersion = -1;
+
+    /**
+     * A loaded version, with the amount of users that keep it open (the registry while it's
+     * active or on probation's standby, and every classification that runs on it).
+     */
+    private static class Version {
+        final int number;
+        final Model model;
+        final AtomicInteger users = new AtomicInteger(1);
+
+        // An interpreter runs one image at a time:
+        final Object runLock = new Object();
+
+        // The recent latencies of the version:
+        final Latencies latencies = new Latencies();
+
+        Version(int number, Model model) {
+            this.number = number;
+            this.model = model;
+        }
+
+        /**
+         * Adds a user of the version, unless the version was already closed.
+         * @return Whether the version can be used.
+         */
+        boolean acquire() {
+            int current;
+            do {
+                current = this.users.get();
+                if (current == 0)
+                    return false;
+            } while (!this.users.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release() {
+            if (this.users.decrementAndGet() == 0)
+                this.model.close();
+        }
+    }
+
+    /**
+     * The recent latencies of a model (in nanoseconds), as a ring.
+     */
+    private static class Latencies {
+        final long[] latencies = new long[LATENCY_WINDOW];
+        int runs = 0;
+
+        synchronized void recordLatency(long nanos) {
+            this.latencies[this.runs % LATENCY_WINDOW] = nanos;
+            this.runs++;
+        }
+
+        synchronized long getMedianLatency() {
+            if (this.runs == 0)
+                return -1;
+            final long[] recent = Arrays.copyOf(this.latencies, Math.min(this.runs, LATENCY_WINDOW));
+            Arrays.sort(recent);
+            return recent[recent.length / 2];
+        }
+
+        synchronized int getRuns() {
+            return this.runs;
+        }
+    }
+
+    /**
+     * The constructor of the ModelRegistry class, no version is active until one is installed.
+     * @param directory The directory that the versions are kept in.
+     * @param loader Loads and validates the files of the versions.
+     */
+    public ModelRegistry(File directory, Loader loader) {
+        this.directory = directory;
+        this.loader = loader;
+
+        // Loading the rolled back versions and the baseline of the previous runs of the app:
+        for (String line : readLines(new File(directory, REJECTED_VERSIONS_FILE))) {
+            try {
+                this.rejectedVersions.add(Integer.parseInt(line.trim()));
+            } catch (NumberFormatException ignored) {
+                // Skipping a corrupted line
+            }
+        }
+        for (String line : readLines(new File(directory, BASELINE_LATENCY_FILE))) {
+            final int separatorIdx = line.indexOf('\t');
+            try {
+                this.savedBaselineVersion = Integer.parseInt(line.substring(0, separatorIdx));
+                this.savedBaselineLatency = Long.parseLong(line.substring(separatorIdx + 1).trim());
+            } catch (NumberFormatException | IndexOutOfBoundsException ignored) {
+                // Skipping a corrupted line
+            }
+        }
+    }
+
+    /**
+     * Sets the registry that the app's classifiers use.
+     * @param registry The registry.
+     */
+    public static void setShared(ModelRegistry registry) {
+        shared = registry;
+    }
+
+    /**
+     * Returns the registry of the app.
+     * @return The registry, null if it wasn't initialized.
+     */
+    public static ModelRegistry getShared() {
+        return shared;
+    }
+
+    /**
+     * Returns the file of a version.
+     * @param version The number of the version.
+     * @return The file (it may not exist).
+     */
+    public File getModelFile(int version) {
+        return new File(this.directory, "dog_model_v" + version + ".tflite");
+    }
+
+    /**
+     * Installs the newest version in the directory that is newer than the active one, unless it was
+     * rolled back before. If it fails to load, the versions before it are tried.
+     * @return The number of the active version after the installation, -1 if none is active.
+     */
+    public int installLatest() {
+        final File[] files = this.directory.listFiles();
+        if (files != null) {
+            final int[] versions = new int[files.length];
+            int count = 0;
+            for (File file : files) {
+                final Matcher matcher = MODEL_FILE_PATTERN.matcher(file.getName());
+                if (matcher.matches())
+                    versions[count++] = Integer.parseInt(matcher.group(1));
+            }
+            Arrays.sort(versions, 0, count);
+
+            for (int i = count - 1; i >= 0 && versions[i] > getActiveVersion(); i--) {
+                if (install(versions[i]).isOk())
+                    break;
+                Metrics.increment("model.install_failures");
+            }
+        }
+        return getActiveVersion();
+    }
+
+    /**
+     * Loads a version and makes it the active one. The version it replaces finishes the
+     * classifications that already run on it, and is kept while the new version is on probation.
+     * @param version The number of the version.
+     * @return The number of the version, or the reason it wasn't installed.
+     */
+    public synchronized Result<Integer, String> install(int version) {
+        return install(version, true);
+    }
+
+    /**
+     * Loads a version and makes it the active one (see install).
+     * @param version The number of the version.
+     * @param probation Whether the version may be put on probation (not when a version is loaded
+     *                  again after it was unloaded, its first runs page its file in again).
+     * @return The number of the version, or the reason it wasn't installed.
+     */
+    private Result<Integer, String> install(int version, boolean probation) {
+        if (this.rejectedVersions.contains(version))
+            return Result.failure("Version " + version + " was rolled back before");
+
+        final File file = getModelFile(version);
+        if (!file.isFile())
+            return Result.failure("No file for version " + version);
+        final Result<Model, String> loaded = this.loader.load(file);
+        if (loaded.isErr())
+            return Result.failure(loaded.getError());
+
+        // Keeping the replaced version for a rollback only if its latency is known, otherwise the
+        // new version is compared with the baseline (unless it's the version that passed its
+        // probation with that baseline, or no baseline was recorded):
+        final Version replaced = this.active.getAndSet(new Version(version, loaded.getValue()));
+        if (this.previous != null)
+            this.previous.release();
+        this.previous = null;
+        if (probation && replaced != null && replaced.latencies.getRuns() > 0) {
+            this.previous = replaced;
+            this.onProbation = true;
+        } else {
+            if (replaced != null)
+                replaced.release();
+            this.onProbation = probation && getBaselineLatencyNanos() >= 0
+                    && (this.baselineLatencies.getRuns() > 0 || this.savedBaselineVersion != version);
+        }
+
+        this.unloadedVersion = -1;
+        Metrics.set("model.active_version", version);
+        return Result.success(version);
+    }
+
+    /**
+     * Classifies an image with the active version, and checks the version's latency if it's on
+     * probation.
+     * @param input The image, written by ImagePreprocessor.putImage (from the start of the buffer).
+     * @return The confidences of the labels, or an error if no version is active.
+     */
+    public Result<float[], String> run(ByteBuffer input) {
+        // Using the active version even if it's replaced while the image is classified:
+        Version version;
+        do {
+            version = this.active.get();
+            if (version == null)
+                version = reloadUnloadedVersion();
+            if (version == null)
+                return Result.failure("No model version is installed");
+        } while (!version.acquire());
+
+        try {
+            // Only timing the run itself, not the wait for another classification on the version:
+            final float[] confidences;
+            synchronized (version.runLock) {
+                final long start = System.nanoTime();
+                confidences = version.model.run(input);
+                version.latencies.recordLatency(System.nanoTime() - start);
+            }
+            return Result.success(confidences);
+        } catch (RuntimeException e) {
+            return Result.failure("Version " + version.number + " failed: " + e);
+        } finally {
+            checkProbation(version);
+            version.release();
+        }
+    }
+
+    /**
+     * Ends the probation of a version once it ran enough times, rolling it back if it's slower than
+     * the version it replaced (or the baseline). A version that passes becomes the baseline.
+     * @param version The version that just ran.
+     */
+    private synchronized void checkProbation(Version version) {
+        if (!this.onProbation || this.active.get() != version || version.latencies.getRuns() < PROBATION_RUNS)
+            return;
+
+        final long latency = version.latencies.getMedianLatency();
+        final long baseline = this.previous != null ? this.previous.latencies.getMedianLatency() : getBaselineLatencyNanos();
+        if (latency > baseline * MAX_LATENCY_RATIO) {
+            // Without a replaced version, the classifiers fall back to the bundled model:
+            this.rejectedVersions.add(version.number);
+            writeLine(new File(this.directory, REJECTED_VERSIONS_FILE), Integer.toString(version.number), true);
+            this.active.set(this.previous);
+            version.release();
+            Metrics.increment("model.rollbacks");
+            Metrics.set("model.active_version", this.previous != null ? this.previous.number : -1);
+        } else {
+            if (this.previous != null)
+                this.previous.release();
+            saveBaselineLatency(version.number, latency);
+        }
+        this.previous = null;
+        this.onProbation = false;
+    }
+
+    /**
+     * Records a latency of the model that is bundled with the app, which the first installed version
+     * is compared with.
+     * @param nanos The latency of a single run, in nanoseconds.
+     */
+    public synchronized void recordBaselineLatency(long nanos) {
+        this.baselineLatencies.recordLatency(nanos);
+        if (this.baselineLatencies.getRuns() == PROBATION_RUNS)
+            saveBaselineLatency(-1, this.baselineLatencies.getMedianLatency());
+    }
+
+    /**
+     * Returns the latency that a version which replaced no version that ran is compared with: the
+     * median latency of the bundled model's recent runs, or else the saved one.
+     * @return The latency in nanoseconds, -1 if none was recorded.
+     */
+    public synchronized long getBaselineLatencyNanos() {
+        if (this.baselineLatencies.getRuns() > 0)
+            return this.baselineLatencies.getMedianLatency();
+        return this.savedBaselineLatency;
+    }
+
+    private void saveBaselineLatency(int version, long nanos) {
+        this.savedBaselineVersion = version;
+        this.savedBaselineLatency = nanos;
+        writeLine(new File(this.directory, BASELINE_LATENCY_FILE), version + "\t" + nanos, false);
+    }
+
+    /**
+     * Reads the lines of a file of the registry.
+     * @param file The file.
+     * @return The lines, empty if the file doesn't exist or can't be read.
+     */
+    private static ArrayList<String> readLines(File file) {
+        final ArrayList<String> lines = new ArrayList<>();
+        if (!file.exists())
+            return lines;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                lines.add(line);
+        } catch (IOException ignored) {
+            // Whatever was read is still used
+        }
+        return lines;
+    }
+
+    /**
+     * Writes a line to a file of the registry.
+     * @param file The file.
+     * @param line The line.
+     * @param append Whether to add the line after the lines of the file, or to replace them.
+     */
+    private static void writeLine(File file, String line, boolean append) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, append))) {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException ignored) {
+            // The value is still kept in memory
+        }
+    }
+
+    /**
+     * Closes the active version to free memory (the classifications that run on it finish first).
+     * It's loaded again by the next classification.
+     * @return The amount of bytes of the version's file, which was mapped.
+     */
+    public synchronized long unload() {
+        final Version version = this.active.getAndSet(null);
+        if (version == null)
+            return 0;
+
+        // The probation can't end without the version, so the replaced version is closed too:
+        long freedBytes = getModelFile(version.number).length();
+        if (this.previous != null) {
+            freedBytes += getModelFile(this.previous.number).length();
+            this.previous.release();
+            this.previous = null;
+        }
+        this.onProbation = false;
+        this.unloadedVersion = version.number;
+        version.release();
+        return freedBytes;
+    }
+
+    private synchronized Version reloadUnloadedVersion() {
+        if (this.active.get() == null && this.unloadedVersion >= 0) {
+            final int version = this.unloadedVersion;
+            this.unloadedVersion = -1;
+            install(version, false);
+        }
+        return this.active.get();
+    }
+
+    /**
+     * Returns the amount of bytes of the model files that are loaded (the active version, and the
+     * version it replaced while it's on probation).
+     * @return The amount of bytes.
+     */
+    public synchronized long getLoadedBytes() {
+        final Version version = this.active.get();
+        long bytes = version == null ? 0 : getModelFile(version.number).length();
+        if (this.previous != null)
+            bytes += getModelFile(this.previous.number).length();
+        return bytes;
+    }
+
+    /**
+     * Returns the number of the active version.
+     * @return The number, -1 if no version is active.
+     */
+    public int getActiveVersion() {
+        final Version version = this.active.get();
+        return version == null ? -1 : version.number;
+    }
+
+    /**
+     * Returns the median latency of the active version's recent runs.
+     * @return The latency in nanoseconds, -1 if it didn't run yet (or no version is active).
+     */
+    public long getActiveLatencyNanos() {
+        final Version version = this.active.get();
+        return version == null ? -1 : version.latencies.getMedianLatency();
+    }
+
+    /**
+     * Returns whether a version was rolled back.
+     * @param version The number of the version.
+     * @return Whether it was rolled back (it won't be installed again).
+     */
+    public synchronized boolean isRejected(int version) {
+        return this.rejectedVersions.contains(version);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.dogclassificationapp.classifier_logic;
+
+import com.example.dogclassificationapp.util.Result;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * A stage of the ClassifierCascade whose model can be closed to free memory, like the versions of
+ * the ModelRegistry. The model is loaded from its file again by the next run.
+ */
+public class ReloadableStage implements ClassifierCascade.Stage {
+
+    // The file of the model, and the loader that loads it again:
+    private final File file;
+    private final ModelRegistry.Loader loader;
+
+    // The loaded model (null while it's unloaded):
+    private ModelRegistry.Model model;
+
+    /**
+     * The constructor of the ReloadableStage class.
+     * @param file The file of the model.
+     * @param loader Loads the file again after the model was unloaded.
+     * @param model The model that was already loaded from the file.
+     */
+    public ReloadableStage(File file, ModelRegistry.Loader loader, ModelRegistry.Model model) {
+        this.file = file;
+        this.loader = loader;
+        this.model = model;
+    }
+
+    /**
+     * Classifies an image, loading the model again first if it was unloaded.
+     * @param input The image, written by ImagePreprocessor.putImage.
+     * @return The confidences of the labels, or an empty optional if loading the model failed (so
+     *         the full model decides the classification).
+     */
+    @Override
+    public synchronized Optional<float[]> run(ByteBuffer input) {
+        if (this.model == null) {
+            final Result<ModelRegistry.Model, String> loaded = this.loader.load(this.file);
+            if (loaded.isErr())
+                return Optional.empty();
+            this.model = loaded.getValue();
+        }
+        return Optional.of(this.model.run(input));
+    }
+
+    /**
+     * Closes the model to free memory (a classification that runs on it finishes first).
+     * @return The amount of bytes of the model's file, which was mapped.
+     */
+    public synchronized long unload() {
+        if (this.model == null)
+            return 0;
+        this.model.close();
+        this.model = null;
+        return this.file.length();
+    }
+
+    /**
+     * Returns the amount of bytes of the model's file, if the model is loaded.
+     * @return The amount of bytes, 0 if the model is unloaded.
+     */
+    public synchronized long getLoadedBytes() {
+        return this.model == null ? 0 : this.file.length();
+    }
+}
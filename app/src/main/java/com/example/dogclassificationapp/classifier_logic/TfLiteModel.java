@@ -0,0 +1,96 @@
+package com.example.dogclassificationapp.classifier_logic;
+
+import com.example.dogclassificationapp.core.ImagePreprocessor;
+import com.example.dogclassificationapp.util.Result;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A version of the model that is loaded from a .tflite file in the app's storage. The file is
+ * memory-mapped, so its pages are shared with the page cache instead of being copied into the heap.
+ */
+public class TfLiteModel implements ModelRegistry.Model {
+
+    // The interpreter of the model:
+    private final Interpreter interpreter;
+
+    // The amount of labels that the model outputs:
+    private final int numLabels;
+
+    private TfLiteModel(Interpreter interpreter, int numLabels) {
+        this.interpreter = interpreter;
+        this.numLabels = numLabels;
+    }
+
+    /**
+     * Loads a model file, and checks that its input is an image that the ImagePreprocessor creates
+     * and its output has a confidence for every label.
+     * @param file The .tflite file.
+     * @param numLabels The amount of labels in the label table.
+     * @return The model, or the reason it couldn't be loaded.
+     */
+    public static Result<ModelRegistry.Model, String> load(File file, int numLabels) {
+        final MappedByteBuffer buffer;
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+        } catch (IOException e) {
+            return Result.failure("Mapping " + file.getName() + " failed: " + e);
+        }
+
+        final Interpreter interpreter;
+        try {
+            interpreter = new Interpreter(buffer);
+        } catch (IllegalArgumentException e) {
+            return Result.failure(file.getName() + " isn't a valid model: " + e.getMessage());
+        }
+
+        // Validating the signature of the model:
+        final String error = getSignatureError(interpreter, numLabels);
+        if (error != null) {
+            interpreter.close();
+            return Result.failure(file.getName() + ": " + error);
+        }
+        return Result.success(new TfLiteModel(interpreter, numLabels));
+    }
+
+    private static String getSignatureError(Interpreter interpreter, int numLabels) {
+        if (interpreter.getInputTensorCount() != 1 || interpreter.getOutputTensorCount() != 1)
+            return "Expected a single input and output, got " + interpreter.getInputTensorCount()
+                    + " inputs and " + interpreter.getOutputTensorCount() + " outputs";
+
+        final Tensor input = interpreter.getInputTensor(0);
+        final int[] expectedShape = {1, ImagePreprocessor.IMAGE_SIZE, ImagePreprocessor.IMAGE_SIZE, ImagePreprocessor.CHANNELS};
+        if (input.dataType() != DataType.FLOAT32 || !Arrays.equals(input.shape(), expectedShape))
+            return "The input is " + input.dataType() + " " + Arrays.toString(input.shape())
+                    + " instead of FLOAT32 " + Arrays.toString(expectedShape);
+
+        final Tensor output = interpreter.getOutputTensor(0);
+        if (output.dataType() != DataType.FLOAT32 || output.numElements() != numLabels)
+            return "The output is " + output.dataType() + " " + Arrays.toString(output.shape())
+                    + " instead of FLOAT32 with " + numLabels + " labels";
+        return null;
+    }
+
+    @Override
+    public synchronized float[] run(ByteBuffer input) {
+        final float[][] output = new float[1][this.numLabels];
+        input.rewind();
+        this.interpreter.run(input, output);
+        return output[0];
+    }
+
+    @Override
+    public void close() {
+        this.interpreter.close();
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.dogclassificationapp.classifier_logic;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A utility class that keeps small thumbnails of dog images on the disk, in a directory for every
+ * breed. The thumbnails are pre-fetched in the background, so the images of a breed can be shown
+ * without downloading anything while the user waits for the classification results.
+ */
+public class ThumbnailCache {
+
+    // The maximum width and height of a thumbnail (the images are scaled down to fit it):
+    private static final int THUMBNAIL_SIZE = 384;
+
+    // The quality of the JPEG compression of the thumbnails:
+    private static final int JPEG_QUALITY = 85;
+
+    // The extension of a thumbnail file (files that are still being written have another one):
+    private static final String THUMBNAIL_EXTENSION = ".jpg";
+
+    // The directory that the thumbnails are saved in (null if no directory was set):
+    private static File directory;
+
+    // The total size of the thumbnails on the disk, in bytes:
+    private static final AtomicLong TOTAL_BYTES = new AtomicLong();
+
+    /**
+     * Sets the directory that the thumbnails are saved in, and counts the size of the thumbnails that
+     * were already saved in it.
+     * @param thumbnailsDirectory The directory of the thumbnails. If it doesn't exist it will be
+     *                            created.
+     */
+    public static synchronized void setDirectory(File thumbnailsDirectory) {
+        if (!thumbnailsDirectory.exists() && !thumbnailsDirectory.mkdirs())
+            return;
+        directory = thumbnailsDirectory;
+
+        long totalBytes = 0;
+        final File[] breedDirectories = thumbnailsDirectory.listFiles();
+        if (breedDirectories != null)
+            for (File breedDirectory : breedDirectories)
+                for (File thumbnail : listThumbnails(breedDirectory))
+                    totalBytes += thumbnail.length();
+        TOTAL_BYTES.set(totalBytes);
+    }
+
+    /**
+     * Returns the amount of thumbnails that are saved for the given breed.
+     * @param apiBreed The name of the breed, as it appears in the "api_labels.csv" file.
+     * @return The amount of saved thumbnails, 0 if no directory was set.
+     */
+    public static int getThumbnailCount(String apiBreed) {
+        final File breedDirectory = getBreedDirectory(apiBreed);
+        return breedDirectory == null ? 0 : listThumbnails(breedDirectory).size();
+    }
+
+    /**
+     * Loads random thumbnails of the given breed.
+     * @param apiBreed The name of the breed, as it appears in the "api_labels.csv" file.
+     * @param count The amount of thumbnails that should be loaded.
+     * @return Up to "count" different thumbnails of the breed (less if there aren't enough of them).
+     */
+    public static ArrayList<Bitmap> getRandomThumbnails(String apiBreed, int count) {
+        final ArrayList<Bitmap> thumbnails = new ArrayList<>();
+        final File breedDirectory = getBreedDirectory(apiBreed);
+        if (breedDirectory == null)
+            return thumbnails;
+
+        final ArrayList<File> files = listThumbnails(breedDirectory);
+        Collections.shuffle(files);
+        for (File file : files) {
+            if (thumbnails.size() == count)
+                break;
+
+            final Bitmap thumbnail = BitmapPool.getShared().decode(options -> BitmapFactory.decodeFile(file.getPath(), options));
+            if (thumbnail != null)
+                thumbnails.add(thumbnail);
+        }
+        return thumbnails;
+    }
+
+    /**
+     * Creates a thumbnail of the given image and saves it for the given breed. The thumbnail is
+     * written to a temporary file first, so a stopped write never leaves a broken thumbnail.
+     * @param apiBreed The name of the breed, as it appears in the "api_labels.csv" file.
+     * @param imageURL The URL of the image (an image is only saved once).
+     * @param image The stream of the image's content.
+     * @return The size of the saved thumbnail in bytes, 0 if the thumbnail wasn't saved (the image
+     *         was already saved, it couldn't be decoded or no directory was set).
+     * @throws IOException If reading the image or writing the thumbnail failed.
+     */
+    public static long storeThumbnail(String apiBreed, String imageURL, InputStream image) throws IOException {
+        final File breedDirectory = getBreedDirectory(apiBreed);
+        if (breedDirectory == null || (!breedDirectory.exists() && !breedDirectory.mkdirs()))
+            return 0;
+
+        final File thumbnailFile = new File(breedDirectory, Integer.toHexString(imageURL.hashCode()) + THUMBNAIL_EXTENSION);
+        if (thumbnailFile.exists())
+            return 0;
+
+        // Decoding the image at the smallest size that still fits the thumbnail:
+        final byte[] bytes = readAllBytes(image);
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            return 0;
+
+        options.inSampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / (options.inSampleSize * 2) >= THUMBNAIL_SIZE)
+            options.inSampleSize *= 2;
+        options.inJustDecodeBounds = false;
+
+        final Bitmap decoded = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+        if (decoded == null)
+            return 0;
+
+        // Scaling the image down to the exact size of the thumbnail:
+        final float scale = Math.min(1f, (float) THUMBNAIL_SIZE / Math.max(decoded.getWidth(), decoded.getHeight()));
+        final Bitmap thumbnail = scale < 1f
+                ? Bitmap.createScaledBitmap(decoded, Math.round(decoded.getWidth() * scale), Math.round(decoded.getHeight() * scale), true)
+                : decoded;
+
+        final File tempFile = new File(breedDirectory, thumbnailFile.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tempFile)) {
+            thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } finally {
+            if (thumbnail != decoded)
+                thumbnail.recycle();
+            decoded.recycle();
+        }
+
+        if (!tempFile.renameTo(thumbnailFile)) {
+            tempFile.delete();
+            return 0;
+        }
+
+        final long size = thumbnailFile.length();
+        TOTAL_BYTES.addAndGet(size);
+        return size;
+    }
+
+    /**
+     * Returns the total size of the thumbnails on the disk.
+     * @return The size of all the thumbnails in bytes.
+     */
+    public static long getTotalBytes() {
+        return TOTAL_BYTES.get();
+    }
+
+    private static synchronized File getBreedDirectory(String apiBreed) {
+        if (directory == null)
+            return null;
+        return new File(directory, apiBreed.replace(' ', '_'));
+    }
+
+    private static ArrayList<File> listThumbnails(File breedDirectory) {
+        final File[] files = breedDirectory.listFiles((dir, name) -> name.endsWith(THUMBNAIL_EXTENSION));
+        return files == null ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+    }
+
+    static byte[] readAllBytes(InputStream in) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0)
+            bytes.write(buffer, 0, read);
+        return bytes.toByteArray();
+    }
+}
@@ -1,13 +1,8 @@
 package com.example.dogclassificationapp.custom_views;
 
 import android.content.res.Resources;
-import android.graphics.Bitmap;
 import android.graphics.Paint;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.os.Handler;
-import android.os.Looper;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,12 +11,18 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.constraintlayout.widget.ConstraintLayout;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.dogclassificationapp.R;
 import com.example.dogclassificationapp.classifier_logic.Breed;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * This class's purpose is to bind Breed objects into a recyclerView
@@ -34,82 +35,285 @@ public class BreedAdapter extends RecyclerView.Adapter<BreedAdapter.BreedVH> {
     // A list containing all the breeds in the adapter:
     private final ArrayList<Breed> breedsList;
 
-    // The maximum size of the main and bonus images:
-    private static final int MAX_IMAGE_SIZE = 400;
+    // The payloads of partial updates, each one only rebinds the views of a single part of a row:
+    private static final Object PAYLOAD_EXPANDED = "expanded";
+    private static final Object PAYLOAD_INFO = "info";
+    private static final Object PAYLOAD_IMAGES = "images";
+
+    // The kinds of the changes that come from the loaders (the indices of their payloads in the
+    // dispatcher):
+    private static final int KIND_INFO = 0;
+    private static final int KIND_IMAGES = 1;
+
+    // Sends the rows whose data was loaded to the list once per frame:
+    private final RowUpdateDispatcher updateDispatcher;
+
+    // The prepared content of every row, so binding a row doesn't build strings or measure text:
+    private final BreedRowContent[] rowContents;
+
+    // Prepares the content of the rows off the main thread:
+    private final ExecutorService contentExecutor = Executors.newSingleThreadExecutor();
+
+    // The text metrics of the information paragraphs, known once the first row is created (null
+    // until then):
+    private volatile PrecomputedTextCompat.Params infoTextParams;
+
+    // The index of the expanded breed (-1 if no breed is expanded):
+    private int expandedIdx = -1;
+
+    // Called when a row is expanded or collapsed (null if not set):
+    private Runnable onRowToggledListener;
 
     public BreedAdapter(ArrayList<Breed> breedsList, Resources res) {
         this.breedsList = breedsList;
         this.res = res;
 
+        this.updateDispatcher = new RowUpdateDispatcher(this, breedsList.size(), PAYLOAD_INFO, PAYLOAD_IMAGES);
+
+        // Every breed keeps its row's identity, so the rows are never rebound just to be moved:
+        setHasStableIds(true);
+
+        this.rowContents = new BreedRowContent[breedsList.size()];
+        for (int i = 0; i < this.rowContents.length; i++) {
+            this.rowContents[i] = new BreedRowContent(breedsList.get(i));
+            prepareRow(i, Breed.LoadedData.INFO);
+            prepareRow(i, Breed.LoadedData.IMAGES);
+        }
+
         // Adding OnDataLoadedListeners to every breed to update them automatically when they finish
         // loading their info:
         for (int i = 0; i < this.breedsList.size(); i++) {
             // Copying the current index to a final variable to use it in the listener:
             final int finalI = i;
-            // Setting the listener:
+            if (this.breedsList.get(i).isExpanding())
+                this.expandedIdx = i;
+
+            // Setting the listener (the part of the row that was loaded is prepared, and only it is
+            // rebound in the next frame):
             this.breedsList.get(i).setOnDataLoadedListener(
-                    breed -> {
-                        final Handler handler = new Handler(Looper.getMainLooper());
-                        handler.post(() -> notifyItemChanged(finalI));
-                    }
+                    (breed, data) -> prepareRow(finalI, data)
             );
         }
     }
 
+    /**
+     * Prepares a part of the content of a row on the content executor, and rebinds that part of the
+     * row once it is ready.
+     * @param row The index of the row.
+     * @param data The part of the breed's data that should be prepared.
+     */
+    private void prepareRow(int row, Breed.LoadedData data) {
+        final Breed breed = this.breedsList.get(row);
+        final BreedRowContent content = this.rowContents[row];
+        try {
+            this.contentExecutor.execute(() -> {
+                if (data == Breed.LoadedData.INFO) {
+                    content.prepareInfo(breed, this.infoTextParams);
+                    this.updateDispatcher.markDirty(row, KIND_INFO);
+                } else {
+                    content.prepareBonusImg(breed, this.res);
+                    this.updateDispatcher.markDirty(row, KIND_IMAGES);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The adapter was detached, nothing shows the row anymore
+        }
+    }
+
+    /**
+     * Sets a listener that is called whenever a row is expanded or collapsed.
+     * @param listener The listener, called on the main thread.
+     */
+    public void setOnRowToggledListener(Runnable listener) {
+        this.onRowToggledListener = listener;
+    }
+
+    /**
+     * Sets a listener that is called whenever rows are updated with data that was loaded.
+     * @param listener The listener, called on the main thread.
+     */
+    public void setOnRowsUpdatedListener(Runnable listener) {
+        this.updateDispatcher.setOnFlushListener(listener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        release();
+    }
+
+    /**
+     * Stops preparing and sending the updates of the rows, once nothing shows the list anymore. The
+     * list isn't detached from the adapter when its activity is destroyed, so the activity must call
+     * this itself.
+     */
+    public void release() {
+        this.updateDispatcher.release();
+        this.contentExecutor.shutdownNow();
+
+        // The views of the list aren't recycled, so they no longer count as referencing the images:
+        for (Breed breed : this.breedsList)
+            breed.setRowBound(false);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return this.breedsList.get(position).getLabelIndex();
+    }
+
     @NonNull
     @Override
     public BreedVH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         // Getting the breed_row file as a view:
         final View rowView = LayoutInflater.from(parent.getContext()).inflate(R.layout.breed_row, parent, false);
         // Using the custom View-Holder:
-        return new BreedVH(rowView);
+        final BreedVH holder = new BreedVH(rowView);
+
+        // Once the text metrics of the information paragraphs are known, measuring the layouts of
+        // the information that was already loaded:
+        if (this.infoTextParams == null) {
+            this.infoTextParams = TextViewCompat.getTextMetricsParams(holder.infoTv);
+            for (int i = 0; i < this.rowContents.length; i++)
+                prepareRow(i, Breed.LoadedData.INFO);
+        }
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull BreedVH holder, int position, @NonNull List<Object> payloads) {
+        // A full bind, when the row is shown for the first time:
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+
+        // A partial update, only the parts of the row that changed are rebound:
+        final Breed breed = this.breedsList.get(position);
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_EXPANDED)
+                bindExpanded(holder, breed);
+            else if (payload == PAYLOAD_INFO)
+                bindInfo(holder, position);
+            else if (payload == PAYLOAD_IMAGES)
+                bindImages(holder, position);
+        }
     }
 
     @Override
     public void onBindViewHolder(@NonNull BreedVH holder, int position) {
-        // Getting the breed that is currently being bind to the VH:
+        // Getting the breed that is currently being bind to the VH and its prepared content:
         final Breed breed = this.breedsList.get(position);
+        final BreedRowContent content = this.rowContents[position];
 
-        // Setting the View-Holder's attributes using the data of the breed:
+        // The views of the holder reference the images of the breed until it's recycled:
+        if (holder.boundBreed != null && holder.boundBreed != breed)
+            holder.boundBreed.setRowBound(false);
+        holder.boundBreed = breed;
+        breed.setRowBound(true);
+
+        // Setting the View-Holder's attributes using the prepared content:
 
         // Setting the breed name:
-        final String breedName = "Breed: " + breed.getFullName();
-        holder.breedTV.setText(breedName);
+        holder.breedTV.setText(content.getBreedText());
 
         // Setting the confidence of the model in the breed:
-        double confidence = 100 * breed.getConfidence();
-        // Rounding to the second digit:
-        confidence = Math.round(100 * confidence) / 100.0;
-
-        final String confidenceTxt = "Confidence: " + confidence;
-        holder.confidenceTV.setText(confidenceTxt);
-
-        // Setting the shown image:
-        holder.shownBreedImgV.setImageBitmap(breed.getMainImg());
+        holder.confidenceTV.setText(content.getConfidenceText());
 
         // Setting the information title:
-        holder.infoTitleTV.setText(breed.getFullName());
+        holder.infoTitleTV.setText(content.getInfoTitle());
 
         // Setting the information paragraph's text:
-        holder.infoTv.setText(breed.getInfo());
+        bindInfo(holder, position);
 
-        // Setting the information paragraph's image:
-        // Setting the max size of the image:
-        Bitmap bonusImg = breed.getBonusImg();
+        // Setting the shown image and the information paragraph's image:
+        bindImages(holder, position);
+
+        // Changing the visibility of the expandable part:
+        bindExpanded(holder, breed);
+    }
 
-        if (bonusImg != null) {
-            if (bonusImg.getWidth() > MAX_IMAGE_SIZE || bonusImg.getHeight() > MAX_IMAGE_SIZE)
-                bonusImg = Bitmap.createScaledBitmap(bonusImg, MAX_IMAGE_SIZE, MAX_IMAGE_SIZE, false);
+    /**
+     * Binds the prepared information paragraph of the breed to the row. If the layout of the text
+     * wasn't measured yet, the text itself is bound.
+     * @param holder The View-Holder of the row.
+     * @param position The position of the row.
+     */
+    private void bindInfo(BreedVH holder, int position) {
+        CharSequence info = this.rowContents[position].getInfo();
+        if (info == null)
+            info = this.breedsList.get(position).getInfo();
+
+        if (info instanceof PrecomputedTextCompat) {
+            try {
+                TextViewCompat.setPrecomputedText(holder.infoTv, (PrecomputedTextCompat) info);
+                return;
+            } catch (IllegalArgumentException e) {
+                // The text was measured with other metrics than the view's, setting it as is
+                info = info.toString();
+            }
         }
-        final Drawable bonusImgDrawable = new BitmapDrawable(this.res, bonusImg);
-        holder.infoTv.setCompoundDrawablesRelativeWithIntrinsicBounds(null, null, bonusImgDrawable, null);
+        holder.infoTv.setText(info);
+    }
+
+    /**
+     * Binds the main image and the prepared bonus image of the breed to the row. The bonus image is
+     * only set if the row doesn't already show it.
+     * @param holder The View-Holder of the row.
+     * @param position The position of the row.
+     */
+    private void bindImages(BreedVH holder, int position) {
+        // Setting the shown image:
+        holder.shownBreedImgV.setImageBitmap(this.breedsList.get(position).getMainImg());
+
+        // Setting the information paragraph's image (wrapping it right away if it wasn't prepared
+        // yet, which doesn't copy the image):
+        final BreedRowContent content = this.rowContents[position];
+        if (content.getBonusImgDrawable() == null)
+            content.prepareBonusImg(this.breedsList.get(position), this.res);
+        final Drawable bonusImgDrawable = content.getBonusImgDrawable();
+        if (bonusImgDrawable == holder.boundBonusImgDrawable)
+            return;
+        holder.boundBonusImgDrawable = bonusImgDrawable;
+        holder.infoTv.setCompoundDrawablesRelative(null, null, bonusImgDrawable, null);
+    }
 
-        // Changing the visibility of the expandable part according to the "expandable" attribute
-        // of the current breed:
+    /**
+     * Changes the visibility of the expandable part of the row according to the "expanding"
+     * attribute of the breed.
+     * @param holder The View-Holder of the row.
+     * @param breed The breed of the row.
+     */
+    private void bindExpanded(BreedVH holder, Breed breed) {
         holder.expandableLayout.setVisibility(
                 breed.isExpanding() ? View.VISIBLE : View.GONE
         );
-        Log.i("Breed adapter", "finished");
+    }
+
+    @Override
+    public void onViewAttachedToWindow(@NonNull BreedVH holder) {
+        // Rows that are shown are loaded before the rows that aren't:
+        final int position = holder.getAdapterPosition();
+        if (position != RecyclerView.NO_POSITION)
+            this.breedsList.get(position).setVisible(true);
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(@NonNull BreedVH holder) {
+        final int position = holder.getAdapterPosition();
+        if (position != RecyclerView.NO_POSITION)
+            this.breedsList.get(position).setVisible(false);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull BreedVH holder) {
+        // Letting go of the images, so the breed's images can be dropped when memory is low:
+        holder.shownBreedImgV.setImageDrawable(null);
+        holder.infoTv.setCompoundDrawablesRelative(null, null, null, null);
+        holder.boundBonusImgDrawable = null;
+        if (holder.boundBreed != null) {
+            holder.boundBreed.setRowBound(false);
+            holder.boundBreed = null;
+        }
     }
 
     @Override
@@ -137,6 +341,13 @@ public class BreedAdapter extends RecyclerView.Adapter<BreedAdapter.BreedVH> {
         // The expandable part of the row:
         private final ConstraintLayout expandableLayout;
 
+        // The bonus image that the row currently shows (so it isn't set again when it didn't
+        // change):
+        private Drawable boundBonusImgDrawable;
+
+        // The breed that the views of the row were bound to (null once it was recycled):
+        private Breed boundBreed;
+
         public BreedVH(@NonNull View itemView) {
             super(itemView);
 
@@ -163,21 +374,26 @@ public class BreedAdapter extends RecyclerView.Adapter<BreedAdapter.BreedVH> {
                     view -> {
                         // Getting the index of the pressed breed:
                         final int pressedIdx = getAdapterPosition();
-
-                        // Closing any other breeds that are expanding:
-                        for (int i = 0; i < breedsList.size(); i++) {
-                            if (i != pressedIdx) {
-                                breedsList.get(i).setExpanding(false);
-                                notifyItemChanged(i);
-                            }
+                        if (pressedIdx == RecyclerView.NO_POSITION)
+                            return;
+
+                        // Closing the other breed that is expanding (only one breed can be
+                        // expanded, so no other row has to be touched):
+                        if (expandedIdx != -1 && expandedIdx != pressedIdx) {
+                            breedsList.get(expandedIdx).setExpanding(false);
+                            notifyItemChanged(expandedIdx, PAYLOAD_EXPANDED);
                         }
 
                         // Negating the "expandable" attribute of the pressed breed:
                         final Breed pressedBreed = breedsList.get(pressedIdx);
                         pressedBreed.setExpanding(!pressedBreed.isExpanding());
+                        expandedIdx = pressedBreed.isExpanding() ? pressedIdx : -1;
 
                         // Notifying an item has changed:
-                        notifyItemChanged(pressedIdx);
+                        notifyItemChanged(pressedIdx, PAYLOAD_EXPANDED);
+
+                        if (onRowToggledListener != null)
+                            onRowToggledListener.run();
                     }
             );
         }
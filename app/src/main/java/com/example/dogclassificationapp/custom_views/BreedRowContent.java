@@ -0,0 +1,110 @@
+package com.example.dogclassificationapp.custom_views;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+
+import androidx.core.text.PrecomputedTextCompat;
+
+import com.example.dogclassificationapp.classifier_logic.Breed;
+
+/**
+ * The content of a single row of the BreedAdapter, prepared ahead of time so binding the row only
+ * assigns it to the views. The display strings are built once, and the information paragraph's text
+ * layout and bonus image are prepared on a background thread whenever the breed's data arrives.
+ */
+class BreedRowContent {
+
+    // The maximum width and height of the bonus image (larger images are drawn at this size):
+    private static final int MAX_BONUS_IMAGE_SIZE = 400;
+
+    // The texts of the row that never change:
+    private final String breedText;
+    private final String confidenceText;
+    private final String infoTitle;
+
+    // The information paragraph, with its text layout measured if it was prepared (null until
+    // then):
+    private volatile CharSequence info;
+
+    // The bonus image, wrapped in a drawable with its bounds set (null until it was prepared), and
+    // the image it was prepared from:
+    private volatile Drawable bonusImgDrawable;
+    private volatile Bitmap preparedBonusImg;
+
+    /**
+     * The constructor of the BreedRowContent class.
+     * @param breed The breed of the row.
+     */
+    BreedRowContent(Breed breed) {
+        this.breedText = "Breed: " + breed.getFullName();
+
+        // Rounding the confidence to the second digit:
+        final double confidence = Math.round(10_000 * breed.getConfidence()) / 100.0;
+        this.confidenceText = "Confidence: " + confidence;
+
+        this.infoTitle = breed.getFullName();
+    }
+
+    /**
+     * Measures the layout of the breed's current information (can be called from any thread).
+     * @param breed The breed of the row.
+     * @param params The text metrics of the information paragraph's view, or null if they aren't
+     *               known yet (the text is then kept as is).
+     */
+    void prepareInfo(Breed breed, PrecomputedTextCompat.Params params) {
+        final String info = breed.getInfo();
+        this.info = info == null || params == null ? info : PrecomputedTextCompat.create(info, params);
+    }
+
+    /**
+     * Wraps the breed's current bonus image in a drawable (can be called from any thread). Instead of
+     * scaling a copy of a large image, the drawable is drawn at the maximum size.
+     * @param breed The breed of the row.
+     * @param res A resources object to create the drawable with.
+     */
+    void prepareBonusImg(Breed breed, Resources res) {
+        final Bitmap bonusImg = breed.getBonusImg();
+        if (bonusImg == null) {
+            this.bonusImgDrawable = null;
+            this.preparedBonusImg = null;
+            return;
+        }
+        if (bonusImg == this.preparedBonusImg)
+            return;
+
+        final Drawable drawable = new BitmapDrawable(res, bonusImg);
+        int width = drawable.getIntrinsicWidth();
+        int height = drawable.getIntrinsicHeight();
+        if (bonusImg.getWidth() > MAX_BONUS_IMAGE_SIZE || bonusImg.getHeight() > MAX_BONUS_IMAGE_SIZE) {
+            // Keeping the density scaling of the intrinsic size:
+            width = Math.round((float) MAX_BONUS_IMAGE_SIZE * width / bonusImg.getWidth());
+            height = Math.round((float) MAX_BONUS_IMAGE_SIZE * height / bonusImg.getHeight());
+        }
+        drawable.setBounds(0, 0, width, height);
+
+        this.bonusImgDrawable = drawable;
+        this.preparedBonusImg = bonusImg;
+    }
+
+    String getBreedText() {
+        return breedText;
+    }
+
+    String getConfidenceText() {
+        return confidenceText;
+    }
+
+    String getInfoTitle() {
+        return infoTitle;
+    }
+
+    CharSequence getInfo() {
+        return info;
+    }
+
+    Drawable getBonusImgDrawable() {
+        return bonusImgDrawable;
+    }
+}
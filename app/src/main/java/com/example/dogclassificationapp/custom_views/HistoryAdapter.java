@@ -0,0 +1,216 @@
+package com.example.dogclassificationapp.custom_views;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.constraintlayout.widget.ConstraintLayout;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.dogclassificationapp.R;
+import com.example.dogclassificationapp.database.HistoryEntry;
+
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * This class's purpose is to bind the entries of the classification history into a recyclerView.
+ * The entries are added a page at a time, as the list is scrolled.
+ */
+public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.HistoryVH> {
+
+    // The maximum amount of bytes of the decoded thumbnails that are kept in memory:
+    private static final int THUMBNAIL_CACHE_BYTES = 2 * 1024 * 1024;
+
+    // The entries that were loaded so far, from the newest to the oldest:
+    private final ArrayList<HistoryEntry> entries = new ArrayList<>();
+
+    // The display names of the breeds, by their label indices:
+    private final List<String> breedNames;
+
+    // The decoded thumbnails of the entries that were shown recently, by the IDs of the entries:
+    private final LruCache<Long, Bitmap> thumbnails = new LruCache<Long, Bitmap>(THUMBNAIL_CACHE_BYTES) {
+        @Override
+        protected int sizeOf(Long id, Bitmap thumbnail) {
+            return thumbnail.getAllocationByteCount();
+        }
+    };
+
+    // Formats the times of the classifications:
+    private final DateFormat timeFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+
+    // Called when an entry is pressed or long-pressed (null if not set):
+    private Consumer<HistoryEntry> onEntryClickListener;
+    private Consumer<HistoryEntry> onEntryLongClickListener;
+
+    /**
+     * The constructor of the HistoryAdapter class.
+     * @param breedNames The display names of the breeds, by their label indices.
+     */
+    public HistoryAdapter(List<String> breedNames) {
+        this.breedNames = breedNames;
+
+        // Every entry keeps its row's identity, so pages are added without rebinding the rows:
+        setHasStableIds(true);
+    }
+
+    /**
+     * Adds a page of entries to the end of the list.
+     * @param page The entries of the page, older than all the entries in the list.
+     */
+    public void addPage(List<HistoryEntry> page) {
+        final int start = this.entries.size();
+        this.entries.addAll(page);
+        notifyItemRangeInserted(start, page.size());
+    }
+
+    /**
+     * Removes all the entries from the list.
+     */
+    public void clear() {
+        this.entries.clear();
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Returns the oldest entry that was loaded, so the next page can continue after it.
+     * @return The last entry in the list, null if the list is empty.
+     */
+    public HistoryEntry getLastEntry() {
+        return this.entries.isEmpty() ? null : this.entries.get(this.entries.size() - 1);
+    }
+
+    /**
+     * Sets a listener that is called whenever an entry is pressed.
+     * @param listener The listener, called on the main thread.
+     */
+    public void setOnEntryClickListener(Consumer<HistoryEntry> listener) {
+        this.onEntryClickListener = listener;
+    }
+
+    /**
+     * Sets a listener that is called whenever an entry is long-pressed.
+     * @param listener The listener, called on the main thread.
+     */
+    public void setOnEntryLongClickListener(Consumer<HistoryEntry> listener) {
+        this.onEntryLongClickListener = listener;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return this.entries.get(position).getId();
+    }
+
+    @NonNull
+    @Override
+    public HistoryVH onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        final View rowView = LayoutInflater.from(parent.getContext()).inflate(R.layout.history_row, parent, false);
+        return new HistoryVH(rowView);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull HistoryVH holder, int position) {
+        final HistoryEntry entry = this.entries.get(position);
+
+        // Setting the thumbnail (the default image if the entry has none):
+        final Bitmap thumbnail = getThumbnail(entry);
+        if (thumbnail != null)
+            holder.thumbnailImgV.setImageBitmap(thumbnail);
+        else
+            holder.thumbnailImgV.setImageResource(R.drawable.classifier_default_dog);
+
+        // Setting the top breed, and the breeds after it:
+        if (entry.getTopBreedCount() > 0) {
+            holder.breedTV.setText(formatBreed(entry, 0));
+            final StringBuilder others = new StringBuilder();
+            for (int rank = 1; rank < entry.getTopBreedCount(); rank++) {
+                if (others.length() > 0)
+                    others.append(", ");
+                others.append(formatBreed(entry, rank));
+            }
+            holder.othersTV.setText(others);
+        } else {
+            holder.breedTV.setText(null);
+            holder.othersTV.setText(null);
+        }
+
+        // Setting the time of the classification:
+        holder.timeTV.setText(this.timeFormat.format(new Date(entry.getTimestamp())));
+    }
+
+    private String formatBreed(HistoryEntry entry, int rank) {
+        final int labelIndex = entry.getLabelIndex(rank);
+        final String name = labelIndex < this.breedNames.size() ? this.breedNames.get(labelIndex) : "?";
+        return String.format(Locale.US, "%s (%d%%)", name, Math.round(entry.getConfidence(rank) * 100));
+    }
+
+    /**
+     * Returns the decoded thumbnail of the entry, decoding it if it isn't cached (the thumbnails
+     * are small, so decoding one takes a fraction of a frame).
+     * @param entry The entry.
+     * @return The thumbnail, null if the entry has no thumbnail or it couldn't be decoded.
+     */
+    private Bitmap getThumbnail(HistoryEntry entry) {
+        Bitmap thumbnail = this.thumbnails.get(entry.getId());
+        if (thumbnail == null && entry.getThumbnail() != null) {
+            thumbnail = BitmapFactory.decodeByteArray(entry.getThumbnail(), 0, entry.getThumbnail().length);
+            if (thumbnail != null)
+                this.thumbnails.put(entry.getId(), thumbnail);
+        }
+        return thumbnail;
+    }
+
+    @Override
+    public int getItemCount() {
+        return this.entries.size();
+    }
+
+    public class HistoryVH extends RecyclerView.ViewHolder {
+
+        // The thumbnail of the classified image:
+        private final ImageView thumbnailImgV;
+
+        // The breed with the highest confidence:
+        private final TextView breedTV;
+
+        // The other top breeds:
+        private final TextView othersTV;
+
+        // The time of the classification:
+        private final TextView timeTV;
+
+        public HistoryVH(@NonNull View itemView) {
+            super(itemView);
+
+            this.thumbnailImgV = itemView.findViewById(R.id.history_thumbnail_img);
+            this.breedTV = itemView.findViewById(R.id.history_breed_tv);
+            this.othersTV = itemView.findViewById(R.id.history_others_tv);
+            this.timeTV = itemView.findViewById(R.id.history_time_tv);
+
+            // Passing the pressed entry to the listener:
+            final ConstraintLayout mainLayout = itemView.findViewById(R.id.history_main_layout);
+            mainLayout.setOnClickListener(view -> {
+                final int position = getAdapterPosition();
+                if (position != RecyclerView.NO_POSITION && onEntryClickListener != null)
+                    onEntryClickListener.accept(entries.get(position));
+            });
+            mainLayout.setOnLongClickListener(view -> {
+                final int position = getAdapterPosition();
+                if (position == RecyclerView.NO_POSITION || onEntryLongClickListener == null)
+                    return false;
+                onEntryLongClickListener.accept(entries.get(position));
+                return true;
+            });
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.dogclassificationapp.custom_views;
+
+import android.view.Choreographer;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.dogclassificationapp.util.DirtyRowSet;
+
+/**
+ * Coalesces the updates of the rows of an adapter that come from background threads. The rows that
+ * changed are collected in a lock-free set, and once per frame they are sent to the adapter as range
+ * notifications, instead of one main-thread message and one notification for every change.
+ */
+public class RowUpdateDispatcher implements Choreographer.FrameCallback {
+
+    // The adapter whose rows are updated:
+    private final RecyclerView.Adapter<?> adapter;
+
+    // The payload of every kind of change (the kind is its index):
+    private final Object[] payloads;
+
+    // The rows that changed since the last frame:
+    private final DirtyRowSet dirtyRows;
+
+    // The choreographer of the main thread:
+    private final Choreographer choreographer;
+
+    // Called on the main thread after rows were updated (null if not set):
+    private Runnable onFlushListener;
+
+    // Whether the dispatcher was released (no more updates are sent after it):
+    private volatile boolean released = false;
+
+    /**
+     * The constructor of the RowUpdateDispatcher class (must be called on the main thread).
+     * @param adapter The adapter whose rows are updated.
+     * @param numRows The amount of rows in the adapter.
+     * @param payloads The payloads of the kinds of changes, the kind of a change is the index of
+     *                 its payload (up to 32 kinds).
+     */
+    public RowUpdateDispatcher(RecyclerView.Adapter<?> adapter, int numRows, Object... payloads) {
+        this.adapter = adapter;
+        this.payloads = payloads;
+        this.dirtyRows = new DirtyRowSet(numRows);
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Marks a row as changed, it will be updated in the next frame (can be called from any thread).
+     * @param row The index of the row.
+     * @param kind The kind of the change (the index of its payload).
+     */
+    public void markDirty(int row, int kind) {
+        if (this.released)
+            return;
+
+        if (this.dirtyRows.mark(row, kind))
+            this.choreographer.postFrameCallback(this);
+    }
+
+    /**
+     * Sets a listener that is called on the main thread after rows were updated.
+     * @param listener The listener.
+     */
+    public void setOnFlushListener(Runnable listener) {
+        this.onFlushListener = listener;
+    }
+
+    /**
+     * Stops sending updates to the adapter (must be called on the main thread).
+     */
+    public void release() {
+        this.released = true;
+        this.choreographer.removeFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (this.released)
+            return;
+
+        this.dirtyRows.drain((start, count, kind) -> {
+            if (count == 1)
+                this.adapter.notifyItemChanged(start, this.payloads[kind]);
+            else
+                this.adapter.notifyItemRangeChanged(start, count, this.payloads[kind]);
+        });
+
+        if (this.onFlushListener != null)
+            this.onFlushListener.run();
+    }
+}
@@ -0,0 +1,260 @@
+package com.example.dogclassificationapp.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The statistics of every breed over the whole history: how many times it was the top breed, how
+ * many times it was among the top breeds, a histogram of its confidences as the top breed, and how
+ * many times it was the top breed on each of the recent days. The statistics are kept in primitive
+ * arrays indexed by label index and are updated with every classification, so reading them never
+ * scans the history.
+ */
+public class BreedStatistics {
+
+    // The amount of buckets of the confidence histograms (the buckets are of equal widths):
+    public static final int CONFIDENCE_BUCKETS = 10;
+
+    // The amount of recent days that the daily counts are kept for:
+    public static final int TREND_DAYS = 30;
+
+    // The magic number ("DCS1") and version of the statistics file:
+    private static final int MAGIC = 0x44435331;
+    private static final int VERSION = 1;
+
+    // The amount of labels that the statistics are kept for:
+    private final int numLabels;
+
+    // The amount of classifications that were counted:
+    private long totalClassifications;
+
+    // How many times every breed was the top breed, and among the top breeds:
+    private final int[] topCounts;
+    private final int[] appearances;
+
+    // The confidences of every breed as the top breed, in a row of CONFIDENCE_BUCKETS counters
+    // per breed:
+    private final int[] confidenceHistograms;
+
+    // The recent days as a ring: the day that every slot counts (days since the epoch, in local
+    // time), and how many times every breed was the top breed on it, in a row of counters per slot:
+    private final long[] trendDays = new long[TREND_DAYS];
+    private final int[] dailyTopCounts;
+
+    /**
+     * The constructor of the BreedStatistics class, with all the counters at zero.
+     * @param numLabels The amount of labels that the statistics are kept for.
+     */
+    public BreedStatistics(int numLabels) {
+        this.numLabels = numLabels;
+        this.topCounts = new int[numLabels];
+        this.appearances = new int[numLabels];
+        this.confidenceHistograms = new int[numLabels * CONFIDENCE_BUCKETS];
+        this.dailyTopCounts = new int[numLabels * TREND_DAYS];
+        Arrays.fill(this.trendDays, -1);
+    }
+
+    /**
+     * Counts a classification.
+     * @param timestamp The time of the classification, in milliseconds since the epoch.
+     * @param labelIndices The label indices of the top breeds, from the highest confidence.
+     * @param confidences The confidences of the top breeds.
+     */
+    public synchronized void record(long timestamp, int[] labelIndices, float[] confidences) {
+        this.totalClassifications++;
+        for (int labelIndex : labelIndices)
+            if (labelIndex >= 0 && labelIndex < this.numLabels)
+                this.appearances[labelIndex]++;
+
+        final int top = labelIndices.length > 0 ? labelIndices[0] : -1;
+        if (top < 0 || top >= this.numLabels)
+            return;
+        this.topCounts[top]++;
+        this.confidenceHistograms[top * CONFIDENCE_BUCKETS + getBucket(confidences[0])]++;
+
+        // Counting the day, unless its slot already holds a later day (an old classification that
+        // was imported):
+        final long day = getDay(timestamp);
+        final int slot = (int) Math.floorMod(day, (long) TREND_DAYS);
+        if (this.trendDays[slot] < day) {
+            this.trendDays[slot] = day;
+            Arrays.fill(this.dailyTopCounts, slot * this.numLabels, (slot + 1) * this.numLabels, 0);
+        }
+        if (this.trendDays[slot] == day)
+            this.dailyTopCounts[slot * this.numLabels + top]++;
+    }
+
+    /**
+     * Returns the amount of labels that the statistics are kept for.
+     * @return The amount of labels.
+     */
+    public int getNumLabels() {
+        return this.numLabels;
+    }
+
+    /**
+     * Returns the amount of classifications that were counted.
+     * @return The amount of classifications.
+     */
+    public synchronized long getTotalClassifications() {
+        return this.totalClassifications;
+    }
+
+    /**
+     * Returns how many times a breed was the top breed of a classification.
+     * @param labelIndex The label index of the breed.
+     * @return The amount of times.
+     */
+    public synchronized int getTopCount(int labelIndex) {
+        return this.topCounts[labelIndex];
+    }
+
+    /**
+     * Returns how many times a breed was among the top breeds of a classification.
+     * @param labelIndex The label index of the breed.
+     * @return The amount of times.
+     */
+    public synchronized int getAppearances(int labelIndex) {
+        return this.appearances[labelIndex];
+    }
+
+    /**
+     * Returns the histogram of a breed's confidences as the top breed.
+     * @param labelIndex The label index of the breed.
+     * @return The counters of the buckets, from the lowest confidences.
+     */
+    public synchronized int[] getConfidenceHistogram(int labelIndex) {
+        final int start = labelIndex * CONFIDENCE_BUCKETS;
+        return Arrays.copyOfRange(this.confidenceHistograms, start, start + CONFIDENCE_BUCKETS);
+    }
+
+    /**
+     * Returns how many times a breed was the top breed on each of the recent days.
+     * @param labelIndex The label index of the breed.
+     * @param now The current time, in milliseconds since the epoch.
+     * @return The counts of the last TREND_DAYS days, from the oldest to today.
+     */
+    public synchronized int[] getDailyTopCounts(int labelIndex, long now) {
+        final int[] counts = new int[TREND_DAYS];
+        final long today = getDay(now);
+        for (int i = 0; i < TREND_DAYS; i++) {
+            final long day = today - (TREND_DAYS - 1 - i);
+            final int slot = (int) Math.floorMod(day, (long) TREND_DAYS);
+            if (this.trendDays[slot] == day)
+                counts[i] = this.dailyTopCounts[slot * this.numLabels + labelIndex];
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the breeds that were the top breed the most times.
+     * @param limit The maximum amount of breeds.
+     * @return The label indices of the breeds (only breeds that were the top breed at least once),
+     *         from the most common.
+     */
+    public synchronized ArrayList<Integer> getMostSeen(int limit) {
+        final ArrayList<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < this.numLabels; i++)
+            if (this.topCounts[i] > 0)
+                indices.add(i);
+        indices.sort((i1, i2) -> Integer.compare(this.topCounts[i2], this.topCounts[i1]));
+        return new ArrayList<>(indices.subList(0, Math.min(limit, indices.size())));
+    }
+
+    /**
+     * Writes the statistics to a temporary file and then replaces the given file with it, so the
+     * file is never left half-written.
+     * @param file The file of the statistics.
+     * @throws IOException If writing the file failed.
+     */
+    public synchronized void save(File file) throws IOException {
+        final File tempFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOutput = new FileOutputStream(tempFile);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(this.numLabels);
+            output.writeInt(CONFIDENCE_BUCKETS);
+            output.writeInt(TREND_DAYS);
+            output.writeLong(this.totalClassifications);
+            writeInts(output, this.topCounts);
+            writeInts(output, this.appearances);
+            writeInts(output, this.confidenceHistograms);
+            for (long day : this.trendDays)
+                output.writeLong(day);
+            writeInts(output, this.dailyTopCounts);
+
+            // Making sure the data is on the disk before it replaces the file:
+            output.flush();
+            fileOutput.getFD().sync();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Replacing " + file + " failed");
+        }
+    }
+
+    /**
+     * Reads statistics that were saved.
+     * @param file The file of the statistics.
+     * @param numLabels The amount of labels that the statistics should be kept for.
+     * @return The statistics, or null if the file doesn't exist, is invalid, or has statistics of
+     *         another amount of labels.
+     */
+    public static BreedStatistics load(File file, int numLabels) {
+        if (!file.exists())
+            return null;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION || input.readInt() != numLabels
+                    || input.readInt() != CONFIDENCE_BUCKETS || input.readInt() != TREND_DAYS)
+                return null;
+
+            final BreedStatistics statistics = new BreedStatistics(numLabels);
+            statistics.totalClassifications = input.readLong();
+            readInts(input, statistics.topCounts);
+            readInts(input, statistics.appearances);
+            readInts(input, statistics.confidenceHistograms);
+            for (int i = 0; i < TREND_DAYS; i++)
+                statistics.trendDays[i] = input.readLong();
+            readInts(input, statistics.dailyTopCounts);
+            return statistics;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the local day of a time.
+     * @param timestamp The time, in milliseconds since the epoch.
+     * @return The days since the epoch, in the local time zone.
+     */
+    static long getDay(long timestamp) {
+        return Math.floorDiv(timestamp + TimeZone.getDefault().getOffset(timestamp), TimeUnit.DAYS.toMillis(1));
+    }
+
+    private static int getBucket(float confidence) {
+        return Math.max(0, Math.min(CONFIDENCE_BUCKETS - 1, (int) (confidence * CONFIDENCE_BUCKETS)));
+    }
+
+    private static void writeInts(DataOutputStream output, int[] values) throws IOException {
+        for (int value : values)
+            output.writeInt(value);
+    }
+
+    private static void readInts(DataInputStream input, int[] values) throws IOException {
+        for (int i = 0; i < values.length; i++)
+            values[i] = input.readInt();
+    }
+}
@@ -0,0 +1,389 @@
+package com.example.dogclassificationapp.database;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.example.dogclassificationapp.classifier_logic.Breed;
+import com.example.dogclassificationapp.classifier_logic.DogClassifier;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A utility class that keeps the history of the classifications. New classifications are written
+ * on a background thread in batches (a batch is written once it is full or a short time after its
+ * first entry), and the history is read in pages.
+ */
+public class ClassificationHistory {
+
+    // The amount of top breeds that are kept for every classification:
+    public static final int TOP_BREEDS = 5;
+
+    // The maximum width and height of a thumbnail, and its JPEG quality:
+    private static final int THUMBNAIL_SIZE = 96;
+    private static final int JPEG_QUALITY = 80;
+
+    // A batch is written once it has this many entries, or this long after its first entry:
+    private static final int MAX_BATCH_SIZE = 32;
+    private static final long BATCH_DELAY_MILLIS = 2_000;
+
+    // The thread that creates the thumbnails and writes the batches:
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "ClassificationHistory-writer"));
+
+    // The entries that weren't written yet, and their embeddings (only used on the writer thread).
+    // An entry is only added to the embeddings and the statistics once it was written:
+    private static final ArrayList<HistoryEntry> PENDING = new ArrayList<>();
+    private static final IdentityHashMap<HistoryEntry, float[]> PENDING_EMBEDDINGS = new IdentityHashMap<>();
+
+    // The amount of entries that are written in every transaction of an import:
+    private static final int IMPORT_BATCH_SIZE = 500;
+
+    // The names of the files that the embeddings and the statistics of the classifications are
+    // kept in:
+    private static final String EMBEDDINGS_FILE = "history_embeddings.bin";
+    private static final String STATISTICS_FILE = "breed_statistics.bin";
+
+    // The database of the history (null until the history was initialized):
+    private static volatile HistoryDatabase database;
+
+    // The embeddings of the classifications, by their times (null until the history was
+    // initialized, or if the file couldn't be opened):
+    private static volatile EmbeddingStore embeddings;
+
+    // The statistics of the breeds, and their file (null until the history was initialized). The
+    // statistics are updated on the writer thread, and saved with every batch:
+    private static volatile BreedStatistics statistics;
+    private static File statisticsFile;
+
+    /**
+     * Connects the history to its database and its embeddings. Calling it more than once has no
+     * effect.
+     * @param context Any context of the app.
+     */
+    public static synchronized void init(Context context) {
+        if (database != null)
+            return;
+        database = new HistoryDatabase(context);
+
+        // The embeddings and the statistics have a dimension for every label of the model:
+        final int dimension = DogClassifier.loadLabels(context.getAssets(), DogClassifier.LABELS_FILE).map(List::size).orElse(0);
+        if (dimension > 0) {
+            try {
+                embeddings = EmbeddingStore.open(new File(context.getFilesDir(), EMBEDDINGS_FILE), dimension);
+            } catch (IOException e) {
+                Log.e("Classification history", "Opening the embeddings failed: " + e);
+            }
+
+            // Counting the whole history once if the statistics weren't saved yet (or were of
+            // other labels):
+            statisticsFile = new File(context.getFilesDir(), STATISTICS_FILE);
+            final BreedStatistics loaded = BreedStatistics.load(statisticsFile, dimension);
+            statistics = loaded != null ? loaded : new BreedStatistics(dimension);
+            if (loaded == null)
+                WRITER.execute(ClassificationHistory::rebuildStatistics);
+        }
+    }
+
+    /**
+     * Returns the statistics of the breeds over the whole history. Reading them takes the same time
+     * no matter how long the history is, so they can be read on the main thread.
+     * @return The statistics, null if the history wasn't initialized.
+     */
+    public static BreedStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Adds a classification to the history. The thumbnail is created and the entry is written on a
+     * background thread, so it can be called from the main thread.
+     * @param timestamp The time of the classification, in milliseconds since the epoch.
+     * @param image The image that was classified.
+     * @param sortedBreeds The breeds of the classification, from the highest confidence to the
+     *                     lowest.
+     */
+    public static void record(long timestamp, Bitmap image, List<Breed> sortedBreeds) {
+        final float[] embedding = DogClassifier.getEmbedding(sortedBreeds);
+        final int count = Math.min(TOP_BREEDS, sortedBreeds.size());
+        final int[] labelIndices = new int[count];
+        final float[] confidences = new float[count];
+        for (int i = 0; i < count; i++) {
+            labelIndices[i] = sortedBreeds.get(i).getLabelIndex();
+            confidences[i] = (float) sortedBreeds.get(i).getConfidence();
+        }
+
+        WRITER.execute(() -> {
+            final HistoryEntry entry = new HistoryEntry(0, timestamp, createThumbnail(image), labelIndices, confidences);
+            PENDING.add(entry);
+            PENDING_EMBEDDINGS.put(entry, embedding);
+            if (PENDING.size() >= MAX_BATCH_SIZE)
+                writePending();
+            else if (PENDING.size() == 1)
+                WRITER.schedule(ClassificationHistory::writePending, BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    /**
+     * Reads a page of the history, from the newest classification to the oldest. The entries that
+     * are still waiting to be written are written first, so they are part of the pages. Blocks, so
+     * it must not be called on the main thread.
+     * @param after The last entry of the previous page, null for the first page.
+     * @param labelIndex If not negative, only the classifications that had this breed among their top
+     *                   breeds are read.
+     * @param limit The maximum amount of entries in the page.
+     * @return The entries of the page, an empty list if the history wasn't initialized or reading it
+     *         failed.
+     */
+    public static List<HistoryEntry> getPage(HistoryEntry after, int labelIndex, int limit) {
+        final HistoryDatabase db = database;
+        if (db == null)
+            return new ArrayList<>();
+
+        try {
+            WRITER.submit(ClassificationHistory::writePending).get();
+            return db.queryPage(after, labelIndex, limit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<>();
+        } catch (ExecutionException | RuntimeException e) {
+            Log.e("Classification history", "Reading the history failed: " + e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Finds the past classifications of the dogs that look the most like the dog of the given entry
+     * (the entry itself isn't included). Blocks, so it must not be called on the main thread.
+     * @param entry The entry of the dog.
+     * @param k The maximum amount of entries that are returned.
+     * @return The entries, from the most similar dog. Empty if the entry has no embedding.
+     */
+    public static List<HistoryEntry> findSimilar(HistoryEntry entry, int k) {
+        final HistoryDatabase db = database;
+        final EmbeddingStore store = embeddings;
+        if (db == null || store == null)
+            return new ArrayList<>();
+
+        final float[] query = store.get(entry.getTimestamp());
+        if (query == null)
+            return new ArrayList<>();
+
+        try {
+            final ArrayList<Long> timestamps = new ArrayList<>();
+            for (EmbeddingStore.Neighbor neighbor : store.search(query, k + 1))
+                if (neighbor.getKey() != entry.getTimestamp() && timestamps.size() < k)
+                    timestamps.add(neighbor.getKey());
+
+            WRITER.submit(ClassificationHistory::writePending).get();
+            return db.queryByTimestamps(timestamps);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ArrayList<>();
+        } catch (ExecutionException | RuntimeException e) {
+            Log.e("Classification history", "Finding similar dogs failed: " + e);
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Exports the whole history into a compact file (see HistoryArchive), that can be imported on
+     * another device. Blocks, so it must not be called on the main thread.
+     * @param file The file that the history is exported into.
+     * @return The amount of entries that were exported.
+     * @throws IOException If the history wasn't initialized, or writing the file failed.
+     */
+    public static int exportTo(File file) throws IOException {
+        final HistoryDatabase db = database;
+        if (db == null)
+            throw new IOException("The history wasn't initialized");
+
+        flushPending();
+        return HistoryArchive.write(file, (after, limit) -> db.queryPage(after, -1, limit));
+    }
+
+    /**
+     * Imports an exported history, adding its entries to the history in batches (every batch in a
+     * single transaction). The embeddings of the entries are made of their top breeds. Entries that
+     * are already in the history (for example, when the same file is imported twice) are skipped,
+     * and aren't counted in the statistics again. Blocks, so it must not be called on the main
+     * thread.
+     * @param file The exported file.
+     * @return The amount of entries that were added to the history.
+     * @throws IOException If the history wasn't initialized, or the file isn't a valid exported
+     *                     history.
+     */
+    public static int importFrom(File file) throws IOException {
+        final HistoryDatabase db = database;
+        if (db == null)
+            throw new IOException("The history wasn't initialized");
+
+        flushPending();
+        final int count = importFrom(file, db::insertAll, embeddings, statistics);
+        WRITER.execute(ClassificationHistory::saveStatistics);
+        return count;
+    }
+
+    /**
+     * Imports an exported history (see "importFrom") through the given writer of the batches.
+     * @param file The exported file.
+     * @param insert Writes a batch, and returns the entries that were written (the ones that were
+     *               already in the history are skipped).
+     * @param store The embeddings that the written entries are added to, null if there are none.
+     * @param stats The statistics that the written entries are counted in, null if there are none.
+     * @return The amount of entries that were written.
+     * @throws IOException If the file isn't a valid exported history.
+     */
+    static int importFrom(File file, Function<List<HistoryEntry>, List<HistoryEntry>> insert,
+                          EmbeddingStore store, BreedStatistics stats) throws IOException {
+        final AtomicInteger count = new AtomicInteger();
+        HistoryArchive.read(file, IMPORT_BATCH_SIZE, batch -> {
+            final List<HistoryEntry> inserted = insert.apply(batch);
+            count.addAndGet(inserted.size());
+            for (HistoryEntry entry : inserted) {
+                if (store != null)
+                    addEmbedding(store, entry.getTimestamp(), getTopBreedsEmbedding(entry, store.getDimension()));
+                if (stats != null)
+                    stats.record(entry.getTimestamp(), entry.getLabelIndices(), entry.getConfidences());
+            }
+        });
+        return count.get();
+    }
+
+    /**
+     * Writes the pending entries now, waiting for them to be written.
+     * @throws IOException If the wait was interrupted or writing them failed.
+     */
+    private static void flushPending() throws IOException {
+        try {
+            WRITER.submit(ClassificationHistory::writePending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the pending entries");
+        } catch (ExecutionException e) {
+            throw new IOException("Writing the pending entries failed", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the embedding of an entry that only its top breeds are known of (the other breeds'
+     * confidences are taken as 0, like in DogClassifier.getEmbedding).
+     * @param entry The entry.
+     * @param dimension The dimension of the embedding.
+     * @return The embedding.
+     */
+    private static float[] getTopBreedsEmbedding(HistoryEntry entry, int dimension) {
+        final float[] embedding = new float[dimension];
+        for (int rank = 0; rank < entry.getTopBreedCount(); rank++)
+            if (entry.getLabelIndex(rank) < dimension)
+                embedding[entry.getLabelIndex(rank)] = (float) Math.sqrt(Math.max(0, entry.getConfidence(rank)));
+        return embedding;
+    }
+
+    /**
+     * Adds the embedding of a classification (runs on the writer thread, or on the thread of an import).
+     * @param store The embeddings of the history.
+     * @param timestamp The time of the classification.
+     * @param embedding The embedding of the classification.
+     */
+    private static void addEmbedding(EmbeddingStore store, long timestamp, float[] embedding) {
+        try {
+            store.add(timestamp, embedding);
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e("Classification history", "Adding the embedding failed: " + e);
+        }
+    }
+
+    /**
+     * Writes the pending entries in a single batch, and adds the entries that were written to the
+     * embeddings and the statistics (runs on the writer thread).
+     */
+    private static void writePending() {
+        final HistoryDatabase db = database;
+        if (PENDING.isEmpty() || db == null)
+            return;
+
+        try {
+            final EmbeddingStore store = embeddings;
+            final BreedStatistics stats = statistics;
+            for (HistoryEntry entry : db.insertAll(PENDING)) {
+                if (store != null)
+                    addEmbedding(store, entry.getTimestamp(), PENDING_EMBEDDINGS.get(entry));
+                if (stats != null)
+                    stats.record(entry.getTimestamp(), entry.getLabelIndices(), entry.getConfidences());
+            }
+        } catch (RuntimeException e) {
+            Log.e("Classification history", "Writing " + PENDING.size() + " entries failed: " + e);
+        }
+        PENDING.clear();
+        PENDING_EMBEDDINGS.clear();
+        saveStatistics();
+    }
+
+    /**
+     * Counts every entry of the history into new statistics (runs on the writer thread).
+     */
+    private static void rebuildStatistics() {
+        final HistoryDatabase db = database;
+        final BreedStatistics stats = statistics;
+        if (db == null || stats == null)
+            return;
+
+        try {
+            HistoryEntry after = null;
+            List<HistoryEntry> page;
+            do {
+                page = db.queryPage(after, -1, IMPORT_BATCH_SIZE);
+                for (HistoryEntry entry : page)
+                    stats.record(entry.getTimestamp(), entry.getLabelIndices(), entry.getConfidences());
+                if (!page.isEmpty())
+                    after = page.get(page.size() - 1);
+            } while (page.size() == IMPORT_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            Log.e("Classification history", "Counting the history failed: " + e);
+        }
+        saveStatistics();
+    }
+
+    /**
+     * Saves the statistics of the breeds (runs on the writer thread).
+     */
+    private static void saveStatistics() {
+        final BreedStatistics stats = statistics;
+        if (stats == null || statisticsFile == null)
+            return;
+
+        try {
+            stats.save(statisticsFile);
+        } catch (IOException e) {
+            Log.e("Classification history", "Saving the statistics failed: " + e);
+        }
+    }
+
+    private static byte[] createThumbnail(Bitmap image) {
+        if (image == null)
+            return null;
+
+        final float scale = Math.min(1f, (float) THUMBNAIL_SIZE / Math.max(image.getWidth(), image.getHeight()));
+        final Bitmap thumbnail = scale < 1f
+                ? Bitmap.createScaledBitmap(image, Math.max(1, Math.round(image.getWidth() * scale)), Math.max(1, Math.round(image.getHeight() * scale)), true)
+                : image;
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, bytes);
+        if (thumbnail != image)
+            thumbnail.recycle();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,488 @@
+package com.example.dogclassificationapp.database;
+
+import com.example.dogclassificationapp.util.Float16;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A file of embedding vectors (one for every past classification), kept as half-precision floats in
+ * a memory-mapped file, so the vectors live off the Java heap and are only paged in while they are
+ * scanned. The vectors are normalized when they are added, so the similarity of two vectors is
+ * their dot product.
+ * The nearest neighbours of a query are found by scanning the vectors in parallel chunks. Once the
+ * store is large, the vectors are also grouped into coarse clusters (spherical k-means), and a query
+ * only scans the clusters whose centroids are the closest to it.
+ */
+public class EmbeddingStore implements Closeable {
+
+    // The header of the file: the magic number, the version, the dimension and the amount of vectors:
+    private static final int MAGIC = 0x454d4231;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int COUNT_OFFSET = 16;
+
+    // The amount of vectors that a single task scans:
+    private static final int CHUNK_RECORDS = 2048;
+
+    // The clusters are only built once the store has this many vectors, and are built again once
+    // the amount of vectors doubled:
+    private static final int CLUSTERING_MIN_RECORDS = 4096;
+
+    // The amount of k-means iterations when the clusters are built:
+    private static final int CLUSTERING_ITERATIONS = 8;
+
+    // The threads that scan the chunks, shared by all the stores:
+    private static final ExecutorService SCANNERS = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors()),
+            runnable -> {
+                final Thread thread = new Thread(runnable, "EmbeddingStore-scanner");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Every half-precision value as a float, so the scans don't convert them bit by bit:
+    private static final float[] HALF_TO_FLOAT = new float[1 << 16];
+    static {
+        for (int i = 0; i < HALF_TO_FLOAT.length; i++)
+            HALF_TO_FLOAT[i] = Float16.toFloat((short) i);
+    }
+
+    /**
+     * A vector of the store that was found by a search.
+     */
+    public static class Neighbor {
+        private final long key;
+        private final float similarity;
+
+        Neighbor(long key, float similarity) {
+            this.key = key;
+            this.similarity = similarity;
+        }
+
+        public long getKey() {
+            return key;
+        }
+
+        public float getSimilarity() {
+            return similarity;
+        }
+    }
+
+    // The file of the store and its mapping (the mapping is replaced whenever the file grows):
+    private final RandomAccessFile file;
+    private MappedByteBuffer buffer;
+
+    // The dimension of the vectors and the bytes of a record (the key and the vector):
+    private final int dimension;
+    private final int recordBytes;
+
+    // The amount of vectors in the store:
+    private int count;
+
+    // The index of every vector, by its key:
+    private final HashMap<Long, Integer> indicesByKey = new HashMap<>();
+
+    // The coarse clusters (null until they are built): their centroids, the indices of the vectors
+    // of every cluster, and the amount of vectors that were clustered (the vectors after them are
+    // always scanned):
+    private float[][] centroids;
+    private int[][] clusterMembers;
+    private int clusteredCount;
+
+    // Searches read the vectors together, while adding a vector (which may remap the file) is done
+    // alone:
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private EmbeddingStore(RandomAccessFile file, int dimension) {
+        this.file = file;
+        this.dimension = dimension;
+        this.recordBytes = Long.BYTES + dimension * Short.BYTES;
+    }
+
+    /**
+     * Opens the store in the given file, creating it if it doesn't exist. If the file holds vectors
+     * of another dimension (or isn't a valid store), it is emptied.
+     * @param storeFile The file of the store.
+     * @param dimension The dimension of the vectors.
+     * @return The store.
+     * @throws IOException If the file couldn't be opened or mapped.
+     */
+    public static EmbeddingStore open(File storeFile, int dimension) throws IOException {
+        final EmbeddingStore store = new EmbeddingStore(new RandomAccessFile(storeFile, "rw"), dimension);
+        try {
+            store.load();
+        } catch (IOException | RuntimeException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void load() throws IOException {
+        final long length = this.file.length();
+        boolean valid = length >= HEADER_BYTES;
+        if (valid) {
+            map(length);
+            valid = this.buffer.getInt(0) == MAGIC && this.buffer.getInt(4) == VERSION && this.buffer.getInt(8) == this.dimension;
+        }
+
+        if (!valid) {
+            this.file.setLength(0);
+            map(HEADER_BYTES + (long) CHUNK_RECORDS * this.recordBytes);
+            this.buffer.putInt(0, MAGIC);
+            this.buffer.putInt(4, VERSION);
+            this.buffer.putInt(8, this.dimension);
+            this.buffer.putLong(COUNT_OFFSET, 0);
+        }
+
+        // Only counting the records that fit the file (a write that was cut off is dropped):
+        final long storedCount = this.buffer.getLong(COUNT_OFFSET);
+        this.count = (int) Math.max(0, Math.min(storedCount, (this.buffer.capacity() - HEADER_BYTES) / this.recordBytes));
+        for (int i = 0; i < this.count; i++)
+            this.indicesByKey.put(this.buffer.getLong((int) recordOffset(i)), i);
+    }
+
+    private void map(long bytes) throws IOException {
+        this.buffer = this.file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private long recordOffset(int index) {
+        return HEADER_BYTES + (long) index * this.recordBytes;
+    }
+
+    /**
+     * Adds a vector to the store (normalized). If the store already has a vector with the same key,
+     * nothing is added.
+     * @param key The key of the vector (for example, the time of its classification).
+     * @param embedding The vector, of the store's dimension.
+     * @throws IOException If the file couldn't grow.
+     */
+    public void add(long key, float[] embedding) throws IOException {
+        if (embedding.length != this.dimension)
+            throw new IllegalArgumentException("Expected " + this.dimension + " dimensions, got " + embedding.length);
+        final float[] normalized = normalize(embedding);
+
+        this.lock.writeLock().lock();
+        try {
+            if (this.indicesByKey.containsKey(key))
+                return;
+
+            // Growing the file by doubling it, so adding stays cheap:
+            final long end = recordOffset(this.count + 1);
+            if (end > this.buffer.capacity())
+                map(Math.max(end, HEADER_BYTES + 2L * (this.buffer.capacity() - HEADER_BYTES)));
+
+            final int offset = (int) recordOffset(this.count);
+            this.buffer.putLong(offset, key);
+            for (int d = 0; d < this.dimension; d++)
+                this.buffer.putShort(offset + Long.BYTES + d * Short.BYTES, Float16.fromFloat(normalized[d]));
+
+            // Counting the record only after it was written:
+            this.indicesByKey.put(key, this.count);
+            this.count++;
+            this.buffer.putLong(COUNT_OFFSET, this.count);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the vector with the given key.
+     * @param key The key of the vector.
+     * @return The (normalized) vector, or null if the store has no vector with the key.
+     */
+    public float[] get(long key) {
+        this.lock.readLock().lock();
+        try {
+            final Integer index = this.indicesByKey.get(key);
+            return index == null ? null : readVector(index);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.count;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the dimension of the vectors of the store.
+     * @return The dimension.
+     */
+    public int getDimension() {
+        return this.dimension;
+    }
+
+    /**
+     * Finds the vectors that are the most similar to the query. Once the store is large enough, the
+     * clusters are built (or built again, if the store doubled since), and only the clusters that
+     * are the closest to the query are scanned.
+     * @param query The query vector, of the store's dimension.
+     * @param k The maximum amount of vectors that are returned.
+     * @return The most similar vectors, from the most similar one.
+     */
+    public List<Neighbor> search(float[] query, int k) {
+        if (size() >= CLUSTERING_MIN_RECORDS) {
+            this.lock.writeLock().lock();
+            try {
+                if (this.centroids == null || this.count >= 2 * this.clusteredCount)
+                    buildClusters((int) Math.round(Math.sqrt(this.count)));
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+        }
+
+        this.lock.readLock().lock();
+        try {
+            final int probes = this.centroids == null ? 0 : Math.max(4, this.centroids.length / 8);
+            return searchLocked(normalize(query), k, probes);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the vectors that are the most similar to the query by scanning all of them.
+     * @param query The query vector, of the store's dimension.
+     * @param k The maximum amount of vectors that are returned.
+     * @return The most similar vectors, from the most similar one.
+     */
+    public List<Neighbor> searchExact(float[] query, int k) {
+        this.lock.readLock().lock();
+        try {
+            return searchLocked(normalize(query), k, 0);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches while the read lock is held.
+     * @param query The normalized query.
+     * @param k The maximum amount of vectors that are returned.
+     * @param probes The amount of closest clusters that are scanned, 0 to scan all the vectors.
+     * @return The most similar vectors, from the most similar one.
+     */
+    private List<Neighbor> searchLocked(float[] query, int k, int probes) {
+        if (query.length != this.dimension)
+            throw new IllegalArgumentException("Expected " + this.dimension + " dimensions, got " + query.length);
+        if (k <= 0 || this.count == 0)
+            return new ArrayList<>();
+
+        // Splitting the vectors that should be scanned into chunks:
+        final ArrayList<Chunk> chunks = new ArrayList<>();
+        if (probes <= 0 || this.centroids == null) {
+            addRangeChunks(chunks, 0, this.count);
+        } else {
+            for (int cluster : closestCentroids(query, Math.min(probes, this.centroids.length))) {
+                final int[] members = this.clusterMembers[cluster];
+                for (int start = 0; start < members.length; start += CHUNK_RECORDS) {
+                    chunks.add(new Chunk(members, start, Math.min(start + CHUNK_RECORDS, members.length)));
+                }
+            }
+            addRangeChunks(chunks, this.clusteredCount, this.count);
+        }
+
+        // Scanning the chunks in parallel, every chunk keeps its own top vectors:
+        final ArrayList<Future<PriorityQueue<Neighbor>>> results = new ArrayList<>();
+        for (Chunk chunk : chunks)
+            results.add(SCANNERS.submit(() -> scanChunk(chunk, query, k)));
+
+        final PriorityQueue<Neighbor> top = new PriorityQueue<>(k + 1, (a, b) -> Float.compare(a.similarity, b.similarity));
+        try {
+            for (Future<PriorityQueue<Neighbor>> result : results)
+                for (Neighbor neighbor : result.get())
+                    offer(top, neighbor, k);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<PriorityQueue<Neighbor>> result : results)
+                result.cancel(true);
+            return new ArrayList<>();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Scanning the embeddings failed", e.getCause());
+        }
+
+        final ArrayList<Neighbor> neighbors = new ArrayList<>(top);
+        neighbors.sort((a, b) -> Float.compare(b.similarity, a.similarity));
+        return neighbors;
+    }
+
+    private static void addRangeChunks(List<Chunk> chunks, int from, int to) {
+        for (int start = from; start < to; start += CHUNK_RECORDS)
+            chunks.add(new Chunk(null, start, Math.min(start + CHUNK_RECORDS, to)));
+    }
+
+    private PriorityQueue<Neighbor> scanChunk(Chunk chunk, float[] query, int k) {
+        final PriorityQueue<Neighbor> top = new PriorityQueue<>(k + 1, (a, b) -> Float.compare(a.similarity, b.similarity));
+        for (int i = chunk.start; i < chunk.end; i++)
+            offerRecord(top, chunk.indices == null ? i : chunk.indices[i], query, k);
+        return top;
+    }
+
+    /**
+     * A part of the vectors that a single task scans: either a range of the vectors, or a range of
+     * the indices of a cluster's vectors.
+     */
+    private static class Chunk {
+        // The indices of the vectors of a cluster, null if the range is of the vectors themselves:
+        private final int[] indices;
+        private final int start;
+        private final int end;
+
+        Chunk(int[] indices, int start, int end) {
+            this.indices = indices;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    private void offerRecord(PriorityQueue<Neighbor> top, int index, float[] query, int k) {
+        final int offset = (int) recordOffset(index);
+        final int vectorOffset = offset + Long.BYTES;
+        float similarity = 0;
+        for (int d = 0; d < this.dimension; d++)
+            similarity += query[d] * HALF_TO_FLOAT[this.buffer.getShort(vectorOffset + d * Short.BYTES) & 0xffff];
+
+        if (top.size() < k || similarity > top.peek().similarity)
+            offer(top, new Neighbor(this.buffer.getLong(offset), similarity), k);
+    }
+
+    private static void offer(PriorityQueue<Neighbor> top, Neighbor neighbor, int k) {
+        top.add(neighbor);
+        if (top.size() > k)
+            top.poll();
+    }
+
+    /**
+     * Groups the vectors of the store into clusters with spherical k-means (must be called with the
+     * write lock held).
+     * @param numClusters The amount of clusters.
+     */
+    void buildClusters(int numClusters) {
+        numClusters = Math.max(1, Math.min(numClusters, this.count));
+        final float[][] newCentroids = new float[numClusters][];
+
+        // Starting from evenly spaced vectors, so the clusters are the same every time:
+        for (int c = 0; c < numClusters; c++)
+            newCentroids[c] = readVector((int) ((long) c * this.count / numClusters));
+
+        final int[] assignments = new int[this.count];
+        for (int iteration = 0; iteration < CLUSTERING_ITERATIONS; iteration++) {
+            final float[][] sums = new float[numClusters][this.dimension];
+            for (int i = 0; i < this.count; i++) {
+                final float[] vector = readVector(i);
+                assignments[i] = closestCentroids(newCentroids, vector, 1)[0];
+                final float[] sum = sums[assignments[i]];
+                for (int d = 0; d < this.dimension; d++)
+                    sum[d] += vector[d];
+            }
+            for (int c = 0; c < numClusters; c++)
+                if (norm(sums[c]) > 0)
+                    newCentroids[c] = normalize(sums[c]);
+        }
+
+        // Listing the vectors of every cluster:
+        final int[] sizes = new int[numClusters];
+        for (int assignment : assignments)
+            sizes[assignment]++;
+        final int[][] members = new int[numClusters][];
+        for (int c = 0; c < numClusters; c++)
+            members[c] = new int[sizes[c]];
+        final int[] filled = new int[numClusters];
+        for (int i = 0; i < this.count; i++)
+            members[assignments[i]][filled[assignments[i]]++] = i;
+
+        this.centroids = newCentroids;
+        this.clusterMembers = members;
+        this.clusteredCount = this.count;
+    }
+
+    private int[] closestCentroids(float[] query, int n) {
+        return closestCentroids(this.centroids, query, n);
+    }
+
+    private static int[] closestCentroids(float[][] centroids, float[] query, int n) {
+        final ArrayList<Integer> order = new ArrayList<>();
+        final float[] similarities = new float[centroids.length];
+        for (int c = 0; c < centroids.length; c++) {
+            similarities[c] = dot(centroids[c], query);
+            order.add(c);
+        }
+
+        if (n == 1) {
+            int best = 0;
+            for (int c = 1; c < centroids.length; c++)
+                if (similarities[c] > similarities[best])
+                    best = c;
+            return new int[]{best};
+        }
+
+        Collections.sort(order, (a, b) -> Float.compare(similarities[b], similarities[a]));
+        final int[] closest = new int[n];
+        for (int i = 0; i < n; i++)
+            closest[i] = order.get(i);
+        return closest;
+    }
+
+    private float[] readVector(int index) {
+        final int vectorOffset = (int) recordOffset(index) + Long.BYTES;
+        final float[] vector = new float[this.dimension];
+        for (int d = 0; d < this.dimension; d++)
+            vector[d] = HALF_TO_FLOAT[this.buffer.getShort(vectorOffset + d * Short.BYTES) & 0xffff];
+        return vector;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++)
+            sum += a[i] * b[i];
+        return sum;
+    }
+
+    private static float norm(float[] vector) {
+        return (float) Math.sqrt(dot(vector, vector));
+    }
+
+    private static float[] normalize(float[] vector) {
+        final float norm = norm(vector);
+        final float[] normalized = new float[vector.length];
+        if (norm > 0)
+            for (int i = 0; i < vector.length; i++)
+                normalized[i] = vector[i] / norm;
+        return normalized;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            if (this.buffer != null)
+                this.buffer.force();
+            this.file.close();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+}
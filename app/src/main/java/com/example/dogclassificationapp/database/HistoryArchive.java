@@ -0,0 +1,279 @@
+package com.example.dogclassificationapp.database;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A utility class that exports the classification history into a compact columnar file, and
+ * imports it back. The file has a header with the offsets of its sections, followed by:
+ * <ul>
+ *     <li>The thumbnails, one after the other.</li>
+ *     <li>The times of the entries, as variable-length deltas from the previous entry's time.</li>
+ *     <li>The amount of top breeds of every entry, a byte each.</li>
+ *     <li>The label indices of the top breeds, a byte each.</li>
+ *     <li>The confidences of the top breeds, quantized into unsigned shorts.</li>
+ *     <li>The lengths of the thumbnails, as variable-length numbers (0 for no thumbnail).</li>
+ * </ul>
+ * The thumbnails are written while the history is read, so only the small columns are kept in
+ * memory, and an import maps the file and reads every column sequentially.
+ */
+public class HistoryArchive {
+
+    // The magic number ("DCH1") and version of the file format:
+    private static final int MAGIC = 0x44434831;
+    private static final int VERSION = 1;
+
+    // The sections of the file, in their order (the header keeps their offsets and the end of the
+    // last one):
+    private static final int THUMBNAILS = 0;
+    private static final int TIMESTAMPS = 1;
+    private static final int BREED_COUNTS = 2;
+    private static final int LABELS = 3;
+    private static final int CONFIDENCES = 4;
+    private static final int THUMBNAIL_LENGTHS = 5;
+    private static final int NUM_SECTIONS = 6;
+
+    // The header: the magic number, the version, the amount of entries, the amount of top breeds of
+    // all the entries, and the offsets of the sections:
+    private static final int SECTIONS_OFFSET = 16;
+    private static final int HEADER_BYTES = SECTIONS_OFFSET + (NUM_SECTIONS + 1) * Long.BYTES;
+
+    // A confidence is quantized into this many steps:
+    private static final int CONFIDENCE_STEPS = 0xffff;
+
+    // The amount of entries that are read from the history at a time while exporting:
+    private static final int EXPORT_PAGE_SIZE = 500;
+
+    /**
+     * Reads the history a page at a time, from the newest entry to the oldest.
+     */
+    public interface PageReader {
+        /**
+         * Reads a page of the history.
+         * @param after The last entry of the previous page, null for the first page.
+         * @param limit The maximum amount of entries in the page.
+         * @return The entries of the page (fewer than the limit if there are no more entries).
+         */
+        List<HistoryEntry> readPage(HistoryEntry after, int limit);
+    }
+
+    /**
+     * Exports the history into a file (replacing it, if it exists).
+     * @param file The file that the history is exported into.
+     * @param pages Reads the pages of the history.
+     * @return The amount of entries that were exported.
+     * @throws IOException If writing the file failed.
+     * @throws IllegalArgumentException If an entry has more than 255 top breeds, or a label index
+     *                                  that doesn't fit a byte.
+     */
+    public static int write(File file, PageReader pages) throws IOException {
+        final ByteArrayOutputStream timestamps = new ByteArrayOutputStream();
+        final ByteArrayOutputStream breedCounts = new ByteArrayOutputStream();
+        final ByteArrayOutputStream labels = new ByteArrayOutputStream();
+        final ByteArrayOutputStream confidences = new ByteArrayOutputStream();
+        final ByteArrayOutputStream thumbnailLengths = new ByteArrayOutputStream();
+        int count = 0;
+        int totalBreeds = 0;
+
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(0);
+            final FileChannel channel = output.getChannel();
+            channel.position(HEADER_BYTES);
+
+            // Writing the thumbnails straight into the file, and the columns into memory:
+            final OutputStream thumbnails = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+            long previousTimestamp = 0;
+            HistoryEntry after = null;
+            List<HistoryEntry> page;
+            do {
+                page = pages.readPage(after, EXPORT_PAGE_SIZE);
+                for (HistoryEntry entry : page) {
+                    writeVarLong(timestamps, zigZag(entry.getTimestamp() - previousTimestamp));
+                    previousTimestamp = entry.getTimestamp();
+
+                    final int breeds = entry.getTopBreedCount();
+                    if (breeds > 0xff)
+                        throw new IllegalArgumentException("Too many top breeds: " + breeds);
+                    breedCounts.write(breeds);
+                    for (int rank = 0; rank < breeds; rank++) {
+                        final int labelIndex = entry.getLabelIndex(rank);
+                        if (labelIndex < 0 || labelIndex > 0xff)
+                            throw new IllegalArgumentException("The label index doesn't fit a byte: " + labelIndex);
+                        labels.write(labelIndex);
+                        final int quantized = quantize(entry.getConfidence(rank));
+                        confidences.write(quantized);
+                        confidences.write(quantized >>> 8);
+                    }
+                    totalBreeds += breeds;
+
+                    final byte[] thumbnail = entry.getThumbnail();
+                    writeVarLong(thumbnailLengths, thumbnail == null ? 0 : thumbnail.length + 1L);
+                    if (thumbnail != null)
+                        thumbnails.write(thumbnail);
+                    count++;
+                }
+                if (!page.isEmpty())
+                    after = page.get(page.size() - 1);
+            } while (page.size() == EXPORT_PAGE_SIZE);
+            thumbnails.flush();
+
+            // Appending the columns after the thumbnails:
+            final long[] offsets = new long[NUM_SECTIONS + 1];
+            offsets[THUMBNAILS] = HEADER_BYTES;
+            offsets[TIMESTAMPS] = channel.position();
+            final ByteArrayOutputStream[] columns = {timestamps, breedCounts, labels, confidences, thumbnailLengths};
+            for (int i = 0; i < columns.length; i++) {
+                writeFully(channel, ByteBuffer.wrap(columns[i].toByteArray()));
+                offsets[TIMESTAMPS + i + 1] = channel.position();
+            }
+
+            // Writing the header last, so a file that was cut off isn't a valid archive:
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(totalBreeds);
+            for (long offset : offsets)
+                header.putLong(offset);
+            header.flip();
+            channel.position(0);
+            writeFully(channel, header);
+        }
+        return count;
+    }
+
+    /**
+     * Imports an exported history by mapping its file, and passes its entries on in batches (in the
+     * order that they were exported).
+     * @param file The exported file.
+     * @param batchSize The maximum amount of entries in a batch.
+     * @param batches Accepts the batches (a new list every time).
+     * @return The amount of entries that were imported.
+     * @throws IOException If reading the file failed, or it isn't a valid exported history.
+     */
+    public static int read(File file, int batchSize, Consumer<List<HistoryEntry>> batches) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            final long length = input.length();
+            if (length < HEADER_BYTES || length > Integer.MAX_VALUE)
+                throw new IOException("Not an exported history: " + file);
+            final MappedByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            // Validating the header:
+            final int count = buffer.getInt(8);
+            final long[] offsets = new long[NUM_SECTIONS + 1];
+            for (int i = 0; i < offsets.length; i++)
+                offsets[i] = buffer.getLong(SECTIONS_OFFSET + i * Long.BYTES);
+            boolean valid = buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION && count >= 0
+                    && offsets[0] == HEADER_BYTES && offsets[NUM_SECTIONS] <= length;
+            for (int i = 1; i < offsets.length && valid; i++)
+                valid = offsets[i] >= offsets[i - 1];
+            if (!valid)
+                throw new IOException("Not an exported history: " + file);
+
+            final ByteBuffer thumbnails = section(buffer, offsets, THUMBNAILS);
+            final ByteBuffer timestamps = section(buffer, offsets, TIMESTAMPS);
+            final ByteBuffer breedCounts = section(buffer, offsets, BREED_COUNTS);
+            final ByteBuffer labels = section(buffer, offsets, LABELS);
+            final ByteBuffer confidences = section(buffer, offsets, CONFIDENCES);
+            final ByteBuffer thumbnailLengths = section(buffer, offsets, THUMBNAIL_LENGTHS);
+
+            // Every entry has a byte in the breed counts, and at least a byte in the times and in the
+            // thumbnails' lengths:
+            if (count != breedCounts.remaining() || count > timestamps.remaining() || count > thumbnailLengths.remaining())
+                throw new IOException("The amount of entries doesn't match the exported history: " + file);
+
+            try {
+                long timestamp = 0;
+                ArrayList<HistoryEntry> batch = new ArrayList<>(Math.min(batchSize, count));
+                for (int i = 0; i < count; i++) {
+                    timestamp += unZigZag(readVarLong(timestamps));
+
+                    final int breeds = breedCounts.get() & 0xff;
+                    final int[] labelIndices = new int[breeds];
+                    final float[] breedConfidences = new float[breeds];
+                    for (int rank = 0; rank < breeds; rank++) {
+                        labelIndices[rank] = labels.get() & 0xff;
+                        breedConfidences[rank] = (confidences.getShort() & 0xffff) / (float) CONFIDENCE_STEPS;
+                    }
+
+                    // The length is checked before the thumbnail is allocated, so a corrupted length
+                    // can't ask for more memory than the file has:
+                    final long thumbnailLength = readVarLong(thumbnailLengths);
+                    if (thumbnailLength < 0 || thumbnailLength - 1 > thumbnails.remaining())
+                        throw new IOException("The exported history is cut off: " + file);
+                    byte[] thumbnail = null;
+                    if (thumbnailLength > 0) {
+                        thumbnail = new byte[(int) (thumbnailLength - 1)];
+                        thumbnails.get(thumbnail);
+                    }
+
+                    batch.add(new HistoryEntry(0, timestamp, thumbnail, labelIndices, breedConfidences));
+                    if (batch.size() == batchSize) {
+                        batches.accept(batch);
+                        batch = new ArrayList<>(Math.min(batchSize, count - i - 1));
+                    }
+                }
+                if (!batch.isEmpty())
+                    batches.accept(batch);
+            } catch (BufferUnderflowException | NegativeArraySizeException e) {
+                throw new IOException("The exported history is cut off: " + file);
+            }
+            return count;
+        }
+    }
+
+    private static ByteBuffer section(ByteBuffer buffer, long[] offsets, int section) {
+        final ByteBuffer duplicate = buffer.duplicate();
+        duplicate.limit((int) offsets[section + 1]).position((int) offsets[section]);
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+    }
+
+    private static int quantize(float confidence) {
+        return Math.round(Math.max(0f, Math.min(1f, confidence)) * CONFIDENCE_STEPS);
+    }
+
+    // The deltas may be negative (the entries are usually from the newest to the oldest), so they
+    // are zig-zag encoded into small positive numbers:
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream output, long value) {
+        while ((value & ~0x7fL) != 0) {
+            output.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        output.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer input) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = input.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0)
+                return value;
+        }
+        throw new IOException("A malformed number in the exported history");
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.dogclassificationapp.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The SQLite database of the past classifications. Every classification is a row of the
+ * "classifications" table, and each of its top breeds is also a row of the "classification_breeds"
+ * table, so the classifications of a breed can be found through an index. Both tables are indexed
+ * by time, and the pages are read with keyset queries (continuing after the last entry of the
+ * previous page), so reading a page costs the same no matter how many entries are before it. A
+ * classification is only kept once (by its time and top breeds), so importing the same history
+ * twice doesn't duplicate it.
+ */
+class HistoryDatabase extends SQLiteOpenHelper {
+
+    // The name and version of the database:
+    private static final String DATABASE_NAME = "history.db";
+    private static final int DATABASE_VERSION = 1;
+
+    // The columns that a page of entries is read with:
+    private static final String ENTRY_COLUMNS = "c.id, c.timestamp, c.thumbnail, c.top_breeds";
+
+    /**
+     * The constructor of the HistoryDatabase class.
+     * @param context Any context of the app.
+     */
+    HistoryDatabase(Context context) {
+        super(context.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE classifications ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "timestamp INTEGER NOT NULL, "
+                + "thumbnail BLOB, "
+                + "top_breeds BLOB NOT NULL)");
+        db.execSQL("CREATE INDEX classifications_by_time ON classifications (timestamp DESC, id DESC)");
+        db.execSQL("CREATE UNIQUE INDEX classifications_unique ON classifications (timestamp, top_breeds)");
+
+        // The time is repeated in the breeds table, so the classifications of a breed are read in
+        // order straight from its index:
+        db.execSQL("CREATE TABLE classification_breeds ("
+                + "classification_id INTEGER NOT NULL REFERENCES classifications (id) ON DELETE CASCADE, "
+                + "rank INTEGER NOT NULL, "
+                + "label_index INTEGER NOT NULL, "
+                + "confidence REAL NOT NULL, "
+                + "timestamp INTEGER NOT NULL, "
+                + "PRIMARY KEY (classification_id, rank))");
+        db.execSQL("CREATE INDEX classification_breeds_by_breed ON classification_breeds (label_index, timestamp DESC, classification_id DESC)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // There are no older versions yet
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        // Reading pages while a batch is written:
+        db.enableWriteAheadLogging();
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    /**
+     * Writes a batch of entries in a single transaction. An entry whose classification (the same
+     * time and top breeds) is already in the database is skipped.
+     * @param entries The entries that will be written.
+     * @return The entries that were written.
+     */
+    List<HistoryEntry> insertAll(List<HistoryEntry> entries) {
+        final ArrayList<HistoryEntry> inserted = new ArrayList<>();
+        final SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement insertBreed = db.compileStatement(
+                "INSERT INTO classification_breeds (classification_id, rank, label_index, confidence, timestamp) VALUES (?, ?, ?, ?, ?)")) {
+            for (HistoryEntry entry : entries) {
+                final ContentValues values = new ContentValues();
+                values.put("timestamp", entry.getTimestamp());
+                values.put("thumbnail", entry.getThumbnail());
+                values.put("top_breeds", entry.encodeTopBreeds());
+                final long id = db.insertWithOnConflict("classifications", null, values, SQLiteDatabase.CONFLICT_IGNORE);
+                if (id == -1)
+                    continue;
+                inserted.add(entry);
+
+                for (int rank = 0; rank < entry.getTopBreedCount(); rank++) {
+                    insertBreed.bindLong(1, id);
+                    insertBreed.bindLong(2, rank);
+                    insertBreed.bindLong(3, entry.getLabelIndex(rank));
+                    insertBreed.bindDouble(4, entry.getConfidence(rank));
+                    insertBreed.bindLong(5, entry.getTimestamp());
+                    insertBreed.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return inserted;
+    }
+
+    /**
+     * Reads a page of entries, from the newest to the oldest.
+     * @param after The last entry of the previous page, null for the first page.
+     * @param labelIndex If not negative, only the classifications that had this breed among their top
+     *                   breeds are read.
+     * @param limit The maximum amount of entries in the page.
+     * @return The entries of the page (fewer than the limit if there are no more entries).
+     */
+    List<HistoryEntry> queryPage(HistoryEntry after, int labelIndex, int limit) {
+        final ArrayList<String> args = new ArrayList<>();
+        final StringBuilder sql = new StringBuilder();
+        final String order;
+        if (labelIndex < 0) {
+            sql.append("SELECT ").append(ENTRY_COLUMNS).append(" FROM classifications c");
+            if (after != null) {
+                sql.append(" WHERE c.timestamp < ? OR (c.timestamp = ? AND c.id < ?)");
+                addKeysetArgs(args, after);
+            }
+            order = " ORDER BY c.timestamp DESC, c.id DESC";
+        } else {
+            sql.append("SELECT ").append(ENTRY_COLUMNS).append(" FROM classification_breeds b")
+                    .append(" JOIN classifications c ON c.id = b.classification_id")
+                    .append(" WHERE b.label_index = ?");
+            args.add(String.valueOf(labelIndex));
+            if (after != null) {
+                sql.append(" AND (b.timestamp < ? OR (b.timestamp = ? AND b.classification_id < ?))");
+                addKeysetArgs(args, after);
+            }
+            order = " ORDER BY b.timestamp DESC, b.classification_id DESC";
+        }
+        sql.append(order).append(" LIMIT ").append(limit);
+
+        final ArrayList<HistoryEntry> entries = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql.toString(), args.toArray(new String[0]))) {
+            while (cursor.moveToNext())
+                entries.add(HistoryEntry.decode(cursor.getLong(0), cursor.getLong(1), cursor.getBlob(2), cursor.getBlob(3)));
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the entries of the classifications that were made at the given times.
+     * @param timestamps The times of the classifications.
+     * @return The entries, in the order of the given times (times without an entry are skipped).
+     */
+    List<HistoryEntry> queryByTimestamps(List<Long> timestamps) {
+        final ArrayList<HistoryEntry> entries = new ArrayList<>();
+        if (timestamps.isEmpty())
+            return entries;
+
+        final StringBuilder sql = new StringBuilder("SELECT ").append(ENTRY_COLUMNS)
+                .append(" FROM classifications c WHERE c.timestamp IN (");
+        final String[] args = new String[timestamps.size()];
+        for (int i = 0; i < args.length; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+            args[i] = String.valueOf(timestamps.get(i));
+        }
+        sql.append(")");
+
+        final HashMap<Long, HistoryEntry> entriesByTime = new HashMap<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql.toString(), args)) {
+            while (cursor.moveToNext())
+                entriesByTime.put(cursor.getLong(1), HistoryEntry.decode(cursor.getLong(0), cursor.getLong(1), cursor.getBlob(2), cursor.getBlob(3)));
+        }
+        for (long timestamp : timestamps)
+            if (entriesByTime.containsKey(timestamp))
+                entries.add(entriesByTime.get(timestamp));
+        return entries;
+    }
+
+    private static void addKeysetArgs(List<String> args, HistoryEntry after) {
+        args.add(String.valueOf(after.getTimestamp()));
+        args.add(String.valueOf(after.getTimestamp()));
+        args.add(String.valueOf(after.getId()));
+    }
+}
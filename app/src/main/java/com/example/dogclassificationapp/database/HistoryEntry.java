@@ -0,0 +1,109 @@
+package com.example.dogclassificationapp.database;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A single past classification: when it was made, a small thumbnail of the classified image and the
+ * breeds that the model was the most confident about.
+ */
+public class HistoryEntry {
+
+    // The ID of the entry in the database (0 until it is written):
+    private final long id;
+
+    // The time of the classification, in milliseconds since the epoch:
+    private final long timestamp;
+
+    // The thumbnail of the classified image, compressed as JPEG:
+    private final byte[] thumbnail;
+
+    // The label indices of the top breeds and the model's confidence in them, from the highest
+    // confidence to the lowest:
+    private final int[] labelIndices;
+    private final float[] confidences;
+
+    /**
+     * The constructor of the HistoryEntry class.
+     * @param id The ID of the entry in the database, 0 if it wasn't written yet.
+     * @param timestamp The time of the classification, in milliseconds since the epoch.
+     * @param thumbnail The thumbnail of the classified image, compressed as JPEG.
+     * @param labelIndices The label indices of the top breeds, from the most confident one.
+     * @param confidences The confidences of the top breeds, in the same order.
+     */
+    public HistoryEntry(long id, long timestamp, byte[] thumbnail, int[] labelIndices, float[] confidences) {
+        if (labelIndices.length != confidences.length)
+            throw new IllegalArgumentException("Every top breed must have a confidence");
+
+        this.id = id;
+        this.timestamp = timestamp;
+        this.thumbnail = thumbnail;
+        this.labelIndices = labelIndices;
+        this.confidences = confidences;
+    }
+
+    /**
+     * Encodes the top breeds of the entry, to keep them in a single column of the database.
+     * @return The label indices and confidences, one after the other.
+     */
+    byte[] encodeTopBreeds() {
+        final ByteBuffer buffer = ByteBuffer.allocate(this.labelIndices.length * (Integer.BYTES + Float.BYTES));
+        for (int i = 0; i < this.labelIndices.length; i++) {
+            buffer.putInt(this.labelIndices[i]);
+            buffer.putFloat(this.confidences[i]);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Creates an entry from the columns of the database.
+     * @param id The ID of the entry.
+     * @param timestamp The time of the classification.
+     * @param thumbnail The thumbnail of the classified image.
+     * @param topBreeds The top breeds, as encoded by "encodeTopBreeds".
+     * @return The entry.
+     */
+    static HistoryEntry decode(long id, long timestamp, byte[] thumbnail, byte[] topBreeds) {
+        final ByteBuffer buffer = ByteBuffer.wrap(topBreeds);
+        final int count = topBreeds.length / (Integer.BYTES + Float.BYTES);
+        final int[] labelIndices = new int[count];
+        final float[] confidences = new float[count];
+        for (int i = 0; i < count; i++) {
+            labelIndices[i] = buffer.getInt();
+            confidences[i] = buffer.getFloat();
+        }
+        return new HistoryEntry(id, timestamp, thumbnail, labelIndices, confidences);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public byte[] getThumbnail() {
+        return thumbnail;
+    }
+
+    public int getTopBreedCount() {
+        return labelIndices.length;
+    }
+
+    public int getLabelIndex(int rank) {
+        return labelIndices[rank];
+    }
+
+    public float getConfidence(int rank) {
+        return confidences[rank];
+    }
+
+    // The arrays themselves (not copies), for counting the entry:
+    int[] getLabelIndices() {
+        return labelIndices;
+    }
+
+    float[] getConfidences() {
+        return confidences;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.dogclassificationapp.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.dogclassificationapp.api_handlers.API;
+import com.example.dogclassificationapp.api_handlers.DogImagesPool;
+import com.example.dogclassificationapp.api_handlers.NegativeCache;
+import com.example.dogclassificationapp.api_handlers.WikiAPI;
+import com.example.dogclassificationapp.classifier_logic.BitmapPool;
+import com.example.dogclassificationapp.classifier_logic.ClassifierCascade;
+import com.example.dogclassificationapp.classifier_logic.DogClassifier;
+import com.example.dogclassificationapp.classifier_logic.ModelRegistry;
+import com.example.dogclassificationapp.classifier_logic.ReloadableStage;
+import com.example.dogclassificationapp.classifier_logic.TfLiteModel;
+import com.example.dogclassificationapp.classifier_logic.ThumbnailCache;
+import com.example.dogclassificationapp.database.ClassificationHistory;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A utility class that connects the on-device caches of the app to their files, and sets up the API
+ * handlers. Both the activities and the background jobs use the same caches, so whichever of them
+ * starts first initializes them.
+ */
+public class AppSetup {
+
+    // The name of the file that the Wikipedia page IDs of the breeds are cached in:
+    private static final String WIKI_PAGE_IDS_FILE = "wiki_page_ids.txt";
+
+    // The name of the file that the Wikipedia information of the breeds is cached in:
+    private static final String WIKI_INFOS_FILE = "wiki_infos.txt";
+
+    // The name of the directory that the image URLs of the breeds are cached in:
+    private static final String DOG_IMAGES_POOLS_DIR = "dog_images_pools";
+
+    // The name of the directory that the thumbnails of the breeds are cached in:
+    private static final String THUMBNAILS_DIR = "thumbnails";
+
+    // The name of the file that requests which failed permanently are remembered in:
+    private static final String NEGATIVE_CACHE_FILE = "negative_cache.txt";
+
+    // The name of the directory that the downloaded versions of the model are kept in:
+    private static final String MODELS_DIR = "models";
+
+    // The amount of times that the bundled model runs to measure the baseline latency of the
+    // model's versions:
+    private static final int BASELINE_RUNS = 10;
+
+    // The name of the compact model's file in that directory (it classifies the images before the
+    // full model):
+    private static final String FIRST_STAGE_MODEL_FILE = "dog_model_small.tflite";
+
+    // Whether the caches were already initialized in this process:
+    private static boolean initialized = false;
+
+    /**
+     * Initializes the caches and the API handlers, if they weren't initialized yet.
+     * @param context Any context of the app (only its application context is kept).
+     */
+    public static synchronized void init(Context context) {
+        if (initialized)
+            return;
+        initialized = true;
+
+        final Context appContext = context.getApplicationContext();
+
+        // Keeping the Wikipedia page IDs and information of the breeds between sessions:
+        WikiAPI.setPageIDCacheFile(new File(appContext.getFilesDir(), WIKI_PAGE_IDS_FILE));
+        WikiAPI.setInfoCacheFile(new File(appContext.getFilesDir(), WIKI_INFOS_FILE));
+
+        // Keeping the image URLs and thumbnails of the breeds between sessions:
+        DogImagesPool.setPoolsDirectory(new File(appContext.getCacheDir(), DOG_IMAGES_POOLS_DIR));
+        ThumbnailCache.setDirectory(new File(appContext.getFilesDir(), THUMBNAILS_DIR));
+
+        // Never resending requests that failed permanently in previous sessions:
+        NegativeCache.setCacheFile(new File(appContext.getFilesDir(), NEGATIVE_CACHE_FILE));
+
+        // Keeping the history of the classifications (its statistics also decide which breeds'
+        // data is pre-fetched first):
+        ClassificationHistory.init(appContext);
+
+        // Using the newest version of the model that was downloaded into the app's storage (every
+        // version must output a confidence for every label of the label table):
+        final int numLabels = DogClassifier.loadLabels(appContext.getAssets(), DogClassifier.LABELS_FILE).map(List::size).orElse(0);
+        final ModelRegistry modelRegistry = new ModelRegistry(new File(appContext.getFilesDir(), MODELS_DIR),
+                file -> TfLiteModel.load(file, numLabels));
+        ModelRegistry.setShared(modelRegistry);
+        new Thread(() -> {
+            // Measuring the bundled model once, so the first installed version is on probation
+            // against it:
+            if (modelRegistry.getBaselineLatencyNanos() < 0)
+                DogClassifier.measureBundledModel(appContext, BASELINE_RUNS);
+            Log.i("Model registry", "Active version: " + modelRegistry.installLatest());
+
+            // Classifying the images with the compact model first, if it was downloaded (it's
+            // freed with the registry's model when memory is low):
+            final File firstStageFile = new File(new File(appContext.getFilesDir(), MODELS_DIR), FIRST_STAGE_MODEL_FILE);
+            if (firstStageFile.isFile()) {
+                final ModelRegistry.Loader loader = file -> TfLiteModel.load(file, numLabels);
+                final Result<ModelRegistry.Model, String> firstStage = loader.load(firstStageFile);
+                if (firstStage.isOk()) {
+                    final ReloadableStage stage = new ReloadableStage(firstStageFile, loader, firstStage.getValue());
+                    MemoryGovernor.getShared().register("first_stage_model", MemoryGovernor.Priority.MODEL, new MemoryGovernor.Subsystem() {
+                        @Override
+                        public long getBytes() {
+                            return stage.getLoadedBytes();
+                        }
+
+                        @Override
+                        public long evict() {
+                            return stage.unload();
+                        }
+                    });
+                    DogClassifier.setCascade(stage, ClassifierCascade.DEFAULT_MIN_CONFIDENCE, ClassifierCascade.DEFAULT_MIN_MARGIN);
+                }
+                else {
+                    Log.e("Model registry", "Loading the compact model failed: " + firstStage.getError());
+                }
+            }
+        }, "ModelRegistry-loader").start();
+
+        // Freeing the memory of the caches, the images and the model when the system is low on
+        // memory:
+        final MemoryGovernor governor = MemoryGovernor.getShared();
+        governor.register("wiki_info_cache", MemoryGovernor.Priority.CACHE, new MemoryGovernor.Subsystem() {
+            @Override
+            public long getBytes() {
+                return WikiAPI.getInfoCacheBytes();
+            }
+
+            @Override
+            public long evict() {
+                return WikiAPI.trimInfoCache();
+            }
+        });
+        governor.register("bitmap_pool", MemoryGovernor.Priority.CACHE, new MemoryGovernor.Subsystem() {
+            @Override
+            public long getBytes() {
+                return BitmapPool.getShared().getPooledBytes();
+            }
+
+            @Override
+            public long evict() {
+                return BitmapPool.getShared().clear();
+            }
+        });
+        governor.register("model", MemoryGovernor.Priority.MODEL, new MemoryGovernor.Subsystem() {
+            @Override
+            public long getBytes() {
+                return modelRegistry.getLoadedBytes();
+            }
+
+            @Override
+            public long evict() {
+                return modelRegistry.unload();
+            }
+        });
+        appContext.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                final long freedBytes = governor.onTrimMemory(level);
+                Log.i("Memory governor", "Trim level " + level + ": freed " + freedBytes + " bytes, holding " + governor.getUsage());
+            }
+
+            @Override
+            public void onLowMemory() {
+                onTrimMemory(TRIM_MEMORY_COMPLETE);
+            }
+
+            @Override
+            public void onConfigurationChanged(@NonNull Configuration newConfig) {
+            }
+        });
+
+        // Failing API requests immediately while the device is offline:
+        final ConnectivityManager connectivityManager = (ConnectivityManager) appContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        API.setConnectivityCheck(() -> {
+            final NetworkCapabilities capabilities = connectivityManager.getNetworkCapabilities(connectivityManager.getActiveNetwork());
+            return capabilities != null && capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+        });
+    }
+}
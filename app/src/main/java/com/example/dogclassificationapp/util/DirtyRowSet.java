@@ -0,0 +1,83 @@
+package com.example.dogclassificationapp.util;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A lock-free set of the rows of a list that changed since the list was last updated. Every row has
+ * a mask of the kinds of changes it had (up to 32 kinds), so rows can be marked from any thread and
+ * drained on the UI thread as ranges of adjacent rows that had the same kind of change.
+ */
+public class DirtyRowSet {
+
+    /**
+     * Receives the ranges of dirty rows when the set is drained.
+     */
+    public interface RangeConsumer {
+        void onRange(int start, int count, int kind);
+    }
+
+    // The kinds of changes of every row (0 if the row didn't change):
+    private final AtomicIntegerArray masks;
+
+    // Whether a drain is pending, so only the first mark after a drain has to schedule one:
+    private final AtomicBoolean drainPending = new AtomicBoolean(false);
+
+    /**
+     * The constructor of the DirtyRowSet class.
+     * @param numRows The amount of rows in the list.
+     */
+    public DirtyRowSet(int numRows) {
+        this.masks = new AtomicIntegerArray(numRows);
+    }
+
+    /**
+     * Marks a row as changed (can be called from any thread).
+     * @param row The index of the row.
+     * @param kind The kind of the change, between 0 and 31.
+     * @return True if the caller should schedule a drain, False if one is already pending.
+     */
+    public boolean mark(int row, int kind) {
+        final int bit = 1 << kind;
+        this.masks.getAndAccumulate(row, bit, (mask, newBit) -> mask | newBit);
+        return this.drainPending.compareAndSet(false, true);
+    }
+
+    /**
+     * Removes all the rows that are currently marked, and passes them to the consumer as ranges of
+     * adjacent rows that had the same kind of change (one range per kind of change). A row that is
+     * marked while the set is drained is either passed to the consumer or left for the next drain.
+     * @param consumer Receives the ranges, in order of their kinds and then of their rows.
+     */
+    public void drain(RangeConsumer consumer) {
+        // Clearing the flag first, so a row that is marked from now on schedules another drain:
+        this.drainPending.set(false);
+
+        final int numRows = this.masks.length();
+        final int[] drained = new int[numRows];
+        int allKinds = 0;
+        for (int row = 0; row < numRows; row++) {
+            if (this.masks.get(row) != 0) {
+                drained[row] = this.masks.getAndSet(row, 0);
+                allKinds |= drained[row];
+            }
+        }
+
+        while (allKinds != 0) {
+            final int kind = Integer.numberOfTrailingZeros(allKinds);
+            allKinds &= allKinds - 1;
+            final int bit = 1 << kind;
+
+            int start = -1;
+            for (int row = 0; row <= numRows; row++) {
+                final boolean dirty = row < numRows && (drained[row] & bit) != 0;
+                if (dirty && start == -1) {
+                    start = row;
+                } else if (!dirty && start != -1) {
+                    consumer.onRange(start, row - start, kind);
+                    start = -1;
+                }
+            }
+        }
+    }
+}
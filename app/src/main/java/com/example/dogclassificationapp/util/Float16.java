@@ -0,0 +1,73 @@
+package com.example.dogclassificationapp.util;
+
+/**
+ * A utility class that converts floats to IEEE 754 half-precision floats (stored in shorts) and
+ * back, for values that are kept compactly (android.util.Half needs API 26).
+ */
+public class Float16 {
+
+    /**
+     * Converts a float to the nearest half-precision float (rounding to the nearest even value).
+     * @param value The float.
+     * @return The bits of the half-precision float.
+     */
+    public static short fromFloat(float value) {
+        final int bits = Float.floatToRawIntBits(value);
+        final int sign = (bits >>> 16) & 0x8000;
+        final int exponent = (bits >>> 23) & 0xff;
+        int mantissa = bits & 0x7fffff;
+
+        // NaN and infinity:
+        if (exponent == 0xff)
+            return (short) (sign | 0x7c00 | (mantissa != 0 ? 0x200 : 0));
+
+        final int halfExponent = exponent - 127 + 15;
+
+        // Too large, rounding to infinity:
+        if (halfExponent >= 0x1f)
+            return (short) (sign | 0x7c00);
+
+        // Too small for a normal half, a subnormal half (or zero):
+        if (halfExponent <= 0) {
+            if (halfExponent < -10)
+                return (short) sign;
+            mantissa |= 0x800000;
+            final int shift = 14 - halfExponent;
+            int halfMantissa = mantissa >> shift;
+            final int remainder = mantissa & ((1 << shift) - 1);
+            final int halfway = 1 << (shift - 1);
+            if (remainder > halfway || (remainder == halfway && (halfMantissa & 1) != 0))
+                halfMantissa++;
+            return (short) (sign | halfMantissa);
+        }
+
+        // A normal half, rounding the dropped bits of the mantissa (a carry rounds up the exponent):
+        int half = sign | (halfExponent << 10) | (mantissa >> 13);
+        final int remainder = mantissa & 0x1fff;
+        if (remainder > 0x1000 || (remainder == 0x1000 && (half & 1) != 0))
+            half++;
+        return (short) half;
+    }
+
+    /**
+     * Converts a half-precision float to a float (exactly).
+     * @param half The bits of the half-precision float.
+     * @return The float.
+     */
+    public static float toFloat(short half) {
+        final int bits = half & 0xffff;
+        final int sign = (bits & 0x8000) << 16;
+        final int exponent = (bits >>> 10) & 0x1f;
+        final int mantissa = bits & 0x3ff;
+
+        if (exponent == 0) {
+            // Zero or a subnormal half:
+            final float value = mantissa * 0x1p-24f;
+            return sign == 0 ? value : -value;
+        }
+        if (exponent == 0x1f)
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+
+        return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+    }
+}
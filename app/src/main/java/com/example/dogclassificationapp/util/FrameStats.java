@@ -0,0 +1,154 @@
+package com.example.dogclassificationapp.util;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Aggregates the durations of the frames of a UI session by the state the UI was in while they were
+ * drawn, into jank percentages and histograms of slow frames. It only works with numbers, so it can
+ * be fed with synthetic frame timings in tests.
+ */
+public class FrameStats {
+
+    /**
+     * The states of the UI that frames are tagged with, from the most specific to the least (a frame
+     * that was drawn in a few states is counted in the first of them).
+     */
+    public enum UiState {
+        EXPANDING,
+        SCROLLING,
+        DATA_ARRIVING,
+        IDLE
+    }
+
+    // A frame that takes longer than this is counted as janky (one frame at 60Hz plus a margin):
+    public static final long JANK_THRESHOLD_NANOS = 17_000_000;
+
+    // The upper bounds (in milliseconds) of the buckets of the slow-frame histograms, the last
+    // bucket holds all the frames that are slower than the last bound:
+    private static final int[] SLOW_FRAME_BUCKETS_MILLIS = {25, 33, 50, 100, 250, 700};
+
+    // The statistics of every state:
+    private final EnumMap<UiState, StateStats> stats = new EnumMap<>(UiState.class);
+
+    /**
+     * Records the duration of a single frame.
+     * @param frameNanos The duration of the frame in nanoseconds.
+     * @param state The state the UI was in while the frame was drawn.
+     */
+    public synchronized void record(long frameNanos, UiState state) {
+        StateStats stateStats = this.stats.get(state);
+        if (stateStats == null) {
+            stateStats = new StateStats();
+            this.stats.put(state, stateStats);
+        }
+
+        stateStats.frames++;
+        stateStats.totalNanos += frameNanos;
+        if (frameNanos > JANK_THRESHOLD_NANOS) {
+            stateStats.jankyFrames++;
+            stateStats.slowFrames[getSlowFrameBucket(frameNanos)]++;
+        }
+    }
+
+    private static int getSlowFrameBucket(long frameNanos) {
+        final long frameMillis = frameNanos / 1_000_000;
+        for (int i = 0; i < SLOW_FRAME_BUCKETS_MILLIS.length; i++)
+            if (frameMillis < SLOW_FRAME_BUCKETS_MILLIS[i])
+                return i;
+        return SLOW_FRAME_BUCKETS_MILLIS.length;
+    }
+
+    /**
+     * Returns the amount of frames that were drawn in the given state.
+     * @param state The state of the UI, or null for all the states together.
+     * @return The amount of frames.
+     */
+    public synchronized int getFrames(UiState state) {
+        int frames = 0;
+        for (Map.Entry<UiState, StateStats> entry : this.stats.entrySet())
+            if (state == null || entry.getKey() == state)
+                frames += entry.getValue().frames;
+        return frames;
+    }
+
+    /**
+     * Returns the percentage of the frames that were janky in the given state.
+     * @param state The state of the UI, or null for all the states together.
+     * @return The percentage of janky frames, 0 if no frames were drawn in the state.
+     */
+    public synchronized double getJankPercent(UiState state) {
+        int frames = 0;
+        int jankyFrames = 0;
+        for (Map.Entry<UiState, StateStats> entry : this.stats.entrySet()) {
+            if (state == null || entry.getKey() == state) {
+                frames += entry.getValue().frames;
+                jankyFrames += entry.getValue().jankyFrames;
+            }
+        }
+        return frames == 0 ? 0 : 100.0 * jankyFrames / frames;
+    }
+
+    /**
+     * Returns the histogram of the janky frames that were drawn in the given state.
+     * @param state The state of the UI.
+     * @return The amount of janky frames in every bucket (see "getSlowFrameBucketLabels").
+     */
+    public synchronized int[] getSlowFrameHistogram(UiState state) {
+        final StateStats stateStats = this.stats.get(state);
+        return stateStats == null ? new int[SLOW_FRAME_BUCKETS_MILLIS.length + 1] : stateStats.slowFrames.clone();
+    }
+
+    /**
+     * Returns the labels of the buckets of the slow-frame histograms.
+     * @return A label for every bucket (for example, "lt50ms" for the frames that took 33 to 50
+     *         milliseconds, and "ge700ms" for the frames that took longer than the last bound).
+     */
+    public static String[] getSlowFrameBucketLabels() {
+        final String[] labels = new String[SLOW_FRAME_BUCKETS_MILLIS.length + 1];
+        for (int i = 0; i < SLOW_FRAME_BUCKETS_MILLIS.length; i++)
+            labels[i] = "lt" + SLOW_FRAME_BUCKETS_MILLIS[i] + "ms";
+        labels[SLOW_FRAME_BUCKETS_MILLIS.length] = "ge" + SLOW_FRAME_BUCKETS_MILLIS[SLOW_FRAME_BUCKETS_MILLIS.length - 1] + "ms";
+        return labels;
+    }
+
+    /**
+     * Adds the statistics to the Metrics, as "frames.<state>.total", "frames.<state>.janky" and
+     * "frames.<state>.slow.<bucket>" counters, and sets the "frames.<state>.jank_permille" gauge of
+     * the session. The statistics are cleared afterwards, so they can be published once per session.
+     * @return A single-line summary of the session.
+     */
+    public synchronized String publish() {
+        final String[] labels = getSlowFrameBucketLabels();
+        final StringBuilder summary = new StringBuilder();
+        for (Map.Entry<UiState, StateStats> entry : this.stats.entrySet()) {
+            final String prefix = "frames." + entry.getKey().name().toLowerCase(Locale.US);
+            final StateStats stateStats = entry.getValue();
+
+            Metrics.increment(prefix + ".total", stateStats.frames);
+            Metrics.increment(prefix + ".janky", stateStats.jankyFrames);
+            for (int i = 0; i < labels.length; i++)
+                if (stateStats.slowFrames[i] > 0)
+                    Metrics.increment(prefix + ".slow." + labels[i], stateStats.slowFrames[i]);
+            Metrics.set(prefix + ".jank_permille", 1000L * stateStats.jankyFrames / stateStats.frames);
+
+            summary.append(String.format(Locale.US, "%s: %d frames, %.1f%% janky, avg %.1f ms; ",
+                    entry.getKey(), stateStats.frames, 100.0 * stateStats.jankyFrames / stateStats.frames,
+                    stateStats.totalNanos / 1e6 / stateStats.frames));
+        }
+
+        this.stats.clear();
+        return summary.toString().trim();
+    }
+
+    /**
+     * The statistics of a single state.
+     */
+    private static class StateStats {
+        private int frames;
+        private int jankyFrames;
+        private long totalNanos;
+        private final int[] slowFrames = new int[SLOW_FRAME_BUCKETS_MILLIS.length + 1];
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.dogclassificationapp.util;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+import android.view.FrameMetrics;
+import android.view.Window;
+
+/**
+ * Collects the duration of every frame that a window draws (using FrameMetrics), tagged with the
+ * state the UI was in: scrolling, expanding a row, data arriving or idle. The frames are aggregated
+ * by a FrameStats object, and once the session ends its jank percentages and slow-frame histograms
+ * are logged and published to the Metrics.
+ */
+public class FrameTimeMonitor implements Window.OnFrameMetricsAvailableListener {
+
+    // How long after a row was expanded or collapsed its frames are tagged as expanding:
+    private static final long EXPANDING_NANOS = 500_000_000;
+
+    // How long after data arrived to the list its frames are tagged as data arriving:
+    private static final long DATA_ARRIVING_NANOS = 100_000_000;
+
+    // The aggregated frames of the current session:
+    private final FrameStats stats = new FrameStats();
+
+    // The window whose frames are collected (null while the monitor isn't running):
+    private Window window;
+
+    // The thread that receives the frame metrics, so the main thread isn't used for it:
+    private HandlerThread metricsThread;
+
+    // The state of the UI, set from the main thread:
+    private volatile boolean scrolling = false;
+    private volatile long expandingUntilNanos = 0;
+    private volatile long dataArrivingUntilNanos = 0;
+
+    /**
+     * Starts collecting the frames of the given window (must be called on the main thread). Has no
+     * effect if the monitor is already running.
+     * @param window The window whose frames are collected.
+     */
+    public void start(Window window) {
+        if (this.window != null)
+            return;
+
+        this.metricsThread = new HandlerThread("FrameTimeMonitor");
+        this.metricsThread.start();
+        this.window = window;
+        this.window.addOnFrameMetricsAvailableListener(this, new Handler(this.metricsThread.getLooper()));
+    }
+
+    /**
+     * Stops collecting frames, logs the statistics of the session and publishes them to the Metrics
+     * (must be called on the main thread). Has no effect if the monitor isn't running.
+     */
+    public void stop() {
+        if (this.window == null)
+            return;
+
+        try {
+            this.window.removeOnFrameMetricsAvailableListener(this);
+        } catch (RuntimeException e) {
+            // The window already dropped the listener
+        }
+        this.window = null;
+        this.metricsThread.quitSafely();
+        this.metricsThread = null;
+
+        if (this.stats.getFrames(null) > 0)
+            Log.i("Frame times", this.stats.publish());
+    }
+
+    public void setScrolling(boolean scrolling) {
+        this.scrolling = scrolling;
+    }
+
+    /**
+     * Tags the frames of the next moment as expanding, called whenever a row is expanded or
+     * collapsed.
+     */
+    public void onRowToggled() {
+        this.expandingUntilNanos = System.nanoTime() + EXPANDING_NANOS;
+    }
+
+    /**
+     * Tags the frames of the next moment as data arriving, called whenever rows are updated with
+     * data that was loaded.
+     */
+    public void onDataArrived() {
+        this.dataArrivingUntilNanos = System.nanoTime() + DATA_ARRIVING_NANOS;
+    }
+
+    @Override
+    public void onFrameMetricsAvailable(Window window, FrameMetrics frameMetrics, int dropCountSinceLastInvocation) {
+        final long now = System.nanoTime();
+        final FrameStats.UiState state;
+        if (now < this.expandingUntilNanos)
+            state = FrameStats.UiState.EXPANDING;
+        else if (this.scrolling)
+            state = FrameStats.UiState.SCROLLING;
+        else if (now < this.dataArrivingUntilNanos)
+            state = FrameStats.UiState.DATA_ARRIVING;
+        else
+            state = FrameStats.UiState.IDLE;
+
+        this.stats.record(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION), state);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.dogclassificationapp.util;
+
+import android.content.ComponentCallbacks2;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the memory that the subsystems of the app hold (the model, the images of the
+ * breeds, the caches), and frees it when the system is low on memory. Every subsystem is registered
+ * with a priority, and the more severe the trim level that the system reports, the more priorities
+ * are evicted, from the cheapest to restore to the most expensive.
+ */
+public class MemoryGovernor {
+
+    /**
+     * The priorities of the subsystems, in the order that they are evicted.
+     */
+    public enum Priority {
+        // Caches that are refilled from files or from the network:
+        CACHE,
+        // The images of breeds whose rows aren't shown (they are loaded again when shown):
+        OFFSCREEN_BITMAPS,
+        // The loaded model (it is loaded again for the next classification):
+        MODEL
+    }
+
+    /**
+     * A subsystem that holds memory which can be freed.
+     */
+    public interface Subsystem {
+        /**
+         * Returns the amount of bytes that the subsystem holds.
+         * @return The amount of bytes.
+         */
+        long getBytes();
+
+        /**
+         * Frees the memory of the subsystem that can be freed.
+         * @return The amount of bytes that were freed.
+         */
+        long evict();
+    }
+
+    // The governor of the app:
+    private static final MemoryGovernor SHARED = new MemoryGovernor();
+
+    // The registered subsystems, by their names:
+    private final Map<String, Registration> subsystems = new ConcurrentHashMap<>();
+
+    private static class Registration {
+        final Priority priority;
+        final Subsystem subsystem;
+
+        Registration(Priority priority, Subsystem subsystem) {
+            this.priority = priority;
+            this.subsystem = subsystem;
+        }
+    }
+
+    public static MemoryGovernor getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Registers a subsystem, replacing the subsystem that was registered with the same name.
+     * @param name The name of the subsystem (used in the diagnostics).
+     * @param priority The priority of the subsystem's eviction.
+     * @param subsystem The subsystem.
+     */
+    public void register(String name, Priority priority, Subsystem subsystem) {
+        this.subsystems.put(name, new Registration(priority, subsystem));
+    }
+
+    /**
+     * Unregisters a subsystem, unless another subsystem was registered with its name since.
+     * @param name The name of the subsystem.
+     * @param subsystem The subsystem.
+     */
+    public void unregister(String name, Subsystem subsystem) {
+        this.subsystems.computeIfPresent(name, (key, registration) -> registration.subsystem == subsystem ? null : registration);
+    }
+
+    /**
+     * Returns the last priority that is evicted at a trim level of ComponentCallbacks2. The levels
+     * of a running app and of an app in the background are separate ranges, so the severity doesn't
+     * grow with the level across them.
+     * @param level The trim level.
+     * @return The last evicted priority, null if nothing is evicted.
+     */
+    static Priority getLastEvictedPriority(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE)
+            return Priority.MODEL;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE)
+            return Priority.OFFSCREEN_BITMAPS;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND)
+            return Priority.CACHE;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN)
+            return Priority.OFFSCREEN_BITMAPS;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL)
+            return Priority.MODEL;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW)
+            return Priority.OFFSCREEN_BITMAPS;
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE)
+            return Priority.CACHE;
+        return null;
+    }
+
+    /**
+     * Evicts the subsystems by the trim level that the system reported, from the first priority to
+     * the last one that the level requires.
+     * @param level The trim level (see ComponentCallbacks2.onTrimMemory).
+     * @return The amount of bytes that were freed.
+     */
+    public long onTrimMemory(int level) {
+        final Priority lastPriority = getLastEvictedPriority(level);
+        if (lastPriority == null)
+            return 0;
+
+        long freedBytes = 0;
+        for (Priority priority : Priority.values()) {
+            if (priority.compareTo(lastPriority) > 0)
+                break;
+            for (Registration registration : this.subsystems.values())
+                if (registration.priority == priority)
+                    freedBytes += registration.subsystem.evict();
+        }
+
+        Metrics.increment("memory.trims");
+        Metrics.increment("memory.evicted_bytes", freedBytes);
+        for (Map.Entry<String, Long> usage : getUsage().entrySet())
+            Metrics.set("memory." + usage.getKey() + "_bytes", usage.getValue());
+        return freedBytes;
+    }
+
+    /**
+     * Returns the amount of bytes that every subsystem holds.
+     * @return The amounts of bytes, by the names of the subsystems (sorted by the names).
+     */
+    public Map<String, Long> getUsage() {
+        final TreeMap<String, Long> usage = new TreeMap<>();
+        for (Map.Entry<String, Registration> entry : this.subsystems.entrySet())
+            usage.put(entry.getKey(), entry.getValue().subsystem.getBytes());
+        return usage;
+    }
+
+    /**
+     * Returns the amount of bytes that all the subsystems hold.
+     * @return The amount of bytes.
+     */
+    public long getTotalBytes() {
+        long total = 0;
+        for (Registration registration : this.subsystems.values())
+            total += registration.subsystem.getBytes();
+        return total;
+    }
+}
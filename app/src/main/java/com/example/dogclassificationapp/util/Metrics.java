@@ -0,0 +1,67 @@
+package com.example.dogclassificationapp.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A utility class that keeps named counters of events in the app (for example, state transitions of
+ * the circuit breakers of the APIs). The counters are kept in memory only, and can be read at any
+ * time from any thread.
+ */
+public class Metrics {
+
+    // The counters, by their names:
+    private static final Map<String, AtomicLong> COUNTERS = new ConcurrentHashMap<>();
+
+    /**
+     * Adds one to the counter with the given name. If the counter doesn't exist yet, it is created.
+     * @param name The name of the counter.
+     */
+    public static void increment(String name) {
+        increment(name, 1);
+    }
+
+    /**
+     * Adds the given amount to the counter with the given name. If the counter doesn't exist yet,
+     * it is created.
+     * @param name The name of the counter.
+     * @param amount The amount that will be added to the counter.
+     */
+    public static void increment(String name, long amount) {
+        COUNTERS.computeIfAbsent(name, key -> new AtomicLong()).addAndGet(amount);
+    }
+
+    /**
+     * Sets the value of the counter with the given name, for values that are measured rather than
+     * counted (for example, the jank percentage of the last session). If the counter doesn't exist
+     * yet, it is created.
+     * @param name The name of the counter.
+     * @param value The new value of the counter.
+     */
+    public static void set(String name, long value) {
+        COUNTERS.computeIfAbsent(name, key -> new AtomicLong()).set(value);
+    }
+
+    /**
+     * Returns the current value of a counter.
+     * @param name The name of the counter.
+     * @return The value of the counter, 0 if it was never incremented.
+     */
+    public static long get(String name) {
+        final AtomicLong counter = COUNTERS.get(name);
+        return counter == null ? 0 : counter.get();
+    }
+
+    /**
+     * Returns the current values of all the counters.
+     * @return A copy of the counters, sorted by their names.
+     */
+    public static Map<String, Long> snapshot() {
+        final TreeMap<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> counter : COUNTERS.entrySet())
+            snapshot.put(counter.getKey(), counter.getValue().get());
+        return snapshot;
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.dogclassificationapp.util;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * A utility class that runs jobs on a bounded amount of threads, always starting the waiting job
+ * with the lowest priority value first. The priority of a job is read every time the next job is
+ * picked, so changing the values behind it (for example, when a row becomes visible) reorders the
+ * waiting jobs without resubmitting them. The scheduler also keeps track of the bytes that its jobs
+ * downloaded, against a byte budget. Once the scheduler is shut down, it drops every job that is
+ * waiting and interrupts the ones that are running.
+ */
+public class PriorityScheduler {
+
+    /**
+     * A job that is waiting to run.
+     */
+    private static class Job {
+        final IntSupplier priority;
+        final Runnable work;
+
+        Job(IntSupplier priority, Runnable work) {
+            this.priority = priority;
+            this.work = work;
+        }
+    }
+
+    // The maximum amount of jobs that run at the same time:
+    private final int maxConcurrency;
+
+    // The maximum amount of bytes that the jobs should download:
+    private final long byteBudget;
+
+    // The scope that the jobs belong to (null if they don't belong to a session):
+    private final SessionScope scope;
+
+    // The jobs that are waiting to run, in the order they were submitted (there are only a few
+    // hundreds of them at most, so the next job is found by a linear scan, which also lets the
+    // priorities change while they wait):
+    private final ArrayList<Job> waitingJobs = new ArrayList<>();
+
+    // The threads that are currently running jobs:
+    private final ArrayList<Thread> workers = new ArrayList<>();
+
+    // Whether the scheduler was shut down (no job will run after that):
+    private volatile boolean shutdown = false;
+
+    // The amount of bytes that the jobs downloaded so far:
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    /**
+     * The constructor of the PriorityScheduler class.
+     * @param maxConcurrency The maximum amount of jobs that run at the same time.
+     * @param byteBudget The maximum amount of bytes that the jobs should download (the scheduler
+     *                   doesn't stop the jobs, they should check "isOverBudget" themselves).
+     */
+    public PriorityScheduler(int maxConcurrency, long byteBudget) {
+        this(maxConcurrency, byteBudget, null);
+    }
+
+    /**
+     * Creates the scheduler of a session, whose workers set the session as the current scope of
+     * their thread while they run its jobs.
+     */
+    PriorityScheduler(int maxConcurrency, long byteBudget, SessionScope scope) {
+        this.maxConcurrency = maxConcurrency;
+        this.byteBudget = byteBudget;
+        this.scope = scope;
+    }
+
+    /**
+     * Adds a job to the waiting jobs, and starts a new thread for it if less than maxConcurrency
+     * threads are running. Jobs that are submitted after the scheduler was shut down are dropped.
+     * @param priority Returns the current priority of the job, lower values run first.
+     * @param work The job itself.
+     */
+    public void submit(IntSupplier priority, Runnable work) {
+        final Thread worker;
+        synchronized (this.waitingJobs) {
+            if (this.shutdown)
+                return;
+
+            this.waitingJobs.add(new Job(priority, work));
+            if (this.workers.size() >= this.maxConcurrency)
+                return;
+
+            worker = new Thread(this::runJobs, "PriorityScheduler-worker");
+            this.workers.add(worker);
+        }
+
+        worker.start();
+    }
+
+    /**
+     * Shuts the scheduler down: drops the waiting jobs, and interrupts the threads that are running
+     * jobs. Jobs that will be submitted later are dropped as well.
+     */
+    public void shutdown() {
+        synchronized (this.waitingJobs) {
+            this.shutdown = true;
+            this.waitingJobs.clear();
+
+            for (Thread worker : this.workers)
+                worker.interrupt();
+        }
+    }
+
+    public boolean isShutdown() {
+        return this.shutdown;
+    }
+
+    /**
+     * Adds the given amount of bytes to the bytes that the jobs downloaded.
+     * @param bytes The amount of bytes that a job downloaded.
+     */
+    public void addUsedBytes(long bytes) {
+        this.usedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Returns whether the jobs downloaded at least as many bytes as the byte budget.
+     * @return True if the budget was used, False if not.
+     */
+    public boolean isOverBudget() {
+        return this.usedBytes.get() >= this.byteBudget;
+    }
+
+    public long getUsedBytes() {
+        return this.usedBytes.get();
+    }
+
+    /**
+     * The loop of a worker thread: runs the waiting jobs by their priority, until there are none.
+     */
+    private void runJobs() {
+        SessionScope.setCurrent(this.scope);
+        while (true) {
+            final Job job;
+            synchronized (this.waitingJobs) {
+                job = this.takeNextJob();
+                if (job == null) {
+                    this.workers.remove(Thread.currentThread());
+                    SessionScope.setCurrent(null);
+                    return;
+                }
+            }
+
+            // A failing job shouldn't stop the worker from running the jobs after it:
+            try {
+                job.work.run();
+            } catch (RuntimeException e) {
+                Log.e("Priority scheduler", "A job failed", e);
+            }
+        }
+    }
+
+    /**
+     * Removes the waiting job with the lowest priority value (the first one that was submitted, if
+     * there are several of them). Must be called while holding the lock of "waitingJobs".
+     * @return The next job that should run, null if no job is waiting.
+     */
+    private Job takeNextJob() {
+        int bestIdx = -1;
+        int bestPriority = 0;
+        for (int i = 0; i < this.waitingJobs.size(); i++) {
+            final int priority = this.waitingJobs.get(i).priority.getAsInt();
+            if (bestIdx == -1 || priority < bestPriority) {
+                bestIdx = i;
+                bestPriority = priority;
+            }
+        }
+
+        return bestIdx == -1 ? null : this.waitingJobs.remove(bestIdx);
+    }
+}
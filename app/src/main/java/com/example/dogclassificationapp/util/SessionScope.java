@@ -0,0 +1,134 @@
+package com.example.dogclassificationapp.util;
+
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Owns all the work that was started for a single classification: the jobs of its scheduler, the
+ * requests that are in flight and whatever the session loaded. Cancelling the scope drops the
+ * waiting jobs and retries, interrupts the running ones, disconnects the requests that are in
+ * flight and runs the cancel listeners (which release what the session loaded), so nothing that
+ * belongs to the session outlives it.
+ */
+public class SessionScope {
+
+    // The scope whose job is currently running on every thread (null on other threads):
+    private static final ThreadLocal<SessionScope> CURRENT = new ThreadLocal<>();
+
+    // The scheduler that runs the jobs of the session:
+    private final PriorityScheduler scheduler;
+
+    // The requests of the session that may still be in flight (a request that is done is dropped
+    // once nothing else references its connection):
+    private final Set<HttpURLConnection> connections = Collections.newSetFromMap(new WeakHashMap<>());
+
+    // Run once the scope is cancelled:
+    private final ArrayList<Runnable> onCancelListeners = new ArrayList<>();
+
+    // Whether the scope was cancelled:
+    private volatile boolean cancelled = false;
+
+    /**
+     * The constructor of the SessionScope class.
+     * @param maxConcurrency The maximum amount of jobs of the session that run at the same time.
+     * @param byteBudget The maximum amount of bytes that the jobs of the session should download.
+     */
+    public SessionScope(int maxConcurrency, long byteBudget) {
+        this.scheduler = new PriorityScheduler(maxConcurrency, byteBudget, this);
+    }
+
+    /**
+     * Returns the scope of the job that is running on the current thread.
+     * @return The scope of the current job, null if the current thread isn't running a job of a
+     *         scope.
+     */
+    public static SessionScope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the scope of the job that is running on the current thread (called by the workers of
+     * the scheduler).
+     * @param scope The scope of the job, null once the thread stopped running jobs.
+     */
+    static void setCurrent(SessionScope scope) {
+        if (scope == null)
+            CURRENT.remove();
+        else
+            CURRENT.set(scope);
+    }
+
+    public PriorityScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Remembers a request of the session, so it is disconnected if the session is cancelled while
+     * the request is in flight.
+     * @param connection The connection of the request.
+     * @return True if the request was remembered, False if the session was already cancelled (the
+     *         connection is disconnected right away).
+     */
+    public boolean trackConnection(HttpURLConnection connection) {
+        synchronized (this.connections) {
+            if (!this.cancelled) {
+                this.connections.add(connection);
+                return true;
+            }
+        }
+
+        connection.disconnect();
+        return false;
+    }
+
+    /**
+     * Adds a listener that will run once the scope is cancelled (right away if it was already
+     * cancelled).
+     * @param listener The listener, should release whatever the session loaded.
+     */
+    public void addOnCancelListener(Runnable listener) {
+        synchronized (this.connections) {
+            if (!this.cancelled) {
+                this.onCancelListeners.add(listener);
+                return;
+            }
+        }
+
+        listener.run();
+    }
+
+    /**
+     * Cancels all the work of the session. Calling it more than once has no effect.
+     */
+    public void cancel() {
+        final ArrayList<HttpURLConnection> inFlight;
+        final ArrayList<Runnable> listeners;
+        synchronized (this.connections) {
+            if (this.cancelled)
+                return;
+            this.cancelled = true;
+
+            inFlight = new ArrayList<>(this.connections);
+            this.connections.clear();
+            listeners = new ArrayList<>(this.onCancelListeners);
+            this.onCancelListeners.clear();
+        }
+
+        // Dropping the waiting jobs and interrupting the running ones:
+        this.scheduler.shutdown();
+
+        // Interrupting the reads that are blocked on the network:
+        for (HttpURLConnection connection : inFlight)
+            connection.disconnect();
+
+        for (Runnable listener : listeners)
+            listener.run();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import com.example.dogclassificationapp.util.Result;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the error categories of the API handlers and of the NegativeCache class,
+ * against the FakeApiServer.
+ */
+public class ApiErrorTest {
+
+    private FakeApiServer server;
+
+    private void startServer(double failureRate) throws IOException {
+        this.server = new FakeApiServer(0, 0, failureRate, 7);
+        WikiAPI.setBaseURL(this.server.getWikiBaseURL());
+        DogImagesAPI.setBaseURL(this.server.getDogImagesBaseURL());
+    }
+
+    @After
+    public void tearDown() {
+        WikiAPI.setBaseURL(WikiAPI.DEFAULT_BASE_URL);
+        DogImagesAPI.setBaseURL(DogImagesAPI.DEFAULT_BASE_URL);
+        if (this.server != null)
+            this.server.close();
+    }
+
+    @Test
+    public void unsupportedBreed_isPermanentAndNeverResent() throws IOException {
+        startServer(0);
+
+        final Result<ArrayList<String>, ApiError> first = DogImagesAPI.getImagesURLs(FakeApiServer.UNKNOWN_PREFIX + "breed", "", 2);
+        assertEquals(ApiError.Category.PERMANENT, first.getError().getCategory());
+        final long requests = this.server.getRequestCount();
+
+        // The second call is answered by the negative cache:
+        final Result<ArrayList<String>, ApiError> second = DogImagesAPI.getImagesURLs(FakeApiServer.UNKNOWN_PREFIX + "breed", "", 2);
+        assertEquals(ApiError.Category.PERMANENT, second.getError().getCategory());
+        assertEquals(requests, this.server.getRequestCount());
+    }
+
+    @Test
+    public void serverErrors_areTransient() throws IOException {
+        startServer(1);
+
+        final Result<ArrayList<String>, ApiError> urlsOpt = DogImagesAPI.getImagesURLs("transient", "", 2);
+        assertTrue(urlsOpt.getError().isTransient());
+    }
+
+    @Test
+    public void getInfos_skipsBreedsWithoutPages() throws IOException {
+        startServer(0);
+
+        final Result<HashMap<String, String>, ApiError> infosOpt = WikiAPI.getInfos(Arrays.asList("Beagle", FakeApiServer.UNKNOWN_PREFIX + " terrier"));
+        assertEquals(Arrays.asList("Beagle"), new ArrayList<>(infosOpt.getValue().keySet()));
+
+        final Result<HashMap<String, String>, ApiError> missingOpt = WikiAPI.getInfos(Arrays.asList(FakeApiServer.UNKNOWN_PREFIX + " hound"));
+        assertEquals(ApiError.Category.PERMANENT, missingOpt.getError().getCategory());
+    }
+
+    @Test
+    public void negativeCache_persistsUnexpiredFailures() throws IOException {
+        final File file = File.createTempFile("negative_cache", ".txt");
+        try {
+            final long now = System.currentTimeMillis();
+            try (FileWriter writer = new FileWriter(file)) {
+                writer.write((now + 60_000) + "\thttp://cached.test/a\tResponse code 404\n");
+                writer.write((now - 60_000) + "\thttp://cached.test/b\tResponse code 404\n");
+                writer.write("corrupted line\n");
+            }
+            NegativeCache.setCacheFile(file);
+
+            assertEquals(ApiError.Category.PERMANENT, NegativeCache.get("http://cached.test/a").getCategory());
+            assertNull(NegativeCache.get("http://cached.test/b"));
+
+            // New failures are appended to the file:
+            NegativeCache.put("http://cached.test/c", ApiError.permanentFailure("Response code 410"));
+            final String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            assertTrue(content.contains("\thttp://cached.test/c\tResponse code 410"));
+        } finally {
+            NegativeCache.setCacheFile(null);
+            assertTrue(file.delete());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import com.example.dogclassificationapp.util.PriorityScheduler;
+import com.example.dogclassificationapp.util.Result;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ApiFuturesTest {
+
+    private PriorityScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        this.scheduler = new PriorityScheduler(2, Long.MAX_VALUE);
+    }
+
+    @After
+    public void tearDown() {
+        this.scheduler.shutdown();
+    }
+
+    @Test
+    public void withRetry_retriesTransientErrorsUntilSuccess() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final CompletableFuture<String> future = ApiFutures.withRetry(() -> ApiFutures.supply(() ->
+                attempts.incrementAndGet() < 3
+                        ? Result.failure(ApiError.transientFailure("Try again"))
+                        : Result.success("Info"), this.scheduler, () -> 0), 10, 5);
+
+        assertEquals("Info", future.get(5, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void withRetry_stopsAtPermanentErrors() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+        final CompletableFuture<String> future = ApiFutures.withRetry(() -> ApiFutures.supply(() -> {
+            attempts.incrementAndGet();
+            return Result.<String, ApiError>failure(ApiError.permanentFailure("Not found"));
+        }, this.scheduler, () -> 0), 10, 5);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(ApiError.Category.PERMANENT, ApiFutures.getError(e.getCause()).getCategory());
+        }
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void withRetry_failsWhenALaterAttemptThrows() throws Exception {
+        // The second attempt is started on the timer's thread:
+        final AtomicInteger attempts = new AtomicInteger();
+        final CompletableFuture<String> future = ApiFutures.withRetry(() -> {
+            if (attempts.incrementAndGet() > 1)
+                throw new IllegalStateException("Broken supplier");
+            return ApiFutures.supply(() -> Result.failure(ApiError.transientFailure("Try again")), this.scheduler, () -> 0);
+        }, 10, 5);
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void supply_runsTheCallOnTheScheduler() throws Exception {
+        final CompletableFuture<String> threadName = ApiFutures.supply(() -> Result.success(Thread.currentThread().getName()), this.scheduler, () -> 0);
+        assertTrue(threadName.get(5, TimeUnit.SECONDS).startsWith("PriorityScheduler-"));
+    }
+
+    @Test
+    public void supply_isCancelledOnceTheSchedulerIsShutDown() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CompletableFuture<String> future = ApiFutures.supply(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Result.success("Info");
+        }, this.scheduler, () -> 0);
+
+        // The result of a call that ends after the shutdown isn't wanted:
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        this.scheduler.shutdown();
+        release.countDown();
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (CancellationException expected) {
+            assertTrue(future.isCancelled());
+        }
+
+        // Calls that are supplied later never run:
+        assertTrue(ApiFutures.supply(() -> Result.success("Info"), this.scheduler, () -> 0).isCancelled());
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import com.example.dogclassificationapp.classifier_logic.Breed;
+import com.example.dogclassificationapp.core.BreedLabels;
+import com.example.dogclassificationapp.util.SessionScope;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * A load test of the API handlers against the FakeApiServer. Every session loads the data of all
+ * the breeds through Breed.loadData, the same way the ClassifierActivity does after a
+ * classification, and the test reports the throughput, latency percentiles, thread counts and
+ * request volume of the sessions. The images that the server returns aren't real images, so they
+ * are downloaded but never decoded.
+ */
+public class ApiLoadTest {
+
+    // The settings of the fake server:
+    private static final long LATENCY_MILLIS = 40;
+    private static final long JITTER_MILLIS = 30;
+    private static final double FAILURE_RATE = 0.05;
+
+    // The amount of classification sessions that run at the same time:
+    private static final int CONCURRENT_SESSIONS = 3;
+
+    // The same settings that the ClassifierActivity gives the scope of a session:
+    private static final int MAX_CONCURRENT_REQUESTS = 6;
+    private static final long SESSION_BYTE_BUDGET = 8L * 1024 * 1024;
+
+    // The labels of the model, and the labels of the dog API (from the assets of the app, which are
+    // on the classpath of the tests):
+    private static List<String> normalBreeds;
+    private static List<String> apiBreeds;
+
+    private FakeApiServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        normalBreeds = readLabels("labels.csv");
+        apiBreeds = readLabels("api_labels.csv");
+        assertEquals(normalBreeds.size(), apiBreeds.size());
+
+        this.server = new FakeApiServer(LATENCY_MILLIS, JITTER_MILLIS, FAILURE_RATE, 42);
+        WikiAPI.setBaseURL(this.server.getWikiBaseURL());
+        DogImagesAPI.setBaseURL(this.server.getDogImagesBaseURL());
+    }
+
+    @After
+    public void tearDown() {
+        WikiAPI.setBaseURL(WikiAPI.DEFAULT_BASE_URL);
+        DogImagesAPI.setBaseURL(DogImagesAPI.DEFAULT_BASE_URL);
+        this.server.close();
+    }
+
+    /**
+     * The statistics of a single round of sessions.
+     */
+    private static class RoundStats {
+        // The time from the start of the round until the info of every breed was loaded:
+        final List<Long> infoLatencies = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger missingInfos = new AtomicInteger();
+        final AtomicInteger peakThreads = new AtomicInteger();
+        final AtomicLong imageBytes = new AtomicLong();
+    }
+
+    @Test
+    public void loadData_completesUnderLatencyAndFailures() throws Exception {
+        // The first round starts with empty caches, the second one reuses the page IDs, the infos
+        // and the pools:
+        final RoundStats cold = runRound("cold");
+        final RoundStats warm = runRound("warm");
+
+        final int breedsPerRound = CONCURRENT_SESSIONS * normalBreeds.size();
+        assertEquals(breedsPerRound, cold.infoLatencies.size());
+        assertEquals(breedsPerRound, warm.infoLatencies.size());
+        assertEquals(0, cold.missingInfos.get() + warm.missingInfos.get());
+        assertTrue(cold.imageBytes.get() > 0);
+    }
+
+    /**
+     * Loads the data of several sessions at the same time and prints its statistics.
+     * @param name The name of the round in the report.
+     * @return The statistics of the round.
+     */
+    private RoundStats runRound(String name) throws Exception {
+        final RoundStats stats = new RoundStats();
+        final long requestsBefore = this.server.getRequestCount();
+        final long failuresBefore = this.server.getFailureCount();
+        final int threadsBefore = Thread.activeCount();
+
+        final long startTime = System.nanoTime();
+        final ArrayList<SessionScope> sessions = new ArrayList<>();
+        final ArrayList<List<Breed>> sessionBreeds = new ArrayList<>();
+        final ArrayList<CompletableFuture<Void>> loads = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_SESSIONS; i++) {
+            final List<Breed> breeds = createBreeds(stats, startTime);
+            final SessionScope session = new SessionScope(MAX_CONCURRENT_REQUESTS, SESSION_BYTE_BUDGET);
+            sessions.add(session);
+            sessionBreeds.add(breeds);
+            loads.add(Breed.loadData(breeds, session));
+        }
+
+        // Sampling the amount of threads until the data of every session was loaded:
+        final CompletableFuture<Void> done = CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]));
+        while (!done.isDone()) {
+            stats.peakThreads.accumulateAndGet(Thread.activeCount(), Math::max);
+            assertTrue("Round " + name + " timed out", System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(120));
+            Thread.sleep(10);
+        }
+        done.get();
+        final long totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+
+        for (int i = 0; i < CONCURRENT_SESSIONS; i++) {
+            for (Breed breed : sessionBreeds.get(i))
+                if (!breed.isInfoLoaded())
+                    stats.missingInfos.incrementAndGet();
+            stats.imageBytes.addAndGet(sessions.get(i).getScheduler().getUsedBytes());
+            sessions.get(i).cancel();
+        }
+
+        final ArrayList<Long> latencies = new ArrayList<>(stats.infoLatencies);
+        Collections.sort(latencies);
+        System.out.printf("[%s] %d breeds in %d ms (%.1f breeds/s), info p50 %d ms, p99 %d ms%n",
+                name, CONCURRENT_SESSIONS * normalBreeds.size(), totalMillis,
+                CONCURRENT_SESSIONS * normalBreeds.size() * 1000.0 / Math.max(1, totalMillis),
+                percentile(latencies, 50), percentile(latencies, 99));
+        System.out.printf("[%s] threads: %d before, %d peak%n", name, threadsBefore, stats.peakThreads.get());
+        System.out.printf("[%s] %d missing infos, %d server requests (%d failed), %d image bytes%n",
+                name, stats.missingInfos.get(), this.server.getRequestCount() - requestsBefore,
+                this.server.getFailureCount() - failuresBefore, stats.imageBytes.get());
+        return stats;
+    }
+
+    /**
+     * Creates the breeds of a classification, the same way the DogClassifier does (from the most
+     * confident label to the least), recording the time that the info of every breed is loaded.
+     */
+    private static List<Breed> createBreeds(RoundStats stats, long startTime) {
+        final ArrayList<Breed> breeds = new ArrayList<>();
+        for (int i = 0; i < normalBreeds.size(); i++) {
+            final Breed breed = new Breed(null, i, normalBreeds.get(i), apiBreeds.get(i), 1.0 - (double) i / normalBreeds.size());
+            final AtomicInteger infoLoaded = new AtomicInteger();
+            breed.setOnDataLoadedListener((loadedBreed, data) -> {
+                if (data == Breed.LoadedData.INFO && loadedBreed.isInfoLoaded() && infoLoaded.getAndIncrement() == 0)
+                    stats.infoLatencies.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            });
+            breeds.add(breed);
+        }
+        return breeds;
+    }
+
+    private static long percentile(List<Long> sortedValues, int percentile) {
+        if (sortedValues.isEmpty())
+            return 0;
+        final int index = (int) Math.ceil(percentile / 100.0 * sortedValues.size()) - 1;
+        return sortedValues.get(Math.max(0, index));
+    }
+
+    private static List<String> readLabels(String fileName) throws IOException {
+        try (InputStream input = ApiLoadTest.class.getClassLoader().getResourceAsStream(fileName)) {
+            assertNotNull("Missing resource " + fileName, input);
+            return BreedLabels.readLabels(input);
+        }
+    }
+}
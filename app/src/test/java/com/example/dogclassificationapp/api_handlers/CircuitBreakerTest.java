@@ -0,0 +1,91 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import com.example.dogclassificationapp.util.Metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the CircuitBreaker class, using a fake clock.
+ */
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+
+    private CircuitBreaker newBreaker(String host) {
+        return new CircuitBreaker(host, 3, 500, now::get);
+    }
+
+    @Test
+    public void breaker_opensAfterConsecutiveFailures() {
+        final CircuitBreaker breaker = newBreaker("opens.test");
+
+        // A success in the middle resets the failures:
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.isAvailable());
+        assertFalse(breaker.allowRequest());
+        assertEquals(1, Metrics.get("circuit_breaker.opens.test.open"));
+        assertEquals(1, Metrics.get("circuit_breaker.opens.test.rejected"));
+    }
+
+    @Test
+    public void breaker_letsASingleProbeThroughWhenHalfOpen() {
+        final CircuitBreaker breaker = newBreaker("probe.test");
+        for (int i = 0; i < 3; i++)
+            breaker.recordFailure();
+
+        // Once the open duration passed, only one request is let through:
+        now.addAndGet(500);
+        assertTrue(breaker.isAvailable());
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        // A failed probe opens the breaker again:
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+
+        // A successful probe closes it:
+        now.addAndGet(500);
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+
+        assertEquals(2, Metrics.get("circuit_breaker.probe.test.open"));
+        assertEquals(2, Metrics.get("circuit_breaker.probe.test.half_open"));
+        assertEquals(1, Metrics.get("circuit_breaker.probe.test.closed"));
+    }
+
+    @Test
+    public void breaker_letsAnotherProbeThroughAfterAReleasedOne() {
+        final CircuitBreaker breaker = newBreaker("release.test");
+        for (int i = 0; i < 3; i++)
+            breaker.recordFailure();
+        now.addAndGet(500);
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        // The probe's session was cancelled, so its result tells nothing about the host:
+        breaker.release();
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-process HTTP server that stands in for Wikipedia and the dog API in local tests. It serves
+ * responses built from the recorded extracts in the "wiki_extracts" resources directory, and can
+ * add latency, jitter and random failures to every response.
+ */
+public class FakeApiServer implements AutoCloseable {
+
+    // The recorded extracts that the extract responses are built from:
+    private static final String[] EXTRACTS = {
+            "affenpinscher", "basenji", "beagle", "chihuahua", "dingo", "leonberger", "papillon",
+            "samoyed", "shih_tzu"
+    };
+
+    // Breeds whose names start with this prefix don't exist (the dog API returns 404 for them, and
+    // Wikipedia has no search results for them):
+    public static final String UNKNOWN_PREFIX = "unknown";
+
+    // The size of every fake image that the server returns:
+    private static final int IMAGE_SIZE = 2048;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    // The latency settings of the server:
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double failureRate;
+    private final Random random;
+
+    // The recorded extracts, loaded once:
+    private final ArrayList<String> extracts = new ArrayList<>();
+
+    // Whether the extract requests are answered with an error of the API itself (with a successful
+    // status, like MediaWiki does when it rate-limits the requests):
+    private volatile boolean extractErrors = false;
+
+    // Statistics of the requests that the server received:
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * Starts the server on a random local port.
+     * @param latencyMillis The average time the server waits before responding.
+     * @param jitterMillis The maximum random difference from the average latency.
+     * @param failureRate The probability (0-1) that a request is answered with a 503 error.
+     * @param seed The seed of the randomness of the jitter and the failures.
+     * @throws IOException If the server couldn't be started or the extracts couldn't be loaded.
+     */
+    public FakeApiServer(long latencyMillis, long jitterMillis, double failureRate, long seed) throws IOException {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.failureRate = failureRate;
+        this.random = new Random(seed);
+
+        for (String extract : EXTRACTS)
+            this.extracts.add(readResource("wiki_extracts/" + extract + ".txt"));
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/w/api.php", this::handleWiki);
+        this.server.createContext("/api/breed/", this::handleDogImages);
+        this.server.createContext("/img/", this::handleImage);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    public String getWikiBaseURL() {
+        return getServerURL() + "/w/api.php";
+    }
+
+    public String getDogImagesBaseURL() {
+        return getServerURL() + "/api";
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    public void setExtractErrors(boolean extractErrors) {
+        this.extractErrors = extractErrors;
+    }
+
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private String getServerURL() {
+        return "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Waits for the configured latency and decides if the current request should fail.
+     * @return True if the request should be answered with an error.
+     */
+    private boolean simulateNetwork() {
+        this.requestCount.incrementAndGet();
+
+        final long delay;
+        final boolean fail;
+        synchronized (this.random) {
+            delay = Math.max(0, this.latencyMillis + (long) ((this.random.nextDouble() * 2 - 1) * this.jitterMillis));
+            fail = this.random.nextDouble() < this.failureRate;
+        }
+
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (fail)
+            this.failureCount.incrementAndGet();
+        return fail;
+    }
+
+    private void handleWiki(HttpExchange exchange) throws IOException {
+        if (simulateNetwork()) {
+            respond(exchange, 503, "{\"error\":{\"code\":\"unavailable\"}}");
+            return;
+        }
+
+        final Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+
+        // A search request, the page ID is derived from the searched name:
+        if (query.containsKey("srsearch")) {
+            final String name = query.get("srsearch");
+            if (name.startsWith(UNKNOWN_PREFIX)) {
+                respond(exchange, 200, "{\"batchcomplete\":\"\",\"query\":{\"searchinfo\":{\"totalhits\":0},\"search\":[]}}");
+                return;
+            }
+            respond(exchange, 200, "{\"batchcomplete\":\"\",\"continue\":{\"sroffset\":1,\"continue\":\"-||\"}," +
+                    "\"query\":{\"searchinfo\":{\"totalhits\":1},\"search\":[{\"ns\":0,\"title\":" +
+                    quote(name) + ",\"pageid\":" + getPageID(name) + ",\"size\":4096,\"wordcount\":512}]}}");
+            return;
+        }
+
+        if (this.extractErrors) {
+            respond(exchange, 200, "{\"error\":{\"code\":\"ratelimited\",\"info\":\"You've exceeded your rate limit.\"},\"servedby\":\"mw1\"}");
+            return;
+        }
+
+        // An extract request, every page gets one of the recorded extracts:
+        final StringBuilder pages = new StringBuilder();
+        for (String pageID : query.getOrDefault("pageids", "").split("\\|")) {
+            if (pageID.isEmpty())
+                continue;
+            if (pages.length() > 0)
+                pages.append(',');
+
+            final String extract = this.extracts.get(Integer.parseInt(pageID) % this.extracts.size());
+            pages.append('"').append(pageID).append("\":{\"pageid\":").append(pageID)
+                    .append(",\"ns\":0,\"title\":\"Page ").append(pageID)
+                    .append("\",\"extract\":").append(quote(extract)).append('}');
+        }
+        respond(exchange, 200, "{\"batchcomplete\":\"\",\"query\":{\"pages\":{" + pages + "}}}");
+    }
+
+    private void handleDogImages(HttpExchange exchange) throws IOException {
+        if (simulateNetwork()) {
+            respond(exchange, 503, "{\"status\":\"error\",\"message\":\"Service unavailable\",\"code\":503}");
+            return;
+        }
+
+        // The path is: /api/breed/{breed}[/{sub_breed}]/images/random/{num_images}
+        final String path = exchange.getRequestURI().getPath();
+        final String[] parts = path.split("/");
+        final int numImages = Integer.parseInt(parts[parts.length - 1]);
+        final String breed = path.substring("/api/breed/".length(), path.indexOf("/images/")).replace('/', '-');
+        if (breed.startsWith(UNKNOWN_PREFIX)) {
+            respond(exchange, 404, "{\"status\":\"error\",\"message\":\"Breed not found (master breed does not exist)\",\"code\":404}");
+            return;
+        }
+
+        final StringBuilder urls = new StringBuilder();
+        for (int i = 0; i < numImages; i++) {
+            if (i > 0)
+                urls.append(',');
+            // Escaping "/" like the dog API does:
+            urls.append(quote(getServerURL() + "/img/" + breed + "/n" + i + ".jpg").replace("/", "\\/"));
+        }
+        respond(exchange, 200, "{\"message\":[" + urls + "],\"status\":\"success\"}");
+    }
+
+    private void handleImage(HttpExchange exchange) throws IOException {
+        if (simulateNetwork()) {
+            respond(exchange, 503, "");
+            return;
+        }
+
+        exchange.sendResponseHeaders(200, IMAGE_SIZE);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(new byte[IMAGE_SIZE]);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static int getPageID(String name) {
+        return (name.hashCode() & 0x7FFFFF) + 1;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        final HashMap<String, String> query = new HashMap<>();
+        if (rawQuery == null)
+            return query;
+
+        for (String pair : rawQuery.split("&")) {
+            final int separatorIdx = pair.indexOf('=');
+            if (separatorIdx < 0)
+                query.put(URLDecoder.decode(pair, "UTF-8"), "");
+            else
+                query.put(URLDecoder.decode(pair.substring(0, separatorIdx), "UTF-8"), URLDecoder.decode(pair.substring(separatorIdx + 1), "UTF-8"));
+        }
+        return query;
+    }
+
+    /**
+     * Quotes a string as a JSON string, escaping every non-ASCII char as "\\uXXXX".
+     */
+    private static String quote(String value) {
+        final StringBuilder builder = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                builder.append('\\').append(c);
+            else if (c == '\n')
+                builder.append("\\n");
+            else if (c < 0x20 || c > 0x7E)
+                builder.append(String.format("\\u%04x", (int) c));
+            else
+                builder.append(c);
+        }
+        return builder.append('"').toString();
+    }
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream in = FakeApiServer.class.getClassLoader().getResourceAsStream(name)) {
+            if (in == null)
+                throw new IOException("Missing resource " + name);
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+                bytes.write(buffer, 0, read);
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the JsonPullReader class.
+ */
+public class JsonPullReaderTest {
+
+    private static JsonPullReader readerOf(String json) {
+        return new JsonPullReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void nextString_decodesEscapes() throws IOException {
+        final JsonPullReader reader = readerOf("[\"a\\\"b\\\\c\\/d\\ne\\u00f1\\u200A\\ud83d\\udc15\"]");
+        reader.beginArray();
+        assertEquals("a\"b\\c/d\ne\u00f1\u200A\ud83d\udc15", reader.nextString());
+        reader.endArray();
+        assertEquals(JsonPullReader.Token.END_DOCUMENT, reader.peek());
+    }
+
+    @Test
+    public void nextString_readsStringsLongerThanTheBuffer() throws IOException {
+        final StringBuilder longString = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+            longString.append((char) ('a' + i % 26));
+
+        final JsonPullReader reader = readerOf("{\"extract\":\"" + longString + "\\u00e9\"}");
+        reader.beginObject();
+        assertEquals("extract", reader.nextName());
+        assertEquals(longString + "\u00e9", reader.nextString());
+        reader.endObject();
+    }
+
+    @Test
+    public void skipToName_skipsNestedValues() throws IOException {
+        final JsonPullReader reader = readerOf(
+                "{\"batchcomplete\":\"\",\"continue\":{\"sroffset\":10,\"a\":[1,{\"b\":null},true]}," +
+                "\"query\":{\"search\":[{\"ns\":0,\"title\":\"Beagle\",\"pageid\":4368}]}}");
+        reader.beginObject();
+        assertTrue(reader.skipToName("query"));
+        reader.beginObject();
+        assertTrue(reader.skipToName("search"));
+        reader.beginArray();
+        reader.beginObject();
+        assertTrue(reader.skipToName("pageid"));
+        assertEquals(4368, reader.nextInt());
+        assertFalse(reader.skipToName("missing"));
+        reader.endObject();
+    }
+
+    @Test
+    public void reader_stopsWithoutReadingTheRestOfTheStream() throws IOException {
+        final byte[] head = "{\"message\":\"first\",".getBytes(StandardCharsets.UTF_8);
+
+        // A stream that fails if it is read past the first property:
+        final InputStream stream = new InputStream() {
+            private int pos = 0;
+
+            @Override
+            public int read() throws IOException {
+                if (pos < head.length)
+                    return head[pos++];
+                throw new IOException("Read too far");
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (pos >= head.length)
+                    throw new IOException("Read too far");
+                final int count = Math.min(len, head.length - pos);
+                System.arraycopy(head, pos, b, off, count);
+                pos += count;
+                return count;
+            }
+        };
+
+        final JsonPullReader reader = new JsonPullReader(stream);
+        reader.beginObject();
+        assertTrue(reader.skipToName("message"));
+        assertEquals("first", reader.nextString());
+    }
+}
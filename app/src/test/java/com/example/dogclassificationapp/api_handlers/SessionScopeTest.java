@@ -0,0 +1,99 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import com.example.dogclassificationapp.util.SessionScope;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * A leak test of the SessionScope class: once a session is cancelled while its requests are in
+ * flight, none of its threads, callbacks or data may outlive it.
+ */
+public class SessionScopeTest {
+
+    // Long enough that every request is still in flight when the session is cancelled:
+    private static final long LATENCY_MILLIS = 5_000;
+
+    private FakeApiServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = new FakeApiServer(LATENCY_MILLIS, 0, 0, 11);
+    }
+
+    @After
+    public void tearDown() {
+        this.server.close();
+    }
+
+    @Test
+    public void cancel_stopsEverythingThatBelongsToTheSession() throws InterruptedException {
+        final SessionScope session = new SessionScope(4, Long.MAX_VALUE);
+        final AtomicInteger callbacks = new AtomicInteger();
+
+        // The data of the session, only referenced by its jobs and its cancel listener:
+        Object[] sessionData = new Object[1024];
+        final WeakReference<Object[]> sessionDataRef = new WeakReference<>(sessionData);
+        final Object[][] loaded = {sessionData};
+        session.addOnCancelListener(() -> loaded[0] = null);
+
+        final String dogImagesBaseURL = this.server.getDogImagesBaseURL();
+        final String imagesURL = dogImagesBaseURL.substring(0, dogImagesBaseURL.length() - "/api".length()) + "/img/beagle/n";
+        for (int i = 0; i < 20; i++) {
+            final String url = imagesURL + i + ".jpg";
+            final Object[] data = sessionData;
+            ApiFutures.withRetry(() -> ApiFutures.supply(() -> DogImagesAPI.getImageStream(url), session.getScheduler(), () -> 0), 200, 10)
+                    .whenComplete((value, throwable) -> {
+                        // A call of a cancelled session is cancelled, without a result:
+                        if (throwable instanceof CancellationException)
+                            return;
+                        callbacks.incrementAndGet();
+                        data[0] = throwable == null ? value : throwable;
+                    });
+        }
+        sessionData = null;
+
+        // Waiting until the first requests are in flight:
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (this.server.getRequestCount() < 4 && System.nanoTime() < deadline)
+            Thread.sleep(10);
+        assertEquals(4, countSchedulerThreads());
+
+        session.cancel();
+
+        // The in-flight reads are disconnected, so the workers end long before the responses:
+        final long cancelDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (countSchedulerThreads() > 0 && System.nanoTime() < cancelDeadline)
+            Thread.sleep(10);
+        assertEquals(0, countSchedulerThreads());
+        assertEquals(0, callbacks.get());
+        assertEquals(4, this.server.getRequestCount());
+
+        // A cancelled request doesn't count against its host:
+        assertEquals(CircuitBreaker.State.CLOSED, CircuitBreaker.forHost("127.0.0.1").getState());
+
+        // Nothing references the data of the session anymore:
+        for (int i = 0; i < 20 && sessionDataRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertNull(sessionDataRef.get());
+    }
+
+    private static int countSchedulerThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            if (thread.isAlive() && thread.getName().startsWith("PriorityScheduler-"))
+                count++;
+        return count;
+    }
+}
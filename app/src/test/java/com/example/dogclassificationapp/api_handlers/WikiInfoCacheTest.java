@@ -0,0 +1,74 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import com.example.dogclassificationapp.util.Result;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the information cache of the WikiAPI class, against the FakeApiServer.
+ */
+public class WikiInfoCacheTest {
+
+    @Test
+    public void getInfos_onlyFetchesBreedsThatArentCached() throws IOException {
+        final File file = File.createTempFile("wiki_infos", ".txt");
+        try (FakeApiServer server = new FakeApiServer(0, 0, 0, 3)) {
+            WikiAPI.setBaseURL(server.getWikiBaseURL());
+
+            try (FileWriter writer = new FileWriter(file)) {
+                writer.write("Cached spaniel\tFirst line.\\nSecond\\tline with a \\\\.\n");
+                writer.write("corrupted line\n");
+            }
+            WikiAPI.setInfoCacheFile(file);
+
+            // A cached breed is served without any request:
+            final Result<HashMap<String, String>, ApiError> cachedOpt = WikiAPI.getInfos(Arrays.asList("Cached spaniel"));
+            assertEquals("First line.\nSecond\tline with a \\.", cachedOpt.getValue().get("Cached spaniel"));
+            assertEquals(0, server.getRequestCount());
+
+            // Only the missing breed is fetched, and it is added to the file:
+            final Result<HashMap<String, String>, ApiError> mixedOpt = WikiAPI.getInfos(Arrays.asList("Cached spaniel", "Prewarmed dingo"));
+            assertEquals(2, mixedOpt.getValue().size());
+            assertTrue(WikiAPI.isInfoCached("Prewarmed dingo"));
+
+            final String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            assertTrue(content.contains("Prewarmed dingo\t"));
+        } finally {
+            WikiAPI.setBaseURL(WikiAPI.DEFAULT_BASE_URL);
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void getInfos_failsTransientlyOnAnErrorPayload() throws IOException {
+        try (FakeApiServer server = new FakeApiServer(0, 0, 0, 4)) {
+            WikiAPI.setBaseURL(server.getWikiBaseURL());
+            server.setExtractErrors(true);
+
+            // Neither path treats the error as a missing extract, so nothing is remembered:
+            final Result<String, ApiError> infoOpt = WikiAPI.getInfo("Rate-limited basenji");
+            assertTrue(infoOpt.isErr());
+            assertTrue(infoOpt.getError().isTransient());
+
+            final Result<HashMap<String, String>, ApiError> infosOpt = WikiAPI.getInfos(Arrays.asList("Rate-limited beagle", "Rate-limited samoyed"));
+            assertTrue(infosOpt.isErr());
+            assertTrue(infosOpt.getError().isTransient());
+
+            server.setExtractErrors(false);
+            assertTrue(WikiAPI.getInfo("Rate-limited basenji").isOk());
+            assertEquals(2, WikiAPI.getInfos(Arrays.asList("Rate-limited beagle", "Rate-limited samoyed")).getValue().size());
+        } finally {
+            WikiAPI.setBaseURL(WikiAPI.DEFAULT_BASE_URL);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.dogclassificationapp.api_handlers;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Golden test for the WikiTextNormalizer class. Every file in the "wiki_extracts" resources
+ * directory is a recorded extract, and its ".golden.txt" file is the output that the old
+ * multi-pass pipeline (getInfoUntilTitle, removeOddChars and removeColonNumber) produced for it.
+ */
+public class WikiTextNormalizerTest {
+
+    // The names of the recorded extracts:
+    private static final String[] EXTRACTS = {
+            "affenpinscher", "basenji", "beagle", "chihuahua", "dingo", "edge_cases", "leonberger",
+            "papillon", "samoyed", "shih_tzu"
+    };
+
+    private static String readResource(String name) throws IOException {
+        try (InputStream in = WikiTextNormalizerTest.class.getClassLoader().getResourceAsStream("wiki_extracts/" + name)) {
+            assertNotNull("Missing resource " + name, in);
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) > 0)
+                bytes.write(buffer, 0, read);
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void normalize_matchesGoldenOutputs() throws IOException {
+        for (String extract : EXTRACTS) {
+            final String input = readResource(extract + ".txt");
+            final String expected = readResource(extract + ".golden.txt");
+            assertEquals(extract, expected, WikiTextNormalizer.normalize(input));
+        }
+    }
+
+    @Test
+    public void normalize_handlesSurrogatesAndMarks() {
+        // Lone surrogates are removed, valid pairs are kept:
+        assertEquals("ab\ud83d\udc15", WikiTextNormalizer.normalize("a\ud800b\ud83d\udc15\udc00"));
+
+        // A number followed by a combining mark doesn't end at a word boundary:
+        assertEquals("e:1\u0301", WikiTextNormalizer.normalize("e:1\u0301"));
+
+        // A supplementary letter is a word char:
+        assertEquals("\ud800\udc00-", WikiTextNormalizer.normalize("\ud800\udc00:1-"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.dogclassificationapp.classifier_logic;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ClassifierCascadeTest {
+
+    private static final float[] SURE = {0.05f, 0.9f, 0.05f};
+    private static final float[] LOW_CONFIDENCE = {0.3f, 0.5f, 0.2f};
+    private static final float[] CLOSE_SECOND = {0.35f, 0.65f, 0f};
+    private static final float[] FULL = {0f, 0f, 1f};
+
+    // Counts the runs of the full model:
+    private final AtomicInteger fullRuns = new AtomicInteger();
+
+    private ClassifierCascade.Stage full() {
+        return input -> {
+            this.fullRuns.incrementAndGet();
+            return Optional.of(FULL);
+        };
+    }
+
+    private ClassifierCascade.Classification classify(ClassifierCascade.Stage firstStage) {
+        final ClassifierCascade cascade = new ClassifierCascade(firstStage, full(), 0.6f, 0.3f);
+        return cascade.classify(ByteBuffer.allocate(4)).orElseThrow(AssertionError::new);
+    }
+
+    @Test
+    public void classify_skipsTheFullModelWhenTheFirstStageIsSure() {
+        final ClassifierCascade.Classification classification = classify(input -> Optional.of(SURE));
+
+        assertFalse(classification.usedFullModel());
+        assertArrayEquals(SURE, classification.getConfidences(), 0f);
+        assertNull(classification.getFullConfidences());
+        assertEquals(0, this.fullRuns.get());
+    }
+
+    @Test
+    public void classify_runsTheFullModelWhenTheFirstStageIsUnsure() {
+        for (float[] unsure : new float[][] {LOW_CONFIDENCE, CLOSE_SECOND}) {
+            final ClassifierCascade.Classification classification = classify(input -> Optional.of(unsure));
+
+            assertTrue(classification.usedFullModel());
+            assertArrayEquals(FULL, classification.getConfidences(), 0f);
+            assertArrayEquals(unsure, classification.getFirstStageConfidences(), 0f);
+        }
+        assertEquals(2, this.fullRuns.get());
+    }
+
+    @Test
+    public void classify_runsTheFullModelWhenTheFirstStageFails() {
+        assertTrue(classify(input -> Optional.empty()).usedFullModel());
+        assertTrue(classify(input -> {
+            throw new IllegalStateException("The interpreter was closed");
+        }).usedFullModel());
+        assertTrue(classify(null).usedFullModel());
+        assertEquals(3, this.fullRuns.get());
+    }
+}
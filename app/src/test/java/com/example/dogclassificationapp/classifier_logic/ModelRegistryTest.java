@@ -0,0 +1,228 @@
+package com.example.dogclassificationapp.classifier_logic;
+
+import com.example.dogclassificationapp.util.Result;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class ModelRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A model that outputs its version, and takes a fixed time per run.
+     */
+    private static class FakeModel implements ModelRegistry.Model {
+        final int version;
+        final long runNanos;
+        final CountDownLatch started = new CountDownLatch(1);
+        volatile CountDownLatch gate;
+        volatile boolean closed = false;
+
+        FakeModel(int version, long runMicros) {
+            this.version = version;
+            this.runNanos = TimeUnit.MICROSECONDS.toNanos(runMicros);
+        }
+
+        @Override
+        public float[] run(ByteBuffer input) {
+            assertFalse("A closed model ran", this.closed);
+            this.started.countDown();
+            if (this.gate != null) {
+                try {
+                    this.gate.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            final long end = System.nanoTime() + this.runNanos;
+            while (System.nanoTime() < end)
+                LockSupport.parkNanos(end - System.nanoTime());
+            return new float[] {this.version};
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+    // The models that the loader returns, by the names of their files (a missing name fails to
+    // load):
+    private final Map<String, FakeModel> models = new HashMap<>();
+    private ModelRegistry registry;
+
+    @Before
+    public void setUp() {
+        this.registry = new ModelRegistry(this.folder.getRoot(), file -> {
+            final FakeModel model = this.models.get(file.getName());
+            return model != null ? Result.success(model) : Result.failure("Invalid signature");
+        });
+    }
+
+    private FakeModel addVersion(int version, long runMicros) throws IOException {
+        final File file = this.registry.getModelFile(version);
+        assertTrue(file.createNewFile());
+        final FakeModel model = new FakeModel(version, runMicros);
+        this.models.put(file.getName(), model);
+        return model;
+    }
+
+    private float run() {
+        final Result<float[], String> result = this.registry.run(ByteBuffer.allocate(4));
+        assertTrue(result.isOk());
+        return result.getValue()[0];
+    }
+
+    @Test
+    public void installLatest_skipsVersionsThatFailValidation() throws IOException {
+        addVersion(1, 0);
+        addVersion(2, 0);
+        assertTrue(this.registry.getModelFile(3).createNewFile());
+
+        assertEquals(2, this.registry.installLatest());
+        assertEquals(2f, run(), 0f);
+        assertTrue(this.registry.install(3).isErr());
+        assertEquals(2, this.registry.getActiveVersion());
+    }
+
+    @Test
+    public void run_failsWithoutAnInstalledVersion() {
+        assertTrue(this.registry.run(ByteBuffer.allocate(4)).isErr());
+    }
+
+    @Test
+    public void install_keepsTheReplacedVersionOpenForClassificationsThatRun() throws Exception {
+        final FakeModel first = addVersion(1, 0);
+        final FakeModel second = addVersion(2, 0);
+        this.registry.install(1);
+
+        // Replacing the version while a classification runs on it:
+        first.gate = new CountDownLatch(1);
+        final CompletableFuture<Float> running = CompletableFuture.supplyAsync(this::run);
+        assertTrue(first.started.await(5, TimeUnit.SECONDS));
+        this.registry.install(2);
+        assertEquals(2f, run(), 0f);
+        assertFalse(first.closed);
+
+        first.gate.countDown();
+        assertEquals(1f, running.get(5, TimeUnit.SECONDS), 0f);
+        assertTrue(first.closed);
+        assertFalse(second.closed);
+    }
+
+    @Test
+    public void unload_closesTheVersionUntilTheNextRun() throws IOException {
+        final FakeModel first = addVersion(1, 0);
+        this.registry.install(1);
+        run();
+
+        this.registry.unload();
+        assertTrue(first.closed);
+        assertEquals(0, this.registry.getLoadedBytes());
+
+        // The next run loads the version again:
+        final FakeModel reloaded = new FakeModel(1, 0);
+        this.models.put(this.registry.getModelFile(1).getName(), reloaded);
+        assertEquals(1f, run(), 0f);
+        assertFalse(reloaded.closed);
+        assertEquals(1, this.registry.getActiveVersion());
+    }
+
+    @Test
+    public void run_rollsBackAVersionThatIsSlower() throws IOException {
+        final FakeModel first = addVersion(1, 0);
+        final FakeModel second = addVersion(2, 5000);
+        this.registry.install(1);
+        for (int i = 0; i < ModelRegistry.PROBATION_RUNS; i++)
+            run();
+
+        this.registry.install(2);
+        for (int i = 0; i < ModelRegistry.PROBATION_RUNS; i++)
+            assertEquals(2f, run(), 0f);
+
+        assertEquals(1, this.registry.getActiveVersion());
+        assertEquals(1f, run(), 0f);
+        assertTrue(this.registry.isRejected(2));
+        assertTrue(second.closed);
+        assertFalse(first.closed);
+
+        // The rolled back version isn't installed again:
+        assertEquals(1, this.registry.installLatest());
+    }
+
+    @Test
+    public void run_keepsAVersionThatIsAsFast() throws IOException {
+        final FakeModel first = addVersion(1, 2000);
+        addVersion(2, 2000);
+        this.registry.install(1);
+        for (int i = 0; i < ModelRegistry.PROBATION_RUNS; i++)
+            run();
+
+        this.registry.install(2);
+        for (int i = 0; i < ModelRegistry.PROBATION_RUNS + 1; i++)
+            assertEquals(2f, run(), 0f);
+
+        assertEquals(2, this.registry.getActiveVersion());
+        assertFalse(this.registry.isRejected(2));
+        assertTrue(first.closed);
+    }
+
+    @Test
+    public void install_putsTheFirstVersionOnProbationAgainstTheBaseline() throws IOException {
+        addVersion(1, 5000);
+        for (int i = 0; i < ModelRegistry.PROBATION_RUNS; i++)
+            this.registry.recordBaselineLatency(TimeUnit.MICROSECONDS.toNanos(100));
+
+        assertEquals(1, this.registry.installLatest());
+        for (int i = 0; i < ModelRegistry.PROBATION_RUNS; i++)
+            assertEquals(1f, run(), 0f);
+
+        // Nothing is left active, so the classifiers fall back to the bundled model:
+        assertEquals(-1, this.registry.getActiveVersion());
+        assertTrue(this.registry.run(ByteBuffer.allocate(4)).isErr());
+
+        // The rollback and the baseline are remembered by the next run of the app:
+        setUp();
+        assertTrue(this.registry.isRejected(1));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(100), this.registry.getBaselineLatencyNanos());
+        assertEquals(-1, this.registry.installLatest());
+    }
+
+    @Test
+    public void install_makesAVersionThatPassedItsProbationTheBaseline() throws IOException {
+        addVersion(1, 2000);
+        for (int i = 0; i < ModelRegistry.PROBATION_RUNS; i++)
+            this.registry.recordBaselineLatency(TimeUnit.MICROSECONDS.toNanos(2000));
+        this.registry.install(1);
+        for (int i = 0; i < ModelRegistry.PROBATION_RUNS; i++)
+            run();
+        assertEquals(1, this.registry.getActiveVersion());
+
+        // The next run of the app compares new versions with it, but doesn't check it again:
+        setUp();
+        assertTrue(this.registry.getBaselineLatencyNanos() >= TimeUnit.MICROSECONDS.toNanos(2000));
+        assertEquals(1, this.registry.installLatest());
+        this.models.put(this.registry.getModelFile(1).getName(), new FakeModel(1, 10000));
+        this.registry.install(1);
+        for (int i = 0; i < ModelRegistry.PROBATION_RUNS; i++)
+            run();
+        assertEquals(1, this.registry.getActiveVersion());
+        assertFalse(this.registry.isRejected(1));
+    }
+}
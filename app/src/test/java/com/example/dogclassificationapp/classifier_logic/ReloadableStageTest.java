@@ -0,0 +1,78 @@
+package com.example.dogclassificationapp.classifier_logic;
+
+import com.example.dogclassificationapp.util.Result;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReloadableStageTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A model that outputs the index of its load, and remembers whether it was closed.
+     */
+    private static class FakeModel implements ModelRegistry.Model {
+        final int load;
+        boolean closed = false;
+
+        FakeModel(int load) {
+            this.load = load;
+        }
+
+        @Override
+        public float[] run(ByteBuffer input) {
+            assertFalse("A closed model ran", this.closed);
+            return new float[] {this.load};
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+    @Test
+    public void unload_closesTheModelAndTheNextRunLoadsItAgain() throws IOException {
+        final File file = folder.newFile();
+        Files.write(file.toPath(), new byte[100]);
+        final List<FakeModel> loaded = new ArrayList<>();
+        final FakeModel first = new FakeModel(0);
+        final ReloadableStage stage = new ReloadableStage(file, modelFile -> {
+            final FakeModel model = new FakeModel(loaded.size() + 1);
+            loaded.add(model);
+            return Result.success(model);
+        }, first);
+
+        assertEquals(0, stage.run(ByteBuffer.allocate(1)).get()[0], 0);
+        assertEquals(100, stage.getLoadedBytes());
+
+        assertEquals(100, stage.unload());
+        assertTrue(first.closed);
+        assertEquals(0, stage.getLoadedBytes());
+        assertEquals(0, stage.unload());
+
+        assertEquals(1, stage.run(ByteBuffer.allocate(1)).get()[0], 0);
+        assertEquals(1, loaded.size());
+        assertEquals(100, stage.getLoadedBytes());
+    }
+
+    @Test
+    public void run_isEmptyIfLoadingAgainFails() throws IOException {
+        final ReloadableStage stage = new ReloadableStage(folder.newFile(), modelFile -> Result.failure("Broken"), new FakeModel(0));
+        stage.unload();
+
+        assertFalse(stage.run(ByteBuffer.allocate(1)).isPresent());
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.dogclassificationapp.database;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BreedStatisticsTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    // Local noon of a day, so whole days before or after it are other local days even across a
+    // daylight saving change:
+    private static final long NOW;
+    static {
+        final long midnight = BreedStatistics.getDay(1_700_000_000_000L) * DAY;
+        NOW = midnight + DAY / 2 - TimeZone.getDefault().getOffset(midnight);
+    }
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void record_countsTopBreedsAndAppearances() {
+        final BreedStatistics statistics = new BreedStatistics(120);
+        statistics.record(NOW, new int[] {5, 7, 9}, new float[] {0.95f, 0.03f, 0.01f});
+        statistics.record(NOW, new int[] {5, 9}, new float[] {0.42f, 0.4f});
+        statistics.record(NOW, new int[] {9, 5}, new float[] {1f, 0f});
+        statistics.record(NOW, new int[0], new float[0]);
+
+        assertEquals(4, statistics.getTotalClassifications());
+        assertEquals(2, statistics.getTopCount(5));
+        assertEquals(1, statistics.getTopCount(9));
+        assertEquals(0, statistics.getTopCount(7));
+        assertEquals(3, statistics.getAppearances(5));
+        assertEquals(3, statistics.getAppearances(9));
+        assertEquals(Arrays.asList(5, 9), statistics.getMostSeen(3));
+
+        final int[] histogram = statistics.getConfidenceHistogram(5);
+        assertEquals(1, histogram[4]);
+        assertEquals(1, histogram[9]);
+        assertEquals(1, statistics.getConfidenceHistogram(9)[BreedStatistics.CONFIDENCE_BUCKETS - 1]);
+    }
+
+    @Test
+    public void dailyTopCounts_keepOnlyTheRecentDays() {
+        final BreedStatistics statistics = new BreedStatistics(10);
+        statistics.record(NOW - 40 * DAY, new int[] {1}, new float[] {0.5f});
+        statistics.record(NOW - 2 * DAY, new int[] {1}, new float[] {0.5f});
+        statistics.record(NOW - 2 * DAY, new int[] {1}, new float[] {0.5f});
+        statistics.record(NOW, new int[] {1}, new float[] {0.5f});
+
+        // A classification from 30 days before shares the slot of today, and doesn't clear it:
+        statistics.record(NOW - BreedStatistics.TREND_DAYS * DAY, new int[] {1}, new float[] {0.5f});
+
+        final int[] counts = statistics.getDailyTopCounts(1, NOW);
+        final int[] expected = new int[BreedStatistics.TREND_DAYS];
+        expected[BreedStatistics.TREND_DAYS - 3] = 2;
+        expected[BreedStatistics.TREND_DAYS - 1] = 1;
+        assertArrayEquals(expected, counts);
+
+        // Thirty days later, all of them are too old:
+        assertArrayEquals(new int[BreedStatistics.TREND_DAYS], statistics.getDailyTopCounts(1, NOW + 30 * DAY));
+    }
+
+    @Test
+    public void saveThenLoad_keepsTheStatistics() throws IOException {
+        final File file = new File(folder.getRoot(), "statistics.bin");
+        final BreedStatistics statistics = new BreedStatistics(120);
+        statistics.record(NOW, new int[] {3, 4}, new float[] {0.7f, 0.2f});
+        statistics.save(file);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        final BreedStatistics loaded = BreedStatistics.load(file, 120);
+        assertNotNull(loaded);
+        assertEquals(1, loaded.getTotalClassifications());
+        assertEquals(1, loaded.getTopCount(3));
+        assertEquals(1, loaded.getAppearances(4));
+        assertEquals(1, loaded.getConfidenceHistogram(3)[7]);
+        assertEquals(1, loaded.getDailyTopCounts(3, NOW)[BreedStatistics.TREND_DAYS - 1]);
+
+        // Statistics of another amount of labels aren't loaded:
+        assertNull(BreedStatistics.load(file, 121));
+        assertNull(BreedStatistics.load(new File(folder.getRoot(), "missing.bin"), 120));
+    }
+}
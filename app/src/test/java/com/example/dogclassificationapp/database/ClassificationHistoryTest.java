@@ -0,0 +1,51 @@
+package com.example.dogclassificationapp.database;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ClassificationHistoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void importFrom_skipsTheEntriesOfAnArchiveThatWasAlreadyImported() throws IOException {
+        final ArrayList<HistoryEntry> history = new ArrayList<>();
+        history.add(new HistoryEntry(1, 1_700_000_300_000L, null, new int[] {5, 7}, new float[] {0.9f, 0.05f}));
+        history.add(new HistoryEntry(2, 1_700_000_200_000L, new byte[] {1, 2, 3}, new int[] {9}, new float[] {0.8f}));
+        history.add(new HistoryEntry(3, 1_700_000_100_000L, null, new int[] {5}, new float[] {0.7f}));
+        final File file = folder.newFile();
+        HistoryArchive.write(file, (after, limit) -> after == null ? history : new ArrayList<>());
+
+        // Writing the entries like the database does, once per time and top breeds:
+        final HashSet<String> written = new HashSet<>();
+        final BreedStatistics statistics = new BreedStatistics(120);
+        try (EmbeddingStore store = EmbeddingStore.open(folder.newFile(), 120)) {
+            for (int expected : new int[] {3, 0}) {
+                assertEquals(expected, ClassificationHistory.importFrom(file, batch -> {
+                    final List<HistoryEntry> inserted = new ArrayList<>();
+                    for (HistoryEntry entry : batch)
+                        if (written.add(entry.getTimestamp() + Arrays.toString(entry.encodeTopBreeds())))
+                            inserted.add(entry);
+                    return inserted;
+                }, store, statistics));
+            }
+            assertEquals(3, store.size());
+        }
+
+        assertEquals(3, statistics.getTotalClassifications());
+        assertEquals(2, statistics.getTopCount(5));
+        assertEquals(1, statistics.getTopCount(9));
+        assertEquals(0, statistics.getTopCount(7));
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.dogclassificationapp.database;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class EmbeddingStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void searchExact_matchesBruteForce() throws IOException {
+        final Random random = new Random(1);
+        final float[][] vectors = new float[3000][16];
+        try (EmbeddingStore store = EmbeddingStore.open(folder.newFile(), 16)) {
+            for (int i = 0; i < vectors.length; i++) {
+                vectors[i] = randomVector(random, 16);
+                store.add(i, vectors[i]);
+            }
+
+            final float[] query = randomVector(random, 16);
+            final List<EmbeddingStore.Neighbor> neighbors = store.searchExact(query, 10);
+            assertEquals(10, neighbors.size());
+
+            // No vector outside the results is more similar than the last result:
+            final HashSet<Long> found = new HashSet<>();
+            for (EmbeddingStore.Neighbor neighbor : neighbors)
+                found.add(neighbor.getKey());
+            final float last = neighbors.get(neighbors.size() - 1).getSimilarity();
+            for (int i = 0; i < vectors.length; i++)
+                if (!found.contains((long) i))
+                    assertTrue(cosine(query, vectors[i]) <= last + 1e-3f);
+
+            // The results are sorted from the most similar:
+            for (int i = 1; i < neighbors.size(); i++)
+                assertTrue(neighbors.get(i - 1).getSimilarity() >= neighbors.get(i).getSimilarity());
+        }
+    }
+
+    @Test
+    public void search_clusteredRecallIsHigh() throws IOException {
+        final Random random = new Random(2);
+        final int dimension = 32;
+        final float[][] centers = new float[40][];
+        for (int c = 0; c < centers.length; c++)
+            centers[c] = randomVector(random, dimension);
+
+        try (EmbeddingStore store = EmbeddingStore.open(folder.newFile(), dimension)) {
+            for (int i = 0; i < 8000; i++)
+                store.add(i, noisy(random, centers[i % centers.length], 0.15f));
+
+            int hits = 0, total = 0;
+            for (int q = 0; q < 50; q++) {
+                final float[] query = noisy(random, centers[q % centers.length], 0.15f);
+                final HashSet<Long> exact = new HashSet<>();
+                for (EmbeddingStore.Neighbor neighbor : store.searchExact(query, 10))
+                    exact.add(neighbor.getKey());
+                for (EmbeddingStore.Neighbor neighbor : store.search(query, 10))
+                    if (exact.contains(neighbor.getKey()))
+                        hits++;
+                total += exact.size();
+            }
+            assertTrue("Recall " + hits + "/" + total, hits >= 0.9 * total);
+        }
+    }
+
+    @Test
+    public void reopen_keepsTheVectors() throws IOException {
+        final File file = folder.newFile();
+        try (EmbeddingStore store = EmbeddingStore.open(file, 4)) {
+            store.add(7, new float[] {3, 0, 4, 0});
+            store.add(7, new float[] {0, 1, 0, 0});
+            store.add(8, new float[] {0, 1, 0, 0});
+        }
+
+        try (EmbeddingStore store = EmbeddingStore.open(file, 4)) {
+            assertEquals(2, store.size());
+            assertArrayEquals(new float[] {0.6f, 0, 0.8f, 0}, store.get(7), 1e-3f);
+            assertNull(store.get(9));
+            assertEquals(8, store.searchExact(new float[] {0, 2, 0, 0}, 1).get(0).getKey());
+        }
+
+        // A different dimension starts an empty store:
+        try (EmbeddingStore store = EmbeddingStore.open(file, 5)) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        final float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++)
+            vector[i] = (float) random.nextGaussian();
+        return vector;
+    }
+
+    private static float[] noisy(Random random, float[] center, float noise) {
+        final float[] vector = new float[center.length];
+        for (int i = 0; i < center.length; i++)
+            vector[i] = center[i] + noise * (float) random.nextGaussian();
+        return vector;
+    }
+
+    private static float cosine(float[] a, float[] b) {
+        float dot = 0, normA = 0, normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / (float) Math.sqrt(normA * normB);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.dogclassificationapp.database;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class HistoryArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeThenRead_keepsTheEntries() throws IOException {
+        final List<HistoryEntry> history = createHistory(1234, new Random(3));
+        final File file = folder.newFile();
+        assertEquals(history.size(), HistoryArchive.write(file, pagesOf(history)));
+
+        final List<HistoryEntry> imported = new ArrayList<>();
+        final AtomicInteger batches = new AtomicInteger();
+        assertEquals(history.size(), HistoryArchive.read(file, 100, batch -> {
+            assertTrue(batch.size() <= 100);
+            batches.incrementAndGet();
+            imported.addAll(batch);
+        }));
+        assertEquals(13, batches.get());
+
+        assertEquals(history.size(), imported.size());
+        for (int i = 0; i < history.size(); i++) {
+            final HistoryEntry expected = history.get(i);
+            final HistoryEntry actual = imported.get(i);
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertArrayEquals(expected.getThumbnail(), actual.getThumbnail());
+            assertEquals(expected.getTopBreedCount(), actual.getTopBreedCount());
+            for (int rank = 0; rank < expected.getTopBreedCount(); rank++) {
+                assertEquals(expected.getLabelIndex(rank), actual.getLabelIndex(rank));
+                assertEquals(expected.getConfidence(rank), actual.getConfidence(rank), 1f / 65535);
+            }
+        }
+    }
+
+    @Test
+    public void read_cutOffFileFails() throws IOException {
+        final File file = folder.newFile();
+        HistoryArchive.write(file, pagesOf(createHistory(50, new Random(4))));
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.setLength(output.length() - 10);
+        }
+
+        try {
+            HistoryArchive.read(file, 10, batch -> { });
+            fail();
+        } catch (IOException expected) {
+            // The sections don't fit the file anymore
+        }
+    }
+
+    @Test
+    public void read_hugeThumbnailLengthFails() throws IOException {
+        // Entries without thumbnails have a single byte of length each, which is replaced by the
+        // length of a thumbnail of about 2 GB:
+        final ArrayList<HistoryEntry> history = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            history.add(new HistoryEntry(i + 1, 1_700_000_000_000L - i, null, new int[0], new float[0]));
+        final File file = folder.newFile();
+        HistoryArchive.write(file, pagesOf(history));
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.seek(output.length() - 5);
+            output.write(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07});
+        }
+
+        try {
+            HistoryArchive.read(file, 10, batch -> { });
+            fail();
+        } catch (IOException expected) {
+            // The thumbnail is longer than the file
+        }
+    }
+
+    @Test
+    public void read_countThatDoesntMatchTheSectionsFails() throws IOException {
+        final File file = folder.newFile();
+        HistoryArchive.write(file, pagesOf(createHistory(50, new Random(6))));
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.seek(8);
+            output.writeInt(Integer.reverseBytes(Integer.MAX_VALUE));
+        }
+
+        try {
+            HistoryArchive.read(file, 10, batch -> fail());
+            fail();
+        } catch (IOException expected) {
+            // The breed counts have a byte for 50 entries only
+        }
+    }
+
+    /**
+     * A benchmark of exporting and importing a large history (the import passes the batches on
+     * without writing them, so only the format is measured).
+     */
+    @Test
+    public void benchmark_largeHistory() throws IOException {
+        final List<HistoryEntry> history = createHistory(200_000, new Random(5));
+        final File file = folder.newFile();
+
+        long start = System.nanoTime();
+        HistoryArchive.write(file, pagesOf(history));
+        final double writeSeconds = (System.nanoTime() - start) / 1e9;
+
+        final AtomicInteger read = new AtomicInteger();
+        start = System.nanoTime();
+        HistoryArchive.read(file, 500, batch -> read.addAndGet(batch.size()));
+        final double readSeconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(history.size(), read.get());
+
+        long thumbnailBytes = 0;
+        for (HistoryEntry entry : history)
+            thumbnailBytes += entry.getThumbnail() == null ? 0 : entry.getThumbnail().length;
+        System.out.println(String.format(Locale.US,
+                "[archive] %d entries, %d bytes (%.1f bytes per entry without thumbnails): export %.0f entries/s, import %.0f entries/s",
+                history.size(), file.length(), (file.length() - thumbnailBytes) / (double) history.size(),
+                history.size() / writeSeconds, history.size() / readSeconds));
+    }
+
+    /**
+     * Creates a history of random entries, from the newest to the oldest.
+     */
+    private static List<HistoryEntry> createHistory(int size, Random random) {
+        final ArrayList<HistoryEntry> history = new ArrayList<>();
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < size; i++) {
+            timestamp -= random.nextInt(60_000);
+            final int breeds = random.nextInt(ClassificationHistory.TOP_BREEDS + 1);
+            final int[] labelIndices = new int[breeds];
+            final float[] confidences = new float[breeds];
+            for (int rank = 0; rank < breeds; rank++) {
+                labelIndices[rank] = random.nextInt(120);
+                confidences[rank] = random.nextFloat();
+            }
+            byte[] thumbnail = null;
+            if (random.nextInt(10) > 0) {
+                thumbnail = new byte[32 + random.nextInt(64)];
+                random.nextBytes(thumbnail);
+            }
+            history.add(new HistoryEntry(i + 1, timestamp, thumbnail, labelIndices, confidences));
+        }
+        return history;
+    }
+
+    /**
+     * Reads the pages of a history that is kept in a list (the ID of an entry is its position + 1).
+     */
+    private static HistoryArchive.PageReader pagesOf(List<HistoryEntry> history) {
+        return (after, limit) -> {
+            final int start = after == null ? 0 : (int) after.getId();
+            return new ArrayList<>(history.subList(start, Math.min(history.size(), start + limit)));
+        };
+    }
+}
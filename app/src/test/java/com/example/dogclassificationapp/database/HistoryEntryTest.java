@@ -0,0 +1,35 @@
+package com.example.dogclassificationapp.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistoryEntryTest {
+
+    @Test
+    public void encodeTopBreeds_decodesBackToTheSameBreeds() {
+        final byte[] thumbnail = {1, 2, 3};
+        final HistoryEntry entry = new HistoryEntry(0, 1_700_000_000_000L, thumbnail,
+                new int[]{42, 7, 119}, new float[]{0.81f, 0.12f, 0.03f});
+
+        final HistoryEntry decoded = HistoryEntry.decode(17, entry.getTimestamp(), thumbnail, entry.encodeTopBreeds());
+        assertEquals(17, decoded.getId());
+        assertEquals(1_700_000_000_000L, decoded.getTimestamp());
+        assertSame(thumbnail, decoded.getThumbnail());
+        assertEquals(3, decoded.getTopBreedCount());
+        for (int rank = 0; rank < 3; rank++) {
+            assertEquals(entry.getLabelIndex(rank), decoded.getLabelIndex(rank));
+            assertEquals(entry.getConfidence(rank), decoded.getConfidence(rank), 0f);
+        }
+    }
+
+    @Test
+    public void decode_withoutTopBreeds_isEmpty() {
+        assertEquals(0, HistoryEntry.decode(1, 0, null, new byte[0]).getTopBreedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsMissingConfidences() {
+        new HistoryEntry(0, 0, null, new int[]{1, 2}, new float[]{0.5f});
+    }
+}
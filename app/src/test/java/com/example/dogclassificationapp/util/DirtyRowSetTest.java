@@ -0,0 +1,75 @@
+package com.example.dogclassificationapp.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DirtyRowSetTest {
+
+    @Test
+    public void drain_coalescesAdjacentRowsOfTheSameKind() {
+        final DirtyRowSet rows = new DirtyRowSet(10);
+        assertTrue(rows.mark(2, 0));
+        assertFalse(rows.mark(3, 0));
+        rows.mark(4, 0);
+        rows.mark(4, 1);
+        rows.mark(7, 0);
+        rows.mark(3, 0);
+
+        final List<String> ranges = new ArrayList<>();
+        rows.drain((start, count, kind) -> ranges.add(start + "+" + count + ":" + kind));
+        assertEquals(Arrays.asList("2+3:0", "7+1:0", "4+1:1"), ranges);
+
+        // Everything was drained, and the next mark schedules another drain:
+        rows.drain((start, count, kind) -> fail());
+        assertTrue(rows.mark(9, 1));
+    }
+
+    @Test
+    public void markFromManyThreads_everyRowIsDrainedOnce() throws InterruptedException {
+        final int numRows = 240;
+        final DirtyRowSet rows = new DirtyRowSet(numRows);
+        final AtomicInteger drainsRequested = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        final Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int first = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int row = first; row < numRows; row += threads.length)
+                    if (rows.mark(row, row % 2))
+                        drainsRequested.incrementAndGet();
+            });
+            threads[t].start();
+        }
+
+        // Draining while the rows are being marked:
+        final int[] drained = new int[numRows];
+        start.countDown();
+        for (Thread thread : threads) {
+            while (thread.isAlive())
+                rows.drain((first, count, kind) -> countRange(drained, first, count));
+        }
+        rows.drain((first, count, kind) -> countRange(drained, first, count));
+
+        for (int row = 0; row < numRows; row++)
+            assertEquals(1, drained[row]);
+        assertTrue(drainsRequested.get() >= 1);
+    }
+
+    private static void countRange(int[] drained, int start, int count) {
+        for (int row = start; row < start + count; row++)
+            drained[row]++;
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.dogclassificationapp.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Float16Test {
+
+    @Test
+    public void everyHalf_roundTripsExactly() {
+        for (int bits = 0; bits <= 0xffff; bits++) {
+            final short half = (short) bits;
+            final float value = Float16.toFloat(half);
+            if (Float.isNaN(value))
+                assertTrue(Float.isNaN(Float16.toFloat(Float16.fromFloat(value))));
+            else
+                assertEquals(half, Float16.fromFloat(value));
+        }
+    }
+
+    @Test
+    public void fromFloat_roundsToTheNearestEven() {
+        assertEquals(1f, Float16.toFloat(Float16.fromFloat(1f + 0x1p-11f)), 0f);
+        assertEquals(1f + 0x1p-9f, Float16.toFloat(Float16.fromFloat(1f + 0x1p-10f + 0x1p-11f)), 0f);
+        assertEquals(Float.POSITIVE_INFINITY, Float16.toFloat(Float16.fromFloat(70000f)), 0f);
+        assertEquals(0x1p-24f, Float16.toFloat(Float16.fromFloat(0x1p-24f)), 0f);
+        assertEquals(0f, Float16.toFloat(Float16.fromFloat(1e-10f)), 0f);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.dogclassificationapp.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameStatsTest {
+
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    public void record_aggregatesJankByState() {
+        final FrameStats stats = new FrameStats();
+
+        // 60 smooth idle frames, and a scroll with 10 smooth frames and 10 janky ones:
+        for (int i = 0; i < 60; i++)
+            stats.record(8 * MILLIS, FrameStats.UiState.IDLE);
+        for (int i = 0; i < 10; i++) {
+            stats.record(12 * MILLIS, FrameStats.UiState.SCROLLING);
+            stats.record(40 * MILLIS, FrameStats.UiState.SCROLLING);
+        }
+
+        assertEquals(60, stats.getFrames(FrameStats.UiState.IDLE));
+        assertEquals(20, stats.getFrames(FrameStats.UiState.SCROLLING));
+        assertEquals(80, stats.getFrames(null));
+        assertEquals(0, stats.getJankPercent(FrameStats.UiState.IDLE), 1e-9);
+        assertEquals(50, stats.getJankPercent(FrameStats.UiState.SCROLLING), 1e-9);
+        assertEquals(12.5, stats.getJankPercent(null), 1e-9);
+        assertEquals(0, stats.getJankPercent(FrameStats.UiState.EXPANDING), 1e-9);
+    }
+
+    @Test
+    public void record_fillsSlowFrameHistogram() {
+        final FrameStats stats = new FrameStats();
+        final long[] frameMillis = {16, 20, 30, 33, 49, 99, 100, 700, 5000};
+        for (long millis : frameMillis)
+            stats.record(millis * MILLIS, FrameStats.UiState.EXPANDING);
+
+        // Buckets: <25, <33, <50, <100, <250, <700, >=700 (the 16ms frame isn't janky):
+        assertArrayEquals(new int[]{1, 1, 2, 1, 1, 0, 2}, stats.getSlowFrameHistogram(FrameStats.UiState.EXPANDING));
+        assertEquals(7, FrameStats.getSlowFrameBucketLabels().length);
+        assertEquals("ge700ms", FrameStats.getSlowFrameBucketLabels()[6]);
+    }
+
+    @Test
+    public void publish_addsToMetricsAndClears() {
+        final FrameStats stats = new FrameStats();
+        final long totalBefore = Metrics.get("frames.data_arriving.total");
+        final long jankyBefore = Metrics.get("frames.data_arriving.janky");
+        final long slowBefore = Metrics.get("frames.data_arriving.slow.lt50ms");
+
+        for (int i = 0; i < 3; i++)
+            stats.record(10 * MILLIS, FrameStats.UiState.DATA_ARRIVING);
+        stats.record(45 * MILLIS, FrameStats.UiState.DATA_ARRIVING);
+
+        final String summary = stats.publish();
+        assertTrue(summary.contains("DATA_ARRIVING: 4 frames, 25.0% janky"));
+        assertEquals(totalBefore + 4, Metrics.get("frames.data_arriving.total"));
+        assertEquals(jankyBefore + 1, Metrics.get("frames.data_arriving.janky"));
+        assertEquals(slowBefore + 1, Metrics.get("frames.data_arriving.slow.lt50ms"));
+        assertEquals(250, Metrics.get("frames.data_arriving.jank_permille"));
+
+        // The next session starts empty:
+        assertEquals(0, stats.getFrames(null));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.dogclassificationapp.util;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MemoryGovernorTest {
+
+    /**
+     * A subsystem that holds a fixed amount of bytes until it's evicted.
+     */
+    private static class FakeSubsystem implements MemoryGovernor.Subsystem {
+        private final String name;
+        private final List<String> evictions;
+        private long bytes;
+
+        FakeSubsystem(String name, long bytes, List<String> evictions) {
+            this.name = name;
+            this.bytes = bytes;
+            this.evictions = evictions;
+        }
+
+        @Override
+        public long getBytes() {
+            return this.bytes;
+        }
+
+        @Override
+        public long evict() {
+            this.evictions.add(this.name);
+            final long freed = this.bytes;
+            this.bytes = 0;
+            return freed;
+        }
+    }
+
+    private final List<String> evictions = new ArrayList<>();
+
+    private MemoryGovernor createGovernor() {
+        final MemoryGovernor governor = new MemoryGovernor();
+        governor.register("model", MemoryGovernor.Priority.MODEL, new FakeSubsystem("model", 4000, this.evictions));
+        governor.register("images", MemoryGovernor.Priority.OFFSCREEN_BITMAPS, new FakeSubsystem("images", 2000, this.evictions));
+        governor.register("text", MemoryGovernor.Priority.CACHE, new FakeSubsystem("text", 100, this.evictions));
+        return governor;
+    }
+
+    @Test
+    public void onTrimMemory_evictsMorePrioritiesAtMoreSevereLevels() {
+        assertEquals(100, createGovernor().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(2100, createGovernor().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(6100, createGovernor().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL));
+        assertEquals(2100, createGovernor().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(100, createGovernor().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND));
+        assertEquals(2100, createGovernor().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_MODERATE));
+        assertEquals(6100, createGovernor().onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE));
+    }
+
+    @Test
+    public void onTrimMemory_evictsInPriorityOrder() {
+        final MemoryGovernor governor = createGovernor();
+        governor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+
+        assertEquals(3, this.evictions.size());
+        assertEquals("text", this.evictions.get(0));
+        assertEquals("images", this.evictions.get(1));
+        assertEquals("model", this.evictions.get(2));
+        assertEquals(0, governor.getTotalBytes());
+    }
+
+    @Test
+    public void getUsage_reportsEverySubsystem() {
+        final MemoryGovernor governor = createGovernor();
+        final Map<String, Long> usage = governor.getUsage();
+
+        assertEquals(Long.valueOf(2000), usage.get("images"));
+        assertEquals(Long.valueOf(4000), usage.get("model"));
+        assertEquals(Long.valueOf(100), usage.get("text"));
+        assertEquals(6100, governor.getTotalBytes());
+    }
+
+    @Test
+    public void unregister_keepsASubsystemThatReplacedIt() {
+        final MemoryGovernor governor = new MemoryGovernor();
+        final FakeSubsystem first = new FakeSubsystem("first", 10, this.evictions);
+        final FakeSubsystem second = new FakeSubsystem("second", 20, this.evictions);
+        governor.register("images", MemoryGovernor.Priority.OFFSCREEN_BITMAPS, first);
+        governor.register("images", MemoryGovernor.Priority.OFFSCREEN_BITMAPS, second);
+
+        governor.unregister("images", first);
+        assertEquals(20, governor.getTotalBytes());
+        governor.unregister("images", second);
+        assertEquals(0, governor.getTotalBytes());
+    }
+}
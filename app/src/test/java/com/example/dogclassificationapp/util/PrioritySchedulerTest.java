@@ -0,0 +1,81 @@
+package com.example.dogclassificationapp.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the PriorityScheduler class.
+ */
+public class PrioritySchedulerTest {
+
+    @Test
+    public void waitingJobs_runByTheirCurrentPriority() throws InterruptedException {
+        final PriorityScheduler scheduler = new PriorityScheduler(1, Long.MAX_VALUE);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(4);
+
+        // The single worker is kept busy while the rest of the jobs are submitted:
+        scheduler.submit(() -> 0, () -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException ignored) {
+                // The test will fail on the order
+            }
+        });
+
+        final int[] priorities = {3, 1, 2, 4};
+        for (int i = 0; i < priorities.length; i++) {
+            final int job = i;
+            scheduler.submit(() -> priorities[job], () -> {
+                order.add(job);
+                done.countDown();
+            });
+        }
+
+        // The last job is re-prioritized before it runs (like a row that became visible):
+        priorities[3] = 0;
+        blocker.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(3, 1, 2, 0), order);
+    }
+
+    @Test
+    public void jobs_neverRunAboveMaxConcurrency() throws InterruptedException {
+        final int maxConcurrency = 3;
+        final PriorityScheduler scheduler = new PriorityScheduler(maxConcurrency, Long.MAX_VALUE);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(30);
+
+        for (int i = 0; i < 30; i++) {
+            scheduler.submit(() -> 0, () -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException ignored) {
+                    // Only the concurrency is checked
+                }
+                running.decrementAndGet();
+                scheduler.addUsedBytes(100);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(maxConcurrency, peak.get());
+        assertEquals(3000, scheduler.getUsedBytes());
+        assertFalse(scheduler.isOverBudget());
+        assertTrue(new PriorityScheduler(1, 0).isOverBudget());
+    }
+}
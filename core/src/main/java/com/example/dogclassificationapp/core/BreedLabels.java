@@ -0,0 +1,80 @@
+package com.example.dogclassificationapp.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A utility class that reads the labels of the model and maps them to the names of the breeds.
+ * It doesn't depend on Android, so the app and the server share it.
+ */
+public final class BreedLabels {
+
+    private BreedLabels() {
+    }
+
+    /**
+     * Reads labels from a CSV file whose first line holds all the labels (it should be the only
+     * line), in the order of the model's outputs.
+     * @param input The content of the file (closed by the caller).
+     * @return The labels, by their indices.
+     * @throws IOException If reading failed or the file is empty.
+     */
+    public static ArrayList<String> readLabels(InputStream input) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        final String line = reader.readLine();
+        if (line == null)
+            throw new IOException("The labels file is empty");
+        return new ArrayList<>(Arrays.asList(line.split(",")));
+    }
+
+    /**
+     * Returns the full name of the breed with the given label, as it is displayed (example:
+     * "japanese spaniel" is "Japanese Spaniel").
+     * @param normalBreed The normal name of the dog breed (from the "labels.csv" file).
+     * @return The full name of the breed.
+     */
+    public static String getFullName(String normalBreed) {
+        final String[] normalBreeds = getDisplayBreedAndSubBreed(normalBreed);
+        return String.format("%s %s", normalBreeds[1], normalBreeds[0]);
+    }
+
+    /**
+     * Returns the main breed and sub-breed of the given label as they are displayed, with the first
+     * letter of each of them in uppercase.
+     * @param normalBreed The normal name of the dog breed (from the "labels.csv" file).
+     * @return An array whose first index is the main breed and second index is sub-breed.
+     */
+    public static String[] getDisplayBreedAndSubBreed(String normalBreed) {
+        final String[] breeds = getBreedAndSubBreed(normalBreed);
+        for (int i = 0; i < breeds.length; i++)
+            if (!breeds[i].isEmpty())
+                breeds[i] = breeds[i].substring(0, 1).toUpperCase() + breeds[i].substring(1);
+        return breeds;
+    }
+
+    /**
+     * Given the full dog name, the function separates and extracts the main breed and sub-breed.
+     * @param fullName The full name of the dog breed (example: "Japanese Spaniel").
+     * @return An array whose first index is the main breed and second index is sub-breed. If the
+     *         full name contains only one word, sub-breed will be an empty string.
+     */
+    public static String[] getBreedAndSubBreed(String fullName) {
+        // Splitting the full name to words:
+        final String[] words = fullName.split(" ");
+
+        // The last word is the main breed, and the words before it are the sub-breed:
+        final String[] breeds = {words[words.length - 1], ""};
+        for (int i = 0; i < words.length - 1; i++) {
+            if (breeds[1].isEmpty())
+                breeds[1] = words[i];
+            else
+                breeds[1] += " " + words[i];
+        }
+        return breeds;
+    }
+}
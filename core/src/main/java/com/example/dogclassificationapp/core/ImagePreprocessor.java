@@ -0,0 +1,51 @@
+package com.example.dogclassificationapp.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A utility class that turns the pixels of images into the input of the model. The pixels are
+ * given as packed ARGB ints (like Android's Bitmap.getPixels and Java's BufferedImage.getRGB), so
+ * it doesn't depend on either platform.
+ */
+public final class ImagePreprocessor {
+
+    // The width and height of the images that the model accepts:
+    public static final int IMAGE_SIZE = 256;
+
+    // The channels of every pixel that the model accepts (RGB):
+    public static final int CHANNELS = 3;
+
+    // The amount of bytes of a single image in the input (a float per channel):
+    public static final int IMAGE_BYTES = IMAGE_SIZE * IMAGE_SIZE * CHANNELS * Float.BYTES;
+
+    private ImagePreprocessor() {
+    }
+
+    /**
+     * Allocates an input for a batch of images, in the byte order that TF-Lite expects.
+     * @param batchSize The amount of images in the batch.
+     * @return The input, empty and ready to be filled by "putImage".
+     */
+    public static ByteBuffer allocateInput(int batchSize) {
+        return ByteBuffer.allocateDirect(batchSize * IMAGE_BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Writes an image into the input at its current position, a row after another. The model was
+     * trained on the channels' values as they are (0-255), so they aren't scaled.
+     * @param argbPixels The pixels of the image, IMAGE_SIZE x IMAGE_SIZE of them, row by row.
+     * @param input The input that the image is written into.
+     * @throws IllegalArgumentException If the amount of pixels doesn't match the model's input.
+     */
+    public static void putImage(int[] argbPixels, ByteBuffer input) {
+        if (argbPixels.length != IMAGE_SIZE * IMAGE_SIZE)
+            throw new IllegalArgumentException("Expected " + IMAGE_SIZE * IMAGE_SIZE + " pixels, got " + argbPixels.length);
+
+        for (int pixel : argbPixels) {
+            input.putFloat((pixel >> 16) & 0xFF); // Red component
+            input.putFloat((pixel >> 8) & 0xFF); // Green component
+            input.putFloat(pixel & 0xFF); // Blue component
+        }
+    }
+}
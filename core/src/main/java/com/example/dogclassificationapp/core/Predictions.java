@@ -0,0 +1,32 @@
+package com.example.dogclassificationapp.core;
+
+import java.util.Arrays;
+
+/**
+ * A utility class that converts the outputs of the model (the confidence of every label, by the
+ * labels' indices) into rankings of the breeds.
+ */
+public final class Predictions {
+
+    private Predictions() {
+    }
+
+    /**
+     * Returns the label indices from the highest confidence to the lowest (labels with the same
+     * confidence stay in their order).
+     * @param confidences The outputs of the model.
+     * @param limit The maximum amount of label indices that are returned.
+     * @return The label indices of the top breeds.
+     */
+    public static int[] getTopLabels(float[] confidences, int limit) {
+        final Integer[] indices = new Integer[confidences.length];
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = i;
+        Arrays.sort(indices, (i1, i2) -> Float.compare(confidences[i2], confidences[i1]));
+
+        final int[] top = new int[Math.min(limit, indices.length)];
+        for (int i = 0; i < top.length; i++)
+            top[i] = indices[i];
+        return top;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.dogclassificationapp.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ImagePreprocessorTest {
+
+    @Test
+    public void putImage_writesTheChannelsOfEveryPixel() {
+        final int[] pixels = new int[ImagePreprocessor.IMAGE_SIZE * ImagePreprocessor.IMAGE_SIZE];
+        Arrays.fill(pixels, 0xff102030);
+        pixels[1] = 0x00ff0080;
+
+        final ByteBuffer input = ImagePreprocessor.allocateInput(2);
+        ImagePreprocessor.putImage(new int[pixels.length], input);
+        ImagePreprocessor.putImage(pixels, input);
+
+        assertEquals(2 * ImagePreprocessor.IMAGE_BYTES, input.position());
+        final int start = ImagePreprocessor.IMAGE_BYTES;
+        assertEquals(0x10, input.getFloat(start), 0f);
+        assertEquals(0x20, input.getFloat(start + 4), 0f);
+        assertEquals(0x30, input.getFloat(start + 8), 0f);
+        assertEquals(0xff, input.getFloat(start + 12), 0f);
+        assertEquals(0x00, input.getFloat(start + 16), 0f);
+        assertEquals(0x80, input.getFloat(start + 20), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void putImage_rejectsImagesOfTheWrongSize() {
+        ImagePreprocessor.putImage(new int[10], ImagePreprocessor.allocateInput(1));
+    }
+
+    @Test
+    public void getTopLabels_ranksByConfidence() {
+        final float[] confidences = {0.1f, 0.5f, 0.05f, 0.3f, 0.05f};
+        assertArrayEquals(new int[] {1, 3, 0}, Predictions.getTopLabels(confidences, 3));
+        assertArrayEquals(new int[] {1, 3, 0, 2, 4}, Predictions.getTopLabels(confidences, 10));
+    }
+}
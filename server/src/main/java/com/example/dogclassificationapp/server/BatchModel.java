@@ -0,0 +1,27 @@
+package com.example.dogclassificationapp.server;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A model that classifies a batch of images in a single run.
+ */
+public interface BatchModel extends AutoCloseable {
+
+    /**
+     * Returns the amount of labels that the model outputs a confidence for.
+     * @return The amount of labels.
+     */
+    int getNumLabels();
+
+    /**
+     * Classifies a batch of images.
+     * @param input The images, written one after the other by ImagePreprocessor.putImage (from the
+     *              start of the buffer).
+     * @param batchSize The amount of images in the input.
+     * @return The confidences of the labels, for every image of the batch.
+     */
+    float[][] run(ByteBuffer input, int batchSize);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,210 @@
+package com.example.dogclassificationapp.server;
+
+import com.example.dogclassificationapp.core.BreedLabels;
+import com.example.dogclassificationapp.core.ImagePreprocessor;
+import com.example.dogclassificationapp.core.Predictions;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.imageio.ImageIO;
+
+/**
+ * An HTTP server that classifies dog images with the app's model. The images of concurrent
+ * requests are classified together by a MicroBatcher.
+ * <ul>
+ *     <li>POST /classify with the bytes of an image (any format that ImageIO reads) responds with
+ *     the top breeds, as JSON.</li>
+ *     <li>GET /stats responds with the amount of batches and images that ran, and the amount of
+ *     batches of every size, as JSON.</li>
+ * </ul>
+ */
+public class ClassificationServer implements AutoCloseable {
+
+    // The amount of breeds in a response:
+    private static final int TOP_BREEDS = 5;
+
+    // The largest image that is accepted, in bytes:
+    private static final int MAX_IMAGE_BYTES = 16 * 1024 * 1024;
+
+    // The labels of the model's outputs:
+    private final List<String> labels;
+
+    // Classifies the images:
+    private final MicroBatcher batcher;
+
+    // The HTTP server, and the threads that handle its requests (they mostly wait for batches):
+    private final HttpServer server;
+    private final ExecutorService handlers;
+
+    /**
+     * The constructor of the ClassificationServer class, the server starts handling requests when
+     * start is called.
+     * @param port The port that the server listens on (0 for any free port).
+     * @param labels The labels of the model's outputs.
+     * @param batcher Classifies the images.
+     * @param handlerThreads The amount of requests that are handled at the same time.
+     * @throws IOException If the port couldn't be bound.
+     */
+    public ClassificationServer(int port, List<String> labels, MicroBatcher batcher, int handlerThreads) throws IOException {
+        this.labels = labels;
+        this.batcher = batcher;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.handlers = Executors.newFixedThreadPool(handlerThreads);
+        this.server.setExecutor(this.handlers);
+        this.server.createContext("/classify", this::handleClassify);
+        this.server.createContext("/stats", this::handleStats);
+    }
+
+    /**
+     * Starts handling requests.
+     */
+    public void start() {
+        this.server.start();
+    }
+
+    /**
+     * Returns the port that the server listens on.
+     * @return The port.
+     */
+    public int getPort() {
+        return this.server.getAddress().getPort();
+    }
+
+    private void handleClassify(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"Use POST\"}");
+                return;
+            }
+
+            final BufferedImage image = readImage(exchange.getRequestBody());
+            if (image == null) {
+                respond(exchange, 400, "{\"error\":\"Not an image\"}");
+                return;
+            }
+
+            final float[] confidences = this.batcher.submit(getPixels(image)).get();
+            respond(exchange, 200, toJson(confidences));
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException)
+                respond(exchange, 503, "{\"error\":\"The server is busy\"}");
+            else
+                respond(exchange, 500, "{\"error\":\"The classification failed\"}");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "{\"error\":\"The server is stopping\"}");
+        } catch (RuntimeException e) {
+            respond(exchange, 500, "{\"error\":\"The classification failed\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            final StringBuilder json = new StringBuilder();
+            json.append("{\"batches\":").append(this.batcher.getBatchCount())
+                    .append(",\"images\":").append(this.batcher.getImageCount())
+                    .append(",\"batchSizes\":{");
+            final long[] counts = this.batcher.getBatchSizeCounts();
+            boolean first = true;
+            for (int size = 1; size < counts.length; size++) {
+                if (counts[size] == 0)
+                    continue;
+                if (!first)
+                    json.append(',');
+                json.append('"').append(size).append("\":").append(counts[size]);
+                first = false;
+            }
+            json.append("}}");
+            respond(exchange, 200, json.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Reads and decodes the image of a request.
+     * @param body The body of the request.
+     * @return The image, null if the body isn't an image (or is too large).
+     * @throws IOException If reading the body failed.
+     */
+    private static BufferedImage readImage(InputStream body) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = body.read(buffer)) != -1) {
+            bytes.write(buffer, 0, read);
+            if (bytes.size() > MAX_IMAGE_BYTES)
+                return null;
+        }
+        try {
+            return ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scales an image to the model's input size, like the app does, and returns its pixels.
+     * @param image The image.
+     * @return The ARGB pixels of the scaled image, row by row.
+     */
+    static int[] getPixels(BufferedImage image) {
+        final int size = ImagePreprocessor.IMAGE_SIZE;
+        final BufferedImage scaled = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        final Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, size, size, null);
+        graphics.dispose();
+        return scaled.getRGB(0, 0, size, size, null, 0, size);
+    }
+
+    private String toJson(float[] confidences) {
+        final StringBuilder json = new StringBuilder("{\"breeds\":[");
+        final int[] top = Predictions.getTopLabels(confidences, TOP_BREEDS);
+        for (int i = 0; i < top.length; i++) {
+            if (i > 0)
+                json.append(',');
+            json.append("{\"label\":\"").append(BreedLabels.getFullName(this.labels.get(top[i])))
+                    .append("\",\"confidence\":").append(String.format(Locale.US, "%.5f", confidences[top[i]]))
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        final byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(body);
+        }
+    }
+
+    /**
+     * Stops the server (the batcher and the model aren't closed).
+     */
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.handlers.shutdown();
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.dogclassificationapp.server;
+
+import com.example.dogclassificationapp.core.ImagePreprocessor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Classifies the images of concurrent requests in batches. A single thread takes the first waiting
+ * image, waits up to a small time window for more images (or until the batch is full), and runs
+ * the whole batch through the model at once. Under light load an image waits at most the window,
+ * and under heavy load the batches fill up before the window ends.
+ */
+public class MicroBatcher implements AutoCloseable {
+
+    // The model that the batches run through:
+    private final BatchModel model;
+
+    // The largest batch, and the longest time that the first image of a batch waits for more:
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+
+    // The images that wait for a batch (full queues reject new images):
+    private final ArrayBlockingQueue<Request> queue;
+
+    // The thread that runs the batches:
+    private final Thread worker;
+    private volatile boolean closed = false;
+
+    // The amount of batches and images that ran, and the amount of batches of every size:
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong imageCount = new AtomicLong();
+    private final AtomicLongArray batchSizeCounts;
+
+    /**
+     * An image that waits for a batch, and the future of its confidences.
+     */
+    private static class Request {
+        final int[] argbPixels;
+        final CompletableFuture<float[]> future = new CompletableFuture<>();
+
+        Request(int[] argbPixels) {
+            this.argbPixels = argbPixels;
+        }
+    }
+
+    /**
+     * The constructor of the MicroBatcher class, starts the thread that runs the batches.
+     * @param model The model that the batches run through.
+     * @param maxBatchSize The largest batch.
+     * @param maxDelayMicros The longest time that the first image of a batch waits for more images.
+     * @param queueCapacity The maximum amount of images that wait for a batch.
+     */
+    public MicroBatcher(BatchModel model, int maxBatchSize, long maxDelayMicros, int queueCapacity) {
+        this.model = model;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSizeCounts = new AtomicLongArray(maxBatchSize + 1);
+
+        this.worker = new Thread(this::runBatches, "MicroBatcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Adds an image to the next batch.
+     * @param argbPixels The pixels of the image (see ImagePreprocessor.putImage).
+     * @return A future of the confidences of the labels. It fails with a RejectedExecutionException
+     *         if too many images are waiting or the batcher was closed, and with an
+     *         IllegalArgumentException if the amount of pixels doesn't match the model's input.
+     */
+    public CompletableFuture<float[]> submit(int[] argbPixels) {
+        final Request request = new Request(argbPixels);
+        if (argbPixels.length != ImagePreprocessor.IMAGE_SIZE * ImagePreprocessor.IMAGE_SIZE)
+            request.future.completeExceptionally(new IllegalArgumentException("Expected "
+                    + ImagePreprocessor.IMAGE_SIZE * ImagePreprocessor.IMAGE_SIZE + " pixels, got " + argbPixels.length));
+        else if (this.closed || !this.queue.offer(request))
+            request.future.completeExceptionally(new RejectedExecutionException(this.closed ? "The batcher was closed" : "Too many images are waiting"));
+        // If the batcher was closed while the image was added, the worker may have already failed
+        // the waiting images, and nothing would take it out of the queue:
+        else if (this.closed && this.queue.remove(request))
+            request.future.completeExceptionally(new RejectedExecutionException("The batcher was closed"));
+        return request.future;
+    }
+
+    private void runBatches() {
+        final ByteBuffer input = ImagePreprocessor.allocateInput(this.maxBatchSize);
+        final ArrayList<Request> batch = new ArrayList<>(this.maxBatchSize);
+        try {
+            while (!this.closed) {
+                final Request first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+
+                // Collecting more images until the batch is full or the window of the first one
+                // ended:
+                final long deadline = System.nanoTime() + this.maxDelayNanos;
+                while (batch.size() < this.maxBatchSize) {
+                    this.queue.drainTo(batch, this.maxBatchSize - batch.size());
+                    final long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= this.maxBatchSize || remaining <= 0)
+                        break;
+                    final Request next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null)
+                        break;
+                    batch.add(next);
+                }
+
+                runBatch(batch, input);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // The batcher was closed
+        }
+
+        // Failing the images that will never run:
+        final RejectedExecutionException closedException = new RejectedExecutionException("The batcher was closed");
+        for (Request request : batch)
+            request.future.completeExceptionally(closedException);
+        Request request;
+        while ((request = this.queue.poll()) != null)
+            request.future.completeExceptionally(closedException);
+    }
+
+    private void runBatch(ArrayList<Request> batch, ByteBuffer input) {
+        // Counting the batch before its images are answered, so the counts include every answer:
+        this.batchCount.incrementAndGet();
+        this.imageCount.addAndGet(batch.size());
+        this.batchSizeCounts.incrementAndGet(batch.size());
+
+        try {
+            input.clear();
+            for (Request request : batch)
+                ImagePreprocessor.putImage(request.argbPixels, input);
+            input.flip();
+
+            final float[][] outputs = this.model.run(input, batch.size());
+            for (int i = 0; i < batch.size(); i++)
+                batch.get(i).future.complete(outputs[i]);
+        } catch (RuntimeException e) {
+            for (Request request : batch)
+                request.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Returns the amount of batches that ran.
+     * @return The amount of batches.
+     */
+    public long getBatchCount() {
+        return this.batchCount.get();
+    }
+
+    /**
+     * Returns the amount of images that ran.
+     * @return The amount of images.
+     */
+    public long getImageCount() {
+        return this.imageCount.get();
+    }
+
+    /**
+     * Returns how many batches of every size ran.
+     * @return The amount of batches, by their sizes (index 0 is always 0).
+     */
+    public long[] getBatchSizeCounts() {
+        final long[] counts = new long[this.batchSizeCounts.length()];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = this.batchSizeCounts.get(i);
+        return counts;
+    }
+
+    /**
+     * Stops running batches, and fails the images that are still waiting. The model isn't closed.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.worker.interrupt();
+        try {
+            this.worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
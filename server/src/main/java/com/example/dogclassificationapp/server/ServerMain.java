@@ -0,0 +1,105 @@
+package com.example.dogclassificationapp.server;
+
+import com.example.dogclassificationapp.core.BreedLabels;
+import com.example.dogclassificationapp.core.ImagePreprocessor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Starts the classification server, or measures the model's throughput for every batch size.
+ * <pre>
+ * server --model dogs.tflite --labels labels.csv [--port 8080] [--max-batch 16]
+ *        [--max-delay-ms 5] [--threads 4] [--handlers 32] [--queue 256] [--benchmark]
+ * </pre>
+ */
+public class ServerMain {
+
+    // The amount of batches that every batch size runs in the benchmark (after a warm-up batch):
+    private static final int BENCHMARK_BATCHES = 20;
+
+    public static void main(String[] args) throws IOException {
+        String modelPath = null;
+        String labelsPath = null;
+        int port = 8080;
+        int maxBatchSize = 16;
+        long maxDelayMillis = 5;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        int handlerThreads = 32;
+        int queueCapacity = 256;
+        boolean benchmark = false;
+
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--model": modelPath = args[++i]; break;
+                case "--labels": labelsPath = args[++i]; break;
+                case "--port": port = Integer.parseInt(args[++i]); break;
+                case "--max-batch": maxBatchSize = Integer.parseInt(args[++i]); break;
+                case "--max-delay-ms": maxDelayMillis = Long.parseLong(args[++i]); break;
+                case "--threads": numThreads = Integer.parseInt(args[++i]); break;
+                case "--handlers": handlerThreads = Integer.parseInt(args[++i]); break;
+                case "--queue": queueCapacity = Integer.parseInt(args[++i]); break;
+                case "--benchmark": benchmark = true; break;
+                default:
+                    System.err.println("Unknown argument: " + args[i]);
+                    System.exit(2);
+            }
+        }
+        if (modelPath == null || labelsPath == null) {
+            System.err.println("Usage: --model <file.tflite> --labels <labels.csv> [--port n] [--max-batch n]"
+                    + " [--max-delay-ms n] [--threads n] [--handlers n] [--queue n] [--benchmark]");
+            System.exit(2);
+        }
+
+        final List<String> labels;
+        try (InputStream input = new FileInputStream(labelsPath)) {
+            labels = BreedLabels.readLabels(input);
+        }
+        final TfLiteBatchModel model = TfLiteBatchModel.load(new File(modelPath), labels.size(), maxBatchSize, numThreads);
+
+        if (benchmark) {
+            printThroughput(model, maxBatchSize);
+            model.close();
+            return;
+        }
+
+        final MicroBatcher batcher = new MicroBatcher(model, maxBatchSize, maxDelayMillis * 1000, queueCapacity);
+        final ClassificationServer server = new ClassificationServer(port, labels, batcher, handlerThreads);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            batcher.close();
+            model.close();
+        }));
+        server.start();
+        System.out.println("Listening on port " + server.getPort());
+    }
+
+    /**
+     * Runs the model with every batch size up to the largest, and prints the images per second and
+     * the latency of a batch for each of them.
+     * @param model The model.
+     * @param maxBatchSize The largest batch size.
+     */
+    static void printThroughput(BatchModel model, int maxBatchSize) {
+        final ByteBuffer input = ImagePreprocessor.allocateInput(maxBatchSize);
+        final int[] pixels = new int[ImagePreprocessor.IMAGE_SIZE * ImagePreprocessor.IMAGE_SIZE];
+        for (int i = 0; i < maxBatchSize; i++)
+            ImagePreprocessor.putImage(pixels, input);
+
+        System.out.println("batch\timages/s\tms/batch");
+        for (int batchSize = 1; batchSize <= maxBatchSize; batchSize++) {
+            model.run(input, batchSize);
+            final long start = System.nanoTime();
+            for (int i = 0; i < BENCHMARK_BATCHES; i++)
+                model.run(input, batchSize);
+            final double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.println(String.format(Locale.US, "%d\t%.1f\t%.2f", batchSize,
+                    BENCHMARK_BATCHES * batchSize / seconds, seconds * 1000 / BENCHMARK_BATCHES));
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.dogclassificationapp.server;
+
+import com.example.dogclassificationapp.core.ImagePreprocessor;
+
+import org.tensorflow.lite.Interpreter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A BatchModel that runs a TF-Lite model with the TF-Lite Java interpreter. Resizing an
+ * interpreter's input reallocates its tensors, so instead of resizing it for every batch there is
+ * an interpreter for every power-of-two batch size (all of them share the memory-mapped model), and
+ * a batch is padded up to the closest one.
+ */
+public class TfLiteBatchModel implements BatchModel {
+
+    // The memory-mapped model file:
+    private final MappedByteBuffer modelBuffer;
+
+    // The amount of threads that every interpreter uses:
+    private final int numThreads;
+
+    // The amount of labels that the model outputs:
+    private final int numLabels;
+
+    // The interpreters, by the log2 of their batch sizes (null until they are needed), and the
+    // padded inputs that they are given:
+    private final Interpreter[] interpreters;
+    private final ByteBuffer[] paddedInputs;
+
+    private TfLiteBatchModel(MappedByteBuffer modelBuffer, int numThreads, int numLabels, int maxBatchSize) {
+        this.modelBuffer = modelBuffer;
+        this.numThreads = numThreads;
+        this.numLabels = numLabels;
+        final int buckets = getBucket(maxBatchSize) + 1;
+        this.interpreters = new Interpreter[buckets];
+        this.paddedInputs = new ByteBuffer[buckets];
+    }
+
+    /**
+     * Loads a model by memory-mapping its file, and checks that its input is a batch of images that
+     * the ImagePreprocessor creates and its output has a confidence for every label.
+     * @param modelFile The .tflite file of the model.
+     * @param numLabels The amount of labels in the label table.
+     * @param maxBatchSize The largest batch that the model will run.
+     * @param numThreads The amount of threads that every interpreter uses.
+     * @return The model.
+     * @throws IOException If the file couldn't be mapped, or the model doesn't match the labels.
+     */
+    public static TfLiteBatchModel load(File modelFile, int numLabels, int maxBatchSize, int numThreads) throws IOException {
+        final MappedByteBuffer modelBuffer;
+        try (FileChannel channel = FileChannel.open(modelFile.toPath(), StandardOpenOption.READ)) {
+            modelBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        // The shapes are read from an interpreter whose input wasn't resized yet (resizing it to the
+        // expected shape would hide a model of other images):
+        final int[] inputShape;
+        final int[] outputShape;
+        try (Interpreter interpreter = new Interpreter(modelBuffer, new Interpreter.Options().setNumThreads(numThreads))) {
+            inputShape = interpreter.getInputTensor(0).shape();
+            outputShape = interpreter.getOutputTensor(0).shape();
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            throw new IOException("The model couldn't be loaded: " + e, e);
+        }
+
+        final int[] expectedInput = {1, ImagePreprocessor.IMAGE_SIZE, ImagePreprocessor.IMAGE_SIZE, ImagePreprocessor.CHANNELS};
+        if (!Arrays.equals(Arrays.copyOfRange(inputShape, 1, inputShape.length), Arrays.copyOfRange(expectedInput, 1, expectedInput.length))
+                || outputShape[outputShape.length - 1] != numLabels) {
+            throw new IOException("The model's input " + Arrays.toString(inputShape) + " and output " + Arrays.toString(outputShape)
+                    + " don't match images of " + Arrays.toString(expectedInput) + " and " + numLabels + " labels");
+        }
+
+        // Allocating the interpreter of single images right away, so a model that can't run fails
+        // here:
+        final TfLiteBatchModel model = new TfLiteBatchModel(modelBuffer, numThreads, numLabels, maxBatchSize);
+        try {
+            model.getInterpreter(0);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            model.close();
+            throw new IOException("The model couldn't be allocated: " + e, e);
+        }
+        return model;
+    }
+
+    @Override
+    public int getNumLabels() {
+        return this.numLabels;
+    }
+
+    @Override
+    public synchronized float[][] run(ByteBuffer input, int batchSize) {
+        // Padding the batch up to the closest interpreter's batch size:
+        final int bucket = getBucket(batchSize);
+        if (batchSize < 1 || bucket >= this.interpreters.length)
+            throw new IllegalArgumentException("Unsupported batch size: " + batchSize);
+        final int paddedSize = 1 << bucket;
+        ByteBuffer paddedInput = input.duplicate();
+        paddedInput.position(0).limit(batchSize * ImagePreprocessor.IMAGE_BYTES);
+        if (paddedSize > batchSize) {
+            if (this.paddedInputs[bucket] == null)
+                this.paddedInputs[bucket] = ImagePreprocessor.allocateInput(paddedSize);
+            final ByteBuffer padded = this.paddedInputs[bucket];
+            padded.clear();
+            padded.put(paddedInput);
+            // The padding is left with the images of earlier batches (their outputs are dropped):
+            padded.position(0).limit(paddedSize * ImagePreprocessor.IMAGE_BYTES);
+            paddedInput = padded;
+        }
+
+        final float[][] outputs = new float[paddedSize][this.numLabels];
+        getInterpreter(bucket).run(paddedInput, outputs);
+        return paddedSize == batchSize ? outputs : Arrays.copyOf(outputs, batchSize);
+    }
+
+    /**
+     * Returns the bucket of a batch size, the log2 of the smallest power of two that fits it.
+     * @param batchSize The batch size (at least 1).
+     * @return The bucket.
+     */
+    private static int getBucket(int batchSize) {
+        return 32 - Integer.numberOfLeadingZeros(batchSize - 1);
+    }
+
+    private Interpreter getInterpreter(int bucket) {
+        if (this.interpreters[bucket] == null) {
+            final Interpreter interpreter = new Interpreter(this.modelBuffer, new Interpreter.Options().setNumThreads(this.numThreads));
+            interpreter.resizeInput(0, new int[] {1 << bucket, ImagePreprocessor.IMAGE_SIZE, ImagePreprocessor.IMAGE_SIZE, ImagePreprocessor.CHANNELS});
+            interpreter.allocateTensors();
+            this.interpreters[bucket] = interpreter;
+        }
+        return this.interpreters[bucket];
+    }
+
+    @Override
+    public synchronized void close() {
+        for (int i = 0; i < this.interpreters.length; i++) {
+            if (this.interpreters[i] != null)
+                this.interpreters[i].close();
+            this.interpreters[i] = null;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.dogclassificationapp.server;
+
+import com.example.dogclassificationapp.core.ImagePreprocessor;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class MicroBatcherTest {
+
+    /**
+     * A model that takes a fixed time per run plus a time per image (like an interpreter, whose
+     * overhead is shared by a batch), and outputs the red value of every image's first pixel.
+     */
+    private static class FakeModel implements BatchModel {
+        private final long runNanos;
+        private final long imageNanos;
+
+        FakeModel(long runMicros, long imageMicros) {
+            this.runNanos = TimeUnit.MICROSECONDS.toNanos(runMicros);
+            this.imageNanos = TimeUnit.MICROSECONDS.toNanos(imageMicros);
+        }
+
+        @Override
+        public int getNumLabels() {
+            return 1;
+        }
+
+        @Override
+        public float[][] run(ByteBuffer input, int batchSize) {
+            final long end = System.nanoTime() + this.runNanos + batchSize * this.imageNanos;
+            final float[][] outputs = new float[batchSize][1];
+            for (int i = 0; i < batchSize; i++)
+                outputs[i][0] = input.getFloat(i * ImagePreprocessor.IMAGE_BYTES);
+            while (System.nanoTime() < end)
+                LockSupport.parkNanos(end - System.nanoTime());
+            return outputs;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static int[] image(int red) {
+        final int[] pixels = new int[ImagePreprocessor.IMAGE_SIZE * ImagePreprocessor.IMAGE_SIZE];
+        Arrays.fill(pixels, red << 16);
+        return pixels;
+    }
+
+    /**
+     * Classifies images from concurrent clients, every client waiting for its answer before the
+     * next image.
+     * @return The images per second.
+     */
+    private static double runClients(MicroBatcher batcher, int clients, int imagesPerClient) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(clients);
+        final long start = System.nanoTime();
+        try {
+            final List<Future<?>> results = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                final int client = c;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < imagesPerClient; i++) {
+                        final int red = (client * imagesPerClient + i) % 256;
+                        assertEquals(red, batcher.submit(image(red)).get()[0], 0f);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results)
+                result.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdown();
+        }
+        return clients * imagesPerClient / ((System.nanoTime() - start) / 1e9);
+    }
+
+    @Test
+    public void submit_coalescesConcurrentImagesAndAnswersEveryImage() throws Exception {
+        try (MicroBatcher batcher = new MicroBatcher(new FakeModel(2000, 100), 8, 2000, 64)) {
+            runClients(batcher, 16, 20);
+
+            assertEquals(320, batcher.getImageCount());
+            assertTrue("Expected batches of several images, got " + batcher.getBatchCount() + " batches",
+                    batcher.getBatchCount() < 320 / 2);
+            final long[] sizes = batcher.getBatchSizeCounts();
+            long images = 0;
+            for (int size = 1; size < sizes.length; size++)
+                images += size * sizes[size];
+            assertEquals(320, images);
+        }
+    }
+
+    @Test
+    public void submit_runsALoneImageAfterTheDelay() throws Exception {
+        try (MicroBatcher batcher = new MicroBatcher(new FakeModel(0, 0), 8, 1000, 8)) {
+            assertEquals(7f, batcher.submit(image(7)).get(5, TimeUnit.SECONDS)[0], 0f);
+            assertEquals(1, batcher.getBatchSizeCounts()[1]);
+        }
+    }
+
+    @Test
+    public void submit_rejectsImagesWhenTheQueueIsFull() throws Exception {
+        // A model that is stuck on the first batch, so the queue fills up:
+        final FakeModel slowModel = new FakeModel(TimeUnit.SECONDS.toMicros(2), 0);
+        try (MicroBatcher batcher = new MicroBatcher(slowModel, 1, 0, 2)) {
+            final CompletableFuture<float[]> first = batcher.submit(image(1));
+            Thread.sleep(100);
+            batcher.submit(image(2));
+            batcher.submit(image(3));
+            final CompletableFuture<float[]> rejected = batcher.submit(image(4));
+            try {
+                rejected.get(1, TimeUnit.SECONDS);
+                fail("The image should have been rejected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            assertFalse(first.isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    public void submit_rejectsImagesOfTheWrongSize() {
+        try (MicroBatcher batcher = new MicroBatcher(new FakeModel(0, 0), 4, 0, 4)) {
+            final CompletableFuture<float[]> future = batcher.submit(new int[3]);
+            assertTrue(future.isCompletedExceptionally());
+        }
+    }
+
+    @Test
+    public void close_failsTheWaitingImages() throws Exception {
+        final MicroBatcher batcher = new MicroBatcher(new FakeModel(TimeUnit.SECONDS.toMicros(1), 0), 1, 0, 8);
+        batcher.submit(image(1));
+        Thread.sleep(50);
+        final CompletableFuture<float[]> waiting = batcher.submit(image(2));
+        batcher.close();
+
+        try {
+            waiting.get(5, TimeUnit.SECONDS);
+            fail("The waiting image should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        assertTrue(batcher.submit(image(3)).isCompletedExceptionally());
+    }
+
+    @Test
+    public void close_answersEveryImageThatIsSubmittedWhileItCloses() throws Exception {
+        final MicroBatcher batcher = new MicroBatcher(new FakeModel(0, 0), 4, 0, 1024);
+        final int[] pixels = image(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<List<CompletableFuture<float[]>>>> clients = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            clients.add(executor.submit(() -> {
+                final List<CompletableFuture<float[]>> futures = new ArrayList<>();
+                for (int i = 0; i < 2000; i++)
+                    futures.add(batcher.submit(pixels));
+                return futures;
+            }));
+        }
+        batcher.close();
+
+        // Every image either ran or was rejected, none is left waiting:
+        try {
+            for (Future<List<CompletableFuture<float[]>>> client : clients)
+                for (CompletableFuture<float[]> future : client.get(30, TimeUnit.SECONDS))
+                    assertTrue(future.isDone());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void throughputByMaxBatchSize() throws Exception {
+        // Prints the curve of the throughput by the largest batch, with a fixed overhead per run:
+        double single = 0;
+        double best = 0;
+        System.out.println("max batch\timages/s\tavg batch");
+        for (int maxBatchSize = 1; maxBatchSize <= 16; maxBatchSize *= 2) {
+            try (MicroBatcher batcher = new MicroBatcher(new FakeModel(3000, 200), maxBatchSize, 2000, 256)) {
+                final double throughput = runClients(batcher, 32, 10);
+                System.out.println(String.format(Locale.US, "%d\t%.0f\t%.1f", maxBatchSize, throughput,
+                        batcher.getImageCount() / (double) batcher.getBatchCount()));
+                if (maxBatchSize == 1)
+                    single = throughput;
+                best = Math.max(best, throughput);
+            }
+        }
+        assertTrue("Batching should raise the throughput", best > 2 * single);
+    }
+}